@@ -314,9 +314,13 @@ public class HttpCacheEntry implements Serializable {
      * and the cache key is the location in the
      * {@link org.apache.http.client.cache.HttpCacheStorage} where that
      * particular variant is stored. The first variant returned is used as
-     * the "parent" entry to hold this index of the other variants.
+     * the "parent" entry to hold this index of the other variants. The map
+     * is empty if the entry was created without one.
      */
     public Map<String, String> getVariantMap() {
+        if (variantMap == null) {
+            return Collections.emptyMap();
+        }
         return Collections.unmodifiableMap(variantMap);
     }
 
@@ -0,0 +1,108 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.client.cache;
+
+import tink.org.apache.http.HttpHost;
+
+/**
+ * Receives statistics events from the HTTP cache so that they can be
+ * aggregated or forwarded to an external metrics system.
+ * <p>
+ * Callbacks are made on the thread that executes the request (or, for
+ * storage events, on the thread accessing the storage), including the
+ * cache hit path. Implementations must be thread-safe and should neither
+ * block nor throw.
+ * </p>
+ *
+ * @since 4.5.6
+ */
+public interface HttpCacheStatisticsListener {
+
+    /**
+     * Operations on a {@link HttpCacheStorage}.
+     */
+    enum StorageOperation {
+
+        GET, PUT, UPDATE, REMOVE, BULK_GET
+
+    }
+
+    /**
+     * Reasons for an entry to leave the cache.
+     */
+    enum EvictionReason {
+
+        /** The entry was removed because a request or response invalidated it. */
+        INVALIDATED,
+
+        /** The entry was evicted to keep the storage within its capacity. */
+        CAPACITY
+
+    }
+
+    /**
+     * Called once a response has been produced for a request.
+     * @param target the target host of the request, may be {@code null}
+     * @param status how the response was generated
+     * @param fromCache {@code true} if the response body was served from
+     *   a cache entry, {@code false} if it came from the origin
+     * @param bytes the length of the response body, {@code -1} if unknown
+     */
+    void responseServed(HttpHost target, CacheResponseStatus status, boolean fromCache, long bytes);
+
+    /**
+     * Called when the origin answered a conditional request made to
+     * revalidate a cache entry.
+     * @param target the target host of the request, may be {@code null}
+     * @param statusCode status code of the origin response, either
+     *   {@code 304} if the entry was still valid or {@code 200} if it
+     *   was replaced
+     */
+    void entryValidated(HttpHost target, int statusCode);
+
+    /**
+     * Called when a stale cache entry was served, either because stale
+     * responses were acceptable or because revalidation failed.
+     * @param target the target host of the request, may be {@code null}
+     */
+    void staleResponseServed(HttpHost target);
+
+    /**
+     * Called after an operation on the cache storage completed, whether
+     * or not it succeeded.
+     * @param operation the storage operation
+     * @param durationNanos how long the operation took
+     */
+    void storageOperationCompleted(StorageOperation operation, long durationNanos);
+
+    /**
+     * Called when an entry leaves the cache.
+     * @param reason why the entry was removed
+     */
+    void entryEvicted(EvictionReason reason);
+
+}
@@ -0,0 +1,48 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.client.cache;
+
+import java.io.IOException;
+
+/**
+ * Optional extension of {@link HttpCacheStorage} for storages that can tell,
+ * at no extra cost, whether removing a key actually deleted a stored entry.
+ *
+ * @since 4.5.6
+ */
+public interface HttpCacheStorageRemoval extends HttpCacheStorage {
+
+    /**
+     * Deletes the cache entry stored under the given key, if any.
+     * @param key cache key
+     * @return {@code true} if an entry was stored under the key and has been
+     *   removed, {@code false} otherwise
+     * @throws IOException
+     */
+    boolean removeStoredEntry(String key) throws IOException;
+
+}
@@ -27,6 +27,7 @@
 package org.apache.http.impl.client.cache;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -55,6 +56,7 @@ public class AsynchronousValidationRequest implements Runnable {
     private final HttpCacheEntry cacheEntry;
     private final String identifier;
     private final int consecutiveFailedAttempts;
+    private final AtomicInteger demand;
 
     private final Log log = LogFactory.getLog(getClass());
 
@@ -77,6 +79,21 @@ public class AsynchronousValidationRequest implements Runnable {
             final HttpCacheEntry cacheEntry,
             final String identifier,
             final int consecutiveFailedAttempts) {
+        this(parent, cachingExec, route, request, context, execAware, cacheEntry, identifier,
+                consecutiveFailedAttempts, new AtomicInteger(1));
+    }
+
+    AsynchronousValidationRequest(
+            final AsynchronousValidator parent,
+            final CachingExec cachingExec,
+            final HttpRoute route,
+            final HttpRequestWrapper request,
+            final HttpClientContext context,
+            final HttpExecutionAware execAware,
+            final HttpCacheEntry cacheEntry,
+            final String identifier,
+            final int consecutiveFailedAttempts,
+            final AtomicInteger demand) {
         this.parent = parent;
         this.cachingExec = cachingExec;
         this.route = route;
@@ -86,6 +103,7 @@ public class AsynchronousValidationRequest implements Runnable {
         this.cacheEntry = cacheEntry;
         this.identifier = identifier;
         this.consecutiveFailedAttempts = consecutiveFailedAttempts;
+        this.demand = demand;
     }
 
     @Override
@@ -101,6 +119,15 @@ public class AsynchronousValidationRequest implements Runnable {
         }
     }
 
+    /**
+     * Gives up on this request without running it, so that the entry may be
+     * scheduled for revalidation again. Meant for {@link SchedulingStrategy}
+     * implementations that drop requests they have accepted.
+     */
+    void cancel() {
+        parent.markComplete(identifier);
+    }
+
     /**
      * Revalidate the cache entry and return if the operation was successful.
      * Success means a connection to the server was established and replay did
@@ -168,6 +195,26 @@ public class AsynchronousValidationRequest implements Runnable {
         return identifier;
     }
 
+    /**
+     * The route to the origin server of the entry being revalidated.
+     *
+     * @since 4.5.6
+     */
+    public HttpRoute getRoute() {
+        return route;
+    }
+
+    /**
+     * The number of times a revalidation of this entry has been asked for
+     * since this request was scheduled, including the first; a measure of
+     * how hot the entry is. Keeps growing while the request is pending.
+     *
+     * @since 4.5.6
+     */
+    public int getDemand() {
+        return demand.get();
+    }
+
     /**
      * The number of consecutively failed revalidation attempts.
      * @return the number of consecutively failed revalidation attempts.
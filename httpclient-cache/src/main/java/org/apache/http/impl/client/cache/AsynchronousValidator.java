@@ -29,9 +29,11 @@ package org.apache.http.impl.client.cache;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -47,7 +49,7 @@ import tink.org.apache.http.conn.routing.HttpRoute;
  */
 class AsynchronousValidator implements Closeable {
     private final SchedulingStrategy schedulingStrategy;
-    private final Set<String> queued;
+    private final ConcurrentMap<String, AtomicInteger> queued;
     private final CacheKeyGenerator cacheKeyGenerator;
     private final FailureCache failureCache;
 
@@ -55,16 +57,15 @@ class AsynchronousValidator implements Closeable {
 
     /**
      * Create AsynchronousValidator which will make revalidation requests
-     * using an {@link ImmediateSchedulingStrategy}. Its thread
+     * using a {@link PrioritizedSchedulingStrategy}. Its thread
      * pool will be configured according to the given {@link CacheConfig}.
      * @param config specifies thread pool settings. See
      * {@link CacheConfig#getAsynchronousWorkersMax()},
-     * {@link CacheConfig#getAsynchronousWorkersCore()},
      * {@link CacheConfig#getAsynchronousWorkerIdleLifetimeSecs()},
      * and {@link CacheConfig#getRevalidationQueueSize()}.
      */
     public AsynchronousValidator(final CacheConfig config) {
-        this(new ImmediateSchedulingStrategy(config));
+        this(new PrioritizedSchedulingStrategy(config));
     }
 
     /**
@@ -76,7 +77,7 @@ class AsynchronousValidator implements Closeable {
      */
     AsynchronousValidator(final SchedulingStrategy schedulingStrategy) {
         this.schedulingStrategy = schedulingStrategy;
-        this.queued = new HashSet<String>();
+        this.queued = new ConcurrentHashMap<String, AtomicInteger>();
         this.cacheKeyGenerator = new CacheKeyGenerator();
         this.failureCache = new DefaultFailureCache();
     }
@@ -87,9 +88,11 @@ class AsynchronousValidator implements Closeable {
     }
 
     /**
-     * Schedules an asynchronous revalidation
+     * Schedules an asynchronous revalidation unless one is already pending
+     * for the same entry, in which case the pending one is merely marked as
+     * being in higher demand.
      */
-    public synchronized void revalidateCacheEntry(
+    public void revalidateCacheEntry(
             final CachingExec cachingExec,
             final HttpRoute route,
             final HttpRequestWrapper request,
@@ -99,18 +102,23 @@ class AsynchronousValidator implements Closeable {
         // getVariantURI will fall back on getURI if no variants exist
         final String uri = cacheKeyGenerator.getVariantURI(context.getTargetHost(), request, entry);
 
-        if (!queued.contains(uri)) {
-            final int consecutiveFailedAttempts = failureCache.getErrorCount(uri);
-            final AsynchronousValidationRequest revalidationRequest =
-                new AsynchronousValidationRequest(
-                        this, cachingExec, route, request, context, execAware, entry, uri, consecutiveFailedAttempts);
+        final AtomicInteger demand = new AtomicInteger(1);
+        final AtomicInteger pending = queued.putIfAbsent(uri, demand);
+        if (pending != null) {
+            pending.incrementAndGet();
+            return;
+        }
+        final int consecutiveFailedAttempts = failureCache.getErrorCount(uri);
+        final AsynchronousValidationRequest revalidationRequest =
+            new AsynchronousValidationRequest(
+                    this, cachingExec, route, request, context, execAware, entry, uri,
+                    consecutiveFailedAttempts, demand);
 
-            try {
-                schedulingStrategy.schedule(revalidationRequest);
-                queued.add(uri);
-            } catch (final RejectedExecutionException ree) {
-                log.debug("Revalidation for [" + uri + "] not scheduled: " + ree);
-            }
+        try {
+            schedulingStrategy.schedule(revalidationRequest);
+        } catch (final RejectedExecutionException ree) {
+            queued.remove(uri, demand);
+            log.debug("Revalidation for [" + uri + "] not scheduled: " + ree);
         }
     }
 
@@ -121,7 +129,7 @@ class AsynchronousValidator implements Closeable {
      * complete, using the identifier passed in during constructions.
      * @param identifier
      */
-    synchronized void markComplete(final String identifier) {
+    void markComplete(final String identifier) {
         queued.remove(identifier);
     }
 
@@ -146,6 +154,6 @@ class AsynchronousValidator implements Closeable {
     }
 
     Set<String> getScheduledIdentifiers() {
-        return Collections.unmodifiableSet(queued);
+        return Collections.unmodifiableSet(queued.keySet());
     }
 }
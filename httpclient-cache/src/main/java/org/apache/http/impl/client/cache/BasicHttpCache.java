@@ -26,7 +26,10 @@
  */
 package org.apache.http.impl.client.cache;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
@@ -37,24 +40,30 @@ import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import tink.org.apache.http.Header;
+import tink.org.apache.http.HttpEntity;
 import tink.org.apache.http.HttpHost;
 import tink.org.apache.http.HttpRequest;
 import tink.org.apache.http.HttpResponse;
 import tink.org.apache.http.HttpStatus;
 import tink.org.apache.http.HttpVersion;
+import tink.org.apache.http.StatusLine;
 import tink.org.apache.http.client.cache.HeaderConstants;
 import tink.org.apache.http.client.cache.HttpCacheEntry;
 import tink.org.apache.http.client.cache.HttpCacheInvalidator;
 import tink.org.apache.http.client.cache.HttpCacheStorage;
+import tink.org.apache.http.client.cache.HttpCacheStorageBulkRead;
 import tink.org.apache.http.client.cache.HttpCacheUpdateCallback;
 import tink.org.apache.http.client.cache.HttpCacheUpdateException;
+import tink.org.apache.http.client.cache.InputLimit;
 import tink.org.apache.http.client.cache.Resource;
 import tink.org.apache.http.client.cache.ResourceFactory;
 import tink.org.apache.http.client.methods.CloseableHttpResponse;
 import tink.org.apache.http.client.methods.HttpRequestWrapper;
+import tink.org.apache.http.entity.BasicHttpEntity;
 import tink.org.apache.http.entity.ByteArrayEntity;
 import tink.org.apache.http.message.BasicHttpResponse;
 import tink.org.apache.http.protocol.HTTP;
+import tink.org.apache.http.util.ByteArrayBuffer;
 
 class BasicHttpCache implements HttpCache {
     private static final Set<String> safeRequestMethods = new HashSet<String>(
@@ -65,6 +74,7 @@ class BasicHttpCache implements HttpCache {
     private final CacheKeyGenerator uriExtractor;
     private final ResourceFactory resourceFactory;
     private final long maxObjectSizeBytes;
+    private final boolean responseStreamingEnabled;
     private final CacheEntryUpdater cacheEntryUpdater;
     private final CachedHttpResponseGenerator responseGenerator;
     private final HttpCacheInvalidator cacheInvalidator;
@@ -82,6 +92,7 @@ class BasicHttpCache implements HttpCache {
         this.uriExtractor = uriExtractor;
         this.cacheEntryUpdater = new CacheEntryUpdater(resourceFactory);
         this.maxObjectSizeBytes = config.getMaxObjectSize();
+        this.responseStreamingEnabled = config.isResponseStreamingEnabled();
         this.responseGenerator = new CachedHttpResponseGenerator();
         this.storage = storage;
         this.cacheInvalidator = cacheInvalidator;
@@ -104,7 +115,7 @@ class BasicHttpCache implements HttpCache {
     }
 
     public BasicHttpCache(final CacheConfig config) {
-        this(new HeapResourceFactory(), new BasicHttpCacheStorage(config), config);
+        this(new HeapResourceFactory(), new ConcurrentHttpCacheStorage(config), config);
     }
 
     public BasicHttpCache() {
@@ -302,6 +313,9 @@ class BasicHttpCache implements HttpCache {
             final Date requestSent,
             final Date responseReceived) throws IOException {
 
+        if (responseStreamingEnabled && originResponse.getEntity() != null) {
+            return streamAndCacheResponse(host, request, originResponse, requestSent, responseReceived);
+        }
         boolean closeOriginResponse = true;
         final SizeLimitedResponseReader responseReader = getResponseReader(request, originResponse);
         try {
@@ -333,6 +347,81 @@ class BasicHttpCache implements HttpCache {
         }
     }
 
+    /**
+     * Returns a response whose body is passed through to the caller as it
+     * arrives while a copy is collected on the side. The cache entry is
+     * only stored once the caller has read the body to the end; it is
+     * discarded if the body exceeds the maximum object size, is shorter
+     * than announced, or the response is closed early.
+     */
+    CloseableHttpResponse streamAndCacheResponse(
+            final HttpHost host,
+            final HttpRequest request,
+            final CloseableHttpResponse originResponse,
+            final Date requestSent,
+            final Date responseReceived) throws IOException {
+        final HttpEntity entity = originResponse.getEntity();
+        final long contentLength = entity.getContentLength();
+        if (contentLength > maxObjectSizeBytes) {
+            return originResponse;
+        }
+        final String uri = request.getRequestLine().getUri();
+        final String method = request.getRequestLine().getMethod();
+        final StatusLine statusLine = originResponse.getStatusLine();
+        final Header[] headers = originResponse.getAllHeaders();
+        final InputStream instream = entity.getContent();
+        final CacheWritingInputStream teeStream = new CacheWritingInputStream(
+                instream, maxObjectSizeBytes, (int) contentLength) {
+
+            @Override
+            void commit(final ByteArrayBuffer content) {
+                try {
+                    final Resource resource = resourceFactory.generate(uri,
+                            new ByteArrayInputStream(content.buffer(), 0, content.length()),
+                            new InputLimit(maxObjectSizeBytes));
+                    if (isIncompleteResponse(originResponse, resource)) {
+                        log.debug("Streamed response body shorter than its Content-Length; not caching");
+                        resource.dispose();
+                        return;
+                    }
+                    final HttpCacheEntry entry = new HttpCacheEntry(
+                            requestSent,
+                            responseReceived,
+                            statusLine,
+                            headers,
+                            resource,
+                            method);
+                    storeInCache(host, request, entry);
+                } catch (final IOException ex) {
+                    log.warn("Unable to store streamed response in cache", ex);
+                }
+            }
+
+        };
+        final BasicHttpEntity teeEntity = new BasicHttpEntity();
+        teeEntity.setContent(teeStream);
+        teeEntity.setContentLength(contentLength);
+        teeEntity.setContentType(entity.getContentType());
+        teeEntity.setContentEncoding(entity.getContentEncoding());
+        teeEntity.setChunked(entity.isChunked());
+
+        final HttpResponse reconstructed = new BasicHttpResponse(statusLine);
+        reconstructed.setHeaders(headers);
+        reconstructed.setEntity(teeEntity);
+        return (CloseableHttpResponse) Proxy.newProxyInstance(
+                ResponseProxyHandler.class.getClassLoader(),
+                new Class<?>[] { CloseableHttpResponse.class },
+                new ResponseProxyHandler(reconstructed) {
+
+                    @Override
+                    public void close() throws IOException {
+                        teeStream.discard();
+                        originResponse.close();
+                    }
+
+                });
+    }
+
     SizeLimitedResponseReader getResponseReader(final HttpRequest request,
             final CloseableHttpResponse backEndResponse) {
         return new SizeLimitedResponseReader(
@@ -369,18 +458,28 @@ class BasicHttpCache implements HttpCache {
         if (root == null || !root.hasVariants()) {
             return variants;
         }
+        if (storage instanceof HttpCacheStorageBulkRead) {
+            // Fetch all variants in a single request rather than one by one
+            final Map<String, HttpCacheEntry> entries = ((HttpCacheStorageBulkRead) storage)
+                    .getEntries(root.getVariantMap().values());
+            for(final Map.Entry<String, String> variant : root.getVariantMap().entrySet()) {
+                addVariantWithEtag(variant.getKey(), variant.getValue(),
+                        entries.get(variant.getValue()), variants);
+            }
+            return variants;
+        }
         for(final Map.Entry<String, String> variant : root.getVariantMap().entrySet()) {
             final String variantKey = variant.getKey();
             final String variantCacheKey = variant.getValue();
-            addVariantWithEtag(variantKey, variantCacheKey, variants);
+            addVariantWithEtag(variantKey, variantCacheKey,
+                    storage.getEntry(variantCacheKey), variants);
         }
         return variants;
     }
 
     private void addVariantWithEtag(final String variantKey,
-            final String variantCacheKey, final Map<String, Variant> variants)
-            throws IOException {
-        final HttpCacheEntry entry = storage.getEntry(variantCacheKey);
+            final String variantCacheKey, final HttpCacheEntry entry,
+            final Map<String, Variant> variants) {
         if (entry == null) {
             return;
         }
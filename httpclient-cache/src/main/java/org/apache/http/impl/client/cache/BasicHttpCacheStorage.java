@@ -32,6 +32,7 @@ import tink.org.apache.http.annotation.Contract;
 import tink.org.apache.http.annotation.ThreadingBehavior;
 import tink.org.apache.http.client.cache.HttpCacheEntry;
 import tink.org.apache.http.client.cache.HttpCacheStorage;
+import tink.org.apache.http.client.cache.HttpCacheStorageRemoval;
 import tink.org.apache.http.client.cache.HttpCacheUpdateCallback;
 
 /**
@@ -39,13 +40,15 @@ import tink.org.apache.http.client.cache.HttpCacheUpdateCallback;
  * {@link java.util.LinkedHashMap}. In other words, cache entries and
  * the cached response bodies are held in-memory. This cache does NOT
  * deallocate resources associated with the cache entries; it is intended
- * for use with {@link HeapResource} and similar. This is the default cache
- * storage backend used by {@link CachingHttpClients}.
+ * for use with {@link HeapResource} and similar. All operations are
+ * serialized on a single lock; {@link ConcurrentHttpCacheStorage} is
+ * better suited for concurrent use and is the default cache storage
+ * backend used by {@link CachingHttpClients}.
  *
  * @since 4.1
  */
 @Contract(threading = ThreadingBehavior.SAFE)
-public class BasicHttpCacheStorage implements HttpCacheStorage {
+public class BasicHttpCacheStorage implements HttpCacheStorageRemoval {
 
     private final CacheMap entries;
 
@@ -90,6 +93,14 @@ public class BasicHttpCacheStorage implements HttpCacheStorage {
         entries.remove(url);
     }
 
+    /**
+     * @since 4.5.6
+     */
+    @Override
+    public synchronized boolean removeStoredEntry(final String url) throws IOException {
+        return entries.remove(url) != null;
+    }
+
     @Override
     public synchronized void updateEntry(
             final String url,
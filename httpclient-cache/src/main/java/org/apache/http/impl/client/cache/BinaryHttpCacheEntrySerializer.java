@@ -0,0 +1,409 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import tink.org.apache.http.Consts;
+import tink.org.apache.http.Header;
+import tink.org.apache.http.ProtocolVersion;
+import tink.org.apache.http.StatusLine;
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.client.cache.HeaderConstants;
+import tink.org.apache.http.client.cache.HttpCacheEntry;
+import tink.org.apache.http.client.cache.HttpCacheEntrySerializationException;
+import tink.org.apache.http.client.cache.HttpCacheEntrySerializer;
+import tink.org.apache.http.client.cache.Resource;
+import tink.org.apache.http.message.BasicHeader;
+import tink.org.apache.http.message.BasicStatusLine;
+import tink.org.apache.http.util.Args;
+
+/**
+ * {@link HttpCacheEntrySerializer} implementation that uses a compact,
+ * versioned binary format instead of Java serialization.
+ * <p>
+ * An entry is written as a fixed magic number and format version followed
+ * by the request and response dates, the status line, the request method,
+ * the response headers, the variant map and the response body. Strings are
+ * written as length-prefixed UTF-8 and the body as a length-prefixed byte
+ * run copied straight from the {@link Resource}. No class descriptors are
+ * written, so entries are considerably smaller than with
+ * {@link DefaultHttpCacheEntrySerializer} and cheaper to produce and parse.
+ * </p>
+ * <p>
+ * {@link #readFrom(ByteBuffer)} decodes an entry in place; the body of the
+ * returned entry is a view of the given buffer rather than a copy.
+ * </p>
+ * <p>
+ * The two formats are not interchangeable: a storage that already holds
+ * entries written by {@link DefaultHttpCacheEntrySerializer} must be cleared
+ * when switching to this serializer.
+ * </p>
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public class BinaryHttpCacheEntrySerializer implements HttpCacheEntrySerializer {
+
+    /** "HCEB" */
+    static final int MAGIC = 0x48434542;
+    static final int VERSION = 1;
+
+    /**
+     * Pseudo-header {@link HttpCacheEntry} uses to record the request method;
+     * it is hidden from {@link HttpCacheEntry#getAllHeaders()}.
+     */
+    private static final String REQUEST_METHOD_HEADER_NAME = "Hc-Request-Method";
+
+    private static final Charset UTF8 = Consts.UTF_8;
+    private static final int COPY_BUFFER_SIZE = 4096;
+
+    @Override
+    public void writeTo(final HttpCacheEntry entry, final OutputStream os) throws IOException {
+        Args.notNull(entry, "Cache entry");
+        Args.notNull(os, "Output stream");
+        final DataOutputStream out = new DataOutputStream(os);
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(entry.getRequestDate().getTime());
+            out.writeLong(entry.getResponseDate().getTime());
+
+            final StatusLine statusLine = entry.getStatusLine();
+            final ProtocolVersion version = statusLine.getProtocolVersion();
+            writeString(out, version.getProtocol());
+            out.writeShort(version.getMajor());
+            out.writeShort(version.getMinor());
+            out.writeShort(statusLine.getStatusCode());
+            writeString(out, statusLine.getReasonPhrase());
+            writeString(out, entry.getRequestMethod());
+
+            final Header[] headers = entry.getAllHeaders();
+            out.writeInt(headers.length);
+            for (final Header header : headers) {
+                writeString(out, header.getName());
+                writeString(out, header.getValue());
+            }
+
+            final Map<String, String> variantMap = entry.getVariantMap();
+            out.writeInt(variantMap.size());
+            for (final Map.Entry<String, String> variant : variantMap.entrySet()) {
+                writeString(out, variant.getKey());
+                writeString(out, variant.getValue());
+            }
+
+            writeResource(out, entry.getResource());
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    public HttpCacheEntry readFrom(final InputStream is) throws IOException {
+        Args.notNull(is, "Input stream");
+        final DataInputStream in = new DataInputStream(is);
+        try {
+            return readEntry(new StreamDecoder(in));
+        } catch (final EOFException ex) {
+            throw new HttpCacheEntrySerializationException("Truncated cache entry", ex);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Deserializes a cache entry from the remaining content of the given
+     * buffer. The body of the returned entry shares the buffer's content,
+     * which therefore must not be modified while the entry is in use. The
+     * position of the given buffer is not changed.
+     *
+     * @throws IOException if the content is not a valid cache entry
+     */
+    public HttpCacheEntry readFrom(final ByteBuffer buffer) throws IOException {
+        Args.notNull(buffer, "Buffer");
+        try {
+            return readEntry(new BufferDecoder(buffer.duplicate()));
+        } catch (final BufferUnderflowException ex) {
+            throw new HttpCacheEntrySerializationException("Truncated cache entry", ex);
+        } catch (final IndexOutOfBoundsException ex) {
+            throw new HttpCacheEntrySerializationException("Truncated cache entry", ex);
+        }
+    }
+
+    private HttpCacheEntry readEntry(final Decoder in) throws IOException {
+        final int magic = in.readInt();
+        if (magic != MAGIC) {
+            throw new HttpCacheEntrySerializationException("Not a binary cache entry");
+        }
+        final int version = in.readByte();
+        if (version != VERSION) {
+            throw new HttpCacheEntrySerializationException("Unsupported cache entry format version: " + version);
+        }
+        final Date requestDate = new Date(in.readLong());
+        final Date responseDate = new Date(in.readLong());
+
+        final String protocol = in.readString();
+        final int major = in.readShort();
+        final int minor = in.readShort();
+        final int statusCode = in.readShort();
+        final String reasonPhrase = in.readString();
+        final StatusLine statusLine = new BasicStatusLine(
+                new ProtocolVersion(protocol, major, minor), statusCode, reasonPhrase);
+        final String requestMethod = in.readString();
+
+        final int headerCount = readCount(in);
+        final boolean restoreMethod = !HeaderConstants.GET_METHOD.equals(requestMethod);
+        final Header[] headers = new Header[restoreMethod ? headerCount + 1 : headerCount];
+        for (int i = 0; i < headerCount; i++) {
+            headers[i] = new BasicHeader(in.readString(), in.readString());
+        }
+        if (restoreMethod) {
+            headers[headerCount] = new BasicHeader(REQUEST_METHOD_HEADER_NAME, requestMethod);
+        }
+
+        final int variantCount = readCount(in);
+        final Map<String, String> variantMap = new HashMap<String, String>();
+        for (int i = 0; i < variantCount; i++) {
+            variantMap.put(in.readString(), in.readString());
+        }
+
+        final Resource resource = in.readResource();
+        return new HttpCacheEntry(requestDate, responseDate, statusLine, headers,
+                resource, variantMap, requestMethod);
+    }
+
+    private static int readCount(final Decoder in) throws IOException {
+        final int count = in.readInt();
+        if (count < 0) {
+            throw new HttpCacheEntrySerializationException("Invalid element count: " + count);
+        }
+        return count;
+    }
+
+    private static void writeString(final DataOutputStream out, final String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] b = s.getBytes(UTF8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static void writeResource(final DataOutputStream out, final Resource resource) throws IOException {
+        if (resource == null) {
+            out.writeLong(-1);
+            return;
+        }
+        final long length = resource.length();
+        if (length > Integer.MAX_VALUE) {
+            throw new HttpCacheEntrySerializationException("Cache entry body too large: " + length);
+        }
+        out.writeLong(length);
+        if (resource instanceof HeapResource) {
+            final byte[] b = ((HeapResource) resource).getByteArray();
+            out.write(b, 0, b.length);
+            return;
+        }
+        if (resource instanceof ByteBufferResource) {
+            final ByteBuffer content = ((ByteBufferResource) resource).getByteBuffer();
+            if (content.hasArray()) {
+                out.write(content.array(), content.arrayOffset() + content.position(), content.remaining());
+                return;
+            }
+        }
+        final InputStream in = resource.getInputStream();
+        try {
+            final byte[] buf = new byte[COPY_BUFFER_SIZE];
+            long remaining = length;
+            while (remaining > 0) {
+                final int l = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+                if (l == -1) {
+                    break;
+                }
+                out.write(buf, 0, l);
+                remaining -= l;
+            }
+            if (remaining != 0) {
+                throw new HttpCacheEntrySerializationException(
+                        "Cache entry body shorter than its declared length of " + length);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private interface Decoder {
+
+        int readByte() throws IOException;
+
+        int readShort() throws IOException;
+
+        int readInt() throws IOException;
+
+        long readLong() throws IOException;
+
+        String readString() throws IOException;
+
+        Resource readResource() throws IOException;
+
+    }
+
+    private static class StreamDecoder implements Decoder {
+
+        private final DataInputStream in;
+
+        StreamDecoder(final DataInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int readByte() throws IOException {
+            return this.in.readUnsignedByte();
+        }
+
+        @Override
+        public int readShort() throws IOException {
+            return this.in.readUnsignedShort();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            return this.in.readInt();
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            return this.in.readLong();
+        }
+
+        @Override
+        public String readString() throws IOException {
+            final int len = this.in.readInt();
+            if (len < 0) {
+                return null;
+            }
+            final byte[] b = new byte[len];
+            this.in.readFully(b);
+            return new String(b, UTF8);
+        }
+
+        @Override
+        public Resource readResource() throws IOException {
+            final long len = this.in.readLong();
+            if (len < 0) {
+                return null;
+            }
+            if (len > Integer.MAX_VALUE) {
+                throw new HttpCacheEntrySerializationException("Invalid body length: " + len);
+            }
+            final byte[] b = new byte[(int) len];
+            this.in.readFully(b);
+            return new HeapResource(b);
+        }
+
+    }
+
+    private static class BufferDecoder implements Decoder {
+
+        private final ByteBuffer buffer;
+
+        BufferDecoder(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int readByte() {
+            return this.buffer.get() & 0xff;
+        }
+
+        @Override
+        public int readShort() {
+            return this.buffer.getShort() & 0xffff;
+        }
+
+        @Override
+        public int readInt() {
+            return this.buffer.getInt();
+        }
+
+        @Override
+        public long readLong() {
+            return this.buffer.getLong();
+        }
+
+        @Override
+        public String readString() {
+            final int len = this.buffer.getInt();
+            if (len < 0) {
+                return null;
+            }
+            if (len > this.buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            final String s;
+            if (this.buffer.hasArray()) {
+                s = new String(this.buffer.array(), this.buffer.arrayOffset() + this.buffer.position(), len, UTF8);
+                this.buffer.position(this.buffer.position() + len);
+            } else {
+                final byte[] b = new byte[len];
+                this.buffer.get(b);
+                s = new String(b, UTF8);
+            }
+            return s;
+        }
+
+        @Override
+        public Resource readResource() throws IOException {
+            final long len = this.buffer.getLong();
+            if (len < 0) {
+                return null;
+            }
+            if (len > this.buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            final ByteBuffer content = this.buffer.slice();
+            content.limit((int) len);
+            this.buffer.position(this.buffer.position() + (int) len);
+            return new ByteBufferResource(content);
+        }
+
+    }
+
+}
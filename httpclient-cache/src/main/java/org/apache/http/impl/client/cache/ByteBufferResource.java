@@ -0,0 +1,135 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.client.cache.Resource;
+
+/**
+ * Cache resource backed by a region of a {@link ByteBuffer}, typically
+ * the buffer a cache entry was deserialized from. The content is never
+ * copied, so the underlying buffer must not be modified for as long as
+ * the resource is in use.
+ * <p>
+ * Java serialization of this resource replaces it with an equivalent
+ * {@link HeapResource}.
+ * </p>
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+class ByteBufferResource implements Resource {
+
+    private static final long serialVersionUID = 3154624361234823563L;
+
+    private final transient ByteBuffer buffer;
+
+    ByteBufferResource(final ByteBuffer buffer) {
+        super();
+        this.buffer = buffer.slice();
+    }
+
+    /**
+     * Returns a fresh view of the content, positioned at zero.
+     */
+    ByteBuffer getByteBuffer() {
+        return this.buffer.duplicate();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        final ByteBuffer view = getByteBuffer();
+        if (view.hasArray()) {
+            return new ByteArrayInputStream(view.array(), view.arrayOffset(), view.remaining());
+        }
+        return new ByteBufferInputStream(view);
+    }
+
+    @Override
+    public long length() {
+        return this.buffer.remaining();
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        final ByteBuffer view = getByteBuffer();
+        final byte[] b = new byte[view.remaining()];
+        view.get(b);
+        return new HeapResource(b);
+    }
+
+    static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(final ByteBuffer buffer) {
+            super();
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+            final int chunk = Math.min(len, this.buffer.remaining());
+            this.buffer.get(b, off, chunk);
+            return chunk;
+        }
+
+        @Override
+        public long skip(final long n) {
+            final int chunk = (int) Math.max(0, Math.min(n, this.buffer.remaining()));
+            this.buffer.position(this.buffer.position() + chunk);
+            return chunk;
+        }
+
+        @Override
+        public int available() {
+            return this.buffer.remaining();
+        }
+
+    }
+
+}
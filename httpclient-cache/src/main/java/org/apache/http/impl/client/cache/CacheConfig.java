@@ -45,7 +45,8 @@ import tink.org.apache.http.util.Args;
  *
  * <p><b>Cache size.</b> If the backend storage supports these limits, you
  * can specify the {@link CacheConfig#getMaxCacheEntries maximum number of
- * cache entries} as well as the {@link CacheConfig#getMaxObjectSizeBytes
+ * cache entries}, the {@link CacheConfig#getMaxCacheBytes maximum total
+ * size of cache entries} as well as the {@link CacheConfig#getMaxObjectSizeBytes
  * maximum cacheable response body size}.</p>
  *
  * <p><b>Public/private caching.</b> By default, the caching module considers
@@ -99,6 +100,21 @@ import tink.org.apache.http.util.Args;
  * can be idle before being reclaimed}. You can also control the {@link
  * CacheConfig#getRevalidationQueueSize() size of the queue} used for
  * revalidations when there aren't enough workers to keep up with demand.</p>
+ *
+ * <p><b>Request collapsing</b>. When {@link
+ * CacheConfig#isRequestCollapsingEnabled() enabled}, only the first of
+ * several concurrent requests that miss the cache or need to revalidate the
+ * same entry is sent to the origin; the others wait up to {@link
+ * CacheConfig#getRequestCollapsingTimeoutMillis() a bounded time} and are
+ * then served from the freshly cached response, if it is usable for them.</p>
+ *
+ * <p><b>Response streaming</b>. By default a cacheable response body is read
+ * in full before it is returned to the caller. With {@link
+ * CacheConfig#isResponseStreamingEnabled() response streaming} the body is
+ * passed through as it arrives and stored in the cache once the caller has
+ * read it to the end. Note that requests collapsed into a streamed
+ * response are released as soon as its headers are returned, before the
+ * body has been stored, and will then go to the origin themselves.</p>
  */
 public class CacheConfig implements Cloneable {
 
@@ -112,6 +128,11 @@ public class CacheConfig implements Cloneable {
      */
     public final static int DEFAULT_MAX_CACHE_ENTRIES = 1000;
 
+    /** Default setting for the maximum total size of cached entries,
+     * in bytes; {@code 0} means the cache is bounded by entry count only.
+     */
+    public final static long DEFAULT_MAX_CACHE_BYTES = 0;
+
     /** Default setting for the number of retries on a failed
      * cache update
      */
@@ -158,11 +179,25 @@ public class CacheConfig implements Cloneable {
      */
     public static final int DEFAULT_REVALIDATION_QUEUE_SIZE = 100;
 
+    /** Default setting for request collapsing
+     */
+    public static final boolean DEFAULT_REQUEST_COLLAPSING_ENABLED = false;
+
+    /** Default maximum time in milliseconds a collapsed request waits for
+     * the in-flight request it was collapsed into.
+     */
+    public static final long DEFAULT_REQUEST_COLLAPSING_TIMEOUT_MILLIS = 5000;
+
+    /** Default setting for response streaming
+     */
+    public static final boolean DEFAULT_RESPONSE_STREAMING_ENABLED = false;
+
     public static final CacheConfig DEFAULT = new Builder().build();
 
     // TODO: make final
     private long maxObjectSize;
     private int maxCacheEntries;
+    private long maxCacheBytes;
     private int maxUpdateRetries;
     private final boolean allow303Caching;
     private final boolean weakETagOnPutDeleteAllowed;
@@ -175,6 +210,9 @@ public class CacheConfig implements Cloneable {
     private int asynchronousWorkerIdleLifetimeSecs;
     private int revalidationQueueSize;
     private boolean neverCacheHTTP10ResponsesWithQuery;
+    private boolean requestCollapsingEnabled;
+    private long requestCollapsingTimeoutMillis;
+    private boolean responseStreamingEnabled;
 
     /**
      * @deprecated (4.3) use {@link Builder}.
@@ -184,6 +222,7 @@ public class CacheConfig implements Cloneable {
         super();
         this.maxObjectSize = DEFAULT_MAX_OBJECT_SIZE_BYTES;
         this.maxCacheEntries = DEFAULT_MAX_CACHE_ENTRIES;
+        this.maxCacheBytes = DEFAULT_MAX_CACHE_BYTES;
         this.maxUpdateRetries = DEFAULT_MAX_UPDATE_RETRIES;
         this.allow303Caching = DEFAULT_303_CACHING_ENABLED;
         this.weakETagOnPutDeleteAllowed = DEFAULT_WEAK_ETAG_ON_PUTDELETE_ALLOWED;
@@ -195,11 +234,15 @@ public class CacheConfig implements Cloneable {
         this.asynchronousWorkersCore = DEFAULT_ASYNCHRONOUS_WORKERS_CORE;
         this.asynchronousWorkerIdleLifetimeSecs = DEFAULT_ASYNCHRONOUS_WORKER_IDLE_LIFETIME_SECS;
         this.revalidationQueueSize = DEFAULT_REVALIDATION_QUEUE_SIZE;
+        this.requestCollapsingEnabled = DEFAULT_REQUEST_COLLAPSING_ENABLED;
+        this.requestCollapsingTimeoutMillis = DEFAULT_REQUEST_COLLAPSING_TIMEOUT_MILLIS;
+        this.responseStreamingEnabled = DEFAULT_RESPONSE_STREAMING_ENABLED;
     }
 
     CacheConfig(
             final long maxObjectSize,
             final int maxCacheEntries,
+            final long maxCacheBytes,
             final int maxUpdateRetries,
             final boolean allow303Caching,
             final boolean weakETagOnPutDeleteAllowed,
@@ -211,10 +254,14 @@ public class CacheConfig implements Cloneable {
             final int asynchronousWorkersCore,
             final int asynchronousWorkerIdleLifetimeSecs,
             final int revalidationQueueSize,
-            final boolean neverCacheHTTP10ResponsesWithQuery) {
+            final boolean neverCacheHTTP10ResponsesWithQuery,
+            final boolean requestCollapsingEnabled,
+            final long requestCollapsingTimeoutMillis,
+            final boolean responseStreamingEnabled) {
         super();
         this.maxObjectSize = maxObjectSize;
         this.maxCacheEntries = maxCacheEntries;
+        this.maxCacheBytes = maxCacheBytes;
         this.maxUpdateRetries = maxUpdateRetries;
         this.allow303Caching = allow303Caching;
         this.weakETagOnPutDeleteAllowed = weakETagOnPutDeleteAllowed;
@@ -226,6 +273,9 @@ public class CacheConfig implements Cloneable {
         this.asynchronousWorkersCore = asynchronousWorkersCore;
         this.asynchronousWorkerIdleLifetimeSecs = asynchronousWorkerIdleLifetimeSecs;
         this.revalidationQueueSize = revalidationQueueSize;
+        this.requestCollapsingEnabled = requestCollapsingEnabled;
+        this.requestCollapsingTimeoutMillis = requestCollapsingTimeoutMillis;
+        this.responseStreamingEnabled = responseStreamingEnabled;
     }
 
     /**
@@ -303,6 +353,16 @@ public class CacheConfig implements Cloneable {
         this.maxCacheEntries = maxCacheEntries;
     }
 
+    /**
+     * Returns the maximum total size, in bytes, of the entries the cache
+     * will retain, or {@code 0} if the cache is bounded by entry count only.
+     *
+     * @since 4.5.6
+     */
+    public long getMaxCacheBytes() {
+        return maxCacheBytes;
+    }
+
     /**
      * Returns the number of times to retry a cache update on failure
      */
@@ -510,6 +570,37 @@ public class CacheConfig implements Cloneable {
         this.revalidationQueueSize = size;
     }
 
+    /**
+     * Returns whether concurrent requests that need to go to the origin
+     * for the same cache entry are collapsed into a single request.
+     *
+     * @since 4.5.6
+     */
+    public boolean isRequestCollapsingEnabled() {
+        return requestCollapsingEnabled;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds a collapsed request waits
+     * for the in-flight request before going to the origin itself.
+     *
+     * @since 4.5.6
+     */
+    public long getRequestCollapsingTimeoutMillis() {
+        return requestCollapsingTimeoutMillis;
+    }
+
+    /**
+     * Returns whether cacheable response bodies are passed through to the
+     * caller as they arrive and stored once fully read, rather than read
+     * in full before the response is returned.
+     *
+     * @since 4.5.6
+     */
+    public boolean isResponseStreamingEnabled() {
+        return responseStreamingEnabled;
+    }
+
     @Override
     protected CacheConfig clone() throws CloneNotSupportedException {
         return (CacheConfig) super.clone();
@@ -524,6 +615,7 @@ public class CacheConfig implements Cloneable {
         return new Builder()
             .setMaxObjectSize(config.getMaxObjectSize())
             .setMaxCacheEntries(config.getMaxCacheEntries())
+            .setMaxCacheBytes(config.getMaxCacheBytes())
             .setMaxUpdateRetries(config.getMaxUpdateRetries())
             .setHeuristicCachingEnabled(config.isHeuristicCachingEnabled())
             .setHeuristicCoefficient(config.getHeuristicCoefficient())
@@ -533,7 +625,10 @@ public class CacheConfig implements Cloneable {
             .setAsynchronousWorkersCore(config.getAsynchronousWorkersCore())
             .setAsynchronousWorkerIdleLifetimeSecs(config.getAsynchronousWorkerIdleLifetimeSecs())
             .setRevalidationQueueSize(config.getRevalidationQueueSize())
-            .setNeverCacheHTTP10ResponsesWithQueryString(config.isNeverCacheHTTP10ResponsesWithQuery());
+            .setNeverCacheHTTP10ResponsesWithQueryString(config.isNeverCacheHTTP10ResponsesWithQuery())
+            .setRequestCollapsingEnabled(config.isRequestCollapsingEnabled())
+            .setRequestCollapsingTimeoutMillis(config.getRequestCollapsingTimeoutMillis())
+            .setResponseStreamingEnabled(config.isResponseStreamingEnabled());
     }
 
 
@@ -541,6 +636,7 @@ public class CacheConfig implements Cloneable {
 
         private long maxObjectSize;
         private int maxCacheEntries;
+        private long maxCacheBytes;
         private int maxUpdateRetries;
         private boolean allow303Caching;
         private boolean weakETagOnPutDeleteAllowed;
@@ -553,10 +649,14 @@ public class CacheConfig implements Cloneable {
         private int asynchronousWorkerIdleLifetimeSecs;
         private int revalidationQueueSize;
         private boolean neverCacheHTTP10ResponsesWithQuery;
+        private boolean requestCollapsingEnabled;
+        private long requestCollapsingTimeoutMillis;
+        private boolean responseStreamingEnabled;
 
         Builder() {
             this.maxObjectSize = DEFAULT_MAX_OBJECT_SIZE_BYTES;
             this.maxCacheEntries = DEFAULT_MAX_CACHE_ENTRIES;
+            this.maxCacheBytes = DEFAULT_MAX_CACHE_BYTES;
             this.maxUpdateRetries = DEFAULT_MAX_UPDATE_RETRIES;
             this.allow303Caching = DEFAULT_303_CACHING_ENABLED;
             this.weakETagOnPutDeleteAllowed = DEFAULT_WEAK_ETAG_ON_PUTDELETE_ALLOWED;
@@ -568,6 +668,9 @@ public class CacheConfig implements Cloneable {
             this.asynchronousWorkersCore = DEFAULT_ASYNCHRONOUS_WORKERS_CORE;
             this.asynchronousWorkerIdleLifetimeSecs = DEFAULT_ASYNCHRONOUS_WORKER_IDLE_LIFETIME_SECS;
             this.revalidationQueueSize = DEFAULT_REVALIDATION_QUEUE_SIZE;
+            this.requestCollapsingEnabled = DEFAULT_REQUEST_COLLAPSING_ENABLED;
+            this.requestCollapsingTimeoutMillis = DEFAULT_REQUEST_COLLAPSING_TIMEOUT_MILLIS;
+            this.responseStreamingEnabled = DEFAULT_RESPONSE_STREAMING_ENABLED;
         }
 
         /**
@@ -587,6 +690,20 @@ public class CacheConfig implements Cloneable {
             return this;
         }
 
+        /**
+         * Sets the maximum total size, in bytes, of the entries the cache
+         * will retain, estimated from the size of the response bodies and
+         * headers. Not all storage backends enforce this limit.
+         * @param maxCacheBytes size in bytes; {@code 0} to bound the cache
+         *   by entry count only
+         *
+         * @since 4.5.6
+         */
+        public Builder setMaxCacheBytes(final long maxCacheBytes) {
+            this.maxCacheBytes = maxCacheBytes;
+            return this;
+        }
+
         /**
          * Sets the number of times to retry a cache update on failure
          */
@@ -720,10 +837,49 @@ public class CacheConfig implements Cloneable {
             return this;
         }
 
+        /**
+         * Enables or disables request collapsing. When enabled, only the
+         * first of several concurrent requests that miss the cache or need
+         * to revalidate the same entry is sent to the origin; the others
+         * wait for it and are served from the cache if possible.
+         *
+         * @since 4.5.6
+         */
+        public Builder setRequestCollapsingEnabled(final boolean requestCollapsingEnabled) {
+            this.requestCollapsingEnabled = requestCollapsingEnabled;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time in milliseconds a collapsed request waits
+         * for the in-flight request before going to the origin itself.
+         *
+         * @since 4.5.6
+         */
+        public Builder setRequestCollapsingTimeoutMillis(final long requestCollapsingTimeoutMillis) {
+            this.requestCollapsingTimeoutMillis = requestCollapsingTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Enables or disables response streaming. When enabled, cacheable
+         * response bodies are passed through to the caller as they arrive
+         * and stored in the cache only once the caller has read them to the
+         * end; the copy is discarded if the body exceeds the maximum object
+         * size or the response is closed early.
+         *
+         * @since 4.5.6
+         */
+        public Builder setResponseStreamingEnabled(final boolean responseStreamingEnabled) {
+            this.responseStreamingEnabled = responseStreamingEnabled;
+            return this;
+        }
+
         public CacheConfig build() {
             return new CacheConfig(
                     maxObjectSize,
                     maxCacheEntries,
+                    maxCacheBytes,
                     maxUpdateRetries,
                     allow303Caching,
                     weakETagOnPutDeleteAllowed,
@@ -735,7 +891,10 @@ public class CacheConfig implements Cloneable {
                     asynchronousWorkersCore,
                     asynchronousWorkerIdleLifetimeSecs,
                     revalidationQueueSize,
-                    neverCacheHTTP10ResponsesWithQuery);
+                    neverCacheHTTP10ResponsesWithQuery,
+                    requestCollapsingEnabled,
+                    requestCollapsingTimeoutMillis,
+                    responseStreamingEnabled);
         }
 
     }
@@ -745,6 +904,7 @@ public class CacheConfig implements Cloneable {
         final StringBuilder builder = new StringBuilder();
         builder.append("[maxObjectSize=").append(this.maxObjectSize)
                 .append(", maxCacheEntries=").append(this.maxCacheEntries)
+                .append(", maxCacheBytes=").append(this.maxCacheBytes)
                 .append(", maxUpdateRetries=").append(this.maxUpdateRetries)
                 .append(", 303CachingEnabled=").append(this.allow303Caching)
                 .append(", weakETagOnPutDeleteAllowed=").append(this.weakETagOnPutDeleteAllowed)
@@ -757,6 +917,9 @@ public class CacheConfig implements Cloneable {
                 .append(", asynchronousWorkerIdleLifetimeSecs=").append(this.asynchronousWorkerIdleLifetimeSecs)
                 .append(", revalidationQueueSize=").append(this.revalidationQueueSize)
                 .append(", neverCacheHTTP10ResponsesWithQuery=").append(this.neverCacheHTTP10ResponsesWithQuery)
+                .append(", requestCollapsingEnabled=").append(this.requestCollapsingEnabled)
+                .append(", requestCollapsingTimeoutMillis=").append(this.requestCollapsingTimeoutMillis)
+                .append(", responseStreamingEnabled=").append(this.responseStreamingEnabled)
                 .append("]");
         return builder.toString();
     }
@@ -0,0 +1,366 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import tink.org.apache.http.HttpHost;
+import tink.org.apache.http.HttpStatus;
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.client.cache.CacheResponseStatus;
+import tink.org.apache.http.client.cache.HttpCacheStatisticsListener;
+import tink.org.apache.http.util.Args;
+
+/**
+ * {@link HttpCacheStatisticsListener} that accumulates cache statistics
+ * in memory, both in total and broken down by target host.
+ * <p>
+ * All counters are updated without locking. Per-host counters are kept
+ * for at most a fixed number of hosts; requests to further hosts are
+ * only reflected in the totals. The figures can be read at any time,
+ * for instance by a reporter that periodically publishes them to an
+ * external metrics system, but are not a consistent snapshot.
+ * </p>
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class CacheStatistics implements HttpCacheStatisticsListener {
+
+    public static final int DEFAULT_MAX_HOSTS = 1000;
+
+    private static final StorageOperation[] OPERATIONS = StorageOperation.values();
+    private static final EvictionReason[] REASONS = EvictionReason.values();
+
+    private final int maxHosts;
+    private final Counters totals;
+    private final ConcurrentMap<HttpHost, Counters> hosts;
+    private final AtomicLongArray operationCounts;
+    private final AtomicLongArray operationNanos;
+    private final AtomicLongArray evictions;
+
+    public CacheStatistics(final int maxHosts) {
+        super();
+        this.maxHosts = Args.notNegative(maxHosts, "Max hosts");
+        this.totals = new Counters();
+        this.hosts = new ConcurrentHashMap<HttpHost, Counters>();
+        this.operationCounts = new AtomicLongArray(OPERATIONS.length);
+        this.operationNanos = new AtomicLongArray(OPERATIONS.length);
+        this.evictions = new AtomicLongArray(REASONS.length);
+    }
+
+    public CacheStatistics() {
+        this(DEFAULT_MAX_HOSTS);
+    }
+
+    @Override
+    public void responseServed(
+            final HttpHost target, final CacheResponseStatus status, final boolean fromCache, final long bytes) {
+        this.totals.responseServed(status, fromCache, bytes);
+        final Counters counters = countersFor(target);
+        if (counters != null) {
+            counters.responseServed(status, fromCache, bytes);
+        }
+    }
+
+    @Override
+    public void entryValidated(final HttpHost target, final int statusCode) {
+        this.totals.entryValidated(statusCode);
+        final Counters counters = countersFor(target);
+        if (counters != null) {
+            counters.entryValidated(statusCode);
+        }
+    }
+
+    @Override
+    public void staleResponseServed(final HttpHost target) {
+        this.totals.staleResponses.incrementAndGet();
+        final Counters counters = countersFor(target);
+        if (counters != null) {
+            counters.staleResponses.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void storageOperationCompleted(final StorageOperation operation, final long durationNanos) {
+        this.operationCounts.incrementAndGet(operation.ordinal());
+        this.operationNanos.addAndGet(operation.ordinal(), durationNanos);
+    }
+
+    @Override
+    public void entryEvicted(final EvictionReason reason) {
+        this.evictions.incrementAndGet(reason.ordinal());
+    }
+
+    private Counters countersFor(final HttpHost target) {
+        if (target == null) {
+            return null;
+        }
+        final Counters counters = this.hosts.get(target);
+        if (counters != null || this.hosts.size() >= this.maxHosts) {
+            return counters;
+        }
+        final Counters created = new Counters();
+        final Counters existing = this.hosts.putIfAbsent(target, created);
+        return existing != null ? existing : created;
+    }
+
+    /**
+     * Returns the statistics of all requests.
+     */
+    public Counters getTotals() {
+        return this.totals;
+    }
+
+    /**
+     * Returns the hosts for which separate statistics are kept.
+     */
+    public Set<HttpHost> getHosts() {
+        return Collections.unmodifiableSet(this.hosts.keySet());
+    }
+
+    /**
+     * Returns the statistics of requests to the given host, or
+     * {@code null} if none are kept for it.
+     */
+    public Counters getHostStatistics(final HttpHost target) {
+        return this.hosts.get(target);
+    }
+
+    /**
+     * Returns the number of completed storage operations of the given type.
+     */
+    public long getStorageOperationCount(final StorageOperation operation) {
+        return this.operationCounts.get(operation.ordinal());
+    }
+
+    /**
+     * Returns the average duration of storage operations of the given
+     * type in milliseconds, or {@code 0} if there have been none.
+     */
+    public double getAverageStorageOperationMillis(final StorageOperation operation) {
+        final long count = this.operationCounts.get(operation.ordinal());
+        return count > 0 ? this.operationNanos.get(operation.ordinal()) / (count * 1000000.0) : 0.0;
+    }
+
+    /**
+     * Returns the number of entries that left the cache for the given reason.
+     */
+    public long getEvictionCount(final EvictionReason reason) {
+        return this.evictions.get(reason.ordinal());
+    }
+
+    /**
+     * Resets all statistics and forgets the hosts seen so far.
+     */
+    public void reset() {
+        this.totals.reset();
+        this.hosts.clear();
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            this.operationCounts.set(i, 0);
+            this.operationNanos.set(i, 0);
+        }
+        for (int i = 0; i < REASONS.length; i++) {
+            this.evictions.set(i, 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[totals: ").append(this.totals);
+        buffer.append(", storage: {");
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(OPERATIONS[i]).append('=').append(this.operationCounts.get(i));
+        }
+        buffer.append("}, evictions: {");
+        for (int i = 0; i < REASONS.length; i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(REASONS[i]).append('=').append(this.evictions.get(i));
+        }
+        buffer.append("}]");
+        return buffer.toString();
+    }
+
+    /**
+     * Response statistics of a single host or of all hosts together.
+     */
+    @Contract(threading = ThreadingBehavior.SAFE)
+    public static final class Counters {
+
+        private static final CacheResponseStatus[] STATUSES = CacheResponseStatus.values();
+
+        private final AtomicLongArray responses;
+        private final AtomicLong notModified;
+        private final AtomicLong modified;
+        private final AtomicLong staleResponses;
+        private final AtomicLong cacheBytes;
+        private final AtomicLong originBytes;
+
+        Counters() {
+            this.responses = new AtomicLongArray(STATUSES.length);
+            this.notModified = new AtomicLong(0);
+            this.modified = new AtomicLong(0);
+            this.staleResponses = new AtomicLong(0);
+            this.cacheBytes = new AtomicLong(0);
+            this.originBytes = new AtomicLong(0);
+        }
+
+        void responseServed(final CacheResponseStatus status, final boolean fromCache, final long bytes) {
+            if (status != null) {
+                this.responses.incrementAndGet(status.ordinal());
+            }
+            if (bytes > 0) {
+                (fromCache ? this.cacheBytes : this.originBytes).addAndGet(bytes);
+            }
+        }
+
+        void entryValidated(final int statusCode) {
+            if (statusCode == HttpStatus.SC_NOT_MODIFIED) {
+                this.notModified.incrementAndGet();
+            } else {
+                this.modified.incrementAndGet();
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < STATUSES.length; i++) {
+                this.responses.set(i, 0);
+            }
+            this.notModified.set(0);
+            this.modified.set(0);
+            this.staleResponses.set(0);
+            this.cacheBytes.set(0);
+            this.originBytes.set(0);
+        }
+
+        /**
+         * Returns the number of responses generated in the given way.
+         */
+        public long getResponseCount(final CacheResponseStatus status) {
+            return this.responses.get(status.ordinal());
+        }
+
+        /**
+         * Returns the total number of responses.
+         */
+        public long getResponseCount() {
+            long total = 0;
+            for (int i = 0; i < STATUSES.length; i++) {
+                total += this.responses.get(i);
+            }
+            return total;
+        }
+
+        /**
+         * Returns the fraction of responses that were cache hits, or
+         * {@code 0} if there have been no responses.
+         */
+        public double getHitRatio() {
+            final long total = getResponseCount();
+            return total > 0 ? (double) getResponseCount(CacheResponseStatus.CACHE_HIT) / total : 0.0;
+        }
+
+        /**
+         * Returns the fraction of response body bytes of known length that
+         * were served from cache entries rather than received from the
+         * origin, or {@code 0} if no such bytes have been served.
+         */
+        public double getByteHitRatio() {
+            final long cached = this.cacheBytes.get();
+            final long total = cached + this.originBytes.get();
+            return total > 0 ? (double) cached / total : 0.0;
+        }
+
+        /**
+         * Returns the number of revalidations answered with
+         * {@code 304 Not Modified}.
+         */
+        public long getNotModifiedCount() {
+            return this.notModified.get();
+        }
+
+        /**
+         * Returns the number of revalidations answered with a new response.
+         */
+        public long getModifiedCount() {
+            return this.modified.get();
+        }
+
+        /**
+         * Returns the number of stale responses served.
+         */
+        public long getStaleResponseCount() {
+            return this.staleResponses.get();
+        }
+
+        /**
+         * Returns the number of response body bytes of known length
+         * served from cache entries.
+         */
+        public long getCacheBytes() {
+            return this.cacheBytes.get();
+        }
+
+        /**
+         * Returns the number of response body bytes of known length
+         * received from the origin.
+         */
+        public long getOriginBytes() {
+            return this.originBytes.get();
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder buffer = new StringBuilder();
+            buffer.append('{');
+            for (int i = 0; i < STATUSES.length; i++) {
+                buffer.append(STATUSES[i]).append('=').append(this.responses.get(i)).append(", ");
+            }
+            buffer.append("304=").append(this.notModified.get());
+            buffer.append(", 200=").append(this.modified.get());
+            buffer.append(", stale=").append(this.staleResponses.get());
+            buffer.append(", cache bytes=").append(this.cacheBytes.get());
+            buffer.append(", origin bytes=").append(this.originBytes.get());
+            buffer.append('}');
+            return buffer.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import tink.org.apache.http.util.ByteArrayBuffer;
+
+/**
+ * Passes a response body through to the caller while keeping a copy of
+ * it. Once the caller has read the body to the end the copy is handed
+ * to {@link #commit(ByteArrayBuffer)}; if the body exceeds the size
+ * limit, or the stream is closed or skipped before the end, the copy is
+ * discarded and nothing is committed.
+ *
+ * @since 4.5.6
+ */
+abstract class CacheWritingInputStream extends FilterInputStream {
+
+    private final long limit;
+
+    private ByteArrayBuffer buffer;
+    private boolean completed;
+
+    CacheWritingInputStream(final InputStream instream, final long limit, final int sizeHint) {
+        super(instream);
+        this.limit = limit;
+        this.buffer = new ByteArrayBuffer(
+                sizeHint > 0 && sizeHint <= limit ? sizeHint : (int) Math.min(limit, 4096));
+    }
+
+    /**
+     * Called once with the complete body after the end of stream has been
+     * reached.
+     */
+    abstract void commit(ByteArrayBuffer content);
+
+    boolean isDiscarded() {
+        return this.buffer == null;
+    }
+
+    void discard() {
+        this.buffer = null;
+    }
+
+    private void append(final byte[] b, final int off, final int len) {
+        if (this.buffer == null) {
+            return;
+        }
+        if (this.buffer.length() + (long) len > this.limit) {
+            discard();
+            return;
+        }
+        this.buffer.append(b, off, len);
+    }
+
+    private void complete() {
+        if (this.completed) {
+            return;
+        }
+        this.completed = true;
+        if (this.buffer != null) {
+            final ByteArrayBuffer content = this.buffer;
+            this.buffer = null;
+            commit(content);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+        if (b == -1) {
+            complete();
+        } else if (this.buffer != null) {
+            if (this.buffer.length() + 1L > this.limit) {
+                discard();
+            } else {
+                this.buffer.append(b);
+            }
+        }
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final int n = super.read(b, off, len);
+        if (n == -1) {
+            complete();
+        } else {
+            append(b, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        discard();
+        return super.skip(n);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(final int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!this.completed) {
+            this.completed = true;
+            discard();
+        }
+        super.close();
+    }
+
+}
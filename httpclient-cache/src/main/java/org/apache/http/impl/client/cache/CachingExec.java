@@ -33,12 +33,17 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import tink.org.apache.http.Header;
 import tink.org.apache.http.HeaderElement;
+import tink.org.apache.http.HttpEntity;
 import tink.org.apache.http.HttpException;
 import tink.org.apache.http.HttpHost;
 import tink.org.apache.http.HttpMessage;
@@ -55,6 +60,7 @@ import tink.org.apache.http.client.cache.CacheResponseStatus;
 import tink.org.apache.http.client.cache.HeaderConstants;
 import tink.org.apache.http.client.cache.HttpCacheContext;
 import tink.org.apache.http.client.cache.HttpCacheEntry;
+import tink.org.apache.http.client.cache.HttpCacheStatisticsListener;
 import tink.org.apache.http.client.cache.HttpCacheStorage;
 import tink.org.apache.http.client.cache.ResourceFactory;
 import tink.org.apache.http.client.methods.CloseableHttpResponse;
@@ -65,6 +71,7 @@ import tink.org.apache.http.client.utils.DateUtils;
 import tink.org.apache.http.client.utils.URIUtils;
 import tink.org.apache.http.conn.routing.HttpRoute;
 import tink.org.apache.http.impl.execchain.ClientExecChain;
+import tink.org.apache.http.impl.execchain.RequestAbortedException;
 import tink.org.apache.http.message.BasicHttpResponse;
 import tink.org.apache.http.protocol.HTTP;
 import tink.org.apache.http.protocol.HttpContext;
@@ -105,9 +112,17 @@ public class CachingExec implements ClientExecChain {
 
     private final static boolean SUPPORTS_RANGE_AND_CONTENT_RANGE_HEADERS = false;
 
+    /** Context attribute holding the status code of a revalidation response. */
+    private final static String VALIDATION_STATUS = "http.cache.validation-status";
+
     private final AtomicLong cacheHits = new AtomicLong();
     private final AtomicLong cacheMisses = new AtomicLong();
     private final AtomicLong cacheUpdates = new AtomicLong();
+    private final AtomicLong collapsedRequests = new AtomicLong();
+
+    private final ConcurrentMap<String, CountDownLatch> inFlightRequests =
+            new ConcurrentHashMap<String, CountDownLatch>();
+    private final CacheKeyGenerator cacheKeyGenerator = new CacheKeyGenerator();
 
     private final Map<ProtocolVersion, String> viaHeaders = new HashMap<ProtocolVersion, String>(4);
 
@@ -124,6 +139,7 @@ public class CachingExec implements ClientExecChain {
     private final ResponseCachingPolicy responseCachingPolicy;
 
     private final AsynchronousValidator asynchRevalidator;
+    private final HttpCacheStatisticsListener statisticsListener;
 
     private final Log log = LogFactory.getLog(getClass());
 
@@ -139,6 +155,18 @@ public class CachingExec implements ClientExecChain {
             final HttpCache cache,
             final CacheConfig config,
             final AsynchronousValidator asynchRevalidator) {
+        this(backend, cache, config, asynchRevalidator, null);
+    }
+
+    /**
+     * @since 4.5.6
+     */
+    public CachingExec(
+            final ClientExecChain backend,
+            final HttpCache cache,
+            final CacheConfig config,
+            final AsynchronousValidator asynchRevalidator,
+            final HttpCacheStatisticsListener statisticsListener) {
         super();
         Args.notNull(backend, "HTTP backend");
         Args.notNull(cache, "HttpCache");
@@ -156,6 +184,7 @@ public class CachingExec implements ClientExecChain {
                 this.cacheConfig.getMaxObjectSize(), this.cacheConfig.isSharedCache(),
                 this.cacheConfig.isNeverCacheHTTP10ResponsesWithQuery(), this.cacheConfig.is303CachingEnabled());
         this.asynchRevalidator = asynchRevalidator;
+        this.statisticsListener = statisticsListener;
     }
 
     public CachingExec(
@@ -195,6 +224,7 @@ public class CachingExec implements ClientExecChain {
         this.responseCompliance = responseCompliance;
         this.requestCompliance = requestCompliance;
         this.asynchRevalidator = asynchRevalidator;
+        this.statisticsListener = null;
     }
 
     /**
@@ -224,6 +254,19 @@ public class CachingExec implements ClientExecChain {
         return cacheUpdates.get();
     }
 
+    /**
+     * Reports the number of times that a request was served from the
+     * cache after waiting for a concurrent request for the same entry
+     * instead of contacting the origin server itself.
+     * @return the number of collapsed requests
+     *
+     * @see CacheConfig#isRequestCollapsingEnabled()
+     * @since 4.5.6
+     */
+    public long getCollapsedRequests() {
+        return collapsedRequests.get();
+    }
+
     public CloseableHttpResponse execute(
             final HttpRoute route,
             final HttpRequestWrapper request) throws IOException, HttpException {
@@ -243,6 +286,18 @@ public class CachingExec implements ClientExecChain {
             final HttpRequestWrapper request,
             final HttpClientContext context,
             final HttpExecutionAware execAware) throws IOException, HttpException {
+        final CloseableHttpResponse response = handleRequest(route, request, context, execAware);
+        if (statisticsListener != null) {
+            recordResponse(context, response);
+        }
+        return response;
+    }
+
+    private CloseableHttpResponse handleRequest(
+            final HttpRoute route,
+            final HttpRequestWrapper request,
+            final HttpClientContext context,
+            final HttpExecutionAware execAware) throws IOException, HttpException {
 
         final HttpHost target = context.getTargetHost();
         final String via = generateViaHeader(request.getOriginal());
@@ -327,7 +382,24 @@ public class CachingExec implements ClientExecChain {
                 asynchRevalidator.revalidateCacheEntry(this, route, request, context, execAware, entry);
                 return resp;
             }
-            return revalidateCacheEntry(route, request, context, execAware, entry);
+            final String flightKey = getFlightKey(context.getTargetHost(), request);
+            if (flightKey == null) {
+                return revalidateCacheEntry(route, request, context, execAware, entry);
+            }
+            final CountDownLatch flight = new CountDownLatch(1);
+            final CountDownLatch leader = inFlightRequests.putIfAbsent(flightKey, flight);
+            if (leader != null) {
+                final CloseableHttpResponse collapsed = awaitCollapsedResponse(leader, route, request, context);
+                if (collapsed != null) {
+                    return collapsed;
+                }
+                return revalidateCacheEntry(route, request, context, execAware, entry);
+            }
+            try {
+                return revalidateCacheEntry(route, request, context, execAware, entry);
+            } finally {
+                completeFlight(flightKey, flight);
+            }
         } catch (final IOException ioex) {
             return handleRevalidationFailure(request, context, entry, now);
         }
@@ -347,7 +419,32 @@ public class CachingExec implements ClientExecChain {
                             HttpVersion.HTTP_1_1, HttpStatus.SC_GATEWAY_TIMEOUT, "Gateway Timeout"));
         }
 
-        final Map<String, Variant> variants = getExistingCacheVariants(target, request);
+        final String flightKey = getFlightKey(target, request);
+        if (flightKey == null) {
+            return fetchOnCacheMiss(route, request, context, execAware);
+        }
+        final CountDownLatch flight = new CountDownLatch(1);
+        final CountDownLatch leader = inFlightRequests.putIfAbsent(flightKey, flight);
+        if (leader != null) {
+            final CloseableHttpResponse collapsed = awaitCollapsedResponse(leader, route, request, context);
+            if (collapsed != null) {
+                return collapsed;
+            }
+            return fetchOnCacheMiss(route, request, context, execAware);
+        }
+        try {
+            return fetchOnCacheMiss(route, request, context, execAware);
+        } finally {
+            completeFlight(flightKey, flight);
+        }
+    }
+
+    private CloseableHttpResponse fetchOnCacheMiss(
+            final HttpRoute route,
+            final HttpRequestWrapper request,
+            final HttpClientContext context,
+            final HttpExecutionAware execAware) throws IOException, HttpException {
+        final Map<String, Variant> variants = getExistingCacheVariants(context.getTargetHost(), request);
         if (variants != null && !variants.isEmpty()) {
             return negotiateResponseFromVariants(route, request, context,
                     execAware, variants);
@@ -356,6 +453,62 @@ public class CachingExec implements ClientExecChain {
         return callBackend(route, request, context, execAware);
     }
 
+    /**
+     * Returns the key concurrent requests for the same cache entry are
+     * collapsed on, or {@code null} if request collapsing is disabled.
+     */
+    private String getFlightKey(final HttpHost target, final HttpRequestWrapper request) {
+        if (!cacheConfig.isRequestCollapsingEnabled()) {
+            return null;
+        }
+        return cacheKeyGenerator.getURI(target, request);
+    }
+
+    private void completeFlight(final String flightKey, final CountDownLatch flight) {
+        inFlightRequests.remove(flightKey, flight);
+        flight.countDown();
+    }
+
+    /**
+     * Waits for the in-flight request for the same cache entry to complete
+     * and serves the request from the entry it stored.
+     *
+     * @return the cached response, or {@code null} if the wait timed out or
+     *   the in-flight request did not leave a usable entry behind, in which
+     *   case the caller has to contact the origin server itself
+     */
+    private CloseableHttpResponse awaitCollapsedResponse(
+            final CountDownLatch leader,
+            final HttpRoute route,
+            final HttpRequestWrapper request,
+            final HttpClientContext context) throws IOException {
+        try {
+            if (!leader.await(cacheConfig.getRequestCollapsingTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                log.debug("Timed out waiting for in-flight request");
+                return null;
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RequestAbortedException("Request aborted", ex);
+        }
+        final HttpHost target = context.getTargetHost();
+        final HttpCacheEntry entry = satisfyFromCache(target, request);
+        final Date now = getCurrentDate();
+        if (entry == null || !suitabilityChecker.canCachedResponseBeUsed(target, request, entry, now)) {
+            log.debug("In-flight request left no usable cache entry");
+            return null;
+        }
+        log.debug("Collapsed request served from cache");
+        collapsedRequests.getAndIncrement();
+        final CloseableHttpResponse out = generateCachedResponse(request, context, entry, now);
+        context.setAttribute(HttpClientContext.HTTP_ROUTE, route);
+        context.setAttribute(HttpCoreContext.HTTP_TARGET_HOST, target);
+        context.setAttribute(HttpCoreContext.HTTP_REQUEST, request);
+        context.setAttribute(HttpCoreContext.HTTP_RESPONSE, out);
+        context.setAttribute(HttpCoreContext.HTTP_REQ_SENT, Boolean.TRUE);
+        return out;
+    }
+
     private HttpCacheEntry satisfyFromCache(
             final HttpHost target, final HttpRequestWrapper request) {
         HttpCacheEntry entry = null;
@@ -408,9 +561,39 @@ public class CachingExec implements ClientExecChain {
         }
     }
 
-    private void recordCacheUpdate(final HttpContext context) {
+    private void recordCacheUpdate(final HttpClientContext context, final int statusCode) {
         cacheUpdates.getAndIncrement();
         setResponseStatus(context, CacheResponseStatus.VALIDATED);
+        if (statisticsListener != null) {
+            context.setAttribute(VALIDATION_STATUS, Integer.valueOf(statusCode));
+            statisticsListener.entryValidated(context.getTargetHost(), statusCode);
+        }
+    }
+
+    private void recordResponse(final HttpClientContext context, final HttpResponse response) {
+        final HttpHost target = context.getTargetHost();
+        final CacheResponseStatus status = (CacheResponseStatus) context.getAttribute(
+                HttpCacheContext.CACHE_RESPONSE_STATUS);
+        final boolean stale = isStaleCachedResponse(response);
+        final boolean fromCache = stale
+                || status == CacheResponseStatus.CACHE_HIT
+                || (status == CacheResponseStatus.VALIDATED
+                        && Integer.valueOf(HttpStatus.SC_NOT_MODIFIED).equals(context.getAttribute(VALIDATION_STATUS)));
+        final HttpEntity entity = response.getEntity();
+        statisticsListener.responseServed(target, status, fromCache, entity != null ? entity.getContentLength() : -1);
+        if (stale) {
+            statisticsListener.staleResponseServed(target);
+        }
+    }
+
+    private boolean isStaleCachedResponse(final HttpResponse response) {
+        for (final Header h : response.getHeaders(HeaderConstants.WARNING)) {
+            final String value = h.getValue();
+            if (value.startsWith("110 localhost") || value.startsWith("111 localhost")) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private void flushEntriesInvalidatedByRequest(
@@ -671,7 +854,7 @@ public class CachingExec implements ClientExecChain {
                 return retryRequestUnconditionally(route, request, context, execAware, matchedEntry);
             }
 
-            recordCacheUpdate(context);
+            recordCacheUpdate(context, HttpStatus.SC_NOT_MODIFIED);
 
             final HttpCacheEntry responseEntry = getUpdatedVariantEntry(
                 context.getTargetHost(), conditionalRequest, requestDate, responseDate,
@@ -778,7 +961,7 @@ public class CachingExec implements ClientExecChain {
 
         final int statusCode = backendResponse.getStatusLine().getStatusCode();
         if (statusCode == HttpStatus.SC_NOT_MODIFIED || statusCode == HttpStatus.SC_OK) {
-            recordCacheUpdate(context);
+            recordCacheUpdate(context, statusCode);
         }
 
         if (statusCode == HttpStatus.SC_NOT_MODIFIED) {
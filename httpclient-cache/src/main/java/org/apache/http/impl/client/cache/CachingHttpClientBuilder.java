@@ -31,6 +31,7 @@ import java.io.File;
 import java.io.IOException;
 
 import tink.org.apache.http.client.cache.HttpCacheInvalidator;
+import tink.org.apache.http.client.cache.HttpCacheStatisticsListener;
 import tink.org.apache.http.client.cache.HttpCacheStorage;
 import tink.org.apache.http.client.cache.ResourceFactory;
 import tink.org.apache.http.impl.client.HttpClientBuilder;
@@ -50,6 +51,7 @@ public class CachingHttpClientBuilder extends HttpClientBuilder {
     private CacheConfig cacheConfig;
     private SchedulingStrategy schedulingStrategy;
     private HttpCacheInvalidator httpCacheInvalidator;
+    private HttpCacheStatisticsListener statisticsListener;
     private boolean deleteCache;
 
     public static CachingHttpClientBuilder create() {
@@ -97,6 +99,20 @@ public class CachingHttpClientBuilder extends HttpClientBuilder {
         return this;
     }
 
+    /**
+     * Assigns a listener to be told about cache hits, revalidations,
+     * storage latency and evictions, for example a {@link CacheStatistics}
+     * instance. The cache storage is wrapped in an
+     * {@link InstrumentedHttpCacheStorage} to measure its latency.
+     *
+     * @since 4.5.6
+     */
+    public final CachingHttpClientBuilder setCacheStatisticsListener(
+            final HttpCacheStatisticsListener statisticsListener) {
+        this.statisticsListener = statisticsListener;
+        return this;
+    }
+
     public CachingHttpClientBuilder setDeleteCache(final boolean deleteCache) {
         this.deleteCache = deleteCache;
         return this;
@@ -117,7 +133,7 @@ public class CachingHttpClientBuilder extends HttpClientBuilder {
         HttpCacheStorage storageCopy = this.storage;
         if (storageCopy == null) {
             if (this.cacheDir == null) {
-                storageCopy = new BasicHttpCacheStorage(config);
+                storageCopy = new ConcurrentHttpCacheStorage(config, this.statisticsListener);
             } else {
                 final ManagedHttpCacheStorage managedStorage = new ManagedHttpCacheStorage(config);
                 if (this.deleteCache) {
@@ -135,6 +151,9 @@ public class CachingHttpClientBuilder extends HttpClientBuilder {
                 storageCopy = managedStorage;
             }
         }
+        if (this.statisticsListener != null) {
+            storageCopy = new InstrumentedHttpCacheStorage(storageCopy, this.statisticsListener);
+        }
         final AsynchronousValidator revalidator = createAsynchronousRevalidator(config);
         final CacheKeyGenerator uriExtractor = new CacheKeyGenerator();
 
@@ -148,7 +167,7 @@ public class CachingHttpClientBuilder extends HttpClientBuilder {
                         resourceFactoryCopy,
                         storageCopy, config,
                         uriExtractor,
-                        cacheInvalidator), config, revalidator);
+                        cacheInvalidator), config, revalidator, this.statisticsListener);
     }
 
     private AsynchronousValidator createAsynchronousRevalidator(final CacheConfig config) {
@@ -163,7 +182,7 @@ public class CachingHttpClientBuilder extends HttpClientBuilder {
     }
 
     private SchedulingStrategy createSchedulingStrategy(final CacheConfig config) {
-        return schedulingStrategy != null ? schedulingStrategy : new ImmediateSchedulingStrategy(config);
+        return schedulingStrategy != null ? schedulingStrategy : new PrioritizedSchedulingStrategy(config);
     }
 
 }
@@ -0,0 +1,459 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
+import tink.org.apache.http.Header;
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.client.cache.HttpCacheEntry;
+import tink.org.apache.http.client.cache.HttpCacheStatisticsListener;
+import tink.org.apache.http.client.cache.HttpCacheStatisticsListener.EvictionReason;
+import tink.org.apache.http.client.cache.HttpCacheStorage;
+import tink.org.apache.http.client.cache.HttpCacheStorageRemoval;
+import tink.org.apache.http.client.cache.HttpCacheUpdateCallback;
+import tink.org.apache.http.client.cache.HttpCacheUpdateException;
+import tink.org.apache.http.client.cache.Resource;
+import tink.org.apache.http.util.Args;
+
+/**
+ * In-memory {@link HttpCacheStorage} implementation that, unlike
+ * {@link BasicHttpCacheStorage}, does not serialize access through
+ * a single lock.
+ * <p>
+ * Entries are held in a {@link ConcurrentHashMap}; cache hits only bump
+ * a small per-entry usage credit and never block. The storage is bounded
+ * by {@link CacheConfig#getMaxCacheEntries()} and, if set, by
+ * {@link CacheConfig#getMaxCacheBytes()}, where the size of an entry is
+ * estimated from {@link Resource#length()} plus its headers. Entries are
+ * evicted in approximate LRU order using a CLOCK (second chance) hand
+ * that is weighted by size: each time the hand passes an entry it takes
+ * away credit in proportion to how much larger than average the entry is,
+ * so a large response has to be hit more often than a small one to stay
+ * in the cache. Eviction is performed by the writing thread and never
+ * blocks readers. A single entry larger than the byte budget is not
+ * stored at all.
+ * </p>
+ * <p>
+ * {@link #updateEntry(String, HttpCacheUpdateCallback)} is applied
+ * atomically per key using compare-and-swap; if the entry keeps changing
+ * concurrently the update is retried up to
+ * {@link CacheConfig#getMaxUpdateRetries()} times before an
+ * {@link HttpCacheUpdateException} is thrown. As with
+ * {@link BasicHttpCacheStorage}, resources associated with evicted entries
+ * are not deallocated; it is intended for use with {@link HeapResource}
+ * and similar. This is the default cache storage backend used by
+ * {@link CachingHttpClients}.
+ * </p>
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class ConcurrentHttpCacheStorage implements HttpCacheStorageRemoval {
+
+    /** Rough fixed footprint of an entry, its dates, status line and map node. */
+    static final int ENTRY_OVERHEAD = 256;
+    /** Rough fixed footprint of a header or variant map entry. */
+    static final int HEADER_OVERHEAD = 48;
+
+    private static final int MAX_CREDIT = 3;
+
+    private final ConcurrentMap<String, Node> entries;
+    private final Queue<Node> clock;
+    private final AtomicInteger deadNodes;
+    private final AtomicLong totalBytes;
+    private final ReentrantLock evictionLock;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final int maxUpdateRetries;
+
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+    private final HttpCacheStatisticsListener statisticsListener;
+
+    /**
+     * @param config storage capacity
+     * @param statisticsListener listener to be told about capacity
+     *   evictions, may be {@code null}
+     */
+    public ConcurrentHttpCacheStorage(
+            final CacheConfig config, final HttpCacheStatisticsListener statisticsListener) {
+        super();
+        Args.notNull(config, "Cache config");
+        this.maxEntries = config.getMaxCacheEntries();
+        this.maxBytes = config.getMaxCacheBytes();
+        this.maxUpdateRetries = config.getMaxUpdateRetries();
+        this.entries = new ConcurrentHashMap<String, Node>();
+        this.clock = new ConcurrentLinkedQueue<Node>();
+        this.deadNodes = new AtomicInteger(0);
+        this.totalBytes = new AtomicLong(0);
+        this.evictionLock = new ReentrantLock();
+        this.hits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+        this.evictions = new AtomicLong(0);
+        this.statisticsListener = statisticsListener;
+    }
+
+    public ConcurrentHttpCacheStorage(final CacheConfig config) {
+        this(config, null);
+    }
+
+    /**
+     * Places a HttpCacheEntry in the cache
+     *
+     * @param url
+     *            Url to use as the cache key
+     * @param entry
+     *            HttpCacheEntry to place in the cache
+     */
+    @Override
+    public void putEntry(final String url, final HttpCacheEntry entry) throws IOException {
+        final Slot slot = entry != null ? new Slot(entry, estimateSize(url, entry)) : null;
+        if (slot == null || !fits(slot)) {
+            removeEntry(url);
+            return;
+        }
+        for (;;) {
+            final Node node = this.entries.get(url);
+            if (node == null) {
+                if (insert(url, slot)) {
+                    return;
+                }
+                continue;
+            }
+            final Slot current = node.slot;
+            if (current == null) {
+                unlink(url, node);
+            } else if (replace(node, current, slot)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets an entry from the cache, if it exists
+     *
+     * @param url
+     *            Url that is the cache key
+     * @return HttpCacheEntry if one exists, or null for cache miss
+     */
+    @Override
+    public HttpCacheEntry getEntry(final String url) throws IOException {
+        final Node node = this.entries.get(url);
+        final Slot slot = node != null ? node.slot : null;
+        if (slot == null) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+        final int credit = node.credit;
+        if (credit < MAX_CREDIT) {
+            node.credit = credit + 1;
+        }
+        this.hits.incrementAndGet();
+        return slot.entry;
+    }
+
+    /**
+     * Removes a HttpCacheEntry from the cache
+     *
+     * @param url
+     *            Url that is the cache key
+     */
+    @Override
+    public void removeEntry(final String url) throws IOException {
+        removeStoredEntry(url);
+    }
+
+    @Override
+    public boolean removeStoredEntry(final String url) throws IOException {
+        final Node node = this.entries.get(url);
+        if (node != null && kill(node)) {
+            unlink(url, node);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void updateEntry(
+            final String url,
+            final HttpCacheUpdateCallback callback) throws IOException, HttpCacheUpdateException {
+        int numRetries = 0;
+        do {
+            final Node node = this.entries.get(url);
+            final Slot existing = node != null ? node.slot : null;
+            if (node != null && existing == null) {
+                // removed concurrently; help unlink and start over
+                unlink(url, node);
+                continue;
+            }
+            final HttpCacheEntry updatedEntry = callback.update(existing != null ? existing.entry : null);
+            Slot updated = updatedEntry != null ? new Slot(updatedEntry, estimateSize(url, updatedEntry)) : null;
+            if (updated != null && !fits(updated)) {
+                updated = null;
+            }
+            if (node == null) {
+                if (updated == null || insert(url, updated)) {
+                    return;
+                }
+            } else if (updated == null) {
+                if (kill(node, existing)) {
+                    unlink(url, node);
+                    return;
+                }
+            } else if (replace(node, existing, updated)) {
+                return;
+            }
+            numRetries++;
+        } while (numRetries <= this.maxUpdateRetries);
+        throw new HttpCacheUpdateException("Failed to update");
+    }
+
+    /**
+     * Returns the number of entries currently held by this storage.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the estimated number of bytes currently held by this storage.
+     */
+    public long getTotalBytes() {
+        return this.totalBytes.get();
+    }
+
+    /**
+     * Returns the number of lookups that found an entry. These include the
+     * lookups the caching layer makes on its own, for instance of variant
+     * entries or when invalidating, so request level hit ratios are better
+     * taken from {@link CacheStatistics}.
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that found no entry.
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Returns the number of entries evicted to stay within capacity.
+     */
+    public long getEvictionCount() {
+        return this.evictions.get();
+    }
+
+    /**
+     * Estimates the heap footprint of a cache entry: the body as reported
+     * by {@link Resource#length()}, plus the key, headers and variant map
+     * at two bytes per character and a fixed per-object overhead.
+     */
+    static long estimateSize(final String key, final HttpCacheEntry entry) {
+        long size = ENTRY_OVERHEAD + 2L * key.length();
+        final Resource resource = entry.getResource();
+        if (resource != null) {
+            size += resource.length();
+        }
+        for (final Header header : entry.getAllHeaders()) {
+            final String value = header.getValue();
+            size += HEADER_OVERHEAD + 2L * (header.getName().length() + (value != null ? value.length() : 0));
+        }
+        for (final Map.Entry<String, String> variant : entry.getVariantMap().entrySet()) {
+            size += HEADER_OVERHEAD + 2L * (variant.getKey().length() + variant.getValue().length());
+        }
+        return size;
+    }
+
+    private boolean fits(final Slot slot) {
+        return this.maxBytes <= 0 || slot.weight <= this.maxBytes;
+    }
+
+    private boolean overCapacity() {
+        return this.entries.size() > this.maxEntries
+                || (this.maxBytes > 0 && this.totalBytes.get() > this.maxBytes);
+    }
+
+    private boolean insert(final String url, final Slot slot) {
+        final Node node = new Node(url, slot);
+        if (this.entries.putIfAbsent(url, node) != null) {
+            return false;
+        }
+        this.totalBytes.addAndGet(slot.weight);
+        this.clock.add(node);
+        if (overCapacity() || this.deadNodes.get() > this.maxEntries) {
+            evict();
+        }
+        return true;
+    }
+
+    private boolean replace(final Node node, final Slot expected, final Slot update) {
+        if (!node.compareAndSet(expected, update)) {
+            return false;
+        }
+        this.totalBytes.addAndGet(update.weight - expected.weight);
+        if (update.weight > expected.weight && overCapacity()) {
+            evict();
+        }
+        return true;
+    }
+
+    private boolean kill(final Node node) {
+        for (;;) {
+            final Slot current = node.slot;
+            if (current == null) {
+                return false;
+            }
+            if (kill(node, current)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean kill(final Node node, final Slot expected) {
+        if (node.compareAndSet(expected, null)) {
+            this.totalBytes.addAndGet(-expected.weight);
+            this.deadNodes.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private void unlink(final String url, final Node node) {
+        this.entries.remove(url, node);
+    }
+
+    /**
+     * Runs the clock hand until the storage is back within its capacity.
+     * Only one thread evicts at a time; concurrent writers that find the
+     * lock taken leave the work to the current holder.
+     */
+    private void evict() {
+        if (!this.evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            if (this.deadNodes.get() > this.maxEntries) {
+                purge();
+            }
+            // readers may keep adding credit faster than the hand takes
+            // it away; after a full rotation evict regardless
+            int secondChances = this.entries.size();
+            while (overCapacity()) {
+                final Node node = this.clock.poll();
+                if (node == null) {
+                    break;
+                }
+                final Slot slot = node.slot;
+                if (slot == null) {
+                    this.deadNodes.decrementAndGet();
+                    continue;
+                }
+                final int credit = node.credit;
+                if (credit > 0 && secondChances-- > 0) {
+                    final int size = Math.max(1, this.entries.size());
+                    final long averageWeight = Math.max(1, this.totalBytes.get() / size);
+                    final long cost = Math.max(1, slot.weight / averageWeight);
+                    node.credit = (int) Math.max(0, credit - cost);
+                    this.clock.add(node);
+                    continue;
+                }
+                if (kill(node, slot)) {
+                    this.deadNodes.decrementAndGet();
+                    this.evictions.incrementAndGet();
+                    unlink(node.key, node);
+                    if (this.statisticsListener != null) {
+                        this.statisticsListener.entryEvicted(EvictionReason.CAPACITY);
+                    }
+                } else {
+                    // updated concurrently; keep it for another round
+                    this.clock.add(node);
+                }
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    private void purge() {
+        final Iterator<Node> it = this.clock.iterator();
+        while (it.hasNext()) {
+            if (it.next().slot == null) {
+                it.remove();
+                this.deadNodes.decrementAndGet();
+            }
+        }
+    }
+
+    static final class Slot {
+
+        final HttpCacheEntry entry;
+        final long weight;
+
+        Slot(final HttpCacheEntry entry, final long weight) {
+            this.entry = entry;
+            this.weight = weight;
+        }
+
+    }
+
+    static final class Node {
+
+        private static final AtomicReferenceFieldUpdater<Node, Slot> SLOT_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Slot.class, "slot");
+
+        final String key;
+        volatile Slot slot;
+        volatile int credit;
+
+        Node(final String key, final Slot slot) {
+            this.key = key;
+            this.slot = slot;
+        }
+
+        boolean compareAndSet(final Slot expect, final Slot update) {
+            return SLOT_UPDATER.compareAndSet(this, expect, update);
+        }
+
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.client.cache.HttpCacheEntry;
+import tink.org.apache.http.client.cache.HttpCacheStatisticsListener;
+import tink.org.apache.http.client.cache.HttpCacheStatisticsListener.EvictionReason;
+import tink.org.apache.http.client.cache.HttpCacheStatisticsListener.StorageOperation;
+import tink.org.apache.http.client.cache.HttpCacheStorage;
+import tink.org.apache.http.client.cache.HttpCacheStorageBulkRead;
+import tink.org.apache.http.client.cache.HttpCacheStorageRemoval;
+import tink.org.apache.http.client.cache.HttpCacheUpdateCallback;
+import tink.org.apache.http.client.cache.HttpCacheUpdateException;
+import tink.org.apache.http.util.Args;
+
+/**
+ * {@link HttpCacheStorage} decorator that reports the latency of every
+ * operation on the underlying storage to a
+ * {@link HttpCacheStatisticsListener}.
+ * <p>
+ * A {@link #removeEntry(String)} call that removes a stored entry is also
+ * reported as an {@link EvictionReason#INVALIDATED} eviction, since the
+ * caching layer only removes entries in order to invalidate them. This
+ * requires the underlying storage to implement {@link HttpCacheStorageRemoval};
+ * removals from other storages are reported as operations only. Capacity
+ * evictions happen inside the underlying storage and are not visible here; see
+ * {@link ConcurrentHttpCacheStorage#ConcurrentHttpCacheStorage(CacheConfig, HttpCacheStatisticsListener)}.
+ * </p>
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.SAFE_CONDITIONAL)
+public class InstrumentedHttpCacheStorage implements HttpCacheStorageBulkRead, HttpCacheStorageRemoval {
+
+    private final HttpCacheStorage storage;
+    private final HttpCacheStatisticsListener listener;
+
+    public InstrumentedHttpCacheStorage(
+            final HttpCacheStorage storage, final HttpCacheStatisticsListener listener) {
+        super();
+        this.storage = Args.notNull(storage, "Cache storage");
+        this.listener = Args.notNull(listener, "Statistics listener");
+    }
+
+    /**
+     * Returns the underlying storage.
+     */
+    public HttpCacheStorage getStorage() {
+        return this.storage;
+    }
+
+    @Override
+    public void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            this.storage.putEntry(key, entry);
+        } finally {
+            completed(StorageOperation.PUT, start);
+        }
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(final String key) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            return this.storage.getEntry(key);
+        } finally {
+            completed(StorageOperation.GET, start);
+        }
+    }
+
+    /**
+     * Passes the lookup on as a single request if the underlying storage
+     * implements {@link HttpCacheStorageBulkRead}, or looks up the keys
+     * one by one otherwise.
+     */
+    @Override
+    public Map<String, HttpCacheEntry> getEntries(final Collection<String> keys) throws IOException {
+        Args.notNull(keys, "URLs");
+        if (this.storage instanceof HttpCacheStorageBulkRead) {
+            final long start = System.nanoTime();
+            try {
+                return ((HttpCacheStorageBulkRead) this.storage).getEntries(keys);
+            } finally {
+                completed(StorageOperation.BULK_GET, start);
+            }
+        }
+        final Map<String, HttpCacheEntry> result = new HashMap<String, HttpCacheEntry>(keys.size() * 2);
+        for (final String key : keys) {
+            final HttpCacheEntry entry = getEntry(key);
+            if (entry != null) {
+                result.put(key, entry);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void removeEntry(final String key) throws IOException {
+        removeStoredEntry(key);
+    }
+
+    @Override
+    public boolean removeStoredEntry(final String key) throws IOException {
+        final boolean removed;
+        final long start = System.nanoTime();
+        try {
+            if (this.storage instanceof HttpCacheStorageRemoval) {
+                removed = ((HttpCacheStorageRemoval) this.storage).removeStoredEntry(key);
+            } else {
+                this.storage.removeEntry(key);
+                removed = false;
+            }
+        } finally {
+            completed(StorageOperation.REMOVE, start);
+        }
+        // The caching layer invalidates all variants of a URI, most of which are not stored
+        if (removed) {
+            this.listener.entryEvicted(EvictionReason.INVALIDATED);
+        }
+        return removed;
+    }
+
+    @Override
+    public void updateEntry(
+            final String key, final HttpCacheUpdateCallback callback) throws IOException, HttpCacheUpdateException {
+        final long start = System.nanoTime();
+        try {
+            this.storage.updateEntry(key, callback);
+        } finally {
+            completed(StorageOperation.UPDATE, start);
+        }
+    }
+
+    private void completed(final StorageOperation operation, final long start) {
+        this.listener.storageOperationCompleted(operation, System.nanoTime() - start);
+    }
+
+}
@@ -37,6 +37,7 @@ import tink.org.apache.http.annotation.Contract;
 import tink.org.apache.http.annotation.ThreadingBehavior;
 import tink.org.apache.http.client.cache.HttpCacheEntry;
 import tink.org.apache.http.client.cache.HttpCacheStorage;
+import tink.org.apache.http.client.cache.HttpCacheStorageRemoval;
 import tink.org.apache.http.client.cache.HttpCacheUpdateCallback;
 import tink.org.apache.http.client.cache.Resource;
 import tink.org.apache.http.util.Args;
@@ -72,7 +73,7 @@ import tink.org.apache.http.util.Args;
  * @since 4.1
  */
 @Contract(threading = ThreadingBehavior.SAFE)
-public class ManagedHttpCacheStorage implements HttpCacheStorage, Closeable {
+public class ManagedHttpCacheStorage implements HttpCacheStorageRemoval, Closeable {
 
     private final CacheMap entries;
     private final ReferenceQueue<HttpCacheEntry> morque;
@@ -124,12 +125,20 @@ public class ManagedHttpCacheStorage implements HttpCacheStorage, Closeable {
 
     @Override
     public void removeEntry(final String url) throws IOException {
+        removeStoredEntry(url);
+    }
+
+    /**
+     * @since 4.5.6
+     */
+    @Override
+    public boolean removeStoredEntry(final String url) throws IOException {
         Args.notNull(url, "URL");
         ensureValidState();
         synchronized (this) {
             // Cannot deallocate the associated resources immediately as the
             // cache entry may still be in use
-            this.entries.remove(url);
+            return this.entries.remove(url) != null;
         }
     }
 
@@ -0,0 +1,823 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import tink.org.apache.http.Consts;
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.client.cache.HttpCacheEntry;
+import tink.org.apache.http.client.cache.HttpCacheStorage;
+import tink.org.apache.http.client.cache.HttpCacheStorageRemoval;
+import tink.org.apache.http.client.cache.HttpCacheUpdateCallback;
+import tink.org.apache.http.util.Args;
+
+/**
+ * <p>
+ * {@link HttpCacheStorage} implementation that keeps cache entries on disk so
+ * that they survive a restart of the application.
+ * </p>
+ * <p>
+ * Entries are serialized with {@link BinaryHttpCacheEntrySerializer} and
+ * appended to a log file in the given directory; updates and removals append
+ * new records rather than rewriting old ones. Only the keys and the location
+ * of their latest record are kept on the heap. The log is read through a
+ * memory mapping and the body of a retrieved entry is a view of the mapped
+ * file, so the cache can be considerably larger than the heap.
+ * </p>
+ * <p>
+ * Every record carries a checksum. When the storage is opened the log is
+ * replayed from the position covered by the index file written on
+ * {@link #close()}, or from the beginning if there is no usable index, and
+ * a partially written or damaged tail left by a crash is truncated.
+ * </p>
+ * <p>
+ * Once superseded records take up more space than live ones the log is
+ * compacted by a background thread, which copies the live records to a new
+ * file and swaps it in. {@link #compact()} may also be called directly.
+ * </p>
+ * <p>
+ * The number of entries is bounded by {@link CacheConfig#getMaxCacheEntries()}
+ * and the size of the live records by {@link CacheConfig#getMaxCacheBytes()},
+ * if set; least recently used entries are evicted first. A single log file
+ * cannot exceed 2 GB, which caps the live records at half of that.
+ * </p>
+ * <p>
+ * The storage must be closed with {@link #close()} to persist the index. A
+ * directory must not be shared by more than one storage instance.
+ * </p>
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class PersistentHttpCacheStorage implements HttpCacheStorageRemoval, Closeable {
+
+    static final String LOG_FILE_NAME = "entries.log";
+    static final String INDEX_FILE_NAME = "entries.idx";
+    static final String COMPACT_FILE_NAME = "entries.log.compact";
+
+    /** "HCLG" */
+    static final int LOG_MAGIC = 0x48434c47;
+    /** "HCIX" */
+    static final int INDEX_MAGIC = 0x48434958;
+    static final int FORMAT_VERSION = 1;
+
+    /** Magic, version and generation. */
+    static final int LOG_HEADER_SIZE = 16;
+    /** Key length, payload length and checksum. */
+    static final int RECORD_HEADER_SIZE = 12;
+
+    static final long MAX_LOG_SIZE = Integer.MAX_VALUE;
+    /** Space at the end of a full log kept for removal records. */
+    static final long REMOVAL_RESERVE = 16 * 1024 * 1024;
+    static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+    /** Logs are mapped in windows of 4 MB. */
+    static final int WINDOW_SHIFT = 22;
+    static final long WINDOW_SIZE = 1L << WINDOW_SHIFT;
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    private final File directory;
+    private final File logFile;
+    private final File indexFile;
+    private final File compactFile;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long minCompactionBytes;
+    private final BinaryHttpCacheEntrySerializer serializer;
+    private final AtomicBoolean active;
+    private final AtomicBoolean compacting;
+    private final Object compactionLock;
+
+    private LogFile current;
+    private LinkedHashMap<String, Location> index;
+    private long liveBytes;
+
+    /**
+     * Opens the storage in the given directory, creating the directory and
+     * an empty log if necessary and recovering any entries already stored.
+     *
+     * @param directory directory holding the log and index files
+     * @param config cache configuration
+     * @throws IOException if the log cannot be opened or created
+     */
+    public PersistentHttpCacheStorage(final File directory, final CacheConfig config) throws IOException {
+        this(directory, config, MIN_COMPACTION_BYTES);
+    }
+
+    PersistentHttpCacheStorage(
+            final File directory,
+            final CacheConfig config,
+            final long minCompactionBytes) throws IOException {
+        super();
+        Args.notNull(directory, "Cache directory");
+        Args.notNull(config, "Cache config");
+        this.directory = directory;
+        this.logFile = new File(directory, LOG_FILE_NAME);
+        this.indexFile = new File(directory, INDEX_FILE_NAME);
+        this.compactFile = new File(directory, COMPACT_FILE_NAME);
+        this.maxEntries = config.getMaxCacheEntries();
+        final long byteLimit = config.getMaxCacheBytes() > 0 ? config.getMaxCacheBytes() : Long.MAX_VALUE;
+        this.maxBytes = Math.min(byteLimit, MAX_LOG_SIZE / 2);
+        this.minCompactionBytes = minCompactionBytes;
+        this.serializer = new BinaryHttpCacheEntrySerializer();
+        this.active = new AtomicBoolean(true);
+        this.compacting = new AtomicBoolean(false);
+        this.compactionLock = new Object();
+        this.index = new LinkedHashMap<String, Location>(16, 0.75f, true);
+        open();
+    }
+
+    private void open() throws IOException {
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new IOException("Unable to create cache directory " + this.directory);
+        }
+        if (this.compactFile.exists()) {
+            // A finished compaction only lacks the final rename; otherwise
+            // the compacted copy is incomplete and the old log is still intact
+            if (!this.logFile.exists()) {
+                rename(this.compactFile, this.logFile);
+            } else if (!this.compactFile.delete()) {
+                throw new IOException("Unable to delete " + this.compactFile);
+            }
+        }
+        LogFile file = this.logFile.exists() ? LogFile.open(this.logFile) : null;
+        if (file == null) {
+            file = LogFile.create(this.logFile, System.nanoTime());
+        }
+        this.current = file;
+        long position = readIndex();
+        if (position < 0) {
+            this.index.clear();
+            this.liveBytes = 0;
+            position = LOG_HEADER_SIZE;
+        }
+        final long end = replay(position);
+        if (end < file.length()) {
+            this.log.warn("Truncating damaged cache log " + this.logFile + " at offset " + end);
+            file.truncate(end);
+        }
+        evict();
+    }
+
+    private void ensureValidState() throws IllegalStateException {
+        if (!this.active.get()) {
+            throw new IllegalStateException("Cache has been shut down");
+        }
+    }
+
+    @Override
+    public void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+        Args.notNull(key, "URL");
+        Args.notNull(entry, "Cache entry");
+        final byte[] record = encodeRecord(key, entry);
+        synchronized (this) {
+            ensureValidState();
+            store(key, record);
+        }
+        compactIfNeeded();
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(final String key) throws IOException {
+        Args.notNull(key, "URL");
+        final Location location;
+        synchronized (this) {
+            ensureValidState();
+            location = this.index.get(key);
+        }
+        return location != null ? decodeEntry(location) : null;
+    }
+
+    @Override
+    public void removeEntry(final String key) throws IOException {
+        removeStoredEntry(key);
+    }
+
+    /**
+     * @since 4.5.6
+     */
+    @Override
+    public boolean removeStoredEntry(final String key) throws IOException {
+        Args.notNull(key, "URL");
+        final boolean stored;
+        synchronized (this) {
+            ensureValidState();
+            stored = this.index.containsKey(key);
+            if (stored) {
+                remove(key);
+            }
+        }
+        compactIfNeeded();
+        return stored;
+    }
+
+    @Override
+    public void updateEntry(
+            final String key,
+            final HttpCacheUpdateCallback callback) throws IOException {
+        Args.notNull(key, "URL");
+        Args.notNull(callback, "Callback");
+        synchronized (this) {
+            ensureValidState();
+            final Location location = this.index.get(key);
+            final HttpCacheEntry existing = location != null ? decodeEntry(location) : null;
+            final HttpCacheEntry updated = callback.update(existing);
+            if (updated != null) {
+                store(key, encodeRecord(key, updated));
+            } else if (location != null) {
+                remove(key);
+            }
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Returns the number of entries currently stored.
+     */
+    public synchronized int size() {
+        return this.index.size();
+    }
+
+    /**
+     * Returns the combined size in bytes of the records of all stored entries.
+     */
+    public synchronized long getLiveBytes() {
+        return this.liveBytes;
+    }
+
+    /**
+     * Returns the size in bytes of the log file, including superseded records
+     * not yet reclaimed by compaction.
+     */
+    public synchronized long getLogSize() {
+        return this.current.length();
+    }
+
+    /**
+     * Rewrites the log so that it only contains the records of the entries
+     * currently stored. Entries can be read and written while the live
+     * records are being copied.
+     *
+     * @throws IOException in case of an I/O error
+     */
+    public void compact() throws IOException {
+        synchronized (this.compactionLock) {
+            final LogFile source;
+            final List<Map.Entry<String, Location>> snapshot;
+            final long snapshotEnd;
+            synchronized (this) {
+                ensureValidState();
+                source = this.current;
+                snapshot = new ArrayList<Map.Entry<String, Location>>(this.index.entrySet());
+                snapshotEnd = source.length();
+            }
+            final LogFile target = LogFile.create(this.compactFile, System.nanoTime());
+            boolean done = false;
+            try {
+                final Map<String, Location> copied = new LinkedHashMap<String, Location>(snapshot.size() * 2);
+                for (final Map.Entry<String, Location> entry : snapshot) {
+                    final Location location = entry.getValue();
+                    copied.put(entry.getKey(), target.append(location.file.region(location.offset, location.length)));
+                }
+                synchronized (this) {
+                    ensureValidState();
+                    // Carry over whatever was written while the snapshot was being copied
+                    long position = snapshotEnd;
+                    final long end = source.length();
+                    while (position < end) {
+                        final ByteBuffer record = source.region(position, (int) (end - position));
+                        final int length = recordLength(record);
+                        final String key = recordKey(record);
+                        if (record.getInt(4) >= 0) {
+                            record.limit(length);
+                            copied.put(key, target.append(record));
+                        }
+                        position += length;
+                    }
+                    final LinkedHashMap<String, Location> compacted = new LinkedHashMap<String, Location>(
+                            this.index.size() * 2, 0.75f, true);
+                    long bytes = 0;
+                    for (final String key : this.index.keySet()) {
+                        final Location location = copied.get(key);
+                        compacted.put(key, location);
+                        bytes += location.length;
+                    }
+                    target.force();
+                    source.close();
+                    if (!this.logFile.delete()) {
+                        throw new IOException("Unable to delete " + this.logFile);
+                    }
+                    rename(this.compactFile, this.logFile);
+                    target.file = this.logFile;
+                    done = true;
+                    this.current = target;
+                    this.index = compacted;
+                    this.liveBytes = bytes;
+                    writeIndex();
+                }
+            } finally {
+                if (!done) {
+                    target.close();
+                    this.compactFile.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Persists the index and closes the log. Entries already retrieved
+     * remain readable.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this.compactionLock) {
+            synchronized (this) {
+                if (this.active.compareAndSet(true, false)) {
+                    try {
+                        this.current.force();
+                        writeIndex();
+                    } finally {
+                        this.current.close();
+                    }
+                }
+            }
+        }
+    }
+
+    private void store(final String key, final byte[] record) throws IOException {
+        if (record.length > this.maxBytes) {
+            if (this.index.containsKey(key)) {
+                remove(key);
+            }
+            return;
+        }
+        if (this.current.length() + record.length > MAX_LOG_SIZE - REMOVAL_RESERVE) {
+            // The log is full of superseded records, as the live ones are
+            // capped at half its size; skip this entry and let compaction
+            // make room
+            if (this.index.containsKey(key)) {
+                remove(key);
+            }
+            return;
+        }
+        final Location location = this.current.append(ByteBuffer.wrap(record));
+        final Location previous = this.index.put(key, location);
+        if (previous != null) {
+            this.liveBytes -= previous.length;
+        }
+        this.liveBytes += location.length;
+        evict();
+    }
+
+    private void remove(final String key) throws IOException {
+        final Location previous = this.index.remove(key);
+        if (previous != null) {
+            this.liveBytes -= previous.length;
+        }
+        final byte[] record = encodeRecord(key, null);
+        if (this.current.length() + record.length <= MAX_LOG_SIZE) {
+            this.current.append(ByteBuffer.wrap(record));
+        }
+    }
+
+    private void evict() throws IOException {
+        while (this.index.size() > this.maxEntries || this.liveBytes > this.maxBytes) {
+            final Iterator<String> keys = this.index.keySet().iterator();
+            if (!keys.hasNext()) {
+                return;
+            }
+            remove(keys.next());
+        }
+    }
+
+    private void compactIfNeeded() {
+        final long garbage;
+        synchronized (this) {
+            if (!this.active.get()) {
+                return;
+            }
+            garbage = this.current.length() - LOG_HEADER_SIZE - this.liveBytes;
+            if (garbage < this.minCompactionBytes || garbage < this.liveBytes) {
+                return;
+            }
+        }
+        if (this.compacting.compareAndSet(false, true)) {
+            final Thread thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        compact();
+                    } catch (final IllegalStateException ex) {
+                        // closed in the meantime
+                    } catch (final IOException ex) {
+                        log.warn("Unable to compact cache log " + logFile, ex);
+                    } finally {
+                        compacting.set(false);
+                    }
+                }
+
+            }, "httpclient-cache-compaction");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private HttpCacheEntry decodeEntry(final Location location) throws IOException {
+        final ByteBuffer record = location.file.region(location.offset, location.length);
+        record.position(RECORD_HEADER_SIZE + record.getInt(0));
+        return this.serializer.readFrom(record.slice());
+    }
+
+    private byte[] encodeRecord(final String key, final HttpCacheEntry entry) throws IOException {
+        final byte[] k = key.getBytes(Consts.UTF_8);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(RECORD_HEADER_SIZE + k.length + 1024);
+        out.write(new byte[RECORD_HEADER_SIZE]);
+        out.write(k);
+        if (entry != null) {
+            this.serializer.writeTo(entry, out);
+        }
+        final byte[] record = out.toByteArray();
+        final CRC32 crc = new CRC32();
+        crc.update(record, RECORD_HEADER_SIZE, record.length - RECORD_HEADER_SIZE);
+        final ByteBuffer header = ByteBuffer.wrap(record);
+        header.putInt(k.length);
+        header.putInt(entry != null ? record.length - RECORD_HEADER_SIZE - k.length : -1);
+        header.putInt((int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * Returns the total length of the record at the start of the given
+     * buffer, or {@code -1} if the buffer does not start with a complete
+     * record whose checksum matches.
+     */
+    static int checkRecord(final ByteBuffer buffer) {
+        if (buffer.remaining() < RECORD_HEADER_SIZE) {
+            return -1;
+        }
+        final int keyLength = buffer.getInt(buffer.position());
+        final int payloadLength = buffer.getInt(buffer.position() + 4);
+        if (keyLength <= 0 || payloadLength < -1) {
+            return -1;
+        }
+        final long length = (long) RECORD_HEADER_SIZE + keyLength + Math.max(payloadLength, 0);
+        if (length > buffer.remaining()) {
+            return -1;
+        }
+        final ByteBuffer body = buffer.duplicate();
+        body.position(buffer.position() + RECORD_HEADER_SIZE);
+        body.limit(buffer.position() + (int) length);
+        final CRC32 crc = new CRC32();
+        if (body.hasArray()) {
+            crc.update(body.array(), body.arrayOffset() + body.position(), body.remaining());
+        } else {
+            final byte[] chunk = new byte[Math.min(body.remaining(), 8192)];
+            while (body.hasRemaining()) {
+                final int n = Math.min(chunk.length, body.remaining());
+                body.get(chunk, 0, n);
+                crc.update(chunk, 0, n);
+            }
+        }
+        return (int) crc.getValue() == buffer.getInt(buffer.position() + 8) ? (int) length : -1;
+    }
+
+    private static int recordLength(final ByteBuffer record) {
+        return RECORD_HEADER_SIZE + record.getInt(0) + Math.max(record.getInt(4), 0);
+    }
+
+    private static String recordKey(final ByteBuffer record) {
+        final byte[] k = new byte[record.getInt(0)];
+        final ByteBuffer view = record.duplicate();
+        view.position(RECORD_HEADER_SIZE);
+        view.get(k);
+        return new String(k, Consts.UTF_8);
+    }
+
+    /**
+     * Applies the records from the given position to the end of the log to
+     * the index and returns the position following the last valid record.
+     */
+    private long replay(final long start) throws IOException {
+        final long end = this.current.length();
+        if (start >= end) {
+            return start;
+        }
+        final ByteBuffer log = this.current.region(start, (int) (end - start));
+        long position = start;
+        while (log.hasRemaining()) {
+            final int length = checkRecord(log);
+            if (length < 0) {
+                break;
+            }
+            final ByteBuffer record = log.slice();
+            final String key = recordKey(record);
+            final Location previous;
+            if (record.getInt(4) >= 0) {
+                previous = this.index.put(key, new Location(this.current, position, length));
+                this.liveBytes += length;
+            } else {
+                previous = this.index.remove(key);
+            }
+            if (previous != null) {
+                this.liveBytes -= previous.length;
+            }
+            log.position(log.position() + length);
+            position += length;
+        }
+        return position;
+    }
+
+    /**
+     * Loads the index written on the last clean shutdown and returns the
+     * log position it covers, or {@code -1} if there is no index matching
+     * the current log.
+     */
+    private long readIndex() {
+        if (!this.indexFile.isFile()) {
+            return -1;
+        }
+        try {
+            final ByteBuffer buffer;
+            final RandomAccessFile raf = new RandomAccessFile(this.indexFile, "r");
+            try {
+                final long size = raf.length();
+                if (size > MAX_LOG_SIZE) {
+                    return -1;
+                }
+                buffer = ByteBuffer.allocate((int) size);
+                raf.getChannel().read(buffer, 0);
+                buffer.flip();
+            } finally {
+                raf.close();
+            }
+            if (buffer.remaining() < 28) {
+                return -1;
+            }
+            final CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.limit() - 4);
+            if ((int) crc.getValue() != buffer.getInt(buffer.limit() - 4)
+                    || buffer.getInt() != INDEX_MAGIC
+                    || buffer.getInt() != FORMAT_VERSION
+                    || buffer.getLong() != this.current.generation) {
+                return -1;
+            }
+            final long covered = buffer.getLong();
+            if (covered < LOG_HEADER_SIZE || covered > this.current.length()) {
+                return -1;
+            }
+            final int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                final byte[] k = new byte[buffer.getInt()];
+                buffer.get(k);
+                final long offset = buffer.getLong();
+                final int length = buffer.getInt();
+                if (offset < LOG_HEADER_SIZE || length < RECORD_HEADER_SIZE || offset + length > covered) {
+                    return -1;
+                }
+                this.index.put(new String(k, Consts.UTF_8), new Location(this.current, offset, length));
+                this.liveBytes += length;
+            }
+            return covered;
+        } catch (final RuntimeException ex) {
+            this.log.warn("Ignoring damaged cache index " + this.indexFile, ex);
+            return -1;
+        } catch (final IOException ex) {
+            this.log.warn("Unable to read cache index " + this.indexFile, ex);
+            return -1;
+        }
+    }
+
+    /**
+     * Writes the index to a temporary file and renames it into place, so that
+     * the previous index stays intact if this fails half way.
+     */
+    private void writeIndex() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + this.index.size() * 64);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(INDEX_MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(this.current.generation);
+        out.writeLong(this.current.length());
+        out.writeInt(this.index.size());
+        for (final Map.Entry<String, Location> entry : this.index.entrySet()) {
+            final byte[] k = entry.getKey().getBytes(Consts.UTF_8);
+            out.writeInt(k.length);
+            out.write(k);
+            out.writeLong(entry.getValue().offset);
+            out.writeInt(entry.getValue().length);
+        }
+        out.flush();
+        final byte[] content = bytes.toByteArray();
+        final CRC32 crc = new CRC32();
+        crc.update(content);
+        final File tmp = new File(this.directory, INDEX_FILE_NAME + ".tmp");
+        final RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+        try {
+            raf.setLength(0);
+            raf.write(content);
+            raf.writeInt((int) crc.getValue());
+            raf.getChannel().force(true);
+        } finally {
+            raf.close();
+        }
+        if (this.indexFile.exists() && !this.indexFile.delete()) {
+            throw new IOException("Unable to delete " + this.indexFile);
+        }
+        rename(tmp, this.indexFile);
+    }
+
+    private static void rename(final File from, final File to) throws IOException {
+        if (!from.renameTo(to)) {
+            throw new IOException("Unable to rename " + from + " to " + to);
+        }
+    }
+
+    /**
+     * Position of a record within a particular log file. Locations stay
+     * valid after the file has been replaced by compaction.
+     */
+    static final class Location {
+
+        final LogFile file;
+        final long offset;
+        final int length;
+
+        Location(final LogFile file, final long offset, final int length) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+
+    }
+
+    /**
+     * Append-only log file read through a memory mapping of its content.
+     * Appends are serialized by the storage; the mapping is replaced when
+     * a read reaches beyond it.
+     */
+    static final class LogFile {
+
+        volatile File file;
+        final long generation;
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+        private volatile long length;
+        private volatile MappedByteBuffer[] windows;
+
+        private LogFile(final File file, final RandomAccessFile raf, final long generation) throws IOException {
+            this.file = file;
+            this.raf = raf;
+            this.channel = raf.getChannel();
+            this.generation = generation;
+            this.length = this.channel.size();
+            this.windows = new MappedByteBuffer[0];
+        }
+
+        static LogFile create(final File file, final long generation) throws IOException {
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(0);
+                raf.writeInt(LOG_MAGIC);
+                raf.writeInt(FORMAT_VERSION);
+                raf.writeLong(generation);
+                return new LogFile(file, raf, generation);
+            } catch (final IOException ex) {
+                raf.close();
+                throw ex;
+            }
+        }
+
+        /**
+         * Opens an existing log, or returns {@code null} if the file does not
+         * start with a valid header.
+         */
+        static LogFile open(final File file) throws IOException {
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                if (raf.length() >= LOG_HEADER_SIZE
+                        && raf.readInt() == LOG_MAGIC
+                        && raf.readInt() == FORMAT_VERSION) {
+                    return new LogFile(file, raf, raf.readLong());
+                }
+            } catch (final IOException ex) {
+                raf.close();
+                throw ex;
+            }
+            raf.close();
+            return null;
+        }
+
+        long length() {
+            return this.length;
+        }
+
+        Location append(final ByteBuffer record) throws IOException {
+            final long offset = this.length;
+            final int size = record.remaining();
+            long position = offset;
+            while (record.hasRemaining()) {
+                position += this.channel.write(record, position);
+            }
+            this.length = offset + size;
+            return new Location(this, offset, size);
+        }
+
+        /**
+         * Returns a read-only view of the given region of the log. The log is
+         * mapped in fixed-size windows that are mapped on first use and reused
+         * afterwards. A window is remapped only when a read extends past its
+         * end, which happens for the last window as the log grows and for
+         * records crossing a window boundary.
+         */
+        ByteBuffer region(final long offset, final int size) throws IOException {
+            final int index = (int) (offset >>> WINDOW_SHIFT);
+            final long base = (long) index << WINDOW_SHIFT;
+            final long end = offset + size;
+            MappedByteBuffer[] windows = this.windows;
+            MappedByteBuffer m = index < windows.length ? windows[index] : null;
+            if (m == null || end - base > m.capacity()) {
+                synchronized (this) {
+                    windows = this.windows;
+                    m = index < windows.length ? windows[index] : null;
+                    if (m == null || end - base > m.capacity()) {
+                        final long limit = Math.max(end, Math.min(this.length, base + WINDOW_SIZE));
+                        m = this.channel.map(FileChannel.MapMode.READ_ONLY, base, limit - base);
+                        // Copy on write, so that windows are safely published to readers
+                        final MappedByteBuffer[] copy = new MappedByteBuffer[Math.max(index + 1, windows.length)];
+                        System.arraycopy(windows, 0, copy, 0, windows.length);
+                        copy[index] = m;
+                        this.windows = copy;
+                    }
+                }
+            }
+            final ByteBuffer view = m.duplicate();
+            view.limit((int) (end - base));
+            view.position((int) (offset - base));
+            return view.slice();
+        }
+
+        synchronized void truncate(final long size) throws IOException {
+            this.channel.truncate(size);
+            this.length = size;
+            this.windows = new MappedByteBuffer[0];
+        }
+
+        void force() throws IOException {
+            this.channel.force(false);
+        }
+
+        void close() throws IOException {
+            // Keep the file mapped so that entries handed out earlier remain readable
+            for (long base = 0; base < this.length; base += WINDOW_SIZE) {
+                region(base, (int) (Math.min(this.length, base + WINDOW_SIZE) - base));
+            }
+            this.raf.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,328 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tink.org.apache.http.HttpHost;
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.util.Args;
+
+/**
+ * Schedules revalidation requests onto a fixed number of workers while
+ * limiting how many of them may revalidate against the same origin host at
+ * a time, so that one slow host cannot occupy every worker.
+ * <p>
+ * Requests that cannot start yet wait in a queue bounded by
+ * {@link CacheConfig#getRevalidationQueueSize()}; once the queue is full
+ * further requests are rejected. Whenever a worker becomes free it takes the
+ * waiting request with the highest {@link AsynchronousValidationRequest#getDemand()
+ * demand} whose host is below its limit, so that entries being served stale
+ * most often are revalidated first. Requests of equal demand run in the
+ * order they were scheduled.
+ * </p>
+ * <p>
+ * Queue depth, rejections and the time requests spend waiting and running
+ * are exposed for monitoring.
+ * </p>
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class PrioritizedSchedulingStrategy implements SchedulingStrategy {
+
+    public static final int DEFAULT_MAX_PER_HOST = 2;
+
+    private final ExecutorService executor;
+    private final int maxWorkers;
+    private final int maxQueued;
+    private final int maxPerHost;
+
+    private final List<Task> waiting;
+    private final Map<HttpHost, Integer> activePerHost;
+    private int active;
+    private long sequence;
+    private boolean closed;
+
+    private final AtomicLong completed;
+    private final AtomicLong rejected;
+    private final AtomicLong totalWaitNanos;
+    private final AtomicLong totalRunNanos;
+
+    /**
+     * Creates a strategy allowing {@link #DEFAULT_MAX_PER_HOST} concurrent
+     * revalidations per host.
+     * @param cacheConfig specifies the number of workers and the queue size. See
+     * {@link CacheConfig#getAsynchronousWorkersMax()},
+     * {@link CacheConfig#getAsynchronousWorkerIdleLifetimeSecs()},
+     * and {@link CacheConfig#getRevalidationQueueSize()}.
+     */
+    public PrioritizedSchedulingStrategy(final CacheConfig cacheConfig) {
+        this(cacheConfig, DEFAULT_MAX_PER_HOST);
+    }
+
+    /**
+     * @param cacheConfig specifies the number of workers and the queue size. See
+     * {@link CacheConfig#getAsynchronousWorkersMax()},
+     * {@link CacheConfig#getAsynchronousWorkerIdleLifetimeSecs()},
+     * and {@link CacheConfig#getRevalidationQueueSize()}.
+     * @param maxPerHost the maximum number of concurrent revalidations against
+     *   a single host; positive
+     */
+    public PrioritizedSchedulingStrategy(final CacheConfig cacheConfig, final int maxPerHost) {
+        this(createThreadPool(cacheConfig),
+                cacheConfig.getAsynchronousWorkersMax(),
+                cacheConfig.getRevalidationQueueSize(),
+                maxPerHost);
+    }
+
+    private static ThreadPoolExecutor createThreadPool(final CacheConfig cacheConfig) {
+        Args.notNull(cacheConfig, "Cache config");
+        final int workers = Math.max(1, cacheConfig.getAsynchronousWorkersMax());
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                workers, workers,
+                Math.max(1, cacheConfig.getAsynchronousWorkerIdleLifetimeSecs()), TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    PrioritizedSchedulingStrategy(
+            final ExecutorService executor,
+            final int maxWorkers,
+            final int maxQueued,
+            final int maxPerHost) {
+        this.executor = Args.notNull(executor, "Executor");
+        this.maxWorkers = Math.max(1, maxWorkers);
+        this.maxQueued = Args.notNegative(maxQueued, "Max queued");
+        this.maxPerHost = Args.positive(maxPerHost, "Max per host");
+        this.waiting = new ArrayList<Task>();
+        this.activePerHost = new HashMap<HttpHost, Integer>();
+        this.completed = new AtomicLong(0);
+        this.rejected = new AtomicLong(0);
+        this.totalWaitNanos = new AtomicLong(0);
+        this.totalRunNanos = new AtomicLong(0);
+    }
+
+    @Override
+    public void schedule(final AsynchronousValidationRequest revalidationRequest) {
+        Args.notNull(revalidationRequest, "AsynchronousValidationRequest");
+        final List<Task> ready;
+        synchronized (this) {
+            if (this.closed) {
+                this.rejected.incrementAndGet();
+                throw new RejectedExecutionException("Scheduling strategy has been closed");
+            }
+            if (this.waiting.size() >= this.maxQueued) {
+                this.rejected.incrementAndGet();
+                throw new RejectedExecutionException("Revalidation queue is full");
+            }
+            this.waiting.add(new Task(revalidationRequest, this.sequence++));
+            ready = takeReady();
+        }
+        start(ready);
+    }
+
+    /**
+     * Removes from the waiting list the tasks that can start now, best
+     * first, and accounts for them as active.
+     */
+    private List<Task> takeReady() {
+        List<Task> ready = null;
+        while (this.active < this.maxWorkers) {
+            Task best = null;
+            int bestIndex = -1;
+            int bestDemand = 0;
+            for (int i = 0; i < this.waiting.size(); i++) {
+                final Task candidate = this.waiting.get(i);
+                final Integer running = this.activePerHost.get(candidate.host);
+                if (running != null && running.intValue() >= this.maxPerHost) {
+                    continue;
+                }
+                final int demand = candidate.request.getDemand();
+                if (best == null || demand > bestDemand
+                        || (demand == bestDemand && candidate.sequence < best.sequence)) {
+                    best = candidate;
+                    bestIndex = i;
+                    bestDemand = demand;
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            this.waiting.remove(bestIndex);
+            this.active++;
+            final Integer running = this.activePerHost.get(best.host);
+            this.activePerHost.put(best.host, Integer.valueOf(running != null ? running.intValue() + 1 : 1));
+            if (ready == null) {
+                ready = new ArrayList<Task>(2);
+            }
+            ready.add(best);
+        }
+        return ready;
+    }
+
+    private void start(final List<Task> ready) {
+        if (ready == null) {
+            return;
+        }
+        for (final Task task : ready) {
+            try {
+                this.executor.execute(task);
+            } catch (final RejectedExecutionException ex) {
+                // The executor has been shut down; drop the request
+                release(task);
+                task.request.cancel();
+            }
+        }
+    }
+
+    private synchronized void release(final Task task) {
+        this.active--;
+        final Integer running = this.activePerHost.get(task.host);
+        if (running == null || running.intValue() <= 1) {
+            this.activePerHost.remove(task.host);
+        } else {
+            this.activePerHost.put(task.host, Integer.valueOf(running.intValue() - 1));
+        }
+    }
+
+    private void finished(final Task task) {
+        final List<Task> ready;
+        synchronized (this) {
+            release(task);
+            ready = this.closed ? null : takeReady();
+        }
+        start(ready);
+    }
+
+    @Override
+    public void close() {
+        final List<Task> dropped;
+        synchronized (this) {
+            this.closed = true;
+            dropped = new ArrayList<Task>(this.waiting);
+            this.waiting.clear();
+        }
+        this.executor.shutdown();
+        for (final Task task : dropped) {
+            task.request.cancel();
+        }
+    }
+
+    /**
+     * Returns the number of requests waiting for a worker.
+     */
+    public synchronized int getQueueDepth() {
+        return this.waiting.size();
+    }
+
+    /**
+     * Returns the number of revalidations currently running.
+     */
+    public synchronized int getActiveCount() {
+        return this.active;
+    }
+
+    /**
+     * Returns the number of revalidations that have finished.
+     */
+    public long getCompletedCount() {
+        return this.completed.get();
+    }
+
+    /**
+     * Returns the number of requests rejected because the queue was full
+     * or the strategy had been closed.
+     */
+    public long getRejectedCount() {
+        return this.rejected.get();
+    }
+
+    /**
+     * Returns the average time in milliseconds finished revalidations spent
+     * waiting for a worker, or {@code 0} if none has finished yet.
+     */
+    public double getAverageQueueTimeMillis() {
+        final long n = this.completed.get();
+        return n > 0 ? this.totalWaitNanos.get() / 1e6 / n : 0.0;
+    }
+
+    /**
+     * Returns the average time in milliseconds finished revalidations took
+     * to run, or {@code 0} if none has finished yet.
+     */
+    public double getAverageRevalidationTimeMillis() {
+        final long n = this.completed.get();
+        return n > 0 ? this.totalRunNanos.get() / 1e6 / n : 0.0;
+    }
+
+    void awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        this.executor.awaitTermination(timeout, unit);
+    }
+
+    class Task implements Runnable {
+
+        final AsynchronousValidationRequest request;
+        final HttpHost host;
+        final long sequence;
+        final long scheduled;
+
+        Task(final AsynchronousValidationRequest request, final long sequence) {
+            this.request = request;
+            this.host = request.getRoute() != null ? request.getRoute().getTargetHost() : null;
+            this.sequence = sequence;
+            this.scheduled = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            final long started = System.nanoTime();
+            try {
+                this.request.run();
+            } finally {
+                final long ended = System.nanoTime();
+                totalWaitNanos.addAndGet(started - this.scheduled);
+                totalRunNanos.addAndGet(ended - started);
+                completed.incrementAndGet();
+                finished(this);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,330 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.client.cache.HttpCacheEntry;
+import tink.org.apache.http.client.cache.HttpCacheStorage;
+import tink.org.apache.http.client.cache.HttpCacheStorageBulkRead;
+import tink.org.apache.http.client.cache.HttpCacheStorageRemoval;
+import tink.org.apache.http.client.cache.HttpCacheUpdateCallback;
+import tink.org.apache.http.client.cache.HttpCacheUpdateException;
+import tink.org.apache.http.util.Args;
+
+/**
+ * <p>
+ * {@link HttpCacheStorage} implementation that puts a small first-level
+ * storage, usually on the heap, in front of a larger or slower second-level
+ * storage such as {@link org.apache.http.impl.client.cache.memcached.MemcachedHttpCacheStorage}
+ * or {@link org.apache.http.impl.client.cache.ehcache.EhcacheHttpCacheStorage}.
+ * </p>
+ * <p>
+ * Lookups are answered by the first level if possible; entries found only
+ * in the second level are promoted to the first, unless the first level has
+ * been given a newer entry in the meantime, and its own eviction policy then
+ * decides which of them stay. Writes go to the second level first and
+ * then to the first. Removals, including invalidations issued by the
+ * caching layer, are applied to both levels; a removal counts as having
+ * deleted a stored entry if either level implementing
+ * {@link HttpCacheStorageRemoval} reports so. Multi-key lookups are passed
+ * on to the second level as a single request if it implements
+ * {@link HttpCacheStorageBulkRead}.
+ * </p>
+ * <p>
+ * When several clients share a second-level storage, the first level of one
+ * client is not told about writes made by another and may keep serving its
+ * own copy of an entry until that copy is evicted or replaced locally. The
+ * first level should therefore be kept small.
+ * </p>
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.SAFE_CONDITIONAL)
+public class TieredHttpCacheStorage implements HttpCacheStorageBulkRead, HttpCacheStorageRemoval {
+
+    private final HttpCacheStorage first;
+    private final HttpCacheStorage second;
+
+    private final AtomicLong firstHits;
+    private final AtomicLong secondHits;
+    private final AtomicLong misses;
+    private final AtomicLong promotions;
+
+    /**
+     * Creates a storage with a {@link ConcurrentHttpCacheStorage} bounded by
+     * the given configuration as its first level.
+     *
+     * @param firstLevelConfig configuration of the first level
+     * @param second second-level storage
+     */
+    public TieredHttpCacheStorage(final CacheConfig firstLevelConfig, final HttpCacheStorage second) {
+        this(new ConcurrentHttpCacheStorage(firstLevelConfig), second);
+    }
+
+    /**
+     * @param first first-level storage
+     * @param second second-level storage
+     */
+    public TieredHttpCacheStorage(final HttpCacheStorage first, final HttpCacheStorage second) {
+        super();
+        this.first = Args.notNull(first, "First-level storage");
+        this.second = Args.notNull(second, "Second-level storage");
+        this.firstHits = new AtomicLong(0);
+        this.secondHits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+        this.promotions = new AtomicLong(0);
+    }
+
+    @Override
+    public void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+        Args.notNull(key, "URL");
+        Args.notNull(entry, "Cache entry");
+        try {
+            this.second.putEntry(key, entry);
+        } catch (final IOException ex) {
+            // Do not let the first level keep a copy the second one has lost track of
+            this.first.removeEntry(key);
+            throw ex;
+        }
+        this.first.putEntry(key, entry);
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(final String key) throws IOException {
+        Args.notNull(key, "URL");
+        HttpCacheEntry entry = this.first.getEntry(key);
+        if (entry != null) {
+            this.firstHits.incrementAndGet();
+            return entry;
+        }
+        entry = this.second.getEntry(key);
+        if (entry == null) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+        this.secondHits.incrementAndGet();
+        return promote(key, entry);
+    }
+
+    /**
+     * Copies an entry read from the second level to the first, unless an
+     * entry has been stored in the first level since it was found empty. That
+     * entry was written after the second-level read and is kept.
+     *
+     * @return the entry held by the first level.
+     */
+    private HttpCacheEntry promote(final String key, final HttpCacheEntry entry) throws IOException {
+        final HttpCacheEntry[] result = new HttpCacheEntry[1];
+        try {
+            this.first.updateEntry(key, new HttpCacheUpdateCallback() {
+
+                @Override
+                public HttpCacheEntry update(final HttpCacheEntry existing) {
+                    result[0] = existing != null ? existing : entry;
+                    return result[0];
+                }
+
+            });
+        } catch (final HttpCacheUpdateException ex) {
+            // Contended by concurrent writes, which are at least as recent
+            return entry;
+        }
+        if (result[0] == entry) {
+            this.promotions.incrementAndGet();
+        }
+        return result[0];
+    }
+
+    @Override
+    public Map<String, HttpCacheEntry> getEntries(final Collection<String> keys) throws IOException {
+        Args.notNull(keys, "URLs");
+        final Map<String, HttpCacheEntry> result = new HashMap<String, HttpCacheEntry>(keys.size() * 2);
+        final List<String> remaining = new ArrayList<String>(keys.size());
+        for (final String key : keys) {
+            final HttpCacheEntry entry = this.first.getEntry(key);
+            if (entry != null) {
+                this.firstHits.incrementAndGet();
+                result.put(key, entry);
+            } else {
+                remaining.add(key);
+            }
+        }
+        if (remaining.isEmpty()) {
+            return result;
+        }
+        final Map<String, HttpCacheEntry> found;
+        if (this.second instanceof HttpCacheStorageBulkRead) {
+            found = ((HttpCacheStorageBulkRead) this.second).getEntries(remaining);
+        } else {
+            found = new HashMap<String, HttpCacheEntry>(remaining.size() * 2);
+            for (final String key : remaining) {
+                final HttpCacheEntry entry = this.second.getEntry(key);
+                if (entry != null) {
+                    found.put(key, entry);
+                }
+            }
+        }
+        for (final String key : remaining) {
+            final HttpCacheEntry entry = found.get(key);
+            if (entry != null) {
+                this.secondHits.incrementAndGet();
+                result.put(key, promote(key, entry));
+            } else {
+                this.misses.incrementAndGet();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void removeEntry(final String key) throws IOException {
+        removeStoredEntry(key);
+    }
+
+    @Override
+    public boolean removeStoredEntry(final String key) throws IOException {
+        Args.notNull(key, "URL");
+        final boolean removedFirst = remove(this.first, key);
+        final boolean removedSecond = remove(this.second, key);
+        return removedFirst || removedSecond;
+    }
+
+    private static boolean remove(final HttpCacheStorage storage, final String key) throws IOException {
+        if (storage instanceof HttpCacheStorageRemoval) {
+            return ((HttpCacheStorageRemoval) storage).removeStoredEntry(key);
+        }
+        storage.removeEntry(key);
+        return false;
+    }
+
+    @Override
+    public void updateEntry(
+            final String key,
+            final HttpCacheUpdateCallback callback) throws IOException, HttpCacheUpdateException {
+        Args.notNull(key, "URL");
+        Args.notNull(callback, "Callback");
+        final HttpCacheEntry[] result = new HttpCacheEntry[1];
+        try {
+            this.second.updateEntry(key, new HttpCacheUpdateCallback() {
+
+                @Override
+                public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                    result[0] = callback.update(existing);
+                    return result[0];
+                }
+
+            });
+        } catch (final IOException ex) {
+            this.first.removeEntry(key);
+            throw ex;
+        } catch (final HttpCacheUpdateException ex) {
+            this.first.removeEntry(key);
+            throw ex;
+        }
+        if (result[0] != null) {
+            this.first.putEntry(key, result[0]);
+        } else {
+            this.first.removeEntry(key);
+        }
+    }
+
+    /**
+     * Returns the first-level storage.
+     */
+    public HttpCacheStorage getFirstLevel() {
+        return this.first;
+    }
+
+    /**
+     * Returns the second-level storage.
+     */
+    public HttpCacheStorage getSecondLevel() {
+        return this.second;
+    }
+
+    /**
+     * Returns the number of lookups answered by the first level.
+     */
+    public long getFirstLevelHitCount() {
+        return this.firstHits.get();
+    }
+
+    /**
+     * Returns the number of lookups missed by the first level but answered
+     * by the second.
+     */
+    public long getSecondLevelHitCount() {
+        return this.secondHits.get();
+    }
+
+    /**
+     * Returns the number of lookups answered by neither level.
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Returns the number of entries copied from the second level to the
+     * first after a second-level hit.
+     */
+    public long getPromotionCount() {
+        return this.promotions.get();
+    }
+
+    /**
+     * Returns the fraction of all lookups answered by the first level, or
+     * {@code 0} if there have been no lookups. A low value together with a
+     * high {@link #getSecondLevelHitRatio() second-level hit ratio} suggests
+     * that the first level is too small.
+     */
+    public double getFirstLevelHitRatio() {
+        final long h = this.firstHits.get();
+        final long total = h + this.secondHits.get() + this.misses.get();
+        return total > 0 ? (double) h / total : 0.0;
+    }
+
+    /**
+     * Returns the fraction of first-level misses answered by the second
+     * level, or {@code 0} if the first level has not missed yet.
+     */
+    public double getSecondLevelHitRatio() {
+        final long h = this.secondHits.get();
+        final long total = h + this.misses.get();
+        return total > 0 ? (double) h / total : 0.0;
+    }
+
+}
@@ -28,6 +28,9 @@ package org.apache.http.impl.client.cache.memcached;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 import net.spy.memcached.CASResponse;
 import net.spy.memcached.CASValue;
@@ -39,7 +42,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import tink.org.apache.http.client.cache.HttpCacheEntry;
 import tink.org.apache.http.client.cache.HttpCacheEntrySerializer;
-import tink.org.apache.http.client.cache.HttpCacheStorage;
+import tink.org.apache.http.client.cache.HttpCacheStorageBulkRead;
 import tink.org.apache.http.client.cache.HttpCacheUpdateCallback;
 import tink.org.apache.http.client.cache.HttpCacheUpdateException;
 import tink.org.apache.http.impl.client.cache.CacheConfig;
@@ -82,6 +85,12 @@ import tink.org.apache.http.impl.client.cache.CacheConfig;
  * </p>
  *
  * <p>
+ * Lookups of several entries at once, such as the variants of a negotiated
+ * resource, are served by a single <i>memcached</i> multi-get (see
+ * {@link HttpCacheStorageBulkRead}).
+ * </p>
+ *
+ * <p>
  * Please refer to the <a href="http://code.google.com/p/memcached/wiki/NewStart">
  * memcached documentation</a> and in particular to the documentation for
  * the <a href="http://code.google.com/p/spymemcached/">spymemcached
@@ -91,7 +100,7 @@ import tink.org.apache.http.impl.client.cache.CacheConfig;
  *
  * @since 4.1
  */
-public class MemcachedHttpCacheStorage implements HttpCacheStorage {
+public class MemcachedHttpCacheStorage implements HttpCacheStorageBulkRead {
 
     private static final Log log = LogFactory.getLog(MemcachedHttpCacheStorage.class);
 
@@ -241,6 +250,38 @@ public class MemcachedHttpCacheStorage implements HttpCacheStorage {
         }
     }
 
+    /**
+     * Retrieves the entries stored under the given URLs with a single
+     * <i>memcached</i> multi-get.
+     */
+    @Override
+    public Map<String, HttpCacheEntry> getEntries(final Collection<String> urls) throws IOException {
+        final Map<String, HttpCacheEntry> entries = new HashMap<String, HttpCacheEntry>();
+        final Map<String, String> keyToUrl = new HashMap<String, String>();
+        for (final String url : urls) {
+            final String key = getCacheKey(url);
+            if (key != null) {
+                keyToUrl.put(key, url);
+            }
+        }
+        if (keyToUrl.isEmpty()) {
+            return entries;
+        }
+        try {
+            final Map<String, Object> values = client.getBulk(keyToUrl.keySet());
+            for (final Map.Entry<String, Object> value : values.entrySet()) {
+                final String url = keyToUrl.get(value.getKey());
+                final MemcachedCacheEntry mce = reconstituteEntry(value.getValue());
+                if (url != null && mce != null && url.equals(mce.getStorageKey())) {
+                    entries.put(url, mce.getHttpCacheEntry());
+                }
+            }
+        } catch (final OperationTimeoutException ex) {
+            throw new MemcachedOperationTimeoutException(ex);
+        }
+        return entries;
+    }
+
     @Override
     public void removeEntry(final String url) throws IOException {
         final String key = getCacheKey(url);
@@ -304,6 +304,13 @@ public class TestHttpCacheEntry {
         }
     }
 
+    @Test
+    public void missingVariantMapIsEmpty() {
+        entry = new HttpCacheEntry(new Date(), new Date(), statusLine,
+                new Header[]{}, mockResource, null, HeaderConstants.GET_METHOD);
+        assertTrue(entry.getVariantMap().isEmpty());
+    }
+
     @Test
     public void canConvertToString() {
         entry = new HttpCacheEntry(new Date(), new Date(), statusLine,
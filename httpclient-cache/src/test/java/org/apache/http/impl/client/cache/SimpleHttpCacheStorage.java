@@ -31,10 +31,10 @@ import java.util.HashMap;
 import java.util.Map;
 
 import tink.org.apache.http.client.cache.HttpCacheEntry;
-import tink.org.apache.http.client.cache.HttpCacheStorage;
+import tink.org.apache.http.client.cache.HttpCacheStorageRemoval;
 import tink.org.apache.http.client.cache.HttpCacheUpdateCallback;
 
-class SimpleHttpCacheStorage implements HttpCacheStorage {
+class SimpleHttpCacheStorage implements HttpCacheStorageRemoval {
 
     public final Map<String,HttpCacheEntry> map;
 
@@ -57,6 +57,11 @@ class SimpleHttpCacheStorage implements HttpCacheStorage {
         map.remove(key);
     }
 
+    @Override
+    public boolean removeStoredEntry(final String key) throws IOException {
+        return map.remove(key) != null;
+    }
+
     @Override
     public void updateEntry(final String key, final HttpCacheUpdateCallback callback)
             throws IOException {
@@ -142,6 +142,22 @@ public class TestAsynchronousValidator {
         Assert.assertEquals(1, impl.getScheduledIdentifiers().size());
     }
 
+    @Test
+    public void testCollapsedRequestRaisesDemandOfScheduledRevalidation() {
+        impl = new AsynchronousValidator(mockSchedulingStrategy);
+
+        when(mockCacheEntry.hasVariants()).thenReturn(false);
+
+        impl.revalidateCacheEntry(mockClient, route, request, context, mockExecAware, mockCacheEntry);
+        impl.revalidateCacheEntry(mockClient, route, request, context, mockExecAware, mockCacheEntry);
+        impl.revalidateCacheEntry(mockClient, route, request, context, mockExecAware, mockCacheEntry);
+
+        final ArgumentCaptor<AsynchronousValidationRequest> cap = ArgumentCaptor.forClass(AsynchronousValidationRequest.class);
+        verify(mockSchedulingStrategy).schedule(cap.capture());
+        Assert.assertEquals(3, cap.getValue().getDemand());
+        Assert.assertSame(route, cap.getValue().getRoute());
+    }
+
     @Test
     public void testVariantsBothRevalidated() {
         impl = new AsynchronousValidator(mockSchedulingStrategy);
@@ -37,6 +37,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -50,7 +51,9 @@ import tink.org.apache.http.HttpStatus;
 import tink.org.apache.http.HttpVersion;
 import tink.org.apache.http.client.cache.HeaderConstants;
 import tink.org.apache.http.client.cache.HttpCacheEntry;
+import tink.org.apache.http.client.cache.HttpCacheStorageBulkRead;
 import tink.org.apache.http.client.cache.Resource;
+import tink.org.apache.http.client.methods.CloseableHttpResponse;
 import tink.org.apache.http.client.methods.HttpDelete;
 import tink.org.apache.http.client.methods.HttpGet;
 import tink.org.apache.http.client.methods.HttpHead;
@@ -498,6 +501,56 @@ public class TestBasicHttpCache {
 
     }
 
+    static class BulkReadHttpCacheStorage extends SimpleHttpCacheStorage implements HttpCacheStorageBulkRead {
+
+        int singleReads;
+        int bulkReads;
+
+        @Override
+        public HttpCacheEntry getEntry(final String key) throws IOException {
+            singleReads++;
+            return super.getEntry(key);
+        }
+
+        @Override
+        public Map<String, HttpCacheEntry> getEntries(final Collection<String> keys) throws IOException {
+            bulkReads++;
+            final Map<String, HttpCacheEntry> result = new HashMap<String, HttpCacheEntry>();
+            for (final String key : keys) {
+                if (map.containsKey(key)) {
+                    result.put(key, map.get(key));
+                }
+            }
+            return result;
+        }
+
+    }
+
+    @Test
+    public void testGetVariantCacheEntriesUsesBulkReadIfSupported() throws Exception {
+        final BulkReadHttpCacheStorage bulkBacking = new BulkReadHttpCacheStorage();
+        impl = new BasicHttpCache(new HeapResourceFactory(), bulkBacking, CacheConfig.DEFAULT);
+        final HttpHost host = new HttpHost("foo.example.com");
+        for (final String encoding : new String[] { "gzip", "identity", "deflate" }) {
+            final HttpRequest req = new HttpGet("http://foo.example.com/bar");
+            req.setHeader("Accept-Encoding", encoding);
+            final HttpResponse resp = HttpTestUtils.make200Response();
+            resp.setHeader("Date", DateUtils.formatDate(new Date()));
+            resp.setHeader("Cache-Control", "max-age=3600, public");
+            resp.setHeader("ETag", "\"" + encoding + "\"");
+            resp.setHeader("Vary", "Accept-Encoding");
+            impl.cacheAndReturnResponse(host, req, resp, new Date(), new Date());
+        }
+        bulkBacking.singleReads = 0;
+
+        final Map<String,Variant> variants = impl.getVariantCacheEntriesWithEtags(host,
+                new HttpGet("http://foo.example.com/bar"));
+
+        assertEquals(3, variants.size());
+        assertEquals(1, bulkBacking.singleReads);
+        assertEquals(1, bulkBacking.bulkReads);
+    }
+
     @Test
     public void testOriginalResponseWithNoContentSizeHeaderIsReleased() throws Exception {
         final HttpHost host = new HttpHost("foo.example.com");
@@ -592,4 +645,73 @@ public class TestBasicHttpCache {
         IOUtils.copyAndClose(entity.getContent(), new ByteArrayOutputStream());
     }
 
+    private HttpResponse makeStreamableResponse(final byte[] body) {
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        final BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream(body));
+        entity.setContentLength(-1);
+        response.setEntity(entity);
+        response.setHeader("Date", DateUtils.formatDate(new Date()));
+        response.setHeader("Cache-Control", "max-age=3600, public");
+        return response;
+    }
+
+    @Test
+    public void testStreamedResponseIsCachedOnceFullyRead() throws Exception {
+        impl = new BasicHttpCache(new HeapResourceFactory(), backing,
+                CacheConfig.custom().setResponseStreamingEnabled(true).build());
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpGet("http://foo.example.com/bar");
+        final byte[] body = HttpTestUtils.getRandomBytes(1000);
+
+        final HttpResponse result = impl.cacheAndReturnResponse(
+                host, request, makeStreamableResponse(body), new Date(), new Date());
+        assertEquals(0, backing.map.size());
+
+        final InputStream instream = result.getEntity().getContent();
+        assertEquals(body[0], (byte) instream.read());
+        final ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        outstream.write(body[0]);
+        IOUtils.copyAndClose(instream, outstream);
+        Assert.assertArrayEquals(body, outstream.toByteArray());
+
+        assertEquals(1, backing.map.size());
+        final HttpCacheEntry entry = impl.getCacheEntry(host, request);
+        assertNotNull(entry);
+        assertEquals(body.length, entry.getResource().length());
+    }
+
+    @Test
+    public void testStreamedResponseIsNotCachedIfClosedEarly() throws Exception {
+        impl = new BasicHttpCache(new HeapResourceFactory(), backing,
+                CacheConfig.custom().setResponseStreamingEnabled(true).build());
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpGet("http://foo.example.com/bar");
+
+        final CloseableHttpResponse result = impl.cacheAndReturnResponse(host, request,
+                Proxies.enhanceResponse(makeStreamableResponse(HttpTestUtils.getRandomBytes(1000))),
+                new Date(), new Date());
+        result.getEntity().getContent().read(new byte[100]);
+        result.close();
+
+        assertEquals(0, backing.map.size());
+    }
+
+    @Test
+    public void testStreamedResponseIsNotCachedIfTooLarge() throws Exception {
+        impl = new BasicHttpCache(new HeapResourceFactory(), backing,
+                CacheConfig.custom().setResponseStreamingEnabled(true).setMaxObjectSize(500).build());
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpGet("http://foo.example.com/bar");
+        final byte[] body = HttpTestUtils.getRandomBytes(1000);
+
+        final HttpResponse result = impl.cacheAndReturnResponse(
+                host, request, makeStreamableResponse(body), new Date(), new Date());
+        final ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        IOUtils.copyAndClose(result.getEntity().getContent(), outstream);
+
+        Assert.assertArrayEquals(body, outstream.toByteArray());
+        assertEquals(0, backing.map.size());
+    }
+
 }
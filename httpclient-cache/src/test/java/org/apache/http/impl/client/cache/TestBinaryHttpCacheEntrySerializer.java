@@ -0,0 +1,206 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import tink.org.apache.http.Header;
+import tink.org.apache.http.HttpStatus;
+import tink.org.apache.http.HttpVersion;
+import tink.org.apache.http.client.cache.HttpCacheEntry;
+import tink.org.apache.http.client.cache.HttpCacheEntrySerializationException;
+import tink.org.apache.http.client.cache.Resource;
+import tink.org.apache.http.message.BasicHeader;
+import tink.org.apache.http.message.BasicStatusLine;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestBinaryHttpCacheEntrySerializer {
+
+    private BinaryHttpCacheEntrySerializer impl;
+    private HttpCacheEntry entry;
+    private byte[] body;
+
+    @Before
+    public void setUp() {
+        impl = new BinaryHttpCacheEntrySerializer();
+        body = HttpTestUtils.getRandomBytes(1024);
+        final Header[] headers = new Header[] {
+                new BasicHeader("Date", "Tue, 15 Nov 1994 08:12:31 GMT"),
+                new BasicHeader("Cache-Control", "max-age=3600"),
+                new BasicHeader("ETag", "\"etag\""),
+                new BasicHeader("X-Unicode", "caf\u00e9")
+        };
+        final Map<String, String> variantMap = new HashMap<String, String>();
+        variantMap.put("{Accept-Encoding=gzip}", "{Accept-Encoding=gzip}http://foo.example.com:80/bar");
+        entry = new HttpCacheEntry(new Date(1000000L), new Date(2000000L),
+                new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"),
+                headers, new HeapResource(body), variantMap);
+    }
+
+    private byte[] serialize(final HttpCacheEntry e) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        impl.writeTo(e, out);
+        return out.toByteArray();
+    }
+
+    private void assertEntriesEqual(final HttpCacheEntry expected, final HttpCacheEntry actual) throws IOException {
+        assertEquals(expected.getRequestDate(), actual.getRequestDate());
+        assertEquals(expected.getResponseDate(), actual.getResponseDate());
+        assertEquals(expected.getProtocolVersion(), actual.getProtocolVersion());
+        assertEquals(expected.getStatusCode(), actual.getStatusCode());
+        assertEquals(expected.getReasonPhrase(), actual.getReasonPhrase());
+        assertEquals(expected.getRequestMethod(), actual.getRequestMethod());
+        final Header[] expectedHeaders = expected.getAllHeaders();
+        final Header[] actualHeaders = actual.getAllHeaders();
+        assertEquals(expectedHeaders.length, actualHeaders.length);
+        for (int i = 0; i < expectedHeaders.length; i++) {
+            assertEquals(expectedHeaders[i].getName(), actualHeaders[i].getName());
+            assertEquals(expectedHeaders[i].getValue(), actualHeaders[i].getValue());
+        }
+        assertEquals(expected.getVariantMap(), actual.getVariantMap());
+        assertArrayEquals(toBytes(expected.getResource()), toBytes(actual.getResource()));
+    }
+
+    private static byte[] toBytes(final Resource resource) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copyAndClose(resource.getInputStream(), out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testRoundTripThroughStream() throws Exception {
+        final HttpCacheEntry result = impl.readFrom(new ByteArrayInputStream(serialize(entry)));
+        assertEntriesEqual(entry, result);
+    }
+
+    @Test
+    public void testRoundTripThroughBufferSharesBody() throws Exception {
+        final byte[] bytes = serialize(entry);
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        final HttpCacheEntry result = impl.readFrom(buffer);
+        assertEntriesEqual(entry, result);
+        assertEquals(0, buffer.position());
+        assertTrue(result.getResource() instanceof ByteBufferResource);
+        final ByteBuffer content = ((ByteBufferResource) result.getResource()).getByteBuffer();
+        assertTrue(content.array() == bytes);
+    }
+
+    @Test
+    public void testRoundTripThroughDirectBuffer() throws Exception {
+        final byte[] bytes = serialize(entry);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+        assertEntriesEqual(entry, impl.readFrom(buffer));
+    }
+
+    @Test
+    public void testReserializingBufferBackedEntryIsStable() throws Exception {
+        final byte[] bytes = serialize(entry);
+        final HttpCacheEntry result = impl.readFrom(ByteBuffer.wrap(bytes));
+        assertArrayEquals(bytes, serialize(result));
+    }
+
+    @Test
+    public void testBufferBackedEntryIsJavaSerializable() throws Exception {
+        final HttpCacheEntry result = impl.readFrom(ByteBuffer.wrap(serialize(entry)));
+        final Serializer<HttpCacheEntry> serializer = new Serializer<HttpCacheEntry>();
+        final HttpCacheEntry copy = serializer.deserialize(serializer.serialize(result));
+        assertEntriesEqual(entry, copy);
+    }
+
+    @Test
+    public void testRequestMethodIsPreserved() throws Exception {
+        final Header[] headers = new Header[] {
+                new BasicHeader("Date", "Tue, 15 Nov 1994 08:12:31 GMT"),
+                new BasicHeader("Hc-Request-Method", "HEAD")
+        };
+        final HttpCacheEntry head = new HttpCacheEntry(new Date(), new Date(),
+                new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"),
+                headers, null);
+        final HttpCacheEntry result = impl.readFrom(new ByteArrayInputStream(serialize(head)));
+        assertEquals("HEAD", result.getRequestMethod());
+        assertEquals(1, result.getAllHeaders().length);
+        assertEquals(null, result.getResource());
+    }
+
+    @Test
+    public void testNullReasonPhraseIsPreserved() throws Exception {
+        final HttpCacheEntry noReason = new HttpCacheEntry(new Date(), new Date(),
+                new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_NO_CONTENT, null),
+                new Header[0], null);
+        final HttpCacheEntry result = impl.readFrom(ByteBuffer.wrap(serialize(noReason)));
+        assertEquals(null, result.getReasonPhrase());
+        assertEquals(HttpStatus.SC_NO_CONTENT, result.getStatusCode());
+    }
+
+    @Test
+    public void testBinaryFormatIsSmallerThanJavaSerialization() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DefaultHttpCacheEntrySerializer().writeTo(entry, out);
+        assertTrue(serialize(entry).length < out.size());
+    }
+
+    @Test(expected = HttpCacheEntrySerializationException.class)
+    public void testRejectsJavaSerializedEntry() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DefaultHttpCacheEntrySerializer().writeTo(entry, out);
+        impl.readFrom(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test(expected = HttpCacheEntrySerializationException.class)
+    public void testRejectsUnknownVersion() throws Exception {
+        final byte[] bytes = serialize(entry);
+        bytes[4] = (byte) (BinaryHttpCacheEntrySerializer.VERSION + 1);
+        impl.readFrom(ByteBuffer.wrap(bytes));
+    }
+
+    @Test(expected = HttpCacheEntrySerializationException.class)
+    public void testRejectsTruncatedStream() throws Exception {
+        final byte[] bytes = serialize(entry);
+        impl.readFrom(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)));
+    }
+
+    @Test(expected = HttpCacheEntrySerializationException.class)
+    public void testRejectsTruncatedBuffer() throws Exception {
+        final byte[] bytes = serialize(entry);
+        impl.readFrom(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 1)));
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.LinkedList;
+
+import tink.org.apache.http.HttpException;
+import tink.org.apache.http.HttpHost;
+import tink.org.apache.http.HttpResponse;
+import tink.org.apache.http.HttpStatus;
+import tink.org.apache.http.HttpVersion;
+import tink.org.apache.http.client.cache.CacheResponseStatus;
+import tink.org.apache.http.client.cache.HttpCacheStatisticsListener.EvictionReason;
+import tink.org.apache.http.client.cache.HttpCacheStatisticsListener.StorageOperation;
+import tink.org.apache.http.client.methods.CloseableHttpResponse;
+import tink.org.apache.http.client.methods.HttpExecutionAware;
+import tink.org.apache.http.client.methods.HttpGet;
+import tink.org.apache.http.client.methods.HttpRequestWrapper;
+import tink.org.apache.http.client.protocol.HttpClientContext;
+import tink.org.apache.http.client.utils.DateUtils;
+import tink.org.apache.http.conn.routing.HttpRoute;
+import tink.org.apache.http.impl.execchain.ClientExecChain;
+import tink.org.apache.http.message.BasicHttpResponse;
+import tink.org.apache.http.util.EntityUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCacheStatistics {
+
+    private static final HttpHost HOST1 = new HttpHost("foo.example.com");
+    private static final HttpHost HOST2 = new HttpHost("bar.example.com");
+
+    private CacheStatistics impl;
+
+    @Before
+    public void setUp() {
+        impl = new CacheStatistics();
+    }
+
+    @Test
+    public void testCountsResponsesInTotalAndPerHost() {
+        impl.responseServed(HOST1, CacheResponseStatus.CACHE_HIT, true, 100);
+        impl.responseServed(HOST1, CacheResponseStatus.CACHE_MISS, false, 50);
+        impl.responseServed(HOST2, CacheResponseStatus.CACHE_HIT, true, 10);
+
+        assertEquals(3, impl.getTotals().getResponseCount());
+        assertEquals(2, impl.getTotals().getResponseCount(CacheResponseStatus.CACHE_HIT));
+        assertEquals(110, impl.getTotals().getCacheBytes());
+        assertEquals(50, impl.getTotals().getOriginBytes());
+
+        final CacheStatistics.Counters host1 = impl.getHostStatistics(HOST1);
+        assertEquals(2, host1.getResponseCount());
+        assertEquals(0.5, host1.getHitRatio(), 0.0);
+        assertEquals(100.0 / 150.0, host1.getByteHitRatio(), 0.0001);
+        assertEquals(100, host1.getCacheBytes());
+        assertEquals(50, host1.getOriginBytes());
+        assertEquals(2, impl.getHosts().size());
+    }
+
+    @Test
+    public void testIgnoresUnknownLengths() {
+        impl.responseServed(HOST1, CacheResponseStatus.CACHE_MISS, false, -1);
+        assertEquals(1, impl.getTotals().getResponseCount(CacheResponseStatus.CACHE_MISS));
+        assertEquals(0, impl.getTotals().getOriginBytes());
+    }
+
+    @Test
+    public void testCountsValidationOutcomesAndStaleResponses() {
+        impl.entryValidated(HOST1, HttpStatus.SC_NOT_MODIFIED);
+        impl.entryValidated(HOST1, HttpStatus.SC_NOT_MODIFIED);
+        impl.entryValidated(HOST2, HttpStatus.SC_OK);
+        impl.staleResponseServed(HOST2);
+
+        assertEquals(2, impl.getTotals().getNotModifiedCount());
+        assertEquals(1, impl.getTotals().getModifiedCount());
+        assertEquals(1, impl.getTotals().getStaleResponseCount());
+        assertEquals(2, impl.getHostStatistics(HOST1).getNotModifiedCount());
+        assertEquals(0, impl.getHostStatistics(HOST1).getStaleResponseCount());
+        assertEquals(1, impl.getHostStatistics(HOST2).getStaleResponseCount());
+    }
+
+    @Test
+    public void testStopsTrackingNewHostsAtLimit() {
+        impl = new CacheStatistics(1);
+        impl.responseServed(HOST1, CacheResponseStatus.CACHE_HIT, true, 1);
+        impl.responseServed(HOST2, CacheResponseStatus.CACHE_HIT, true, 1);
+        impl.responseServed(null, CacheResponseStatus.CACHE_HIT, true, 1);
+
+        assertEquals(3, impl.getTotals().getResponseCount());
+        assertNotNull(impl.getHostStatistics(HOST1));
+        assertNull(impl.getHostStatistics(HOST2));
+        assertEquals(1, impl.getHosts().size());
+    }
+
+    @Test
+    public void testAveragesStorageOperationLatency() {
+        impl.storageOperationCompleted(StorageOperation.GET, 1000000L);
+        impl.storageOperationCompleted(StorageOperation.GET, 3000000L);
+        impl.storageOperationCompleted(StorageOperation.PUT, 5000000L);
+
+        assertEquals(2, impl.getStorageOperationCount(StorageOperation.GET));
+        assertEquals(2.0, impl.getAverageStorageOperationMillis(StorageOperation.GET), 0.0001);
+        assertEquals(5.0, impl.getAverageStorageOperationMillis(StorageOperation.PUT), 0.0001);
+        assertEquals(0.0, impl.getAverageStorageOperationMillis(StorageOperation.REMOVE), 0.0);
+    }
+
+    @Test
+    public void testCountsEvictionsByReason() {
+        impl.entryEvicted(EvictionReason.CAPACITY);
+        impl.entryEvicted(EvictionReason.CAPACITY);
+        impl.entryEvicted(EvictionReason.INVALIDATED);
+
+        assertEquals(2, impl.getEvictionCount(EvictionReason.CAPACITY));
+        assertEquals(1, impl.getEvictionCount(EvictionReason.INVALIDATED));
+    }
+
+    @Test
+    public void testResetClearsEverything() {
+        impl.responseServed(HOST1, CacheResponseStatus.CACHE_HIT, true, 100);
+        impl.storageOperationCompleted(StorageOperation.GET, 1000L);
+        impl.entryEvicted(EvictionReason.CAPACITY);
+
+        impl.reset();
+
+        assertEquals(0, impl.getTotals().getResponseCount());
+        assertEquals(0, impl.getTotals().getCacheBytes());
+        assertEquals(0, impl.getStorageOperationCount(StorageOperation.GET));
+        assertEquals(0, impl.getEvictionCount(EvictionReason.CAPACITY));
+        assertTrue(impl.getHosts().isEmpty());
+    }
+
+    @Test
+    public void testCachingExecReportsHitsMissesAndRevalidations() throws Exception {
+        final LinkedList<HttpResponse> responses = new LinkedList<HttpResponse>();
+        final ClientExecChain backend = new ClientExecChain() {
+
+            @Override
+            public CloseableHttpResponse execute(
+                    final HttpRoute route,
+                    final HttpRequestWrapper request,
+                    final HttpClientContext clientContext,
+                    final HttpExecutionAware execAware) throws IOException, HttpException {
+                return Proxies.enhanceResponse(responses.removeFirst());
+            }
+
+        };
+        final CachingExec exec = new CachingExec(backend, new BasicHttpCache(), CacheConfig.DEFAULT, null, impl);
+        final HttpRoute route = new HttpRoute(HOST1);
+
+        final Date tenSecondsAgo = new Date(System.currentTimeMillis() - 10 * 1000L);
+        responses.add(HttpTestUtils.make200Response(tenSecondsAgo, "max-age=5"));
+        execute(exec, route, "/stale");
+        final HttpResponse notModified = new BasicHttpResponse(
+                HttpVersion.HTTP_1_1, HttpStatus.SC_NOT_MODIFIED, "Not Modified");
+        notModified.setHeader("Date", DateUtils.formatDate(new Date()));
+        notModified.setHeader("Cache-Control", "max-age=3600");
+        notModified.setHeader("Etag", "\"etag\"");
+        responses.add(notModified);
+        execute(exec, route, "/stale");
+        execute(exec, route, "/stale");
+
+        final CacheStatistics.Counters counters = impl.getHostStatistics(HOST1);
+        assertEquals(1, counters.getResponseCount(CacheResponseStatus.CACHE_MISS));
+        assertEquals(1, counters.getResponseCount(CacheResponseStatus.VALIDATED));
+        assertEquals(1, counters.getResponseCount(CacheResponseStatus.CACHE_HIT));
+        assertEquals(1, counters.getNotModifiedCount());
+        assertEquals(128, counters.getOriginBytes());
+        assertEquals(256, counters.getCacheBytes());
+        assertEquals(0, counters.getStaleResponseCount());
+    }
+
+    private void execute(final CachingExec exec, final HttpRoute route, final String uri) throws Exception {
+        final HttpClientContext context = HttpClientContext.create();
+        context.setTargetHost(HOST1);
+        final CloseableHttpResponse response = exec.execute(
+                route, HttpRequestWrapper.wrap(new HttpGet(uri)), context, null);
+        try {
+            EntityUtils.consume(response.getEntity());
+        } finally {
+            response.close();
+        }
+    }
+
+}
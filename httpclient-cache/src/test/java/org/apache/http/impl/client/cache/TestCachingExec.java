@@ -43,6 +43,12 @@ import java.io.InputStream;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import tink.org.apache.http.HttpHost;
@@ -50,6 +56,7 @@ import tink.org.apache.http.HttpRequest;
 import tink.org.apache.http.HttpResponse;
 import tink.org.apache.http.HttpStatus;
 import tink.org.apache.http.HttpVersion;
+import tink.org.apache.http.client.cache.HttpCacheContext;
 import tink.org.apache.http.client.cache.HttpCacheEntry;
 import tink.org.apache.http.client.methods.CloseableHttpResponse;
 import tink.org.apache.http.client.methods.HttpExecutionAware;
@@ -436,6 +443,70 @@ public class TestCachingExec extends TestCachingExecChain {
         expect(mockCache.getVariantCacheEntriesWithEtags(host, request)).andReturn(result);
     }
 
+    @Test
+    public void testConcurrentCacheMissesAreCollapsed() throws Exception {
+        final AtomicInteger backendCalls = new AtomicInteger();
+        final CountDownLatch backendEntered = new CountDownLatch(1);
+        final CountDownLatch backendRelease = new CountDownLatch(1);
+        final ClientExecChain backend = new ClientExecChain() {
+
+            @Override
+            public CloseableHttpResponse execute(
+                    final HttpRoute route,
+                    final HttpRequestWrapper request,
+                    final HttpClientContext clientContext,
+                    final HttpExecutionAware execAware) throws IOException {
+                backendCalls.incrementAndGet();
+                backendEntered.countDown();
+                try {
+                    backendRelease.await(5, TimeUnit.SECONDS);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                final HttpResponse response = HttpTestUtils.make200Response();
+                response.setHeader("Cache-Control", "max-age=3600");
+                return Proxies.enhanceResponse(response);
+            }
+
+        };
+        impl = new CachingExec(backend, new BasicHttpCache(), CacheConfig.custom()
+                .setRequestCollapsingEnabled(true)
+                .build());
+
+        final int n = 5;
+        final ExecutorService executor = Executors.newFixedThreadPool(n);
+        try {
+            final Callable<HttpResponse> call = new Callable<HttpResponse>() {
+
+                @Override
+                public HttpResponse call() throws Exception {
+                    final HttpCacheContext ctx = HttpCacheContext.create();
+                    ctx.setTargetHost(host);
+                    return impl.execute(route, HttpRequestWrapper.wrap(
+                            HttpTestUtils.makeDefaultRequest()), ctx, null);
+                }
+
+            };
+            final Future<?>[] futures = new Future<?>[n];
+            futures[0] = executor.submit(call);
+            Assert.assertTrue(backendEntered.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < n; i++) {
+                futures[i] = executor.submit(call);
+            }
+            Thread.sleep(200);
+            backendRelease.countDown();
+            for (final Future<?> future : futures) {
+                final HttpResponse response = (HttpResponse) future.get(10, TimeUnit.SECONDS);
+                Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(1, backendCalls.get());
+        Assert.assertEquals(n - 1, impl.getCollapsedRequests() + impl.getCacheHits());
+    }
+
     private void cacheInvalidatorWasCalled()  throws IOException {
         mockCache.flushInvalidatedCacheEntriesFor(
                 (HttpHost)anyObject(),
@@ -0,0 +1,237 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tink.org.apache.http.client.cache.HttpCacheEntry;
+import tink.org.apache.http.client.cache.HttpCacheUpdateCallback;
+import tink.org.apache.http.client.cache.HttpCacheUpdateException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestConcurrentHttpCacheStorage {
+
+    private ConcurrentHttpCacheStorage impl;
+
+    @Before
+    public void setUp() {
+        impl = new ConcurrentHttpCacheStorage(CacheConfig.custom()
+                .setMaxCacheEntries(3)
+                .setMaxUpdateRetries(1)
+                .build());
+    }
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        Assert.assertNull(impl.getEntry("foo"));
+        impl.putEntry("foo", entry);
+        Assert.assertSame(entry, impl.getEntry("foo"));
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        impl.putEntry("foo", entry2);
+        Assert.assertSame(entry2, impl.getEntry("foo"));
+        impl.removeEntry("foo");
+        Assert.assertNull(impl.getEntry("foo"));
+        Assert.assertEquals(0, impl.size());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedEntry() throws Exception {
+        impl.putEntry("a", HttpTestUtils.makeCacheEntry());
+        impl.putEntry("b", HttpTestUtils.makeCacheEntry());
+        impl.putEntry("c", HttpTestUtils.makeCacheEntry());
+        impl.getEntry("a");
+        impl.putEntry("d", HttpTestUtils.makeCacheEntry());
+
+        Assert.assertEquals(3, impl.size());
+        Assert.assertNotNull(impl.getEntry("a"));
+        Assert.assertNull(impl.getEntry("b"));
+        Assert.assertNotNull(impl.getEntry("c"));
+        Assert.assertNotNull(impl.getEntry("d"));
+    }
+
+    @Test
+    public void testUpdateEntry() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry updated = HttpTestUtils.makeCacheEntry();
+        impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) {
+                Assert.assertNull(existing);
+                return entry;
+            }
+
+        });
+        impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) {
+                Assert.assertSame(entry, existing);
+                return updated;
+            }
+
+        });
+        Assert.assertSame(updated, impl.getEntry("foo"));
+    }
+
+    @Test(expected = HttpCacheUpdateException.class)
+    public void testUpdateEntryFailsAfterRetriesUnderContention() throws Exception {
+        impl.putEntry("foo", HttpTestUtils.makeCacheEntry());
+        impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                // a concurrent writer always gets in first
+                impl.putEntry("foo", HttpTestUtils.makeCacheEntry());
+                return HttpTestUtils.makeCacheEntry();
+            }
+
+        });
+    }
+
+    @Test
+    public void testConcurrentUpdatesAreNotLost() throws Exception {
+        impl = new ConcurrentHttpCacheStorage(CacheConfig.custom()
+                .setMaxUpdateRetries(Integer.MAX_VALUE - 1)
+                .build());
+        final int threads = 8;
+        final int updates = 500;
+        final AtomicInteger applied = new AtomicInteger();
+        final HttpCacheEntry[] versions = new HttpCacheEntry[threads * updates + 1];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = HttpTestUtils.makeCacheEntry();
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final Future<?>[] futures = new Future<?>[threads];
+        for (int t = 0; t < threads; t++) {
+            futures[t] = executor.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    for (int i = 0; i < updates; i++) {
+                        impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+                            @Override
+                            public HttpCacheEntry update(final HttpCacheEntry existing) {
+                                int version = 0;
+                                while (existing != null && versions[version] != existing) {
+                                    version++;
+                                }
+                                return versions[existing == null ? 0 : version + 1];
+                            }
+
+                        });
+                        applied.incrementAndGet();
+                    }
+                    return null;
+                }
+
+            });
+        }
+        start.countDown();
+        for (final Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        Assert.assertEquals(threads * updates, applied.get());
+        Assert.assertSame(versions[threads * updates - 1], impl.getEntry("foo"));
+    }
+
+    @Test
+    public void testTracksEstimatedBytes() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry(new byte[1000]);
+        final long weight = ConcurrentHttpCacheStorage.estimateSize("foo", entry);
+        Assert.assertTrue(weight > 1000);
+        impl.putEntry("foo", entry);
+        Assert.assertEquals(weight, impl.getTotalBytes());
+        impl.putEntry("foo", HttpTestUtils.makeCacheEntry(new byte[10]));
+        Assert.assertTrue(impl.getTotalBytes() < weight);
+        impl.removeEntry("foo");
+        Assert.assertEquals(0, impl.getTotalBytes());
+    }
+
+    @Test
+    public void testLargeEntriesAreEvictedBeforeFrequentlyUsedSmallOnes() throws Exception {
+        impl = new ConcurrentHttpCacheStorage(CacheConfig.custom()
+                .setMaxCacheBytes(150000)
+                .build());
+        for (int i = 0; i < 100; i++) {
+            impl.putEntry("small" + i, HttpTestUtils.makeCacheEntry(new byte[200]));
+        }
+        for (int i = 0; i < 100; i++) {
+            impl.getEntry("small" + i);
+        }
+        impl.putEntry("big1", HttpTestUtils.makeCacheEntry(new byte[45000]));
+        impl.putEntry("big2", HttpTestUtils.makeCacheEntry(new byte[45000]));
+
+        Assert.assertTrue(impl.getTotalBytes() <= 150000);
+        Assert.assertEquals(1, impl.getEvictionCount());
+        Assert.assertNull(impl.getEntry("big1"));
+        Assert.assertNotNull(impl.getEntry("big2"));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertNotNull(impl.getEntry("small" + i));
+        }
+    }
+
+    @Test
+    public void testDoesNotStoreEntryLargerThanBudget() throws Exception {
+        impl = new ConcurrentHttpCacheStorage(CacheConfig.custom()
+                .setMaxCacheBytes(10000)
+                .build());
+        impl.putEntry("foo", HttpTestUtils.makeCacheEntry());
+        impl.putEntry("foo", HttpTestUtils.makeCacheEntry(new byte[20000]));
+        Assert.assertNull(impl.getEntry("foo"));
+        Assert.assertEquals(0, impl.size());
+        Assert.assertEquals(0, impl.getTotalBytes());
+    }
+
+    @Test
+    public void testHitCounts() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry(new byte[1000]);
+        impl.getEntry("foo");
+        impl.putEntry("foo", entry);
+        impl.getEntry("foo");
+        impl.getEntry("foo");
+        impl.getEntry("foo");
+
+        Assert.assertEquals(3, impl.getHitCount());
+        Assert.assertEquals(1, impl.getMissCount());
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import tink.org.apache.http.client.cache.HttpCacheEntry;
+import tink.org.apache.http.client.cache.HttpCacheStatisticsListener.EvictionReason;
+import tink.org.apache.http.client.cache.HttpCacheStatisticsListener.StorageOperation;
+import tink.org.apache.http.client.cache.HttpCacheStorage;
+import tink.org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestInstrumentedHttpCacheStorage {
+
+    private SimpleHttpCacheStorage backing;
+    private CacheStatistics statistics;
+    private InstrumentedHttpCacheStorage impl;
+
+    @Before
+    public void setUp() {
+        backing = new SimpleHttpCacheStorage();
+        statistics = new CacheStatistics();
+        impl = new InstrumentedHttpCacheStorage(backing, statistics);
+    }
+
+    @Test
+    public void testReportsEachOperation() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        impl.putEntry("foo", entry);
+        assertSame(entry, impl.getEntry("foo"));
+        impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                return existing;
+            }
+
+        });
+        impl.removeEntry("foo");
+
+        assertNull(backing.map.get("foo"));
+        assertEquals(1, statistics.getStorageOperationCount(StorageOperation.PUT));
+        assertEquals(1, statistics.getStorageOperationCount(StorageOperation.GET));
+        assertEquals(1, statistics.getStorageOperationCount(StorageOperation.UPDATE));
+        assertEquals(1, statistics.getStorageOperationCount(StorageOperation.REMOVE));
+        assertEquals(1, statistics.getEvictionCount(EvictionReason.INVALIDATED));
+    }
+
+    @Test
+    public void testRemovingAbsentEntryIsNotAnEviction() throws Exception {
+        impl.removeEntry("foo");
+
+        assertEquals(1, statistics.getStorageOperationCount(StorageOperation.REMOVE));
+        assertEquals(0, statistics.getStorageOperationCount(StorageOperation.GET));
+        assertEquals(0, statistics.getEvictionCount(EvictionReason.INVALIDATED));
+    }
+
+    @Test
+    public void testRemovalFromStorageThatCannotTellIsNotAnEviction() throws Exception {
+        final HttpCacheStorage storage = new HttpCacheStorage() {
+
+            @Override
+            public void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+                backing.putEntry(key, entry);
+            }
+
+            @Override
+            public HttpCacheEntry getEntry(final String key) throws IOException {
+                return backing.getEntry(key);
+            }
+
+            @Override
+            public void removeEntry(final String key) throws IOException {
+                backing.removeEntry(key);
+            }
+
+            @Override
+            public void updateEntry(
+                    final String key, final HttpCacheUpdateCallback callback) throws IOException {
+                backing.updateEntry(key, callback);
+            }
+
+        };
+        impl = new InstrumentedHttpCacheStorage(storage, statistics);
+        backing.map.put("foo", HttpTestUtils.makeCacheEntry());
+        impl.removeEntry("foo");
+
+        assertNull(backing.map.get("foo"));
+        assertEquals(1, statistics.getStorageOperationCount(StorageOperation.REMOVE));
+        assertEquals(0, statistics.getStorageOperationCount(StorageOperation.GET));
+        assertEquals(0, statistics.getEvictionCount(EvictionReason.INVALIDATED));
+    }
+
+    @Test
+    public void testBulkReadFallsBackToSingleLookups() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        backing.map.put("foo", entry);
+
+        final Map<String, HttpCacheEntry> result = impl.getEntries(Arrays.asList("foo", "bar"));
+
+        assertEquals(1, result.size());
+        assertSame(entry, result.get("foo"));
+        assertEquals(2, statistics.getStorageOperationCount(StorageOperation.GET));
+        assertEquals(0, statistics.getStorageOperationCount(StorageOperation.BULK_GET));
+    }
+
+    @Test
+    public void testReportsOperationThatFailed() throws Exception {
+        impl = new InstrumentedHttpCacheStorage(new SimpleHttpCacheStorage() {
+
+            @Override
+            public HttpCacheEntry getEntry(final String key) throws IOException {
+                throw new IOException("unavailable");
+            }
+
+        }, statistics);
+        try {
+            impl.getEntry("foo");
+        } catch (final IOException expected) {
+        }
+        assertEquals(1, statistics.getStorageOperationCount(StorageOperation.GET));
+    }
+
+    @Test
+    public void testConcurrentStorageReportsCapacityEvictions() throws Exception {
+        final CacheConfig config = CacheConfig.custom().setMaxCacheEntries(2).build();
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(config, statistics);
+        for (int i = 0; i < 5; i++) {
+            storage.putEntry("key" + i, HttpTestUtils.makeCacheEntry());
+        }
+        assertEquals(storage.getEvictionCount(), statistics.getEvictionCount(EvictionReason.CAPACITY));
+        assertEquals(3, statistics.getEvictionCount(EvictionReason.CAPACITY));
+    }
+
+}
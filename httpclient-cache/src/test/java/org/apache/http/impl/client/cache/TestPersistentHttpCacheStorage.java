@@ -0,0 +1,281 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import tink.org.apache.http.client.cache.HttpCacheEntry;
+import tink.org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestPersistentHttpCacheStorage {
+
+    private File cacheDir;
+    private CacheConfig config;
+    private PersistentHttpCacheStorage impl;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = File.createTempFile("cachedir", "");
+        if (cacheDir.exists()) {
+            cacheDir.delete();
+        }
+        cacheDir.mkdir();
+        config = CacheConfig.custom().setMaxCacheEntries(100).build();
+        impl = new PersistentHttpCacheStorage(cacheDir, config, Long.MAX_VALUE);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        impl.close();
+        final File[] files = cacheDir.listFiles();
+        for (final File cacheFile : files) {
+            cacheFile.delete();
+        }
+        cacheDir.delete();
+    }
+
+    private PersistentHttpCacheStorage reopen(final boolean clean) throws IOException {
+        if (clean) {
+            impl.close();
+        }
+        impl = new PersistentHttpCacheStorage(cacheDir, config, Long.MAX_VALUE);
+        return impl;
+    }
+
+    private static HttpCacheEntry makeEntry(final byte[] body) {
+        return HttpTestUtils.makeCacheEntry(body);
+    }
+
+    private static byte[] bodyOf(final HttpCacheEntry entry) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copyAndClose(entry.getResource().getInputStream(), out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testStoresAndRetrievesEntries() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(1000);
+        final HttpCacheEntry entry = makeEntry(body);
+        impl.putEntry("foo", entry);
+        final HttpCacheEntry result = impl.getEntry("foo");
+        assertNotNull(result);
+        assertEquals(entry.getStatusCode(), result.getStatusCode());
+        assertEquals(entry.getAllHeaders().length, result.getAllHeaders().length);
+        assertArrayEquals(body, bodyOf(result));
+        assertTrue(result.getResource() instanceof ByteBufferResource);
+        assertNull(impl.getEntry("bar"));
+    }
+
+    @Test
+    public void testEntriesAcrossMappingWindows() throws Exception {
+        // Three windows worth of entries, some of them crossing window boundaries
+        final int size = (int) (PersistentHttpCacheStorage.WINDOW_SIZE / 3) + 1000;
+        final byte[][] bodies = new byte[9][];
+        for (int i = 0; i < bodies.length; i++) {
+            bodies[i] = HttpTestUtils.getRandomBytes(size);
+            impl.putEntry("key" + i, makeEntry(bodies[i]));
+            assertArrayEquals(bodies[i], bodyOf(impl.getEntry("key" + i)));
+        }
+        for (int i = 0; i < bodies.length; i++) {
+            assertArrayEquals(bodies[i], bodyOf(impl.getEntry("key" + i)));
+        }
+        reopen(true);
+        for (int i = 0; i < bodies.length; i++) {
+            assertArrayEquals(bodies[i], bodyOf(impl.getEntry("key" + i)));
+        }
+    }
+
+    @Test
+    public void testRemovedEntriesAreGone() throws Exception {
+        impl.putEntry("foo", makeEntry(HttpTestUtils.getRandomBytes(100)));
+        impl.removeEntry("foo");
+        assertNull(impl.getEntry("foo"));
+        assertEquals(0, impl.size());
+        reopen(true);
+        assertNull(impl.getEntry("foo"));
+    }
+
+    @Test
+    public void testUpdateEntryReplacesEntry() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(100);
+        impl.putEntry("foo", makeEntry(HttpTestUtils.getRandomBytes(100)));
+        impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) {
+                assertNotNull(existing);
+                return makeEntry(body);
+            }
+
+        });
+        assertArrayEquals(body, bodyOf(impl.getEntry("foo")));
+        assertEquals(1, impl.size());
+    }
+
+    @Test
+    public void testEntriesSurviveCleanRestart() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(1000);
+        impl.putEntry("foo", makeEntry(body));
+        impl.putEntry("bar", makeEntry(HttpTestUtils.getRandomBytes(10)));
+        reopen(true);
+        assertEquals(2, impl.size());
+        assertArrayEquals(body, bodyOf(impl.getEntry("foo")));
+    }
+
+    @Test
+    public void testEntriesSurviveCrashWithoutIndex() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(1000);
+        impl.putEntry("foo", makeEntry(body));
+        reopen(false);
+        assertEquals(1, impl.size());
+        assertArrayEquals(body, bodyOf(impl.getEntry("foo")));
+    }
+
+    @Test
+    public void testEntriesWrittenAfterIndexAreRecovered() throws Exception {
+        impl.putEntry("foo", makeEntry(HttpTestUtils.getRandomBytes(100)));
+        reopen(true);
+        final byte[] body = HttpTestUtils.getRandomBytes(100);
+        impl.putEntry("bar", makeEntry(body));
+        impl.removeEntry("foo");
+        reopen(false);
+        assertEquals(1, impl.size());
+        assertNull(impl.getEntry("foo"));
+        assertArrayEquals(body, bodyOf(impl.getEntry("bar")));
+    }
+
+    @Test
+    public void testDamagedTailIsTruncated() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(100);
+        impl.putEntry("foo", makeEntry(body));
+        impl.putEntry("bar", makeEntry(HttpTestUtils.getRandomBytes(100)));
+        impl.close();
+        final File logFile = new File(cacheDir, PersistentHttpCacheStorage.LOG_FILE_NAME);
+        new File(cacheDir, PersistentHttpCacheStorage.INDEX_FILE_NAME).delete();
+        final RandomAccessFile raf = new RandomAccessFile(logFile, "rw");
+        try {
+            // corrupt the last byte of the second record
+            raf.seek(raf.length() - 1);
+            final int b = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(b ^ 0xff);
+        } finally {
+            raf.close();
+        }
+        reopen(false);
+        assertEquals(1, impl.size());
+        assertArrayEquals(body, bodyOf(impl.getEntry("foo")));
+        assertNull(impl.getEntry("bar"));
+        assertEquals(impl.getLiveBytes() + PersistentHttpCacheStorage.LOG_HEADER_SIZE, logFile.length());
+    }
+
+    @Test
+    public void testStaleIndexFromAnotherLogIsIgnored() throws Exception {
+        impl.putEntry("foo", makeEntry(HttpTestUtils.getRandomBytes(100)));
+        impl.close();
+        new File(cacheDir, PersistentHttpCacheStorage.LOG_FILE_NAME).delete();
+        reopen(false);
+        assertEquals(0, impl.size());
+        assertNull(impl.getEntry("foo"));
+    }
+
+    @Test
+    public void testCompactionReclaimsSupersededRecords() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            impl.putEntry("foo", makeEntry(HttpTestUtils.getRandomBytes(1000)));
+        }
+        final byte[] body = HttpTestUtils.getRandomBytes(1000);
+        impl.putEntry("foo", makeEntry(body));
+        final HttpCacheEntry before = impl.getEntry("foo");
+        impl.compact();
+        assertEquals(impl.getLiveBytes() + PersistentHttpCacheStorage.LOG_HEADER_SIZE, impl.getLogSize());
+        assertArrayEquals(body, bodyOf(impl.getEntry("foo")));
+        assertArrayEquals(body, bodyOf(before));
+        assertFalse(new File(cacheDir, PersistentHttpCacheStorage.COMPACT_FILE_NAME).exists());
+        reopen(true);
+        assertArrayEquals(body, bodyOf(impl.getEntry("foo")));
+    }
+
+    @Test
+    public void testInterruptedCompactionIsDiscarded() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(100);
+        impl.putEntry("foo", makeEntry(body));
+        impl.close();
+        final RandomAccessFile raf = new RandomAccessFile(
+                new File(cacheDir, PersistentHttpCacheStorage.COMPACT_FILE_NAME), "rw");
+        raf.write(new byte[10]);
+        raf.close();
+        reopen(false);
+        assertArrayEquals(body, bodyOf(impl.getEntry("foo")));
+        assertFalse(new File(cacheDir, PersistentHttpCacheStorage.COMPACT_FILE_NAME).exists());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedEntries() throws Exception {
+        config = CacheConfig.custom().setMaxCacheEntries(3).build();
+        reopen(true);
+        impl.putEntry("a", makeEntry(HttpTestUtils.getRandomBytes(10)));
+        impl.putEntry("b", makeEntry(HttpTestUtils.getRandomBytes(10)));
+        impl.putEntry("c", makeEntry(HttpTestUtils.getRandomBytes(10)));
+        impl.getEntry("a");
+        impl.putEntry("d", makeEntry(HttpTestUtils.getRandomBytes(10)));
+        assertEquals(3, impl.size());
+        assertNull(impl.getEntry("b"));
+        assertNotNull(impl.getEntry("a"));
+        reopen(false);
+        assertNull(impl.getEntry("b"));
+    }
+
+    @Test
+    public void testEntriesLargerThanByteBudgetAreNotStored() throws Exception {
+        config = CacheConfig.custom().setMaxCacheBytes(2048).build();
+        reopen(true);
+        impl.putEntry("foo", makeEntry(HttpTestUtils.getRandomBytes(100)));
+        impl.putEntry("foo", makeEntry(HttpTestUtils.getRandomBytes(4096)));
+        assertNull(impl.getEntry("foo"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosedStorageRejectsRequests() throws Exception {
+        impl.close();
+        impl.getEntry("foo");
+    }
+
+}
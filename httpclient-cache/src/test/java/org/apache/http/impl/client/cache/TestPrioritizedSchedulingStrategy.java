@@ -0,0 +1,202 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tink.org.apache.http.HttpHost;
+import tink.org.apache.http.client.methods.HttpGet;
+import tink.org.apache.http.client.methods.HttpRequestWrapper;
+import tink.org.apache.http.client.protocol.HttpClientContext;
+import tink.org.apache.http.conn.routing.HttpRoute;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestPrioritizedSchedulingStrategy {
+
+    static class ManualExecutor extends AbstractExecutorService {
+
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        boolean shutdown;
+
+        @Override
+        public void execute(final Runnable command) {
+            if (shutdown) {
+                throw new RejectedExecutionException();
+            }
+            tasks.add(command);
+        }
+
+        void runNext() {
+            tasks.remove(0).run();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return tasks;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown && tasks.isEmpty();
+        }
+
+        @Override
+        public boolean awaitTermination(final long timeout, final TimeUnit unit) {
+            return isTerminated();
+        }
+
+    }
+
+    private ManualExecutor executor;
+    private AsynchronousValidator parent;
+
+    @Before
+    public void setUp() {
+        executor = new ManualExecutor();
+        parent = new AsynchronousValidator(new ImmediateSchedulingStrategy(executor));
+    }
+
+    private AsynchronousValidationRequest makeRequest(final String host, final String id, final int demand) {
+        // No CachingExec: running the request fails fast and reports back to the parent
+        return new AsynchronousValidationRequest(parent, null, new HttpRoute(new HttpHost(host)),
+                null, null, null, null, id, 0, new AtomicInteger(demand));
+    }
+
+    private AsynchronousValidationRequest requestOf(final Runnable task) {
+        return ((PrioritizedSchedulingStrategy.Task) task).request;
+    }
+
+    @Test
+    public void testLimitsConcurrentRevalidationsPerHost() {
+        final PrioritizedSchedulingStrategy impl = new PrioritizedSchedulingStrategy(executor, 4, 10, 1);
+        final AsynchronousValidationRequest a1 = makeRequest("a.example.com", "a1", 1);
+        final AsynchronousValidationRequest a2 = makeRequest("a.example.com", "a2", 1);
+        final AsynchronousValidationRequest b1 = makeRequest("b.example.com", "b1", 1);
+        impl.schedule(a1);
+        impl.schedule(a2);
+        impl.schedule(b1);
+
+        assertEquals(2, executor.tasks.size());
+        assertSame(a1, requestOf(executor.tasks.get(0)));
+        assertSame(b1, requestOf(executor.tasks.get(1)));
+        assertEquals(1, impl.getQueueDepth());
+        assertEquals(2, impl.getActiveCount());
+
+        executor.runNext();
+        assertEquals(2, executor.tasks.size());
+        assertSame(a2, requestOf(executor.tasks.get(1)));
+        assertEquals(0, impl.getQueueDepth());
+    }
+
+    @Test
+    public void testRunsMostDemandedRequestFirst() {
+        final PrioritizedSchedulingStrategy impl = new PrioritizedSchedulingStrategy(executor, 1, 10, 1);
+        impl.schedule(makeRequest("a.example.com", "first", 1));
+        final AsynchronousValidationRequest cold = makeRequest("b.example.com", "cold", 1);
+        final AsynchronousValidationRequest hot = makeRequest("c.example.com", "hot", 5);
+        final AsynchronousValidationRequest warm = makeRequest("d.example.com", "warm", 1);
+        impl.schedule(cold);
+        impl.schedule(hot);
+        impl.schedule(warm);
+
+        executor.runNext();
+        assertSame(hot, requestOf(executor.tasks.get(0)));
+        executor.runNext();
+        assertSame(cold, requestOf(executor.tasks.get(0)));
+        executor.runNext();
+        assertSame(warm, requestOf(executor.tasks.get(0)));
+    }
+
+    @Test
+    public void testRejectsWhenQueueIsFull() {
+        final PrioritizedSchedulingStrategy impl = new PrioritizedSchedulingStrategy(executor, 1, 1, 1);
+        impl.schedule(makeRequest("a.example.com", "r1", 1));
+        impl.schedule(makeRequest("a.example.com", "r2", 1));
+        try {
+            impl.schedule(makeRequest("a.example.com", "r3", 1));
+            fail("RejectedExecutionException should have been thrown");
+        } catch (final RejectedExecutionException expected) {
+        }
+        assertEquals(1, impl.getRejectedCount());
+        assertEquals(1, impl.getQueueDepth());
+    }
+
+    @Test
+    public void testReportsCompletedRevalidations() {
+        final PrioritizedSchedulingStrategy impl = new PrioritizedSchedulingStrategy(executor, 2, 10, 2);
+        impl.schedule(makeRequest("a.example.com", "r1", 1));
+        impl.schedule(makeRequest("a.example.com", "r2", 1));
+        executor.runNext();
+        executor.runNext();
+        assertEquals(2, impl.getCompletedCount());
+        assertEquals(0, impl.getActiveCount());
+        assertTrue(impl.getAverageQueueTimeMillis() >= 0.0);
+        assertTrue(impl.getAverageRevalidationTimeMillis() >= 0.0);
+    }
+
+    @Test
+    public void testCloseDropsWaitingRequests() throws Exception {
+        final PrioritizedSchedulingStrategy impl = new PrioritizedSchedulingStrategy(executor, 1, 10, 1);
+        final HttpRoute route = new HttpRoute(new HttpHost("a.example.com"));
+        final AsynchronousValidator validator = new AsynchronousValidator(impl);
+        final HttpClientContext context = HttpClientContext.create();
+        context.setTargetHost(new HttpHost("a.example.com"));
+        validator.revalidateCacheEntry(null, route,
+                HttpRequestWrapper.wrap(new HttpGet("/one")), context, null, HttpTestUtils.makeCacheEntry());
+        validator.revalidateCacheEntry(null, route,
+                HttpRequestWrapper.wrap(new HttpGet("/two")), context, null, HttpTestUtils.makeCacheEntry());
+        assertEquals(2, validator.getScheduledIdentifiers().size());
+
+        validator.close();
+
+        assertEquals(1, validator.getScheduledIdentifiers().size());
+        assertEquals(0, impl.getQueueDepth());
+    }
+
+}
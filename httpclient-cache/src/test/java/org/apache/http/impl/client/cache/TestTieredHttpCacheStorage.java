@@ -0,0 +1,206 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import tink.org.apache.http.HttpHost;
+import tink.org.apache.http.client.cache.HttpCacheEntry;
+import tink.org.apache.http.client.cache.HttpCacheUpdateCallback;
+import tink.org.apache.http.client.methods.HttpPost;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestTieredHttpCacheStorage {
+
+    private SimpleHttpCacheStorage first;
+    private SimpleHttpCacheStorage second;
+    private TieredHttpCacheStorage impl;
+
+    @Before
+    public void setUp() {
+        first = new SimpleHttpCacheStorage();
+        second = new SimpleHttpCacheStorage();
+        impl = new TieredHttpCacheStorage(first, second);
+    }
+
+    @Test
+    public void testPutWritesBothLevels() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        impl.putEntry("foo", entry);
+        assertSame(entry, first.map.get("foo"));
+        assertSame(entry, second.map.get("foo"));
+    }
+
+    @Test
+    public void testFirstLevelHitDoesNotTouchSecondLevel() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        first.map.put("foo", entry);
+        assertSame(entry, impl.getEntry("foo"));
+        assertFalse(second.map.containsKey("foo"));
+        assertEquals(1, impl.getFirstLevelHitCount());
+        assertEquals(0, impl.getSecondLevelHitCount());
+    }
+
+    @Test
+    public void testSecondLevelHitIsPromoted() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        second.map.put("foo", entry);
+        assertSame(entry, impl.getEntry("foo"));
+        assertSame(entry, first.map.get("foo"));
+        assertSame(entry, impl.getEntry("foo"));
+        assertEquals(1, impl.getSecondLevelHitCount());
+        assertEquals(1, impl.getFirstLevelHitCount());
+        assertEquals(1, impl.getPromotionCount());
+    }
+
+    @Test
+    public void testPromotionKeepsNewerFirstLevelEntry() throws Exception {
+        final HttpCacheEntry stale = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry fresh = HttpTestUtils.makeCacheEntry();
+        impl = new TieredHttpCacheStorage(first, new SimpleHttpCacheStorage() {
+
+            @Override
+            public HttpCacheEntry getEntry(final String key) throws IOException {
+                // A concurrent write lands after the second level has been read
+                first.map.put(key, fresh);
+                return stale;
+            }
+
+        });
+        assertSame(fresh, impl.getEntry("foo"));
+        assertSame(fresh, first.map.get("foo"));
+        assertEquals(0, impl.getPromotionCount());
+
+        first.map.clear();
+        final Map<String, HttpCacheEntry> result = impl.getEntries(Arrays.asList("foo"));
+        assertSame(fresh, result.get("foo"));
+        assertSame(fresh, first.map.get("foo"));
+        assertEquals(0, impl.getPromotionCount());
+    }
+
+    @Test
+    public void testMissInBothLevels() throws Exception {
+        assertNull(impl.getEntry("foo"));
+        assertEquals(1, impl.getMissCount());
+        assertEquals(0.0, impl.getFirstLevelHitRatio(), 0.0);
+        assertEquals(0.0, impl.getSecondLevelHitRatio(), 0.0);
+    }
+
+    @Test
+    public void testHitRatios() throws Exception {
+        first.map.put("a", HttpTestUtils.makeCacheEntry());
+        second.map.put("b", HttpTestUtils.makeCacheEntry());
+        impl.getEntry("a");
+        impl.getEntry("b");
+        impl.getEntry("c");
+        impl.getEntry("b");
+        assertEquals(0.5, impl.getFirstLevelHitRatio(), 0.0);
+        assertEquals(0.5, impl.getSecondLevelHitRatio(), 0.0);
+    }
+
+    @Test
+    public void testBulkReadPromotesSecondLevelHits() throws Exception {
+        final HttpCacheEntry a = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry b = HttpTestUtils.makeCacheEntry();
+        first.map.put("a", a);
+        second.map.put("b", b);
+        final Map<String, HttpCacheEntry> result = impl.getEntries(Arrays.asList("a", "b", "c"));
+        assertEquals(2, result.size());
+        assertSame(a, result.get("a"));
+        assertSame(b, result.get("b"));
+        assertSame(b, first.map.get("b"));
+        assertEquals(1, impl.getFirstLevelHitCount());
+        assertEquals(1, impl.getSecondLevelHitCount());
+        assertEquals(1, impl.getMissCount());
+    }
+
+    @Test
+    public void testRemoveClearsBothLevels() throws Exception {
+        impl.putEntry("foo", HttpTestUtils.makeCacheEntry());
+        impl.removeEntry("foo");
+        assertFalse(first.map.containsKey("foo"));
+        assertFalse(second.map.containsKey("foo"));
+    }
+
+    @Test
+    public void testInvalidationReachesBothLevels() throws Exception {
+        impl.putEntry("http://foo.example.com:80/bar", HttpTestUtils.makeCacheEntry());
+        final BasicHttpCache cache = new BasicHttpCache(new HeapResourceFactory(), impl, CacheConfig.DEFAULT);
+        cache.flushCacheEntriesFor(new HttpHost("foo.example.com"), new HttpPost("http://foo.example.com/bar"));
+        assertTrue(first.map.isEmpty());
+        assertTrue(second.map.isEmpty());
+    }
+
+    @Test
+    public void testUpdateIsAppliedToSecondLevelAndCopiedToFirst() throws Exception {
+        final HttpCacheEntry original = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry updated = HttpTestUtils.makeCacheEntry();
+        second.map.put("foo", original);
+        impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) {
+                assertSame(original, existing);
+                return updated;
+            }
+
+        });
+        assertSame(updated, second.map.get("foo"));
+        assertSame(updated, first.map.get("foo"));
+    }
+
+    @Test
+    public void testFailedSecondLevelWriteDropsFirstLevelCopy() throws Exception {
+        final HttpCacheEntry stale = HttpTestUtils.makeCacheEntry();
+        first.map.put("foo", stale);
+        impl = new TieredHttpCacheStorage(first, new SimpleHttpCacheStorage() {
+
+            @Override
+            public void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+                throw new IOException("down");
+            }
+
+        });
+        try {
+            impl.putEntry("foo", HttpTestUtils.makeCacheEntry());
+            fail("IOException should have been thrown");
+        } catch (final IOException expected) {
+        }
+        assertFalse(first.map.containsKey("foo"));
+    }
+
+}
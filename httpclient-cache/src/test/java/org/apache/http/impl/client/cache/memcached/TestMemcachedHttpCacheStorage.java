@@ -35,6 +35,11 @@ import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 
 import junit.framework.TestCase;
 import net.spy.memcached.CASResponse;
@@ -194,6 +199,70 @@ public class TestMemcachedHttpCacheStorage extends TestCase {
         assertSame(cacheEntry, resultingEntry);
     }
 
+    @Test
+    public void testBulkGetUsesSingleMultiGet() throws IOException {
+        final String url1 = "foo";
+        final String url2 = "bar";
+        final String url3 = "baz";
+        final byte[] serialized1 = HttpTestUtils.getRandomBytes(128);
+        final byte[] serialized2 = HttpTestUtils.getRandomBytes(128);
+        final HttpCacheEntry cacheEntry1 = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry cacheEntry2 = HttpTestUtils.makeCacheEntry();
+        final Map<String, Object> bulk = new HashMap<String, Object>();
+        bulk.put("key1", serialized1);
+        bulk.put("key2", serialized2);
+
+        when(mockKeyHashingScheme.hash(url1)).thenReturn("key1");
+        when(mockKeyHashingScheme.hash(url2)).thenReturn("key2");
+        when(mockKeyHashingScheme.hash(url3)).thenReturn("key3");
+        when(mockMemcachedClient.getBulk(new HashSet<String>(Arrays.asList("key1", "key2", "key3"))))
+            .thenReturn(bulk);
+        when(mockMemcachedCacheEntryFactory.getUnsetCacheEntry())
+            .thenReturn(mockMemcachedCacheEntry, mockMemcachedCacheEntry2);
+        when(mockMemcachedCacheEntry.getStorageKey()).thenReturn(url1);
+        when(mockMemcachedCacheEntry.getHttpCacheEntry()).thenReturn(cacheEntry1);
+        when(mockMemcachedCacheEntry2.getStorageKey()).thenReturn(url2);
+        when(mockMemcachedCacheEntry2.getHttpCacheEntry()).thenReturn(cacheEntry2);
+
+        final Map<String, HttpCacheEntry> result = impl.getEntries(Arrays.asList(url1, url2, url3));
+
+        verify(mockMemcachedClient).getBulk(new HashSet<String>(Arrays.asList("key1", "key2", "key3")));
+        verifyNoMoreInteractions(mockMemcachedClient);
+        assertEquals(2, result.size());
+        assertSame(cacheEntry1, result.get(url1));
+        assertSame(cacheEntry2, result.get(url2));
+        assertFalse(result.containsKey(url3));
+    }
+
+    @Test
+    public void testBulkGetSkipsEntriesWithMismatchedStorageKey() throws IOException {
+        final String url = "foo";
+        final Map<String, Object> bulk = new HashMap<String, Object>();
+        bulk.put("key", HttpTestUtils.getRandomBytes(128));
+
+        when(mockKeyHashingScheme.hash(url)).thenReturn("key");
+        when(mockMemcachedClient.getBulk(Collections.singleton("key"))).thenReturn(bulk);
+        when(mockMemcachedCacheEntryFactory.getUnsetCacheEntry())
+            .thenReturn(mockMemcachedCacheEntry);
+        when(mockMemcachedCacheEntry.getStorageKey()).thenReturn("not-foo");
+
+        assertTrue(impl.getEntries(Collections.singleton(url)).isEmpty());
+    }
+
+    @Test
+    public void testBulkGetThrowsIOExceptionIfMemcachedTimesOut() {
+        final String url = "foo";
+        when(mockKeyHashingScheme.hash(url)).thenReturn("key");
+        when(mockMemcachedClient.getBulk(Collections.singleton("key")))
+            .thenThrow(new OperationTimeoutException(""));
+
+        try {
+            impl.getEntries(Collections.singleton(url));
+            fail("should have thrown exception");
+        } catch (final IOException expected) {
+        }
+    }
+
     @Test
     public void testTreatsNoneByteArrayFromMemcachedAsCacheMiss() throws UnsupportedEncodingException,
             IOException {
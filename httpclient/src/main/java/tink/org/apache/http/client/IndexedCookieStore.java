@@ -0,0 +1,57 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.client;
+
+import java.util.List;
+
+import tink.org.apache.http.cookie.Cookie;
+import tink.org.apache.http.cookie.CookieOrigin;
+
+/**
+ * Optional extension of {@link CookieStore} for stores that can find the
+ * cookies relevant to a request without going through all the cookies
+ * they hold.
+ *
+ * @since 4.5.6
+ */
+public interface IndexedCookieStore extends CookieStore {
+
+    /**
+     * Returns the unexpired cookies whose domain and path could match the
+     * given origin. The result may contain cookies that the
+     * {@link tink.org.apache.http.cookie.CookieSpec} in use does not
+     * accept for the origin, so it still needs to be filtered with
+     * {@link tink.org.apache.http.cookie.CookieSpec#match(Cookie, CookieOrigin)},
+     * but it contains every cookie that a spec matching by domain suffix
+     * and path prefix would accept.
+     *
+     * @param origin the origin of the request
+     * @return candidate cookies for the origin
+     */
+    List<Cookie> getCookies(CookieOrigin origin);
+
+}
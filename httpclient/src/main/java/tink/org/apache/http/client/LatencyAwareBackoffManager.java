@@ -0,0 +1,53 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.client;
+
+import java.util.concurrent.TimeUnit;
+
+import tink.org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * A {@link BackoffManager} that, in addition to error signals, adjusts
+ * the connection pool based on the response time of the backend.
+ *
+ * @since 4.5.6
+ */
+public interface LatencyAwareBackoffManager extends BackoffManager {
+
+    /**
+     * Records the time it took the given route to respond to a request.
+     * The latency should only cover the exchange with the backend, not
+     * the time spent waiting for a connection from the pool, as that
+     * itself depends on the limits set by this manager.
+     *
+     * @param route the route the request was executed on
+     * @param latency the observed latency, must not be negative
+     * @param tunit the time unit of {@code latency}
+     */
+    void recordLatency(HttpRoute route, long latency, TimeUnit tunit);
+
+}
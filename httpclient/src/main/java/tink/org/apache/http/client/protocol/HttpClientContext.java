@@ -143,6 +143,16 @@ public class HttpClientContext extends HttpCoreContext {
      */
     public static final String REQUEST_CONFIG = "http.request-config";
 
+    /**
+     * Attribute name of a {@link Long} object that represents the time in
+     * nanoseconds it took to send the last request over an established
+     * connection and to receive the response head. Time spent waiting for
+     * a connection or connecting is not included.
+     *
+     * @since 4.5.6
+     */
+    public static final String RESPONSE_TIME = "http.response-time";
+
     public static HttpClientContext adapt(final HttpContext context) {
         if (context instanceof HttpClientContext) {
             return (HttpClientContext) context;
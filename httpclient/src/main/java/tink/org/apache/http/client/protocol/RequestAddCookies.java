@@ -44,6 +44,7 @@ import tink.org.apache.http.HttpRequestInterceptor;
 import tink.org.apache.http.annotation.Contract;
 import tink.org.apache.http.annotation.ThreadingBehavior;
 import tink.org.apache.http.client.CookieStore;
+import tink.org.apache.http.client.IndexedCookieStore;
 import tink.org.apache.http.client.config.CookieSpecs;
 import tink.org.apache.http.client.config.RequestConfig;
 import tink.org.apache.http.client.methods.HttpUriRequest;
@@ -162,8 +163,14 @@ public class RequestAddCookies implements HttpRequestInterceptor {
             return;
         }
         final CookieSpec cookieSpec = provider.create(clientContext);
-        // Get all cookies available in the HTTP state
-        final List<Cookie> cookies = cookieStore.getCookies();
+        // Get the cookies available in the HTTP state, or only those
+        // that may match the origin if the store is indexed
+        final List<Cookie> cookies;
+        if (cookieStore instanceof IndexedCookieStore) {
+            cookies = ((IndexedCookieStore) cookieStore).getCookies(cookieOrigin);
+        } else {
+            cookies = cookieStore.getCookies();
+        }
         // Find cookies matching the given origin
         final List<Cookie> matchedCookies = new ArrayList<Cookie>();
         final Date now = new Date();
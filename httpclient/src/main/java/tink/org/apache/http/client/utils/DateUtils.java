@@ -132,6 +132,13 @@ public final class DateUtils {
             v = v.substring (1, v.length() - 1);
         }
 
+        if (dateFormats == null && startDate == null) {
+            final long millis = parseStandardDate(v);
+            if (millis != INVALID_DATE) {
+                return new Date(millis);
+            }
+        }
+
         for (final String dateFormat : localDateFormats) {
             final SimpleDateFormat dateParser = DateFormatHolder.formatFor(dateFormat);
             dateParser.set2DigitYearStart(localStartDate);
@@ -172,10 +179,254 @@ public final class DateUtils {
     public static String formatDate(final Date date, final String pattern) {
         Args.notNull(date, "Date");
         Args.notNull(pattern, "Pattern");
+        if (PATTERN_RFC1123.equals(pattern)) {
+            final String formatted = formatStandardDate(date.getTime());
+            if (formatted != null) {
+                return formatted;
+            }
+        }
         final SimpleDateFormat formatter = DateFormatHolder.formatFor(pattern);
         return formatter.format(date);
     }
 
+    static final long INVALID_DATE = Long.MIN_VALUE;
+
+    /**
+     * First full year of the Gregorian calendar; {@link SimpleDateFormat}
+     * uses the Julian calendar before the cutover, which the arithmetic
+     * below does not replicate.
+     */
+    private static final int GREGORIAN_START_YEAR = 1583;
+
+    private static final String[] DAY_NAMES = {
+        "Sunday", "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday"
+    };
+
+    private static final String[] MONTH_NAMES = {
+        "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"
+    };
+
+    private static volatile FormattedDate lastFormatted;
+
+    /**
+     * Parses a date in one of the three formats permitted by RFC 2616 section
+     * 3.3.1 without going through {@link SimpleDateFormat}. Only the canonical
+     * spelling of each format is recognized (GMT or UTC time zone, in-range
+     * fields, case-sensitive names, Gregorian years); anything else yields {@link #INVALID_DATE}
+     * so that the caller can fall back to the lenient pattern based parser.
+     *
+     * @param s the date value
+     * @return milliseconds since the epoch or {@link #INVALID_DATE}
+     */
+    static long parseStandardDate(final String s) {
+        final int len = s.length();
+        final int comma = s.indexOf(',');
+        if (comma > 0) {
+            if (!matchDayName(s, comma) || comma + 1 >= len || s.charAt(comma + 1) != ' ') {
+                return INVALID_DATE;
+            }
+            final int pos = comma + 2;
+            if (len == pos + 24) {
+                // RFC 1123: Sun, 06 Nov 1994 08:49:37 GMT
+                if (s.charAt(pos + 2) != ' ' || s.charAt(pos + 6) != ' '
+                        || s.charAt(pos + 11) != ' ' || s.charAt(pos + 20) != ' ') {
+                    return INVALID_DATE;
+                }
+                return toMillis(
+                        parseDigits(s, pos + 7, 4),
+                        parseMonth(s, pos + 3),
+                        parseDigits(s, pos, 2),
+                        parseTime(s, pos + 12),
+                        s, pos + 21);
+            }
+            if (len == pos + 22) {
+                // RFC 1036: Sunday, 06-Nov-94 08:49:37 GMT
+                if (s.charAt(pos + 2) != '-' || s.charAt(pos + 6) != '-'
+                        || s.charAt(pos + 9) != ' ' || s.charAt(pos + 18) != ' ') {
+                    return INVALID_DATE;
+                }
+                final int year = parseDigits(s, pos + 7, 2);
+                return toMillis(
+                        year < 0 ? year : 2000 + year,
+                        parseMonth(s, pos + 3),
+                        parseDigits(s, pos, 2),
+                        parseTime(s, pos + 10),
+                        s, pos + 19);
+            }
+            return INVALID_DATE;
+        }
+        // ANSI C asctime(): Sun Nov  6 08:49:37 1994
+        if (len < 23 || len > 25 || !matchDayName(s, 3) || s.charAt(3) != ' ' || s.charAt(7) != ' ') {
+            return INVALID_DATE;
+        }
+        int pos = 8;
+        if (s.charAt(pos) == ' ') {
+            pos++;
+        }
+        final int dayLen = isDigit(s.charAt(pos + 1)) ? 2 : 1;
+        if (len != pos + dayLen + 14 || s.charAt(pos + dayLen) != ' ' || s.charAt(len - 5) != ' ') {
+            return INVALID_DATE;
+        }
+        final int time = parseTime(s, pos + dayLen + 1);
+        final int year = parseDigits(s, len - 4, 4);
+        final int day = parseDigits(s, pos, dayLen);
+        final int month = parseMonth(s, 4);
+        return toMillis(year, month, day, time, "GMT", 0);
+    }
+
+    private static long toMillis(
+            final int year, final int month, final int day, final int time,
+            final String s, final int zone) {
+        if (year < GREGORIAN_START_YEAR || month < 0 || day < 1 || day > 31 || time < 0) {
+            return INVALID_DATE;
+        }
+        if (!s.regionMatches(zone, "GMT", 0, 3) && !s.regionMatches(zone, "UTC", 0, 3)) {
+            return INVALID_DATE;
+        }
+        return daysFromCivil(year, month + 1, day) * 86400000L + time * 1000L;
+    }
+
+    private static boolean matchDayName(final String s, final int end) {
+        for (final String name : DAY_NAMES) {
+            if ((end == 3 || end == name.length()) && s.regionMatches(0, name, 0, end)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int parseMonth(final String s, final int pos) {
+        for (int i = 0; i < MONTH_NAMES.length; i++) {
+            if (s.regionMatches(pos, MONTH_NAMES[i], 0, 3)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses {@code HH:mm:ss} at the given position.
+     *
+     * @return seconds since midnight or -1 if malformed
+     */
+    private static int parseTime(final String s, final int pos) {
+        if (s.charAt(pos + 2) != ':' || s.charAt(pos + 5) != ':') {
+            return -1;
+        }
+        final int hour = parseDigits(s, pos, 2);
+        final int minute = parseDigits(s, pos + 3, 2);
+        final int second = parseDigits(s, pos + 6, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return -1;
+        }
+        return hour * 3600 + minute * 60 + second;
+    }
+
+    private static int parseDigits(final String s, final int pos, final int count) {
+        int n = 0;
+        for (int i = pos; i < pos + count; i++) {
+            final char ch = s.charAt(i);
+            if (!isDigit(ch)) {
+                return -1;
+            }
+            n = n * 10 + (ch - '0');
+        }
+        return n;
+    }
+
+    private static boolean isDigit(final char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    /**
+     * Returns the number of days since 1970-01-01 of the given proleptic
+     * Gregorian date, the day being allowed to overflow into the next month.
+     */
+    private static long daysFromCivil(final int year, final int month, final int day) {
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = (y >= 0 ? y : y - 399) / 400;
+        final int yoe = y - era * 400;
+        final int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097L + doe - 719468L;
+    }
+
+    /**
+     * Formats the given instant in RFC 1123 format. The result for the most
+     * recently formatted second is cached, so repeated calls within the same
+     * second return the same instance.
+     *
+     * @return the formatted date or {@code null} if the year is outside
+     *   the range handled by {@link #parseStandardDate(String)}
+     */
+    static String formatStandardDate(final long millis) {
+        final long epochSecond = millis >= 0 ? millis / 1000 : (millis - 999) / 1000;
+        final FormattedDate cached = lastFormatted;
+        if (cached != null && cached.epochSecond == epochSecond) {
+            return cached.value;
+        }
+        final long days = epochSecond >= 0 ? epochSecond / 86400 : (epochSecond - 86399) / 86400;
+        final int secs = (int) (epochSecond - days * 86400);
+
+        // civil from days
+        final long z = days + 719468;
+        final long era = (z >= 0 ? z : z - 146096) / 146097;
+        final int doe = (int) (z - era * 146097);
+        final int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        final int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        final int mp = (5 * doy + 2) / 153;
+        final int day = doy - (153 * mp + 2) / 5 + 1;
+        final int month = mp < 10 ? mp + 3 : mp - 9;
+        final long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < GREGORIAN_START_YEAR || year > 9999) {
+            return null;
+        }
+        final int dow = (int) ((days % 7 + 11) % 7); // 1970-01-01 was a Thursday
+
+        final char[] buf = new char[29];
+        DAY_NAMES[dow].getChars(0, 3, buf, 0);
+        buf[3] = ',';
+        buf[4] = ' ';
+        putDigits(buf, 5, day, 2);
+        buf[7] = ' ';
+        MONTH_NAMES[month - 1].getChars(0, 3, buf, 8);
+        buf[11] = ' ';
+        putDigits(buf, 12, (int) year, 4);
+        buf[16] = ' ';
+        putDigits(buf, 17, secs / 3600, 2);
+        buf[19] = ':';
+        putDigits(buf, 20, secs / 60 % 60, 2);
+        buf[22] = ':';
+        putDigits(buf, 23, secs % 60, 2);
+        buf[25] = ' ';
+        buf[26] = 'G';
+        buf[27] = 'M';
+        buf[28] = 'T';
+        final String value = new String(buf);
+        lastFormatted = new FormattedDate(epochSecond, value);
+        return value;
+    }
+
+    private static void putDigits(final char[] buf, final int pos, final int value, final int count) {
+        int v = value;
+        for (int i = pos + count - 1; i >= pos; i--) {
+            buf[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+    }
+
+    static final class FormattedDate {
+
+        final long epochSecond;
+        final String value;
+
+        FormattedDate(final long epochSecond, final String value) {
+            this.epochSecond = epochSecond;
+            this.value = value;
+        }
+
+    }
+
     /**
      * Clears thread-local variable containing {@link java.text.DateFormat} cache.
      *
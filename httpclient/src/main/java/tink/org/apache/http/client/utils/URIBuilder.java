@@ -58,6 +58,7 @@ public class URIBuilder {
     private String encodedPath;
     private String encodedQuery;
     private List<NameValuePair> queryParams;
+    private String unparsedQuery;
     private String query;
     private Charset charset;
     private String fragment;
@@ -154,7 +155,8 @@ public class URIBuilder {
             if (this.encodedQuery != null) {
                 sb.append("?").append(this.encodedQuery);
             } else if (this.queryParams != null && !this.queryParams.isEmpty()) {
-                sb.append("?").append(encodeUrlForm(this.queryParams));
+                sb.append("?");
+                URLEncodedUtils.format(sb, this.queryParams, '&', this.charset != null ? this.charset : Consts.UTF_8);
             } else if (this.query != null) {
                 sb.append("?").append(encodeUric(this.query));
             }
@@ -198,11 +200,20 @@ public class URIBuilder {
         this.encodedPath = uri.getRawPath();
         this.path = uri.getPath();
         this.encodedQuery = uri.getRawQuery();
-        this.queryParams = parseQuery(uri.getRawQuery(), this.charset != null ? this.charset : Consts.UTF_8);
+        // The query is only parsed once its parameters are accessed or modified
+        this.queryParams = null;
+        this.unparsedQuery = uri.getRawQuery();
         this.encodedFragment = uri.getRawFragment();
         this.fragment = uri.getFragment();
     }
 
+    private void ensureQueryParams() {
+        if (this.unparsedQuery != null) {
+            this.queryParams = parseQuery(this.unparsedQuery, Consts.UTF_8);
+            this.unparsedQuery = null;
+        }
+    }
+
     private String encodeUserInfo(final String userInfo) {
         return URLEncodedUtils.encUserInfo(userInfo, this.charset != null ? this.charset : Consts.UTF_8);
     }
@@ -211,10 +222,6 @@ public class URIBuilder {
         return URLEncodedUtils.encPath(path, this.charset != null ? this.charset : Consts.UTF_8);
     }
 
-    private String encodeUrlForm(final List<NameValuePair> params) {
-        return URLEncodedUtils.format(params, this.charset != null ? this.charset : Consts.UTF_8);
-    }
-
     private String encodeUric(final String fragment) {
         return URLEncodedUtils.encUric(fragment, this.charset != null ? this.charset : Consts.UTF_8);
     }
@@ -281,6 +288,7 @@ public class URIBuilder {
      * Removes URI query.
      */
     public URIBuilder removeQuery() {
+        this.unparsedQuery = null;
         this.queryParams = null;
         this.query = null;
         this.encodedQuery = null;
@@ -299,6 +307,7 @@ public class URIBuilder {
      */
     @Deprecated
     public URIBuilder setQuery(final String query) {
+        this.unparsedQuery = null;
         this.queryParams = parseQuery(query, this.charset != null ? this.charset : Consts.UTF_8);
         this.query = null;
         this.encodedQuery = null;
@@ -317,6 +326,7 @@ public class URIBuilder {
      * @since 4.3
      */
     public URIBuilder setParameters(final List <NameValuePair> nvps) {
+        this.unparsedQuery = null;
         if (this.queryParams == null) {
             this.queryParams = new ArrayList<NameValuePair>();
         } else {
@@ -340,6 +350,7 @@ public class URIBuilder {
      * @since 4.3
      */
     public URIBuilder addParameters(final List <NameValuePair> nvps) {
+        ensureQueryParams();
         if (this.queryParams == null) {
             this.queryParams = new ArrayList<NameValuePair>();
         }
@@ -361,6 +372,7 @@ public class URIBuilder {
      * @since 4.3
      */
     public URIBuilder setParameters(final NameValuePair... nvps) {
+        this.unparsedQuery = null;
         if (this.queryParams == null) {
             this.queryParams = new ArrayList<NameValuePair>();
         } else {
@@ -384,6 +396,7 @@ public class URIBuilder {
      * </p>
      */
     public URIBuilder addParameter(final String param, final String value) {
+        ensureQueryParams();
         if (this.queryParams == null) {
             this.queryParams = new ArrayList<NameValuePair>();
         }
@@ -403,6 +416,7 @@ public class URIBuilder {
      * </p>
      */
     public URIBuilder setParameter(final String param, final String value) {
+        ensureQueryParams();
         if (this.queryParams == null) {
             this.queryParams = new ArrayList<NameValuePair>();
         }
@@ -427,6 +441,7 @@ public class URIBuilder {
      * @since 4.3
      */
     public URIBuilder clearParameters() {
+        this.unparsedQuery = null;
         this.queryParams = null;
         this.encodedQuery = null;
         this.encodedSchemeSpecificPart = null;
@@ -444,6 +459,7 @@ public class URIBuilder {
      * @since 4.3
      */
     public URIBuilder setCustomQuery(final String query) {
+        this.unparsedQuery = null;
         this.query = query;
         this.encodedQuery = null;
         this.encodedSchemeSpecificPart = null;
@@ -496,6 +512,7 @@ public class URIBuilder {
     }
 
     public List<NameValuePair> getQueryParams() {
+        ensureQueryParams();
         if (this.queryParams != null) {
             return new ArrayList<NameValuePair>(this.queryParams);
         } else {
@@ -68,6 +68,7 @@ public class URLEncodedUtils {
     private static final char QP_SEP_A = '&';
     private static final char QP_SEP_S = ';';
     private static final String NAME_VALUE_SEPARATOR = "=";
+    private static final char[] DEFAULT_SEPARATORS = new char[] { QP_SEP_A, QP_SEP_S };
 
     /**
      * @deprecated 4.5 Use {@link #parse(URI, Charset)}
@@ -244,9 +245,7 @@ public class URLEncodedUtils {
         if (s == null) {
             return createEmptyList();
         }
-        final CharArrayBuffer buffer = new CharArrayBuffer(s.length());
-        buffer.append(s);
-        return parse(buffer, charset, QP_SEP_A, QP_SEP_S);
+        return parseToList(s, charset, DEFAULT_SEPARATORS);
     }
 
     /**
@@ -267,9 +266,7 @@ public class URLEncodedUtils {
         if (s == null) {
             return createEmptyList();
         }
-        final CharArrayBuffer buffer = new CharArrayBuffer(s.length());
-        buffer.append(s);
-        return parse(buffer, charset, separators);
+        return parseToList(s, charset, separators);
     }
 
     /**
@@ -289,35 +286,174 @@ public class URLEncodedUtils {
     public static List<NameValuePair> parse(
             final CharArrayBuffer buf, final Charset charset, final char... separators) {
         Args.notNull(buf, "Char array buffer");
-        final TokenParser tokenParser = TokenParser.INSTANCE;
-        final BitSet delimSet = new BitSet();
-        for (final char separator: separators) {
-            delimSet.set(separator);
-        }
-        final ParserCursor cursor = new ParserCursor(0, buf.length());
+        return parseToList(buf, charset, separators);
+    }
+
+    private static List<NameValuePair> parseToList(
+            final CharSequence s, final Charset charset, final char... separators) {
         final List<NameValuePair> list = new ArrayList<NameValuePair>();
-        while (!cursor.atEnd()) {
-            delimSet.set('=');
-            final String name = tokenParser.parseToken(buf, cursor, delimSet);
+        parse(s, charset, new ParameterHandler() {
+
+            @Override
+            public void handle(final String name, final String value) {
+                list.add(new BasicNameValuePair(name, value));
+            }
+
+        }, separators);
+        return list;
+    }
+
+    /**
+     * Parses parameters from the given character sequence using the given character encoding
+     * and passes them to the handler without collecting them first. Names and values are
+     * trimmed and decoded exactly as by {@link #parse(String, Charset, char...)}; parameters
+     * with an empty name are skipped.
+     * <p>
+     * Tokens without whitespace or quotes, which make up most query strings, are decoded
+     * straight from the input. Tokens that contain no escape sequences and no {@code '+'}
+     * are not copied at all if the charset is ASCII compatible.
+     * </p>
+     *
+     * @param s
+     *            text to parse.
+     * @param charset
+     *            Encoding to use when decoding the parameters, {@code UTF-8} if {@code null}.
+     * @param handler
+     *            receives the decoded parameters.
+     * @param separators
+     *            element separators, by convention {@code '&'} and {@code ';'} if none are given.
+     *
+     * @since 4.5.6
+     */
+    public static void parse(
+            final CharSequence s,
+            final Charset charset,
+            final ParameterHandler handler,
+            final char... separators) {
+        Args.notNull(s, "Char sequence");
+        Args.notNull(handler, "Parameter handler");
+        final Charset cs = charset != null ? charset : Consts.UTF_8;
+        final char[] seps = separators != null && separators.length > 0 ? separators : DEFAULT_SEPARATORS;
+        final int len = s.length();
+        CharArrayBuffer buffer = null;
+        int pos = 0;
+        while (pos < len) {
+            final int nameStart = pos;
+            boolean plainName = true;
+            for (; pos < len; pos++) {
+                final char ch = s.charAt(pos);
+                if (ch == '=' || isSeparator(ch, seps)) {
+                    break;
+                }
+                if (TokenParser.isWhitespace(ch)) {
+                    plainName = false;
+                }
+            }
+            final int nameEnd = pos;
             String value = null;
-            if (!cursor.atEnd()) {
-                final int delim = buf.charAt(cursor.getPos());
-                cursor.updatePos(cursor.getPos() + 1);
+            if (pos < len) {
+                final char delim = s.charAt(pos);
+                pos++;
                 if (delim == '=') {
-                    delimSet.clear('=');
-                    value = tokenParser.parseValue(buf, cursor, delimSet);
-                    if (!cursor.atEnd()) {
-                        cursor.updatePos(cursor.getPos() + 1);
+                    final int valueStart = pos;
+                    boolean plainValue = true;
+                    boolean quoted = false;
+                    for (; pos < len; pos++) {
+                        final char ch = s.charAt(pos);
+                        if (isSeparator(ch, seps)) {
+                            break;
+                        }
+                        if (ch == '"') {
+                            quoted = true;
+                            break;
+                        }
+                        if (TokenParser.isWhitespace(ch)) {
+                            plainValue = false;
+                        }
+                    }
+                    if (quoted) {
+                        // Quoted strings may contain separators; leave them to the token parser
+                        if (buffer == null) {
+                            buffer = toBuffer(s);
+                        }
+                        final BitSet delimSet = new BitSet();
+                        for (final char separator: seps) {
+                            delimSet.set(separator);
+                        }
+                        final ParserCursor cursor = new ParserCursor(valueStart, len);
+                        final String token = TokenParser.INSTANCE.parseValue(buffer, cursor, delimSet);
+                        value = urlDecode(token, 0, token.length(), cs, true);
+                        pos = cursor.getPos();
+                    } else if (plainValue) {
+                        value = urlDecode(s, valueStart, pos, cs, true);
+                    } else {
+                        final String token = collapseWhitespace(s, valueStart, pos);
+                        value = urlDecode(token, 0, token.length(), cs, true);
+                    }
+                    if (pos < len) {
+                        pos++;
                     }
                 }
             }
-            if (!name.isEmpty()) {
-                list.add(new BasicNameValuePair(
-                        decodeFormFields(name, charset),
-                        decodeFormFields(value, charset)));
+            if (plainName) {
+                if (nameEnd > nameStart) {
+                    handler.handle(urlDecode(s, nameStart, nameEnd, cs, true), value);
+                }
+            } else {
+                final String token = collapseWhitespace(s, nameStart, nameEnd);
+                if (!token.isEmpty()) {
+                    handler.handle(urlDecode(token, 0, token.length(), cs, true), value);
+                }
             }
         }
-        return list;
+    }
+
+    private static boolean isSeparator(final char ch, final char[] separators) {
+        for (final char separator: separators) {
+            if (ch == separator) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String substring(final CharSequence s, final int start, final int end) {
+        if (s instanceof String) {
+            return ((String) s).substring(start, end);
+        }
+        // CharArrayBuffer#subSequence cannot be relied upon here as it takes the end index for a length
+        return new StringBuilder(end - start).append(s, start, end).toString();
+    }
+
+    private static CharArrayBuffer toBuffer(final CharSequence s) {
+        if (s instanceof CharArrayBuffer) {
+            return (CharArrayBuffer) s;
+        }
+        final CharArrayBuffer buffer = new CharArrayBuffer(s.length());
+        buffer.append(s.toString());
+        return buffer;
+    }
+
+    /**
+     * Trims the given portion of text and replaces every run of whitespace
+     * with a single space, the way {@link TokenParser} does.
+     */
+    private static String collapseWhitespace(final CharSequence s, final int start, final int end) {
+        final StringBuilder buf = new StringBuilder(end - start);
+        boolean whitespace = false;
+        for (int i = start; i < end; i++) {
+            final char ch = s.charAt(i);
+            if (TokenParser.isWhitespace(ch)) {
+                whitespace = true;
+            } else {
+                if (whitespace && buf.length() > 0) {
+                    buf.append(' ');
+                }
+                buf.append(ch);
+                whitespace = false;
+            }
+        }
+        return buf.toString();
     }
 
     /**
@@ -349,20 +485,7 @@ public class URLEncodedUtils {
             final List <? extends NameValuePair> parameters,
             final char parameterSeparator,
             final String charset) {
-        final StringBuilder result = new StringBuilder();
-        for (final NameValuePair parameter : parameters) {
-            final String encodedName = encodeFormFields(parameter.getName(), charset);
-            final String encodedValue = encodeFormFields(parameter.getValue(), charset);
-            if (result.length() > 0) {
-                result.append(parameterSeparator);
-            }
-            result.append(encodedName);
-            if (encodedValue != null) {
-                result.append(NAME_VALUE_SEPARATOR);
-                result.append(encodedValue);
-            }
-        }
-        return result.toString();
+        return format(parameters, parameterSeparator, charset != null ? Charset.forName(charset) : null);
     }
 
     /**
@@ -396,21 +519,42 @@ public class URLEncodedUtils {
             final Iterable<? extends NameValuePair> parameters,
             final char parameterSeparator,
             final Charset charset) {
-        Args.notNull(parameters, "Parameters");
         final StringBuilder result = new StringBuilder();
+        format(result, parameters, parameterSeparator, charset);
+        return result.toString();
+    }
+
+    /**
+     * Appends the given parameters to the buffer in {@code application/x-www-form-urlencoded}
+     * form, without building intermediate strings for individual names and values.
+     *
+     * @param buf the buffer to append to.
+     * @param parameters  The parameters to include.
+     * @param parameterSeparator The parameter separator, by convention, {@code '&'} or {@code ';'}.
+     * @param charset The encoding to use, {@code UTF-8} if {@code null}.
+     *
+     * @since 4.5.6
+     */
+    public static void format(
+            final StringBuilder buf,
+            final Iterable<? extends NameValuePair> parameters,
+            final char parameterSeparator,
+            final Charset charset) {
+        Args.notNull(buf, "Buffer");
+        Args.notNull(parameters, "Parameters");
+        final Charset cs = charset != null ? charset : Consts.UTF_8;
+        final int start = buf.length();
         for (final NameValuePair parameter : parameters) {
-            final String encodedName = encodeFormFields(parameter.getName(), charset);
-            final String encodedValue = encodeFormFields(parameter.getValue(), charset);
-            if (result.length() > 0) {
-                result.append(parameterSeparator);
+            if (buf.length() > start) {
+                buf.append(parameterSeparator);
             }
-            result.append(encodedName);
-            if (encodedValue != null) {
-                result.append(NAME_VALUE_SEPARATOR);
-                result.append(encodedValue);
+            urlEncode(buf, String.valueOf(parameter.getName()), cs, URLENCODER, true);
+            final String value = parameter.getValue();
+            if (value != null) {
+                buf.append(NAME_VALUE_SEPARATOR);
+                urlEncode(buf, value, cs, URLENCODER, true);
             }
         }
-        return result.toString();
     }
 
     /**
@@ -517,12 +661,19 @@ public class URLEncodedUtils {
         URIC.or(UNRESERVED);
     }
 
-    private static final int RADIX = 16;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
 
     private static List<NameValuePair> createEmptyList() {
         return new ArrayList<NameValuePair>(0);
     }
 
+    /**
+     * Tells whether the charset encodes US-ASCII characters as single bytes of the same value.
+     */
+    private static boolean isAsciiCompatible(final Charset charset) {
+        return Consts.UTF_8.equals(charset) || Consts.ISO_8859_1.equals(charset) || Consts.ASCII.equals(charset);
+    }
+
     private static String urlEncode(
             final String content,
             final Charset charset,
@@ -531,23 +682,48 @@ public class URLEncodedUtils {
         if (content == null) {
             return null;
         }
-        final StringBuilder buf = new StringBuilder();
-        final ByteBuffer bb = charset.encode(content);
-        while (bb.hasRemaining()) {
-            final int b = bb.get() & 0xff;
-            if (safechars.get(b)) {
-                buf.append((char) b);
-            } else if (blankAsPlus && b == ' ') {
-                buf.append('+');
-            } else {
-                buf.append("%");
-                final char hex1 = Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, RADIX));
-                final char hex2 = Character.toUpperCase(Character.forDigit(b & 0xF, RADIX));
-                buf.append(hex1);
-                buf.append(hex2);
+        final StringBuilder buf = new StringBuilder(content.length());
+        urlEncode(buf, content, charset, safechars, blankAsPlus);
+        return buf.toString();
+    }
+
+    private static void urlEncode(
+            final StringBuilder buf,
+            final String content,
+            final Charset charset,
+            final BitSet safechars,
+            final boolean blankAsPlus) {
+        int i = 0;
+        if (isAsciiCompatible(charset)) {
+            // Leading US-ASCII characters need not go through the charset encoder
+            for (; i < content.length(); i++) {
+                final char ch = content.charAt(i);
+                if (ch >= 0x80) {
+                    break;
+                }
+                appendEncoded(buf, ch, safechars, blankAsPlus);
+            }
+            if (i == content.length()) {
+                return;
             }
         }
-        return buf.toString();
+        final ByteBuffer bb = charset.encode(CharBuffer.wrap(content, i, content.length()));
+        while (bb.hasRemaining()) {
+            appendEncoded(buf, bb.get() & 0xff, safechars, blankAsPlus);
+        }
+    }
+
+    private static void appendEncoded(
+            final StringBuilder buf, final int b, final BitSet safechars, final boolean blankAsPlus) {
+        if (safechars.get(b)) {
+            buf.append((char) b);
+        } else if (blankAsPlus && b == ' ') {
+            buf.append('+');
+        } else {
+            buf.append('%');
+            buf.append(HEX_DIGITS[(b >> 4) & 0xF]);
+            buf.append(HEX_DIGITS[b & 0xF]);
+        }
     }
 
     /**
@@ -565,30 +741,51 @@ public class URLEncodedUtils {
         if (content == null) {
             return null;
         }
-        final ByteBuffer bb = ByteBuffer.allocate(content.length());
-        final CharBuffer cb = CharBuffer.wrap(content);
-        while (cb.hasRemaining()) {
-            final char c = cb.get();
-            if (c == '%' && cb.remaining() >= 2) {
-                final char uc = cb.get();
-                final char lc = cb.get();
+        return urlDecode(content, 0, content.length(), charset, plusAsBlank);
+    }
+
+    private static String urlDecode(
+            final CharSequence content,
+            final int start,
+            final int end,
+            final Charset charset,
+            final boolean plusAsBlank) {
+        if (isAsciiCompatible(charset)) {
+            int i = start;
+            for (; i < end; i++) {
+                final char c = content.charAt(i);
+                if (c == '%' || (plusAsBlank && c == '+') || c >= 0x80) {
+                    break;
+                }
+            }
+            if (i == end) {
+                return substring(content, start, end);
+            }
+        }
+        final byte[] bytes = new byte[end - start];
+        int n = 0;
+        int i = start;
+        while (i < end) {
+            final char c = content.charAt(i++);
+            if (c == '%' && end - i >= 2) {
+                final char uc = content.charAt(i++);
+                final char lc = content.charAt(i++);
                 final int u = Character.digit(uc, 16);
                 final int l = Character.digit(lc, 16);
                 if (u != -1 && l != -1) {
-                    bb.put((byte) ((u << 4) + l));
+                    bytes[n++] = (byte) ((u << 4) + l);
                 } else {
-                    bb.put((byte) '%');
-                    bb.put((byte) uc);
-                    bb.put((byte) lc);
+                    bytes[n++] = (byte) '%';
+                    bytes[n++] = (byte) uc;
+                    bytes[n++] = (byte) lc;
                 }
             } else if (plusAsBlank && c == '+') {
-                bb.put((byte) ' ');
+                bytes[n++] = (byte) ' ';
             } else {
-                bb.put((byte) c);
+                bytes[n++] = (byte) c;
             }
         }
-        bb.flip();
-        return charset.decode(bb).toString();
+        return new String(bytes, 0, n, charset);
     }
 
     /**
@@ -605,56 +802,6 @@ public class URLEncodedUtils {
         return urlDecode(content, charset != null ? Charset.forName(charset) : Consts.UTF_8, true);
     }
 
-    /**
-     * Decode/unescape www-url-form-encoded content.
-     *
-     * @param content the content to decode, will decode '+' as space
-     * @param charset the charset to use
-     * @return encoded string
-     */
-    private static String decodeFormFields (final String content, final Charset charset) {
-        if (content == null) {
-            return null;
-        }
-        return urlDecode(content, charset != null ? charset : Consts.UTF_8, true);
-    }
-
-    /**
-     * Encode/escape www-url-form-encoded content.
-     * <p>
-     * Uses the {@link #URLENCODER} set of characters, rather than
-     * the {@link #UNRESERVED} set; this is for compatibilty with previous
-     * releases, URLEncoder.encode() and most browsers.
-     *
-     * @param content the content to encode, will convert space to '+'
-     * @param charset the charset to use
-     * @return encoded string
-     */
-    private static String encodeFormFields(final String content, final String charset) {
-        if (content == null) {
-            return null;
-        }
-        return urlEncode(content, charset != null ? Charset.forName(charset) : Consts.UTF_8, URLENCODER, true);
-    }
-
-    /**
-     * Encode/escape www-url-form-encoded content.
-     * <p>
-     * Uses the {@link #URLENCODER} set of characters, rather than
-     * the {@link #UNRESERVED} set; this is for compatibilty with previous
-     * releases, URLEncoder.encode() and most browsers.
-     *
-     * @param content the content to encode, will convert space to '+'
-     * @param charset the charset to use
-     * @return encoded string
-     */
-    private static String encodeFormFields (final String content, final Charset charset) {
-        if (content == null) {
-            return null;
-        }
-        return urlEncode(content, charset != null ? charset : Consts.UTF_8, URLENCODER, true);
-    }
-
     /**
      * Encode a String using the {@link #USERINFO} set of characters.
      * <p>
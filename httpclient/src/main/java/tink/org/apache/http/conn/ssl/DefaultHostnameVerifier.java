@@ -82,9 +82,23 @@ public final class DefaultHostnameVerifier implements HostnameVerifier {
     private final Log log = LogFactory.getLog(getClass());
 
     private final PublicSuffixMatcher publicSuffixMatcher;
+    private final HostnameVerificationCache verificationCache;
 
-    public DefaultHostnameVerifier(final PublicSuffixMatcher publicSuffixMatcher) {
+    /**
+     * @param publicSuffixMatcher the public suffix matcher, may be {@code null}.
+     * @param verificationCache cache of successful verifications, may be {@code null}.
+     *
+     * @since 4.5.6
+     */
+    public DefaultHostnameVerifier(
+            final PublicSuffixMatcher publicSuffixMatcher,
+            final HostnameVerificationCache verificationCache) {
         this.publicSuffixMatcher = publicSuffixMatcher;
+        this.verificationCache = verificationCache;
+    }
+
+    public DefaultHostnameVerifier(final PublicSuffixMatcher publicSuffixMatcher) {
+        this(publicSuffixMatcher, null);
     }
 
     public DefaultHostnameVerifier() {
@@ -108,6 +122,19 @@ public final class DefaultHostnameVerifier implements HostnameVerifier {
 
     public void verify(
             final String host, final X509Certificate cert) throws SSLException {
+        if (this.verificationCache == null) {
+            doVerify(host, cert);
+            return;
+        }
+        final Object key = this.verificationCache.createKey(host, cert);
+        if (!this.verificationCache.isVerified(key)) {
+            doVerify(host, cert);
+            this.verificationCache.verified(key);
+        }
+    }
+
+    private void doVerify(
+            final String host, final X509Certificate cert) throws SSLException {
         final HostNameType hostType = determineHostFormat(host);
         final List<SubjectName> subjectAlts = getSubjectAltNames(cert);
         if (subjectAlts != null && !subjectAlts.isEmpty()) {
@@ -0,0 +1,187 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.conn.ssl;
+
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.util.Args;
+
+/**
+ * Bounded cache of successful host name verifications used by
+ * {@link DefaultHostnameVerifier}. Entries are keyed by the DER encoding
+ * of the peer certificate and the host name, so repeated
+ * connections to the same host presenting the same certificate skip
+ * parsing of the certificate subject and public suffix matching.
+ * Failed verifications are never cached. Once the maximum size is
+ * reached the least recently used entry is discarded.
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class HostnameVerificationCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private final int maxSize;
+    private final Map<Key, Boolean> entries;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    public HostnameVerificationCache(final int maxSize) {
+        super();
+        this.maxSize = Args.positive(maxSize, "Max size");
+        this.entries = new LinkedHashMap<Key, Boolean>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, Boolean> eldest) {
+                return size() > HostnameVerificationCache.this.maxSize;
+            }
+
+        };
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    public HostnameVerificationCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates the cache key of the given host and certificate. Certificates
+     * are compared by their DER encoding, which JSSE implementations hash
+     * only once per certificate instance.
+     */
+    Object createKey(final String host, final X509Certificate cert) {
+        return new Key(cert, host.toLowerCase(Locale.ROOT));
+    }
+
+    boolean isVerified(final Object key) {
+        final boolean verified;
+        synchronized (this.entries) {
+            verified = this.entries.get(key) != null;
+        }
+        if (verified) {
+            this.hits.incrementAndGet();
+        } else {
+            this.misses.incrementAndGet();
+        }
+        return verified;
+    }
+
+    void verified(final Object key) {
+        synchronized (this.entries) {
+            this.entries.put((Key) key, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Returns the number of verifications answered from the cache.
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Returns the number of verifications that had to inspect the certificate.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    /**
+     * Removes all entries and resets the hit and miss counters.
+     */
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+        this.hits.set(0);
+        this.misses.set(0);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[size: ").append(size());
+        buffer.append("; max size: ").append(this.maxSize);
+        buffer.append("; hits: ").append(getHits());
+        buffer.append("; misses: ").append(getMisses());
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    static final class Key {
+
+        private final X509Certificate cert;
+        private final String host;
+        private final int hashCode;
+
+        Key(final X509Certificate cert, final String host) {
+            this.cert = cert;
+            this.host = host;
+            this.hashCode = 31 * cert.hashCode() + host.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof Key) {
+                final Key that = (Key) obj;
+                return this.hashCode == that.hashCode && this.host.equals(that.host)
+                        && (this.cert == that.cert || this.cert.equals(that.cert));
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+    }
+
+}
@@ -138,6 +138,24 @@ import tink.org.apache.http.util.TextUtils;
 @SuppressWarnings("deprecation")
 public class SSLConnectionSocketFactory implements LayeredConnectionSocketFactory {
 
+    /**
+     * Attribute name of a {@link Long} object that represents the duration
+     * in nanoseconds of the last TLS handshake, including host name verification,
+     * performed in the given execution context.
+     *
+     * @since 4.5.6
+     */
+    public static final String HANDSHAKE_TIME = "http.ssl.handshake-time";
+
+    /**
+     * Attribute name of a {@link Boolean} object that tells whether the last
+     * TLS handshake performed in the given execution context resumed an
+     * existing session. Only set if {@link SSLSessionResumption} is enabled.
+     *
+     * @since 4.5.6
+     */
+    public static final String SESSION_RESUMED = "http.ssl.session-resumed";
+
     public static final String TLS   = "TLS";
     public static final String SSL   = "SSL";
     public static final String SSLV2 = "SSLv2";
@@ -201,6 +219,7 @@ public class SSLConnectionSocketFactory implements LayeredConnectionSocketFactor
     private final HostnameVerifier hostnameVerifier;
     private final String[] supportedProtocols;
     private final String[] supportedCipherSuites;
+    private final SSLSessionResumption sessionResumption;
 
     public SSLConnectionSocketFactory(final SSLContext sslContext) {
         this(sslContext, getDefaultHostnameVerifier());
@@ -276,6 +295,25 @@ public class SSLConnectionSocketFactory implements LayeredConnectionSocketFactor
                 supportedProtocols, supportedCipherSuites, hostnameVerifier);
     }
 
+    /**
+     * Creates a socket factory that tracks TLS session resumption. The session
+     * cache size and timeout of the given resumption settings are applied to
+     * the client session context of {@code sslContext}.
+     *
+     * @since 4.5.6
+     */
+    public SSLConnectionSocketFactory(
+            final SSLContext sslContext,
+            final String[] supportedProtocols,
+            final String[] supportedCipherSuites,
+            final HostnameVerifier hostnameVerifier,
+            final SSLSessionResumption sessionResumption) {
+        this(Args.notNull(sslContext, "SSL context").getSocketFactory(),
+                supportedProtocols, supportedCipherSuites, hostnameVerifier,
+                Args.notNull(sessionResumption, "Session resumption"));
+        sessionResumption.configure(sslContext);
+    }
+
     /**
      * @since 4.4
      */
@@ -293,10 +331,30 @@ public class SSLConnectionSocketFactory implements LayeredConnectionSocketFactor
             final String[] supportedProtocols,
             final String[] supportedCipherSuites,
             final HostnameVerifier hostnameVerifier) {
+        this(socketfactory, supportedProtocols, supportedCipherSuites, hostnameVerifier, null);
+    }
+
+    private SSLConnectionSocketFactory(
+            final javax.net.ssl.SSLSocketFactory socketfactory,
+            final String[] supportedProtocols,
+            final String[] supportedCipherSuites,
+            final HostnameVerifier hostnameVerifier,
+            final SSLSessionResumption sessionResumption) {
         this.socketfactory = Args.notNull(socketfactory, "SSL socket factory");
         this.supportedProtocols = supportedProtocols;
         this.supportedCipherSuites = supportedCipherSuites;
         this.hostnameVerifier = hostnameVerifier != null ? hostnameVerifier : getDefaultHostnameVerifier();
+        this.sessionResumption = sessionResumption;
+    }
+
+    /**
+     * Returns the session resumption settings and statistics of this factory
+     * or {@code null} if session resumption is not tracked.
+     *
+     * @since 4.5.6
+     */
+    public SSLSessionResumption getSessionResumption() {
+        return this.sessionResumption;
     }
 
     /**
@@ -347,9 +405,7 @@ public class SSLConnectionSocketFactory implements LayeredConnectionSocketFactor
         // Setup SSL layering if necessary
         if (sock instanceof SSLSocket) {
             final SSLSocket sslsock = (SSLSocket) sock;
-            this.log.debug("Starting handshake");
-            sslsock.startHandshake();
-            verifyHostname(sslsock, host.getHostName());
+            handshake(sslsock, host.getHostName(), remoteAddress.getPort(), context);
             return sock;
         } else {
             return createLayeredSocket(sock, host.getHostName(), remoteAddress.getPort(), context);
@@ -392,10 +448,34 @@ public class SSLConnectionSocketFactory implements LayeredConnectionSocketFactor
         }
 
         prepareSocket(sslsock);
+        handshake(sslsock, target, port, context);
+        return sslsock;
+    }
+
+    private void handshake(
+            final SSLSocket sslsock,
+            final String target,
+            final int port,
+            final HttpContext context) throws IOException {
         this.log.debug("Starting handshake");
+        final long startTime = System.currentTimeMillis();
+        final long start = System.nanoTime();
         sslsock.startHandshake();
         verifyHostname(sslsock, target);
-        return sslsock;
+        final long duration = System.nanoTime() - start;
+        if (context != null) {
+            context.setAttribute(HANDSHAKE_TIME, Long.valueOf(duration));
+        }
+        if (this.sessionResumption != null) {
+            final boolean resumed = this.sessionResumption.handshakeCompleted(
+                    target, port, sslsock.getSession(), startTime, duration);
+            if (this.log.isDebugEnabled()) {
+                this.log.debug(resumed ? "Resumed TLS session" : "Established new TLS session");
+            }
+            if (context != null) {
+                context.setAttribute(SESSION_RESUMED, Boolean.valueOf(resumed));
+            }
+        }
     }
 
     private void verifyHostname(final SSLSocket sslsock, final String hostname) throws IOException {
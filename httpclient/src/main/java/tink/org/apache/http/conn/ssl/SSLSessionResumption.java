@@ -0,0 +1,272 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.conn.ssl;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+
+import tink.org.apache.http.HttpHost;
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.util.Args;
+
+/**
+ * Opt-in TLS session resumption support for {@link SSLConnectionSocketFactory}.
+ * <p>
+ * JSSE caches client sessions per {@link SSLContext} and offers them for
+ * resumption to the same target host and port. This class sizes that cache
+ * and sets the session timeout, and keeps count of full and abbreviated
+ * (resumed) handshakes together with the time spent in them for every
+ * target. Statistics are kept for at most a fixed number of targets;
+ * handshakes with further targets are only reflected in the totals.
+ * </p>
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class SSLSessionResumption {
+
+    public static final int DEFAULT_MAX_TARGETS = 1000;
+
+    private final int sessionCacheSize;
+    private final int sessionTimeout;
+    private final int maxTargets;
+    private final HandshakeStatistics totals;
+    private final ConcurrentMap<HttpHost, HandshakeStatistics> targets;
+
+    /**
+     * @param sessionCacheSize maximum number of client sessions kept by the
+     *   SSL context, {@code 0} for no limit or a negative value to keep the
+     *   JSSE default.
+     * @param sessionTimeout session timeout in seconds, {@code 0} for no limit
+     *   or a negative value to keep the JSSE default.
+     * @param maxTargets maximum number of targets for which separate
+     *   statistics are kept.
+     */
+    public SSLSessionResumption(final int sessionCacheSize, final int sessionTimeout, final int maxTargets) {
+        super();
+        this.sessionCacheSize = sessionCacheSize;
+        this.sessionTimeout = sessionTimeout;
+        this.maxTargets = Args.notNegative(maxTargets, "Max targets");
+        this.totals = new HandshakeStatistics();
+        this.targets = new ConcurrentHashMap<HttpHost, HandshakeStatistics>();
+    }
+
+    public SSLSessionResumption(final int sessionCacheSize, final int sessionTimeout) {
+        this(sessionCacheSize, sessionTimeout, DEFAULT_MAX_TARGETS);
+    }
+
+    public SSLSessionResumption() {
+        this(-1, -1, DEFAULT_MAX_TARGETS);
+    }
+
+    /**
+     * Applies the session cache size and timeout to the client session
+     * context of the given SSL context.
+     */
+    public void configure(final SSLContext sslContext) {
+        Args.notNull(sslContext, "SSL context");
+        configure(sslContext.getClientSessionContext());
+    }
+
+    void configure(final SSLSessionContext sessionContext) {
+        if (sessionContext == null) {
+            return;
+        }
+        if (this.sessionCacheSize >= 0) {
+            sessionContext.setSessionCacheSize(this.sessionCacheSize);
+        }
+        if (this.sessionTimeout >= 0) {
+            sessionContext.setSessionTimeout(this.sessionTimeout);
+        }
+    }
+
+    /**
+     * Records a completed handshake with the given target.
+     *
+     * @param target the target host.
+     * @param port the target port.
+     * @param session the session established by the handshake.
+     * @param startTime the wall clock time in milliseconds at which the
+     *   handshake was started.
+     * @param duration the duration of the handshake in nanoseconds.
+     * @return {@code true} if the session was resumed, {@code false} if
+     *   a full handshake took place.
+     */
+    public boolean handshakeCompleted(
+            final String target, final int port, final SSLSession session,
+            final long startTime, final long duration) {
+        Args.notNull(target, "Target host");
+        Args.notNull(session, "SSL session");
+        // A resumed session keeps the creation time of the session it was
+        // established with originally
+        final boolean resumed = session.getCreationTime() < startTime;
+        this.totals.record(resumed, duration);
+        final HandshakeStatistics statistics = getOrCreate(new HttpHost(target, port));
+        if (statistics != null) {
+            statistics.record(resumed, duration);
+        }
+        return resumed;
+    }
+
+    private HandshakeStatistics getOrCreate(final HttpHost target) {
+        final HandshakeStatistics statistics = this.targets.get(target);
+        if (statistics != null || this.targets.size() >= this.maxTargets) {
+            return statistics;
+        }
+        final HandshakeStatistics created = new HandshakeStatistics();
+        final HandshakeStatistics existing = this.targets.putIfAbsent(target, created);
+        return existing != null ? existing : created;
+    }
+
+    /**
+     * Returns handshake statistics across all targets.
+     */
+    public HandshakeStatistics getTotals() {
+        return this.totals;
+    }
+
+    /**
+     * Returns the targets for which separate statistics are kept.
+     */
+    public Set<HttpHost> getTargets() {
+        return Collections.unmodifiableSet(this.targets.keySet());
+    }
+
+    /**
+     * Returns handshake statistics of the given target or {@code null}
+     * if none are kept for it.
+     */
+    public HandshakeStatistics getStatistics(final String target, final int port) {
+        return this.targets.get(new HttpHost(target, port));
+    }
+
+    /**
+     * Resets all statistics and forgets the targets seen so far.
+     */
+    public void reset() {
+        this.totals.reset();
+        this.targets.clear();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[session cache size: ").append(this.sessionCacheSize);
+        buffer.append("; session timeout: ").append(this.sessionTimeout);
+        buffer.append("; ").append(this.totals);
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    /**
+     * Handshake counters of a single target or of all targets.
+     */
+    @Contract(threading = ThreadingBehavior.SAFE)
+    public static final class HandshakeStatistics {
+
+        private final AtomicLong fullHandshakes;
+        private final AtomicLong abbreviatedHandshakes;
+        private final AtomicLong fullHandshakeTime;
+        private final AtomicLong abbreviatedHandshakeTime;
+
+        HandshakeStatistics() {
+            super();
+            this.fullHandshakes = new AtomicLong();
+            this.abbreviatedHandshakes = new AtomicLong();
+            this.fullHandshakeTime = new AtomicLong();
+            this.abbreviatedHandshakeTime = new AtomicLong();
+        }
+
+        void record(final boolean resumed, final long duration) {
+            if (resumed) {
+                this.abbreviatedHandshakes.incrementAndGet();
+                this.abbreviatedHandshakeTime.addAndGet(duration);
+            } else {
+                this.fullHandshakes.incrementAndGet();
+                this.fullHandshakeTime.addAndGet(duration);
+            }
+        }
+
+        void reset() {
+            this.fullHandshakes.set(0);
+            this.abbreviatedHandshakes.set(0);
+            this.fullHandshakeTime.set(0);
+            this.abbreviatedHandshakeTime.set(0);
+        }
+
+        public long getFullHandshakes() {
+            return this.fullHandshakes.get();
+        }
+
+        public long getAbbreviatedHandshakes() {
+            return this.abbreviatedHandshakes.get();
+        }
+
+        /**
+         * Returns the total time spent in full handshakes in nanoseconds.
+         */
+        public long getFullHandshakeTime() {
+            return this.fullHandshakeTime.get();
+        }
+
+        /**
+         * Returns the total time spent in abbreviated handshakes in nanoseconds.
+         */
+        public long getAbbreviatedHandshakeTime() {
+            return this.abbreviatedHandshakeTime.get();
+        }
+
+        /**
+         * Returns the share of handshakes that resumed an existing session.
+         */
+        public double getResumptionRatio() {
+            final long abbreviated = getAbbreviatedHandshakes();
+            final long total = abbreviated + getFullHandshakes();
+            return total > 0 ? (double) abbreviated / total : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder buffer = new StringBuilder();
+            buffer.append("full handshakes: ").append(getFullHandshakes());
+            buffer.append("; abbreviated handshakes: ").append(getAbbreviatedHandshakes());
+            buffer.append("; full handshake time: ").append(getFullHandshakeTime());
+            buffer.append("; abbreviated handshake time: ").append(getAbbreviatedHandshakeTime());
+            return buffer.toString();
+        }
+
+    }
+
+}
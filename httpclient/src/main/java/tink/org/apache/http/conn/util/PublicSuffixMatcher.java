@@ -30,8 +30,7 @@ import java.net.IDN;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import tink.org.apache.http.annotation.Contract;
 import tink.org.apache.http.annotation.ThreadingBehavior;
@@ -42,6 +41,14 @@ import tink.org.apache.http.util.Args;
  * <p>
  * An up-to-date list of suffixes can be obtained from
  * <a href="http://publicsuffix.org/">publicsuffix.org</a>
+ * <p>
+ * Rules are kept in a presized open addressing hash table keyed by the
+ * lower-cased rule, in which internationalized rules are also present in
+ * their ASCII (punycode) form. Building the table does not copy rules that
+ * are already in lower case. A lookup walks the host name from right to
+ * left, hashing every suffix incrementally and comparing it in place, and,
+ * for ASCII host names, does not allocate until it returns. The results of
+ * recent lookups are cached.
  *
  * @see org.apache.http.conn.util.PublicSuffixList
  *
@@ -50,8 +57,10 @@ import tink.org.apache.http.util.Args;
 @Contract(threading = ThreadingBehavior.SAFE)
 public final class PublicSuffixMatcher {
 
-    private final Map<String, DomainType> rules;
-    private final Map<String, DomainType> exceptions;
+    private static final int CACHE_SIZE = 256;
+
+    private final RuleTable table;
+    private final AtomicReferenceArray<CachedRoot> cache;
 
     public PublicSuffixMatcher(final Collection<String> rules, final Collection<String> exceptions) {
         this(DomainType.UNKNOWN, rules, exceptions);
@@ -64,16 +73,17 @@ public final class PublicSuffixMatcher {
             final DomainType domainType, final Collection<String> rules, final Collection<String> exceptions) {
         Args.notNull(domainType,  "Domain type");
         Args.notNull(rules,  "Domain suffix rules");
-        this.rules = new ConcurrentHashMap<String, DomainType>(rules.size());
+        final RuleTable table = new RuleTable(rules.size() + (exceptions != null ? exceptions.size() : 0));
         for (final String rule: rules) {
-            this.rules.put(rule, domainType);
+            table.add(rule, domainType, false);
         }
-        this.exceptions = new ConcurrentHashMap<String, DomainType>();
         if (exceptions != null) {
             for (final String exception: exceptions) {
-                this.exceptions.put(exception, domainType);
+                table.add(exception, domainType, true);
             }
         }
+        this.table = table;
+        this.cache = new AtomicReferenceArray<CachedRoot>(CACHE_SIZE);
     }
 
     /**
@@ -81,41 +91,42 @@ public final class PublicSuffixMatcher {
      */
     public PublicSuffixMatcher(final Collection<PublicSuffixList> lists) {
         Args.notNull(lists,  "Domain suffix lists");
-        this.rules = new ConcurrentHashMap<String, DomainType>();
-        this.exceptions = new ConcurrentHashMap<String, DomainType>();
+        int count = 0;
+        for (final PublicSuffixList list: lists) {
+            count += list.getRules().size();
+            if (list.getExceptions() != null) {
+                count += list.getExceptions().size();
+            }
+        }
+        final RuleTable table = new RuleTable(count);
         for (final PublicSuffixList list: lists) {
             final DomainType domainType = list.getType();
             final List<String> rules = list.getRules();
             for (final String rule: rules) {
-                this.rules.put(rule, domainType);
+                table.add(rule, domainType, false);
             }
             final List<String> exceptions = list.getExceptions();
             if (exceptions != null) {
                 for (final String exception: exceptions) {
-                    this.exceptions.put(exception, domainType);
+                    table.add(exception, domainType, true);
                 }
             }
         }
+        this.table = table;
+        this.cache = new AtomicReferenceArray<CachedRoot>(CACHE_SIZE);
     }
 
-    private static boolean hasEntry(final Map<String, DomainType> map, final String rule, final DomainType expectedType) {
-        if (map == null) {
-            return false;
-        }
-        final DomainType domainType = map.get(rule);
-        if (domainType == null) {
-            return false;
-        } else {
-            return expectedType == null || domainType.equals(expectedType);
+    private static boolean isAscii(final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
         }
+        return true;
     }
 
-    private boolean hasRule(final String rule, final DomainType expectedType) {
-        return hasEntry(this.rules, rule, expectedType);
-    }
-
-    private boolean hasException(final String exception, final DomainType expectedType) {
-        return hasEntry(this.exceptions, exception, expectedType);
+    private static boolean hasEntry(final DomainType domainType, final DomainType expectedType) {
+        return domainType != null && (expectedType == null || domainType.equals(expectedType));
     }
 
     /**
@@ -146,33 +157,81 @@ public final class PublicSuffixMatcher {
         if (domain.startsWith(".")) {
             return null;
         }
-        String domainName = null;
-        String segment = domain.toLowerCase(Locale.ROOT);
-        while (segment != null) {
+        final int slot = (domain.hashCode() + (expectedType != null ? expectedType.ordinal() + 1 : 0))
+                & (CACHE_SIZE - 1);
+        final CachedRoot cached = this.cache.get(slot);
+        if (cached != null && cached.expectedType == expectedType && cached.domain.equals(domain)) {
+            return cached.root;
+        }
+        final String root = isAscii(domain)
+                ? findDomainRoot(domain, expectedType)
+                : findDomainRoot(domain.toLowerCase(Locale.ROOT), expectedType);
+        this.cache.set(slot, new CachedRoot(domain, expectedType, root));
+        return root;
+    }
 
-            // An exception rule takes priority over any other matching rule.
-            if (hasException(IDN.toUnicode(segment), expectedType)) {
-                return segment;
+    /**
+     * Walks the labels of the domain from right to left. The longest
+     * suffix that is an exception or a rule, or whose parent has a
+     * wildcard rule, decides the result, with exceptions taking priority
+     * over rules for the same suffix.
+     */
+    private String findDomainRoot(final String domain, final DomainType expectedType) {
+        final RuleTable table = this.table;
+        int hitStart = -1;
+        boolean hitException = false;
+        // Hash of the suffix following the current label and 31 to the power of its length
+        int parentHash = 0;
+        int parentPower = 1;
+        int end = domain.length();
+        while (true) {
+            final int dot = domain.lastIndexOf('.', end - 1);
+            final int start = dot + 1;
+            int hash = parentHash;
+            int power = parentPower;
+            if (end < domain.length()) {
+                hash += '.' * power;
+                power *= 31;
             }
-
-            if (hasRule(IDN.toUnicode(segment), expectedType)) {
+            for (int i = end - 1; i >= start; i--) {
+                hash += RuleTable.toLowerCase(domain.charAt(i)) * power;
+                power *= 31;
+            }
+            final int slot = table.find(domain, start, hash);
+            if (slot >= 0 && hasEntry(table.exceptionTypes[slot], expectedType)) {
+                hitStart = start;
+                hitException = true;
+            } else if ((slot >= 0 && hasEntry(table.ruleTypes[slot], expectedType))
+                    || (end < domain.length() && hasEntry(table.findWildcard(domain, end + 1,
+                            ('*' * 31 + '.') * parentPower + parentHash), expectedType))) {
+                hitStart = start;
+                hitException = false;
+            }
+            if (dot < 0) {
                 break;
             }
-
-            final int nextdot = segment.indexOf('.');
-            final String nextSegment = nextdot != -1 ? segment.substring(nextdot + 1) : null;
-
-            if (nextSegment != null) {
-                if (hasRule("*." + IDN.toUnicode(nextSegment), expectedType)) {
-                    break;
-                }
+            parentHash = hash;
+            parentPower = power;
+            end = dot;
+        }
+        final int rootStart;
+        if (hitStart < 0) {
+            // no rule applies: the last two labels
+            final int lastDot = domain.lastIndexOf('.');
+            if (lastDot < 0) {
+                return null;
             }
-            if (nextdot != -1) {
-                domainName = segment;
+            rootStart = domain.lastIndexOf('.', lastDot - 1) + 1;
+        } else if (hitException) {
+            rootStart = hitStart;
+        } else {
+            // the public suffix plus one label
+            if (hitStart == 0) {
+                return null;
             }
-            segment = nextSegment;
+            rootStart = domain.lastIndexOf('.', hitStart - 2) + 1;
         }
-        return domainName;
+        return domain.substring(rootStart).toLowerCase(Locale.ROOT);
     }
 
     /**
@@ -200,4 +259,179 @@ public final class PublicSuffixMatcher {
         return domainRoot == null;
     }
 
+    /**
+     * Open addressing hash table of lower-cased rules, kept at most two thirds full.
+     * Lookups hash and compare suffixes in place in the domain name, folding
+     * ASCII upper case.
+     */
+    static final class RuleTable {
+
+        private String[] keys;
+        private int[] hashes;
+        DomainType[] ruleTypes;
+        DomainType[] exceptionTypes;
+        private int size;
+
+        RuleTable(final int expectedSize) {
+            int capacity = 4;
+            while (capacity * 2 < expectedSize * 3) {
+                capacity <<= 1;
+            }
+            this.keys = new String[capacity];
+            this.hashes = new int[capacity];
+            this.ruleTypes = new DomainType[capacity];
+            this.exceptionTypes = new DomainType[capacity];
+        }
+
+        void add(final String rule, final DomainType domainType, final boolean exception) {
+            boolean ascii = true;
+            boolean lowerCase = true;
+            for (int i = 0; i < rule.length(); i++) {
+                final char ch = rule.charAt(i);
+                if (ch >= 0x80) {
+                    ascii = false;
+                    break;
+                } else if (ch >= 'A' && ch <= 'Z') {
+                    lowerCase = false;
+                }
+            }
+            if (ascii) {
+                put(lowerCase ? rule : rule.toLowerCase(Locale.ROOT), domainType, exception);
+            } else {
+                put(rule.toLowerCase(Locale.ROOT), domainType, exception);
+                final String punycode;
+                try {
+                    punycode = IDN.toASCII(rule);
+                } catch (final IllegalArgumentException ex) {
+                    return;
+                }
+                put(punycode.toLowerCase(Locale.ROOT), domainType, exception);
+            }
+        }
+
+        private void put(final String key, final DomainType domainType, final boolean exception) {
+            final int hash = key.hashCode();
+            final int mask = this.keys.length - 1;
+            int i = spread(hash) & mask;
+            while (this.keys[i] != null) {
+                if (this.hashes[i] == hash && this.keys[i].equals(key)) {
+                    break;
+                }
+                i = (i + 1) & mask;
+            }
+            if (this.keys[i] == null) {
+                if ((this.size + 1) * 3 > this.keys.length * 2) {
+                    resize();
+                    put(key, domainType, exception);
+                    return;
+                }
+                this.keys[i] = key;
+                this.hashes[i] = hash;
+                this.size++;
+            }
+            if (exception) {
+                this.exceptionTypes[i] = domainType;
+            } else {
+                this.ruleTypes[i] = domainType;
+            }
+        }
+
+        private void resize() {
+            final String[] oldKeys = this.keys;
+            final int[] oldHashes = this.hashes;
+            final DomainType[] oldRuleTypes = this.ruleTypes;
+            final DomainType[] oldExceptionTypes = this.exceptionTypes;
+            final int capacity = oldKeys.length * 2;
+            this.keys = new String[capacity];
+            this.hashes = new int[capacity];
+            this.ruleTypes = new DomainType[capacity];
+            this.exceptionTypes = new DomainType[capacity];
+            final int mask = capacity - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != null) {
+                    int i = spread(oldHashes[j]) & mask;
+                    while (this.keys[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    this.keys[i] = oldKeys[j];
+                    this.hashes[i] = oldHashes[j];
+                    this.ruleTypes[i] = oldRuleTypes[j];
+                    this.exceptionTypes[i] = oldExceptionTypes[j];
+                }
+            }
+        }
+
+        /**
+         * Returns the slot of the rule equal to the suffix of {@code s} at
+         * {@code start}, or {@code -1}. {@code hash} must be the hash of the
+         * lower-cased suffix.
+         */
+        int find(final String s, final int start, final int hash) {
+            final int mask = this.keys.length - 1;
+            final int len = s.length() - start;
+            for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+                final String key = this.keys[i];
+                if (key == null) {
+                    return -1;
+                }
+                if (this.hashes[i] == hash && key.length() == len && equalsLowerCase(key, 0, s, start)) {
+                    return i;
+                }
+            }
+        }
+
+        /**
+         * Returns the type of the wildcard rule for the suffix of {@code s}
+         * at {@code start}, or {@code null}. {@code hash} must be the hash of
+         * the lower-cased suffix prefixed with {@code "*."}.
+         */
+        DomainType findWildcard(final String s, final int start, final int hash) {
+            final int mask = this.keys.length - 1;
+            final int len = s.length() - start + 2;
+            for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+                final String key = this.keys[i];
+                if (key == null) {
+                    return null;
+                }
+                if (this.hashes[i] == hash && key.length() == len
+                        && key.charAt(0) == '*' && key.charAt(1) == '.' && equalsLowerCase(key, 2, s, start)) {
+                    return this.ruleTypes[i];
+                }
+            }
+        }
+
+        private static int spread(final int h) {
+            final int x = h * 0x9E3779B9;
+            return x ^ (x >>> 16);
+        }
+
+        static char toLowerCase(final char ch) {
+            return ch >= 'A' && ch <= 'Z' ? (char) (ch + ('a' - 'A')) : ch;
+        }
+
+        private static boolean equalsLowerCase(final String key, final int offset, final String s, final int start) {
+            for (int i = offset, j = start; i < key.length(); i++, j++) {
+                if (key.charAt(i) != toLowerCase(s.charAt(j))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    static final class CachedRoot {
+
+        final String domain;
+        final DomainType expectedType;
+        final String root;
+
+        CachedRoot(final String domain, final DomainType expectedType, final String root) {
+            this.domain = domain;
+            this.expectedType = expectedType;
+            this.root = root;
+        }
+
+    }
+
 }
@@ -0,0 +1,332 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.impl.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.client.LatencyAwareBackoffManager;
+import tink.org.apache.http.conn.routing.HttpRoute;
+import tink.org.apache.http.pool.ConnPoolControl;
+import tink.org.apache.http.util.Args;
+
+/**
+ * <p>The {@code AdaptiveBackoffManager} manages a dynamic per-route
+ * connection limit much like {@link AIMDBackoffManager}, but keeps its
+ * per-route state in lock-free structures so that routes never contend
+ * with each other, and in addition to the error signal reported through
+ * {@link #backOff(HttpRoute)} reacts to observed response latency.</p>
+ *
+ * <p>Latency samples reported through {@link #recordLatency(HttpRoute, long, TimeUnit)}
+ * feed two exponentially weighted moving averages per route: a short-term
+ * one that tracks the current round-trip time and a long-term one that
+ * serves as the baseline. On each {@link #probe(HttpRoute)} the ratio
+ * {@code tolerance * baseline / current} is used as a gradient: while the
+ * backend responds within tolerance the limit is increased additively up
+ * to the per-host cap, once latency degrades beyond tolerance the limit is
+ * scaled down by the gradient (never by more than half per adjustment).
+ * This allows load to be shed from a slowing backend before it starts
+ * failing requests.</p>
+ *
+ * <p>All adjustments of a given route are subject to the same cooldown
+ * period as in {@link AIMDBackoffManager}. The current limit of every
+ * route is published through {@link #getLimit(HttpRoute)} and
+ * {@link #getLimits()}.</p>
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class AdaptiveBackoffManager implements LatencyAwareBackoffManager {
+
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final ConnPoolControl<HttpRoute> connPerRoute;
+    private final Clock clock;
+    private final ConcurrentMap<HttpRoute, RouteState> routeStates;
+
+    private volatile long coolDown = 5 * 1000L;
+    private volatile double backoffFactor = 0.5;
+    private volatile int cap = 2; // Per RFC 2616 sec 8.1.4
+    private volatile double tolerance = 1.5;
+    private volatile double shortTermWeight = 0.1;
+    private volatile double longTermWeight = 0.01;
+
+    /**
+     * Creates an {@code AdaptiveBackoffManager} to manage
+     * per-host connection pool sizes represented by the
+     * given {@link ConnPoolControl}.
+     * @param connPerRoute per-host routing maximums to
+     *   be managed
+     */
+    public AdaptiveBackoffManager(final ConnPoolControl<HttpRoute> connPerRoute) {
+        this(connPerRoute, new SystemClock());
+    }
+
+    AdaptiveBackoffManager(final ConnPoolControl<HttpRoute> connPerRoute, final Clock clock) {
+        Args.notNull(connPerRoute, "Connection pool control");
+        this.connPerRoute = connPerRoute;
+        this.clock = clock;
+        this.routeStates = new ConcurrentHashMap<HttpRoute, RouteState>();
+    }
+
+    private RouteState getState(final HttpRoute route) {
+        RouteState state = this.routeStates.get(route);
+        if (state == null) {
+            final RouteState newState = new RouteState(this.connPerRoute.getMaxPerRoute(route));
+            state = this.routeStates.putIfAbsent(route, newState);
+            if (state == null) {
+                state = newState;
+            }
+        }
+        return state;
+    }
+
+    @Override
+    public void backOff(final HttpRoute route) {
+        final RouteState state = getState(route);
+        final long now = this.clock.getCurrentTime();
+        if (!claim(state.lastBackoff, now)) {
+            return;
+        }
+        for (;;) {
+            final int curr = state.limit.get();
+            final int next = curr <= 1 ? 1 : (int) Math.floor(this.backoffFactor * curr);
+            if (state.limit.compareAndSet(curr, Math.max(next, 1))) {
+                break;
+            }
+        }
+        publish(route, state);
+    }
+
+    @Override
+    public void probe(final HttpRoute route) {
+        final RouteState state = getState(route);
+        final long now = this.clock.getCurrentTime();
+        if (now - state.lastBackoff.get() < this.coolDown) {
+            return;
+        }
+        if (!claim(state.lastProbe, now)) {
+            return;
+        }
+        final double gradient = state.getGradient(this.tolerance);
+        for (;;) {
+            final int curr = state.limit.get();
+            final int next;
+            if (gradient < 1.0) {
+                next = Math.max(1, (int) Math.floor(curr * Math.max(gradient, MIN_GRADIENT)));
+            } else {
+                next = curr >= this.cap ? this.cap : curr + 1;
+            }
+            if (state.limit.compareAndSet(curr, next)) {
+                break;
+            }
+        }
+        publish(route, state);
+    }
+
+    /**
+     * Records the time it took the given route to respond to a request.
+     * The sample is taken into account on the next {@link #probe(HttpRoute)}.
+     *
+     * @param route the route the request was executed on
+     * @param latency the observed latency, must not be negative
+     * @param tunit the time unit of {@code latency}
+     */
+    @Override
+    public void recordLatency(final HttpRoute route, final long latency, final TimeUnit tunit) {
+        Args.notNull(route, "Route");
+        Args.notNegative(latency, "Latency");
+        Args.notNull(tunit, "Time unit");
+        final RouteState state = getState(route);
+        final double sample = tunit.toNanos(latency);
+        state.shortTerm.update(sample, this.shortTermWeight);
+        state.longTerm.update(sample, this.longTermWeight);
+    }
+
+    /**
+     * Claims the adjustment slot guarded by {@code last} if the cooldown
+     * has elapsed, so that at most one thread adjusts a route per period.
+     */
+    private boolean claim(final AtomicLong last, final long now) {
+        final long prev = last.get();
+        return now - prev >= this.coolDown && last.compareAndSet(prev, now);
+    }
+
+    /**
+     * Pushes the current limit to the pool, re-reading it afterwards so
+     * that racing adjustments cannot leave a stale value behind.
+     */
+    private void publish(final HttpRoute route, final RouteState state) {
+        int limit;
+        do {
+            limit = state.limit.get();
+            this.connPerRoute.setMaxPerRoute(route, limit);
+        } while (limit != state.limit.get());
+    }
+
+    /**
+     * Returns the current connection limit of the given route.
+     *
+     * @param route the route
+     * @return the limit managed for the route, or the current pool
+     *   maximum if the route has not been seen yet
+     */
+    public int getLimit(final HttpRoute route) {
+        final RouteState state = this.routeStates.get(route);
+        return state != null ? state.limit.get() : this.connPerRoute.getMaxPerRoute(route);
+    }
+
+    /**
+     * Returns a snapshot of the connection limits of all routes
+     * managed so far.
+     *
+     * @return route limits
+     */
+    public Map<HttpRoute, Integer> getLimits() {
+        final Map<HttpRoute, Integer> limits = new HashMap<HttpRoute, Integer>();
+        for (final Map.Entry<HttpRoute, RouteState> entry: this.routeStates.entrySet()) {
+            limits.put(entry.getKey(), Integer.valueOf(entry.getValue().limit.get()));
+        }
+        return limits;
+    }
+
+    /**
+     * Sets the factor to use when backing off on error; the new
+     * per-host limit will be roughly the current max times
+     * this factor. Pool sizes are never decreased below 1.
+     * Defaults to 0.5.
+     * @param d must be between 0.0 and 1.0, exclusive.
+     */
+    public void setBackoffFactor(final double d) {
+        Args.check(d > 0.0 && d < 1.0, "Backoff factor must be 0.0 < f < 1.0");
+        this.backoffFactor = d;
+    }
+
+    /**
+     * Sets the amount of time, in milliseconds, to wait between
+     * adjustments in pool sizes for a given host. Defaults
+     * to 5000L (5 seconds).
+     * @param l must be positive
+     */
+    public void setCooldownMillis(final long l) {
+        Args.positive(l, "Cool down");
+        this.coolDown = l;
+    }
+
+    /**
+     * Sets the absolute maximum per-host connection pool size to
+     * probe up to; defaults to 2 (the default per-host max).
+     * @param cap must be &gt;= 1
+     */
+    public void setPerHostConnectionCap(final int cap) {
+        Args.positive(cap, "Per host connection cap");
+        this.cap = cap;
+    }
+
+    /**
+     * Sets how much the short-term latency may exceed the long-term
+     * baseline before the limit is reduced. Defaults to 1.5.
+     * @param tolerance must be &gt;= 1.0
+     */
+    public void setLatencyTolerance(final double tolerance) {
+        Args.check(tolerance >= 1.0, "Latency tolerance must be >= 1.0");
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Sets the number of samples the short-term and long-term latency
+     * averages roughly span. Defaults to 10 and 100.
+     * @param shortTerm short-term window, must be positive
+     * @param longTerm long-term window, must be greater than {@code shortTerm}
+     */
+    public void setLatencyWindows(final int shortTerm, final int longTerm) {
+        Args.positive(shortTerm, "Short term window");
+        Args.check(longTerm > shortTerm, "Long term window must be greater than short term window");
+        this.shortTermWeight = 1.0 / shortTerm;
+        this.longTermWeight = 1.0 / longTerm;
+    }
+
+    static class RouteState {
+
+        final AtomicInteger limit;
+        final AtomicLong lastBackoff;
+        final AtomicLong lastProbe;
+        final MovingAverage shortTerm;
+        final MovingAverage longTerm;
+
+        RouteState(final int limit) {
+            this.limit = new AtomicInteger(limit);
+            this.lastBackoff = new AtomicLong(0L);
+            this.lastProbe = new AtomicLong(0L);
+            this.shortTerm = new MovingAverage();
+            this.longTerm = new MovingAverage();
+        }
+
+        double getGradient(final double tolerance) {
+            final double current = this.shortTerm.get();
+            final double baseline = this.longTerm.get();
+            if (current <= 0.0 || baseline <= 0.0) {
+                return 1.0;
+            }
+            return Math.min(1.0, tolerance * baseline / current);
+        }
+
+    }
+
+    /**
+     * Exponentially weighted moving average updated with CAS; a value
+     * of zero means no sample has been recorded yet.
+     */
+    static class MovingAverage {
+
+        private final AtomicLong bits = new AtomicLong(Double.doubleToLongBits(0.0));
+
+        double get() {
+            return Double.longBitsToDouble(this.bits.get());
+        }
+
+        void update(final double sample, final double weight) {
+            for (;;) {
+                final long prevBits = this.bits.get();
+                final double prev = Double.longBitsToDouble(prevBits);
+                final double next = prev <= 0.0 ? sample : prev + weight * (sample - prev);
+                if (this.bits.compareAndSet(prevBits, Double.doubleToLongBits(next))) {
+                    return;
+                }
+            }
+        }
+
+    }
+
+}
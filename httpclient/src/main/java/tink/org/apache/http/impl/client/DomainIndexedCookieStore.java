@@ -0,0 +1,401 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.impl.client;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.client.CookieStore;
+import tink.org.apache.http.client.IndexedCookieStore;
+import tink.org.apache.http.conn.util.PublicSuffixMatcher;
+import tink.org.apache.http.conn.util.PublicSuffixMatcherLoader;
+import tink.org.apache.http.cookie.Cookie;
+import tink.org.apache.http.cookie.CookieIdentityComparator;
+import tink.org.apache.http.cookie.CookieOrigin;
+import tink.org.apache.http.util.Args;
+
+/**
+ * {@link CookieStore} implementation indexed by registrable domain and
+ * path, for clients that hold cookies of many different sites.
+ * <p>
+ * Cookies are grouped by the registrable part of their domain, as
+ * determined by a {@link PublicSuffixMatcher}, and within each group by
+ * their path. {@link #getCookies(CookieOrigin)} therefore only looks at
+ * the cookies of the site being requested whose path is a prefix of the
+ * request path, rather than at every cookie in the store, and returns
+ * cookies with longer paths first. Expired cookies found along the way
+ * are removed, so {@link #clearExpired(Date)} does not need to be called
+ * on every request.
+ * </p>
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class DomainIndexedCookieStore implements IndexedCookieStore, Serializable {
+
+    private static final long serialVersionUID = 3263474286218529914L;
+
+    private final CookieIdentityComparator identityComparator;
+    private final Map<String, Map<String, List<Entry>>> index;
+    private final ReadWriteLock lock;
+    private transient PublicSuffixMatcher publicSuffixMatcher;
+
+    public DomainIndexedCookieStore(final PublicSuffixMatcher publicSuffixMatcher) {
+        super();
+        this.publicSuffixMatcher = Args.notNull(publicSuffixMatcher, "Public suffix matcher");
+        this.identityComparator = new CookieIdentityComparator();
+        this.index = new HashMap<String, Map<String, List<Entry>>>();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    public DomainIndexedCookieStore() {
+        this(PublicSuffixMatcherLoader.getDefault());
+    }
+
+    /**
+     * Adds an {@link Cookie HTTP cookie}, replacing any existing equivalent cookies.
+     * If the given cookie has already expired it will not be added, but existing
+     * values will still be removed.
+     *
+     * @param cookie the {@link Cookie cookie} to be added
+     */
+    @Override
+    public void addCookie(final Cookie cookie) {
+        if (cookie != null) {
+            final String domain = normalizeDomain(cookie.getDomain());
+            final String path = normalizePath(cookie.getPath());
+            lock.writeLock().lock();
+            try {
+                // first remove any old cookie that is equivalent
+                removeEquivalent(cookie, domain, path);
+                if (!cookie.isExpired(new Date())) {
+                    final String site = getSite(domain);
+                    Map<String, List<Entry>> paths = index.get(site);
+                    if (paths == null) {
+                        paths = new HashMap<String, List<Entry>>();
+                        index.put(site, paths);
+                    }
+                    List<Entry> entries = paths.get(path);
+                    if (entries == null) {
+                        entries = new ArrayList<Entry>(2);
+                        paths.put(path, entries);
+                    }
+                    entries.add(new Entry(cookie, domain));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Adds an array of {@link Cookie HTTP cookies}. Cookies are added individually and
+     * in the given array order.
+     *
+     * @param cookies the {@link Cookie cookies} to be added
+     *
+     * @see #addCookie(Cookie)
+     */
+    public void addCookies(final Cookie[] cookies) {
+        if (cookies != null) {
+            for (final Cookie cookie : cookies) {
+                this.addCookie(cookie);
+            }
+        }
+    }
+
+    @Override
+    public List<Cookie> getCookies(final CookieOrigin origin) {
+        Args.notNull(origin, "Cookie origin");
+        String host = normalizeDomain(origin.getHost());
+        if (host.indexOf('.') == -1) {
+            // Equivalent to CookieIdentityComparator and RFC 2965
+            host = host + ".local";
+        }
+        final List<String> prefixes = getPathPrefixes(origin.getPath());
+        final Date now = new Date();
+        final List<Cookie> cookies = new ArrayList<Cookie>();
+        List<Entry> expired = null;
+        lock.readLock().lock();
+        try {
+            for (String site = host; site != null; site = getParent(site)) {
+                final Map<String, List<Entry>> paths = index.get(site);
+                if (paths == null) {
+                    continue;
+                }
+                // more specific paths first, as recommended by RFC 6265
+                for (int i = prefixes.size() - 1; i >= 0; i--) {
+                    final List<Entry> entries = paths.get(prefixes.get(i));
+                    if (entries == null) {
+                        continue;
+                    }
+                    for (final Entry entry : entries) {
+                        if (!domainMatch(host, entry.domain)) {
+                            continue;
+                        }
+                        if (entry.cookie.isExpired(now)) {
+                            if (expired == null) {
+                                expired = new ArrayList<Entry>();
+                            }
+                            expired.add(entry);
+                        } else {
+                            cookies.add(entry.cookie);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (expired != null) {
+            lock.writeLock().lock();
+            try {
+                for (final Entry entry : expired) {
+                    remove(entry);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return cookies;
+    }
+
+    /**
+     * Returns all cookies contained in this store.
+     *
+     * @return all cookies
+     */
+    @Override
+    public List<Cookie> getCookies() {
+        lock.readLock().lock();
+        try {
+            final List<Cookie> cookies = new ArrayList<Cookie>();
+            for (final Map<String, List<Entry>> paths : index.values()) {
+                for (final List<Entry> entries : paths.values()) {
+                    for (final Entry entry : entries) {
+                        cookies.add(entry.cookie);
+                    }
+                }
+            }
+            return cookies;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all of {@link Cookie cookies} in this store
+     * that have expired by the specified {@link java.util.Date date}.
+     *
+     * @return true if any cookies were purged.
+     *
+     * @see Cookie#isExpired(Date)
+     */
+    @Override
+    public boolean clearExpired(final Date date) {
+        if (date == null) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            boolean removed = false;
+            for (final Iterator<Map<String, List<Entry>>> it1 = index.values().iterator(); it1.hasNext(); ) {
+                final Map<String, List<Entry>> paths = it1.next();
+                for (final Iterator<List<Entry>> it2 = paths.values().iterator(); it2.hasNext(); ) {
+                    final List<Entry> entries = it2.next();
+                    for (final Iterator<Entry> it3 = entries.iterator(); it3.hasNext(); ) {
+                        if (it3.next().cookie.isExpired(date)) {
+                            it3.remove();
+                            removed = true;
+                        }
+                    }
+                    if (entries.isEmpty()) {
+                        it2.remove();
+                    }
+                }
+                if (paths.isEmpty()) {
+                    it1.remove();
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Clears all cookies.
+     */
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            index.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getCookies().toString();
+    }
+
+    private void removeEquivalent(final Cookie cookie, final String domain, final String path) {
+        // the site an equivalent cookie was filed under depends on the
+        // public suffix list at the time; look at every parent domain
+        for (String site = domain; site != null; site = getParent(site)) {
+            final Map<String, List<Entry>> paths = index.get(site);
+            if (paths == null) {
+                continue;
+            }
+            final List<Entry> entries = paths.get(path);
+            if (entries == null) {
+                continue;
+            }
+            for (final Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+                if (identityComparator.compare(it.next().cookie, cookie) == 0) {
+                    it.remove();
+                }
+            }
+            if (entries.isEmpty()) {
+                paths.remove(path);
+                if (paths.isEmpty()) {
+                    index.remove(site);
+                }
+            }
+        }
+    }
+
+    private void remove(final Entry entry) {
+        final String path = normalizePath(entry.cookie.getPath());
+        for (String site = entry.domain; site != null; site = getParent(site)) {
+            final Map<String, List<Entry>> paths = index.get(site);
+            if (paths == null) {
+                continue;
+            }
+            final List<Entry> entries = paths.get(path);
+            if (entries != null && entries.remove(entry)) {
+                if (entries.isEmpty()) {
+                    paths.remove(path);
+                    if (paths.isEmpty()) {
+                        index.remove(site);
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    private String getSite(final String domain) {
+        final String root = publicSuffixMatcher.getDomainRoot(domain);
+        return root != null ? root : domain;
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.publicSuffixMatcher = PublicSuffixMatcherLoader.getDefault();
+    }
+
+    static String normalizeDomain(final String domain) {
+        if (domain == null) {
+            return "";
+        }
+        if (domain.indexOf('.') == -1) {
+            return domain.toLowerCase(Locale.ROOT) + ".local";
+        }
+        final String normalized = domain.startsWith(".") ? domain.substring(1) : domain;
+        return normalized.toLowerCase(Locale.ROOT);
+    }
+
+    static String normalizePath(final String path) {
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        if (path.length() > 1 && path.endsWith("/")) {
+            return path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    static String getParent(final String domain) {
+        final int dot = domain.indexOf('.');
+        return dot != -1 ? domain.substring(dot + 1) : null;
+    }
+
+    /**
+     * Returns the prefixes of the request path that the normalized path
+     * of a matching cookie may be equal to.
+     */
+    static List<String> getPathPrefixes(final String path) {
+        final List<String> prefixes = new ArrayList<String>(4);
+        prefixes.add("/");
+        if (path != null && path.length() > 1) {
+            for (int i = 1; i < path.length(); i++) {
+                if (path.charAt(i) == '/') {
+                    prefixes.add(path.substring(0, i));
+                }
+            }
+            if (!path.endsWith("/")) {
+                prefixes.add(path);
+            }
+        }
+        return prefixes;
+    }
+
+    static boolean domainMatch(final String host, final String domain) {
+        return host.endsWith(domain)
+                && (host.length() == domain.length() || host.charAt(host.length() - domain.length() - 1) == '.');
+    }
+
+    static final class Entry implements Serializable {
+
+        private static final long serialVersionUID = -4216958405066233011L;
+
+        final Cookie cookie;
+        final String domain;
+
+        Entry(final Cookie cookie, final String domain) {
+            this.cookie = cookie;
+            this.domain = domain;
+        }
+
+    }
+
+}
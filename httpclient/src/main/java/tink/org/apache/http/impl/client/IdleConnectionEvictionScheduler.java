@@ -0,0 +1,220 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.impl.client;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.conn.HttpClientConnectionManager;
+import tink.org.apache.http.impl.conn.Histogram;
+import tink.org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import tink.org.apache.http.util.Args;
+
+/**
+ * Enforces an eviction policy for expired / idle persistent connections of any
+ * number of connection managers from a single background thread.
+ * <p>
+ * Connections of a {@link PoolingHttpClientConnectionManager} are evicted in
+ * batches, closing at most a batch of connections per route in each sweep.
+ * Routes with more connections to evict are revisited by the next sweep. A
+ * striped pool is swept route by route, so that it is never locked as a whole;
+ * the default pool is swept by a single walk under its lock. Other connection
+ * managers are swept as a whole, as {@link IdleConnectionEvictor} would.
+ * </p>
+ * <p>
+ * The duration of every sweep over all registered connection managers is
+ * recorded in microseconds.
+ * </p>
+ *
+ * @see IdleConnectionEvictor
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class IdleConnectionEvictionScheduler {
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    private final ScheduledExecutorService executor;
+    private final long sleepTimeMs;
+    private final int batchSize;
+    private final CopyOnWriteArrayList<Registration> registrations;
+    private final Histogram sweepTime;
+    private final AtomicLong lastSweepTime;
+
+    private volatile Exception exception;
+
+    /**
+     * @param threadFactory factory of the eviction thread. If {@code null} a daemon thread is used.
+     * @param sleepTime time between sweeps.
+     * @param batchSize maximum number of connections of a route closed by one sweep.
+     */
+    public IdleConnectionEvictionScheduler(
+            final ThreadFactory threadFactory,
+            final long sleepTime, final TimeUnit sleepTimeUnit,
+            final int batchSize) {
+        super();
+        this.sleepTimeMs = sleepTimeUnit != null ? sleepTimeUnit.toMillis(sleepTime) : sleepTime;
+        Args.positive(this.sleepTimeMs, "Sleep time");
+        this.batchSize = Args.positive(batchSize, "Batch size");
+        this.executor = new ScheduledThreadPoolExecutor(1,
+                threadFactory != null ? threadFactory : new DefaultThreadFactory());
+        this.registrations = new CopyOnWriteArrayList<Registration>();
+        this.sweepTime = new Histogram();
+        this.lastSweepTime = new AtomicLong(-1);
+    }
+
+    public IdleConnectionEvictionScheduler(final long sleepTime, final TimeUnit sleepTimeUnit) {
+        this(null, sleepTime, sleepTimeUnit, 8);
+    }
+
+    /**
+     * Registers a connection manager. Its expired connections, and connections idle
+     * longer than {@code maxIdleTime} if positive, are closed by subsequent sweeps.
+     */
+    public void register(
+            final HttpClientConnectionManager connectionManager,
+            final long maxIdleTime, final TimeUnit maxIdleTimeUnit) {
+        Args.notNull(connectionManager, "Connection manager");
+        final long maxIdleTimeMs = maxIdleTimeUnit != null ? maxIdleTimeUnit.toMillis(maxIdleTime) : maxIdleTime;
+        unregister(connectionManager);
+        this.registrations.add(new Registration(connectionManager, maxIdleTimeMs));
+    }
+
+    public void unregister(final HttpClientConnectionManager connectionManager) {
+        for (final Registration registration: this.registrations) {
+            if (registration.connectionManager == connectionManager) {
+                this.registrations.remove(registration);
+            }
+        }
+    }
+
+    public void start() {
+        this.executor.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                sweep();
+            }
+
+        }, this.sleepTimeMs, this.sleepTimeMs, TimeUnit.MILLISECONDS);
+    }
+
+    void sweep() {
+        final long start = System.nanoTime();
+        for (final Registration registration: this.registrations) {
+            try {
+                registration.sweep(this.batchSize);
+            } catch (final Exception ex) {
+                this.exception = ex;
+                this.log.debug("Unexpected exception evicting connections", ex);
+            }
+        }
+        final long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        this.sweepTime.record(micros);
+        this.lastSweepTime.set(micros);
+    }
+
+    /**
+     * Returns durations of sweeps in microseconds.
+     */
+    public Histogram getSweepTime() {
+        return this.sweepTime;
+    }
+
+    /**
+     * Returns the duration of the last sweep in microseconds, or {@code -1}
+     * if no sweep has been performed yet.
+     */
+    public long getLastSweepTime() {
+        return this.lastSweepTime.get();
+    }
+
+    /**
+     * Returns the last exception thrown by a connection manager during a sweep.
+     */
+    public Exception getException() {
+        return this.exception;
+    }
+
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    public boolean isRunning() {
+        return !this.executor.isTerminated();
+    }
+
+    public void awaitTermination(final long time, final TimeUnit tunit) throws InterruptedException {
+        this.executor.awaitTermination(time, tunit != null ? tunit : TimeUnit.MILLISECONDS);
+    }
+
+    static class Registration {
+
+        final HttpClientConnectionManager connectionManager;
+        final long maxIdleTimeMs;
+
+        Registration(final HttpClientConnectionManager connectionManager, final long maxIdleTimeMs) {
+            this.connectionManager = connectionManager;
+            this.maxIdleTimeMs = maxIdleTimeMs;
+        }
+
+        void sweep(final int batchSize) {
+            if (this.connectionManager instanceof PoolingHttpClientConnectionManager) {
+                final PoolingHttpClientConnectionManager poolingManager =
+                        (PoolingHttpClientConnectionManager) this.connectionManager;
+                poolingManager.evictConnections(this.maxIdleTimeMs, TimeUnit.MILLISECONDS, batchSize);
+            } else {
+                this.connectionManager.closeExpiredConnections();
+                if (this.maxIdleTimeMs > 0) {
+                    this.connectionManager.closeIdleConnections(this.maxIdleTimeMs, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+
+    }
+
+    static class DefaultThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "Connection eviction scheduler");
+            t.setDaemon(true);
+            return t;
+        }
+
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.impl.client;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import tink.org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import tink.org.apache.http.util.Args;
+
+/**
+ * This class maintains a background thread that validates idle persistent
+ * connections kept alive in the connection pool and closes stale ones, so that
+ * connections are normally known to be usable before they are leased.
+ *
+ * @see PoolingHttpClientConnectionManager#validateIdleConnections()
+ *
+ * @since 4.5.6
+ */
+public final class IdleConnectionValidator {
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final ThreadFactory threadFactory;
+    private final Thread thread;
+    private final long sleepTimeMs;
+
+    private volatile Exception exception;
+
+    public IdleConnectionValidator(
+            final PoolingHttpClientConnectionManager connectionManager,
+            final ThreadFactory threadFactory,
+            final long sleepTime, final TimeUnit sleepTimeUnit) {
+        this.connectionManager = Args.notNull(connectionManager, "Connection manager");
+        this.threadFactory = threadFactory != null ? threadFactory : new DefaultThreadFactory();
+        this.sleepTimeMs = sleepTimeUnit != null ? sleepTimeUnit.toMillis(sleepTime) : sleepTime;
+        this.thread = this.threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        Thread.sleep(sleepTimeMs);
+                        connectionManager.validateIdleConnections();
+                    }
+                } catch (final Exception ex) {
+                    exception = ex;
+                }
+
+            }
+        });
+    }
+
+    public IdleConnectionValidator(
+            final PoolingHttpClientConnectionManager connectionManager,
+            final long sleepTime, final TimeUnit sleepTimeUnit) {
+        this(connectionManager, null, sleepTime, sleepTimeUnit);
+    }
+
+    /**
+     * Creates a validator that runs every half of the validate-after-inactivity
+     * period of the given connection manager.
+     */
+    public IdleConnectionValidator(final PoolingHttpClientConnectionManager connectionManager) {
+        this(connectionManager, null,
+                Math.max(Args.notNull(connectionManager, "Connection manager").getValidateAfterInactivity() / 2, 100),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void shutdown() {
+        thread.interrupt();
+    }
+
+    public boolean isRunning() {
+        return thread.isAlive();
+    }
+
+    public void awaitTermination(final long time, final TimeUnit tunit) throws InterruptedException {
+        thread.join((tunit != null ? tunit : TimeUnit.MILLISECONDS).toMillis(time));
+    }
+
+    static class DefaultThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "Connection validator");
+            t.setDaemon(true);
+            return t;
+        }
+
+    }
+
+}
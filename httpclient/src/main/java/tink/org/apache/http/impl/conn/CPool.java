@@ -26,7 +26,15 @@
  */
 package tink.org.apache.http.impl.conn;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
@@ -37,6 +45,7 @@ import tink.org.apache.http.conn.ManagedHttpClientConnection;
 import tink.org.apache.http.conn.routing.HttpRoute;
 import tink.org.apache.http.pool.AbstractConnPool;
 import tink.org.apache.http.pool.ConnFactory;
+import tink.org.apache.http.pool.PoolEntry;
 import tink.org.apache.http.pool.PoolEntryCallback;
 import tink.org.apache.http.conn.ManagedHttpClientConnection;
 import tink.org.apache.http.conn.routing.HttpRoute;
@@ -45,41 +54,270 @@ import tink.org.apache.http.conn.routing.HttpRoute;
  * @since 4.3
  */
 @Contract(threading = ThreadingBehavior.SAFE)
-class CPool extends AbstractConnPool<HttpRoute, ManagedHttpClientConnection, CPoolEntry> {
+class CPool extends AbstractConnPool<HttpRoute, ManagedHttpClientConnection, CPoolEntry>
+        implements ManagedConnPool {
 
     private static final AtomicLong COUNTER = new AtomicLong();
 
     private final Log log = LogFactory.getLog(CPool.class);
     private final long timeToLive;
     private final TimeUnit tunit;
+    private final ConnPoolMetrics metrics;
+    /** Set while a lease made through {@link #allocate(HttpRoute)} is served on the current thread. */
+    private final ThreadLocal<Boolean> allocating;
 
     public CPool(
             final ConnFactory<HttpRoute, ManagedHttpClientConnection> connFactory,
             final int defaultMaxPerRoute, final int maxTotal,
             final long timeToLive, final TimeUnit tunit) {
+        this(connFactory, defaultMaxPerRoute, maxTotal, timeToLive, tunit, null);
+    }
+
+    public CPool(
+            final ConnFactory<HttpRoute, ManagedHttpClientConnection> connFactory,
+            final int defaultMaxPerRoute, final int maxTotal,
+            final long timeToLive, final TimeUnit tunit,
+            final ConnPoolMetrics metrics) {
         super(connFactory, defaultMaxPerRoute, maxTotal);
         this.timeToLive = timeToLive;
         this.tunit = tunit;
+        this.metrics = metrics;
+        this.allocating = new ThreadLocal<Boolean>();
     }
 
     @Override
     protected CPoolEntry createEntry(final HttpRoute route, final ManagedHttpClientConnection conn) {
         final String id = Long.toString(COUNTER.getAndIncrement());
-        return new CPoolEntry(this.log, id, route, conn, this.timeToLive, this.tunit);
+        return new CPoolEntry(this.log, id, route, conn, this.timeToLive, this.tunit, this.metrics);
     }
 
+    /**
+     * Connections validated by {@link #validateIdle()} within the validation
+     * period are taken as they are, without another stale connection check.
+     * A lease of a connection that is being probed in the background waits for
+     * the outcome of that probe.
+     */
     @Override
     protected boolean validate(final CPoolEntry entry) {
-        return !entry.getConnection().isStale();
+        if (this.allocating.get() != null) {
+            return true;
+        }
+        entry.lockValidation();
+        try {
+            if (entry.isClosed()) {
+                return false;
+            }
+            final long now = System.currentTimeMillis();
+            if (entry.getLastVerified() + getValidateAfterInactivity() > now) {
+                return true;
+            }
+            return probe(entry, now);
+        } finally {
+            entry.unlockValidation();
+        }
+    }
+
+    /**
+     * The shared pool validates entries on the thread that waits for the
+     * lease, so validation is turned off for that thread while it waits.
+     */
+    @Override
+    public Future<CPoolEntry> allocate(final HttpRoute route) {
+        final Future<CPoolEntry> future = lease(route, null, null);
+        return new Future<CPoolEntry>() {
+
+            @Override
+            public boolean cancel(final boolean mayInterruptIfRunning) {
+                return future.cancel(mayInterruptIfRunning);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return future.isCancelled();
+            }
+
+            @Override
+            public boolean isDone() {
+                return future.isDone();
+            }
+
+            @Override
+            public CPoolEntry get() throws InterruptedException, ExecutionException {
+                allocating.set(Boolean.TRUE);
+                try {
+                    return future.get();
+                } finally {
+                    allocating.remove();
+                }
+            }
+
+            @Override
+            public CPoolEntry get(
+                    final long timeout,
+                    final TimeUnit tunit) throws InterruptedException, ExecutionException, TimeoutException {
+                allocating.set(Boolean.TRUE);
+                try {
+                    return future.get(timeout, tunit);
+                } finally {
+                    allocating.remove();
+                }
+            }
+
+        };
+    }
+
+    private static boolean probe(final CPoolEntry entry, final long now) {
+        if (entry.getConnection().isStale()) {
+            entry.setCloseReason(EvictionReason.STALE);
+            return false;
+        }
+        entry.markValidated(now);
+        return true;
+    }
+
+    /**
+     * The shared pool cannot enumerate the connections of a single route, so
+     * this walks all available connections under the pool lock, touching only
+     * those of the given route. Prefer {@link #evict(long, int)} to evict
+     * connections of all routes.
+     */
+    @Override
+    public int evict(final HttpRoute route, final long idleDeadline, final int max) {
+        final long now = System.currentTimeMillis();
+        final int[] closed = new int[1];
+        enumAvailable(new PoolEntryCallback<HttpRoute, ManagedHttpClientConnection>() {
+
+            @Override
+            public void process(final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry) {
+                if (closed[0] < max && route.equals(entry.getRoute())
+                        && evict((CPoolEntry) entry, now, idleDeadline)) {
+                    closed[0]++;
+                }
+            }
+
+        });
+        return closed[0];
+    }
+
+    /**
+     * Evicts connections of all routes in a single walk under the pool lock.
+     */
+    @Override
+    public int evict(final long idleDeadline, final int maxPerRoute) {
+        final long now = System.currentTimeMillis();
+        final Map<HttpRoute, int[]> closedPerRoute = new HashMap<HttpRoute, int[]>();
+        final int[] closed = new int[1];
+        enumAvailable(new PoolEntryCallback<HttpRoute, ManagedHttpClientConnection>() {
+
+            @Override
+            public void process(final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry) {
+                int[] count = closedPerRoute.get(entry.getRoute());
+                if (count != null && count[0] >= maxPerRoute) {
+                    return;
+                }
+                if (evict((CPoolEntry) entry, now, idleDeadline)) {
+                    if (count == null) {
+                        count = new int[1];
+                        closedPerRoute.put(entry.getRoute(), count);
+                    }
+                    count[0]++;
+                    closed[0]++;
+                }
+            }
+
+        });
+        return closed[0];
+    }
+
+    private static boolean evict(final CPoolEntry entry, final long now, final long idleDeadline) {
+        if (entry.isExpired(now)) {
+            entry.setCloseReason(EvictionReason.EXPIRED);
+        } else if (entry.getUpdated() <= idleDeadline) {
+            entry.setCloseReason(EvictionReason.IDLE);
+        } else {
+            return false;
+        }
+        entry.close();
+        return true;
+    }
+
+    @Override
+    public void shutdown() throws IOException {
+        if (this.metrics != null) {
+            this.metrics.markShutdown();
+        }
+        super.shutdown();
+    }
+
+    /**
+     * Entries cannot be taken out of the shared available list without leasing
+     * them, so the entries due for validation are only collected under the pool
+     * lock and are probed in place afterwards, each under its own validation
+     * lock. An entry leased in the meantime is validated by the leasing thread
+     * before use, which is detected by its validation count and skipped here.
+     */
+    @Override
+    public int validateIdle() {
+        final int period = getValidateAfterInactivity();
+        if (period <= 0 || isShutdown()) {
+            return 0;
+        }
+        final long now = System.currentTimeMillis();
+        final List<CPoolEntry> batch = new ArrayList<CPoolEntry>();
+        final List<Integer> validationCounts = new ArrayList<Integer>();
+        enumAvailable(new PoolEntryCallback<HttpRoute, ManagedHttpClientConnection>() {
+
+            @Override
+            public void process(final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry) {
+                final CPoolEntry poolEntry = (CPoolEntry) entry;
+                if (!poolEntry.isClosed() && poolEntry.getLastVerified() + period <= now) {
+                    batch.add(poolEntry);
+                    validationCounts.add(Integer.valueOf(poolEntry.getValidationCount()));
+                }
+            }
+
+        });
+        int closed = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            final CPoolEntry entry = batch.get(i);
+            entry.lockValidation();
+            try {
+                if (entry.isClosed()
+                        || entry.getValidationCount() != validationCounts.get(i).intValue()) {
+                    continue;
+                }
+                final long time = System.currentTimeMillis();
+                if (entry.isExpired(time)) {
+                    entry.setCloseReason(EvictionReason.EXPIRED);
+                } else if (probe(entry, time)) {
+                    continue;
+                }
+                entry.close();
+                closed++;
+            } finally {
+                entry.unlockValidation();
+            }
+        }
+        if (closed > 0) {
+            // Drop the closed entries from the available list
+            enumAvailable(new PoolEntryCallback<HttpRoute, ManagedHttpClientConnection>() {
+
+                @Override
+                public void process(final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry) {
+                }
+
+            });
+        }
+        return closed;
     }
 
     @Override
-    protected void enumAvailable(final PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback) {
+    public void enumAvailable(final PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback) {
         super.enumAvailable(callback);
     }
 
     @Override
-    protected void enumLeased(final PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback) {
+    public void enumLeased(final PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback) {
         super.enumLeased(callback);
     }
 
@@ -29,6 +29,9 @@ package tink.org.apache.http.impl.conn;
 import java.io.IOException;
 import java.util.Date;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.logging.Log;
 import tink.org.apache.http.HttpClientConnection;
@@ -47,7 +50,14 @@ import tink.org.apache.http.conn.routing.HttpRoute;
 class CPoolEntry extends PoolEntry<HttpRoute, ManagedHttpClientConnection> {
 
     private final Log log;
+    private final ConnPoolMetrics metrics;
+    private final AtomicBoolean closeRecorded;
+    private final Lock validationLock;
     private volatile boolean routeComplete;
+    private volatile long validated;
+    private volatile int validationCount;
+    private volatile int leaseCount;
+    private volatile EvictionReason closeReason;
 
     public CPoolEntry(
             final Log log,
@@ -55,8 +65,24 @@ class CPoolEntry extends PoolEntry<HttpRoute, ManagedHttpClientConnection> {
             final HttpRoute route,
             final ManagedHttpClientConnection conn,
             final long timeToLive, final TimeUnit tunit) {
+        this(log, id, route, conn, timeToLive, tunit, null);
+    }
+
+    /**
+     * @since 4.5.6
+     */
+    public CPoolEntry(
+            final Log log,
+            final String id,
+            final HttpRoute route,
+            final ManagedHttpClientConnection conn,
+            final long timeToLive, final TimeUnit tunit,
+            final ConnPoolMetrics metrics) {
         super(id, route, conn, timeToLive, tunit);
         this.log = log;
+        this.metrics = metrics;
+        this.closeRecorded = new AtomicBoolean(false);
+        this.validationLock = new ReentrantLock();
     }
 
     public void markRouteComplete() {
@@ -67,6 +93,71 @@ class CPoolEntry extends PoolEntry<HttpRoute, ManagedHttpClientConnection> {
         return this.routeComplete;
     }
 
+    /**
+     * Records that the connection has been found not to be stale at the given time.
+     * Callers must not record validations of the same entry concurrently.
+     *
+     * @since 4.5.6
+     */
+    public void markValidated(final long time) {
+        this.validated = time;
+        this.validationCount++;
+    }
+
+    /**
+     * Returns the number of validations recorded so far, which tells whether the
+     * entry has been validated since an earlier call.
+     *
+     * @since 4.5.6
+     */
+    int getValidationCount() {
+        return this.validationCount;
+    }
+
+    /**
+     * Acquires the lock held while the connection is being validated.
+     *
+     * @since 4.5.6
+     */
+    void lockValidation() {
+        this.validationLock.lock();
+    }
+
+    /**
+     * @since 4.5.6
+     */
+    void unlockValidation() {
+        this.validationLock.unlock();
+    }
+
+    /**
+     * Returns the time of the last activity known to have left the connection
+     * in a usable state: its release to the pool or its last successful validation.
+     *
+     * @since 4.5.6
+     */
+    public long getLastVerified() {
+        return Math.max(getUpdated(), this.validated);
+    }
+
+    /**
+     * Counts a lease of this entry. Only called by the thread the entry is leased to.
+     *
+     * @since 4.5.6
+     */
+    void incrementLeaseCount() {
+        this.leaseCount++;
+    }
+
+    /**
+     * Sets the reason reported to the pool metrics when this entry gets closed.
+     *
+     * @since 4.5.6
+     */
+    void setCloseReason(final EvictionReason closeReason) {
+        this.closeReason = closeReason;
+    }
+
     public void closeConnection() throws IOException {
         final HttpClientConnection conn = getConnection();
         conn.close();
@@ -94,11 +185,28 @@ class CPoolEntry extends PoolEntry<HttpRoute, ManagedHttpClientConnection> {
 
     @Override
     public void close() {
+        final boolean wasOpen = getConnection().isOpen();
         try {
             closeConnection();
         } catch (final IOException ex) {
             this.log.debug("I/O error closing connection", ex);
         }
+        if (this.metrics != null && this.closeRecorded.compareAndSet(false, true)) {
+            final long now = System.currentTimeMillis();
+            EvictionReason reason = this.closeReason;
+            if (reason == null) {
+                if (this.metrics.isShutdown()) {
+                    reason = EvictionReason.SHUTDOWN;
+                } else if (!wasOpen) {
+                    reason = EvictionReason.STALE;
+                } else if (getExpiry() <= now) {
+                    reason = EvictionReason.EXPIRED;
+                } else {
+                    reason = EvictionReason.POOL_LIMIT;
+                }
+            }
+            this.metrics.recordClose(getRoute(), now - getCreated(), Math.max(this.leaseCount - 1, 0), reason);
+        }
     }
 
 }
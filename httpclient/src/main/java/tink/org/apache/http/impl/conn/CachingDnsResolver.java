@@ -0,0 +1,411 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.impl.conn;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.conn.DnsResolver;
+import tink.org.apache.http.util.Args;
+
+/**
+ * {@link DnsResolver} decorator that caches the results of another resolver.
+ * <p>
+ * Successful lookups are cached for a time to live, which can be overridden
+ * per host. Failed lookups are cached for a (usually much shorter) negative
+ * time to live. An entry that is requested after a configurable fraction of
+ * its time to live has elapsed is refreshed in the background while the cached
+ * addresses continue to be served, so that frequently used host names never
+ * block on the underlying resolver. Entries that are not used expire normally.
+ * If a background refresh fails the previously resolved addresses are served
+ * until they expire; the refresh is retried after the negative time to live.
+ * </p>
+ * <p>
+ * Host names are cached case-insensitively. The number of cached host names is
+ * bounded: when the bound is exceeded expired entries are purged first, then
+ * the entries closest to expiry.
+ * </p>
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class CachingDnsResolver implements DnsResolver {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    private final DnsResolver resolver;
+    private final long timeToLiveMs;
+    private final long negativeTimeToLiveMs;
+    private final float refreshFactor;
+    private final ExecutorService refreshExecutor;
+    private final boolean ownExecutor;
+    private final int maxEntries;
+    private final Map<String, Long> hostTimeToLive;
+    private final ConcurrentHashMap<String, Entry> cache;
+
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong negativeHits;
+    private final AtomicLong refreshes;
+    private final AtomicLong refreshFailures;
+
+    /**
+     * @param resolver the resolver to delegate lookups to.
+     * @param timeToLive time to live of successful lookups.
+     * @param negativeTimeToLive time to live of failed lookups. A value of zero
+     *   or less disables negative caching.
+     * @param tunit time unit of {@code timeToLive} and {@code negativeTimeToLive}.
+     * @param refreshFactor fraction of the time to live after which a requested
+     *   entry is refreshed in the background, {@code 0 < refreshFactor <= 1}.
+     *   A value of {@code 1} disables background refresh.
+     * @param refreshExecutor executor to run background refreshes on. If
+     *   {@code null} a single daemon thread is created and owned by this resolver.
+     * @param maxEntries maximum number of cached host names.
+     */
+    public CachingDnsResolver(
+            final DnsResolver resolver,
+            final long timeToLive,
+            final long negativeTimeToLive,
+            final TimeUnit tunit,
+            final float refreshFactor,
+            final ExecutorService refreshExecutor,
+            final int maxEntries) {
+        super();
+        Args.notNull(resolver, "DNS resolver");
+        Args.positive(timeToLive, "Time to live");
+        Args.notNull(tunit, "Time unit");
+        Args.check(refreshFactor > 0 && refreshFactor <= 1, "Refresh factor must be in (0, 1]");
+        this.maxEntries = Args.positive(maxEntries, "Max entries");
+        this.resolver = resolver;
+        this.timeToLiveMs = tunit.toMillis(timeToLive);
+        this.negativeTimeToLiveMs = negativeTimeToLive > 0 ? tunit.toMillis(negativeTimeToLive) : 0;
+        this.refreshFactor = refreshFactor;
+        this.ownExecutor = refreshExecutor == null;
+        this.refreshExecutor = refreshExecutor != null ? refreshExecutor :
+            Executors.newSingleThreadExecutor(new RefreshThreadFactory());
+        this.hostTimeToLive = new ConcurrentHashMap<String, Long>();
+        this.cache = new ConcurrentHashMap<String, Entry>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.negativeHits = new AtomicLong();
+        this.refreshes = new AtomicLong();
+        this.refreshFailures = new AtomicLong();
+    }
+
+    /**
+     * Creates a resolver that caches at most {@link #DEFAULT_MAX_ENTRIES} host names.
+     */
+    public CachingDnsResolver(
+            final DnsResolver resolver,
+            final long timeToLive,
+            final long negativeTimeToLive,
+            final TimeUnit tunit,
+            final float refreshFactor,
+            final ExecutorService refreshExecutor) {
+        this(resolver, timeToLive, negativeTimeToLive, tunit, refreshFactor, refreshExecutor,
+                DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a resolver that caches lookups of the system resolver for
+     * 60 seconds, caches failures for 5 seconds and refreshes requested entries
+     * after 75% of their time to live.
+     */
+    public CachingDnsResolver() {
+        this(SystemDefaultDnsResolver.INSTANCE, 60, 5, TimeUnit.SECONDS, 0.75f, null);
+    }
+
+    /**
+     * Overrides the time to live of successful lookups of the given host.
+     * Takes effect the next time the host is resolved.
+     */
+    public void setTimeToLive(final String host, final long timeToLive, final TimeUnit tunit) {
+        Args.notNull(host, "Host name");
+        Args.positive(timeToLive, "Time to live");
+        Args.notNull(tunit, "Time unit");
+        this.hostTimeToLive.put(host.toLowerCase(Locale.ROOT), Long.valueOf(tunit.toMillis(timeToLive)));
+    }
+
+    @Override
+    public InetAddress[] resolve(final String name) throws UnknownHostException {
+        Args.notNull(name, "Host name");
+        final String host = name.toLowerCase(Locale.ROOT);
+        final long now = currentTime();
+        Entry entry = this.cache.get(host);
+        if (entry != null) {
+            if (now < entry.expiry) {
+                if (entry.addresses == null) {
+                    this.negativeHits.incrementAndGet();
+                    throw new UnknownHostException(entry.failure);
+                }
+                this.hits.incrementAndGet();
+                if (now >= entry.refreshAt && entry.refreshing.compareAndSet(false, true)) {
+                    scheduleRefresh(host, entry);
+                }
+                return entry.addresses.clone();
+            }
+            this.cache.remove(host, entry);
+        }
+        this.misses.incrementAndGet();
+        entry = lookup(host);
+        if (entry.addresses == null) {
+            throw new UnknownHostException(entry.failure);
+        }
+        return entry.addresses.clone();
+    }
+
+    private Entry lookup(final String host) throws UnknownHostException {
+        final InetAddress[] addresses;
+        try {
+            addresses = this.resolver.resolve(host);
+        } catch (final UnknownHostException ex) {
+            if (this.negativeTimeToLiveMs > 0) {
+                final String message = ex.getMessage() != null ? ex.getMessage() : host;
+                put(host, new Entry(null, message, currentTime() + this.negativeTimeToLiveMs, Long.MAX_VALUE));
+            }
+            throw ex;
+        }
+        final Entry entry = createEntry(host, addresses);
+        put(host, entry);
+        return entry;
+    }
+
+    private void put(final String host, final Entry entry) {
+        this.cache.put(host, entry);
+        if (this.cache.size() > this.maxEntries) {
+            purge();
+        }
+    }
+
+    /**
+     * Removes expired entries and, if that is not enough to get back within
+     * bounds, the entries closest to expiry. Trims a tenth of the bound at once
+     * so that a full cache is not purged on every lookup.
+     */
+    private synchronized void purge() {
+        if (this.cache.size() <= this.maxEntries) {
+            return;
+        }
+        final long now = currentTime();
+        final List<Map.Entry<String, Entry>> live = new ArrayList<Map.Entry<String, Entry>>(this.cache.size());
+        for (final Map.Entry<String, Entry> mapEntry : this.cache.entrySet()) {
+            if (now >= mapEntry.getValue().expiry) {
+                this.cache.remove(mapEntry.getKey(), mapEntry.getValue());
+            } else {
+                live.add(mapEntry);
+            }
+        }
+        final int target = this.maxEntries - this.maxEntries / 10;
+        if (live.size() <= target) {
+            return;
+        }
+        Collections.sort(live, new Comparator<Map.Entry<String, Entry>>() {
+
+            @Override
+            public int compare(final Map.Entry<String, Entry> e1, final Map.Entry<String, Entry> e2) {
+                final long x = e1.getValue().expiry;
+                final long y = e2.getValue().expiry;
+                return x < y ? -1 : (x == y ? 0 : 1);
+            }
+
+        });
+        for (int i = 0; i < live.size() - target; i++) {
+            final Map.Entry<String, Entry> mapEntry = live.get(i);
+            this.cache.remove(mapEntry.getKey(), mapEntry.getValue());
+        }
+    }
+
+    private Entry createEntry(final String host, final InetAddress[] addresses) {
+        final Long override = this.hostTimeToLive.get(host);
+        final long ttl = override != null ? override.longValue() : this.timeToLiveMs;
+        final long now = currentTime();
+        final long refreshAt = this.refreshFactor < 1 ? now + (long) (ttl * this.refreshFactor) : Long.MAX_VALUE;
+        return new Entry(addresses.clone(), null, now + ttl, refreshAt);
+    }
+
+    private void scheduleRefresh(final String host, final Entry entry) {
+        try {
+            this.refreshExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    refresh(host, entry);
+                }
+
+            });
+        } catch (final RejectedExecutionException ex) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private void refresh(final String host, final Entry entry) {
+        this.refreshes.incrementAndGet();
+        try {
+            final InetAddress[] addresses = this.resolver.resolve(host);
+            this.cache.replace(host, entry, createEntry(host, addresses));
+        } catch (final Exception ex) {
+            this.refreshFailures.incrementAndGet();
+            if (this.log.isDebugEnabled()) {
+                this.log.debug("Background refresh of " + host + " failed: " + ex.getMessage());
+            }
+            // Keep serving the cached addresses until they expire and retry
+            // the refresh no sooner than the negative time to live permits
+            final long retryAt = currentTime() + Math.max(this.negativeTimeToLiveMs, 1);
+            if (!this.cache.replace(host, entry, new Entry(
+                    entry.addresses, null, entry.expiry, Math.min(retryAt, entry.expiry)))) {
+                entry.refreshing.set(false);
+            }
+        }
+    }
+
+    long currentTime() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Removes the cached lookup result of the given host, if any.
+     */
+    public void invalidate(final String host) {
+        Args.notNull(host, "Host name");
+        this.cache.remove(host.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns the number of cached host names, including expired ones not purged yet.
+     */
+    public int size() {
+        return this.cache.size();
+    }
+
+    /**
+     * Removes all cached lookup results.
+     */
+    public void clear() {
+        this.cache.clear();
+    }
+
+    /**
+     * Returns the number of lookups answered with cached addresses.
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that had to be delegated to the underlying resolver.
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Returns the number of lookups answered with a cached failure.
+     */
+    public long getNegativeHitCount() {
+        return this.negativeHits.get();
+    }
+
+    /**
+     * Returns the number of background refreshes performed.
+     */
+    public long getRefreshCount() {
+        return this.refreshes.get();
+    }
+
+    /**
+     * Returns the number of background refreshes that failed.
+     */
+    public long getRefreshFailureCount() {
+        return this.refreshFailures.get();
+    }
+
+    /**
+     * Shuts down the background refresh thread if it is owned by this resolver.
+     */
+    public void shutdown() {
+        if (this.ownExecutor) {
+            this.refreshExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[hits: " + this.hits + "; misses: " + this.misses
+                + "; negative hits: " + this.negativeHits
+                + "; refreshes: " + this.refreshes + "; entries: " + this.cache.size() + "]";
+    }
+
+    static class Entry {
+
+        final InetAddress[] addresses;
+        final String failure;
+        final long expiry;
+        final long refreshAt;
+        final AtomicBoolean refreshing;
+
+        Entry(final InetAddress[] addresses, final String failure, final long expiry, final long refreshAt) {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.expiry = expiry;
+            this.refreshAt = refreshAt;
+            this.refreshing = new AtomicBoolean(false);
+        }
+
+    }
+
+    static class RefreshThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "DNS cache refresh");
+            t.setDaemon(true);
+            return t;
+        }
+
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.impl.conn;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.conn.routing.HttpRoute;
+import tink.org.apache.http.util.Args;
+
+/**
+ * Per route metrics of {@link PoolingHttpClientConnectionManager}: lease wait
+ * time, connect time, TLS handshake time, connection lifetime, connection reuse
+ * and eviction reasons.
+ * <p>
+ * Recording does not take locks and, once a route has been seen, does not
+ * allocate. Metrics can be read directly or pushed to any number of
+ * {@link ConnPoolMetricsExporter}s.
+ * </p>
+ * <p>
+ * Metrics are kept for a bounded number of routes. Once the bound is reached
+ * routes seen for the first time are not recorded until routes are
+ * {@link #remove(HttpRoute) removed}.
+ * </p>
+ *
+ * @see PoolingHttpClientConnectionManager#getMetrics()
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class ConnPoolMetrics {
+
+    public static final int DEFAULT_MAX_ROUTES = 1000;
+
+    private final int maxRoutes;
+    private final ConcurrentMap<HttpRoute, RoutePoolMetrics> routeMap;
+
+    private volatile boolean shutdown;
+
+    /**
+     * @param maxRoutes maximum number of routes metrics are kept for.
+     */
+    public ConnPoolMetrics(final int maxRoutes) {
+        super();
+        this.maxRoutes = Args.notNegative(maxRoutes, "Max routes");
+        this.routeMap = new ConcurrentHashMap<HttpRoute, RoutePoolMetrics>();
+    }
+
+    public ConnPoolMetrics() {
+        this(DEFAULT_MAX_ROUTES);
+    }
+
+    /**
+     * Returns metrics of the given route, or {@code null} if the route is
+     * not tracked because the maximum number of routes has been reached.
+     */
+    RoutePoolMetrics get(final HttpRoute route) {
+        final RoutePoolMetrics metrics = this.routeMap.get(route);
+        if (metrics != null || this.routeMap.size() >= this.maxRoutes) {
+            return metrics;
+        }
+        final RoutePoolMetrics created = new RoutePoolMetrics(route);
+        final RoutePoolMetrics existing = this.routeMap.putIfAbsent(route, created);
+        return existing != null ? existing : created;
+    }
+
+    void recordLeaseWait(final HttpRoute route, final long nanos) {
+        final RoutePoolMetrics metrics = get(route);
+        if (metrics != null) {
+            metrics.getLeaseWaitTime().record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+    }
+
+    void recordConnect(final HttpRoute route, final long nanos) {
+        final RoutePoolMetrics metrics = get(route);
+        if (metrics != null) {
+            metrics.getConnectTime().record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+    }
+
+    void recordTlsHandshake(final HttpRoute route, final long nanos) {
+        final RoutePoolMetrics metrics = get(route);
+        if (metrics != null) {
+            metrics.getTlsHandshakeTime().record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+    }
+
+    void recordClose(final HttpRoute route, final long lifetimeMs, final int reuseCount, final EvictionReason reason) {
+        final RoutePoolMetrics metrics = get(route);
+        if (metrics != null) {
+            metrics.getConnectionLifetime().record(lifetimeMs);
+            metrics.getReuseCount().record(reuseCount);
+            metrics.recordEviction(reason);
+        }
+    }
+
+    public int getMaxRoutes() {
+        return this.maxRoutes;
+    }
+
+    boolean isShutdown() {
+        return this.shutdown;
+    }
+
+    void markShutdown() {
+        this.shutdown = true;
+    }
+
+    /**
+     * Returns metrics of the given route, or {@code null} if none were recorded.
+     */
+    public RoutePoolMetrics getRouteMetrics(final HttpRoute route) {
+        Args.notNull(route, "Route");
+        return this.routeMap.get(route);
+    }
+
+    public Set<HttpRoute> getRoutes() {
+        return new HashSet<HttpRoute>(this.routeMap.keySet());
+    }
+
+    /**
+     * Passes metrics of every route to the given exporter.
+     */
+    public void export(final ConnPoolMetricsExporter exporter) {
+        Args.notNull(exporter, "Exporter");
+        for (final RoutePoolMetrics metrics: this.routeMap.values()) {
+            exporter.export(metrics);
+        }
+    }
+
+    /**
+     * Discards metrics of the given route.
+     */
+    public void remove(final HttpRoute route) {
+        Args.notNull(route, "Route");
+        this.routeMap.remove(route);
+    }
+
+    /**
+     * Resets metrics of all routes.
+     */
+    public void reset() {
+        for (final RoutePoolMetrics metrics: this.routeMap.values()) {
+            metrics.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.routeMap.values().toString();
+    }
+
+}
@@ -27,12 +27,28 @@
 package tink.org.apache.http.impl.conn;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.ConnectException;
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NoRouteToHostException;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -67,6 +83,17 @@ import tink.org.apache.http.conn.socket.LayeredConnectionSocketFactory;
  * Default implementation of {@link HttpClientConnectionOperator} used as default in Http client,
  * when no instance provided by user to {@link BasicHttpClientConnectionManager} or {@link
  * PoolingHttpClientConnectionManager} constructor.
+ * <p>
+ * By default addresses of a multihomed host are tried one after another. If a positive
+ * connection attempt delay is configured, connection attempts are raced as described in
+ * RFC 8305 (Happy Eyeballs): resolved addresses are interleaved by address family and
+ * a new attempt is started as soon as one fails or when the latest one has not completed
+ * within the attempt delay. The first socket to connect is used and all other attempts are
+ * abandoned. Each attempt runs with its own child of the execution context; only the
+ * attributes set by the winning attempt are copied to the execution context, along
+ * with the address of the winning attempt under {@link #CONNECTED_ADDRESS}. Attempts
+ * of all operators run on a shared pool of daemon threads that are released when idle.
+ * </p>
  *
  * @since 4.4
  */
@@ -75,16 +102,40 @@ public class DefaultHttpClientConnectionOperator implements HttpClientConnection
 
     static final String SOCKET_FACTORY_REGISTRY = "http.socket-factory-registry";
 
+    /**
+     * Attribute name of a {@link InetSocketAddress} object that represents
+     * the remote address the connection has been established to.
+     *
+     * @since 4.5.6
+     */
+    public static final String CONNECTED_ADDRESS = "http.connected-address";
+
     private final Log log = LogFactory.getLog(getClass());
 
     private final Lookup<ConnectionSocketFactory> socketFactoryRegistry;
     private final SchemePortResolver schemePortResolver;
     private final DnsResolver dnsResolver;
+    private final int connectionAttemptDelay;
 
     public DefaultHttpClientConnectionOperator(
             final Lookup<ConnectionSocketFactory> socketFactoryRegistry,
             final SchemePortResolver schemePortResolver,
             final DnsResolver dnsResolver) {
+        this(socketFactoryRegistry, schemePortResolver, dnsResolver, 0);
+    }
+
+    /**
+     * @param connectionAttemptDelay delay in milliseconds before the next address
+     *   is tried while previous connection attempts are still in progress. A value
+     *   of zero or less disables parallel connection attempts.
+     *
+     * @since 4.5.6
+     */
+    public DefaultHttpClientConnectionOperator(
+            final Lookup<ConnectionSocketFactory> socketFactoryRegistry,
+            final SchemePortResolver schemePortResolver,
+            final DnsResolver dnsResolver,
+            final int connectionAttemptDelay) {
         super();
         Args.notNull(socketFactoryRegistry, "Socket factory registry");
         this.socketFactoryRegistry = socketFactoryRegistry;
@@ -92,6 +143,7 @@ public class DefaultHttpClientConnectionOperator implements HttpClientConnection
             DefaultSchemePortResolver.INSTANCE;
         this.dnsResolver = dnsResolver != null ? dnsResolver :
             SystemDefaultDnsResolver.INSTANCE;
+        this.connectionAttemptDelay = connectionAttemptDelay;
     }
 
     @SuppressWarnings("unchecked")
@@ -121,26 +173,16 @@ public class DefaultHttpClientConnectionOperator implements HttpClientConnection
         final InetAddress[] addresses = host.getAddress() != null ?
                 new InetAddress[] { host.getAddress() } : this.dnsResolver.resolve(host.getHostName());
         final int port = this.schemePortResolver.resolve(host);
+        if (this.connectionAttemptDelay > 0 && addresses.length > 1) {
+            connectParallel(conn, sf, host, addresses, port, localAddress, connectTimeout,
+                    socketConfig, context);
+            return;
+        }
         for (int i = 0; i < addresses.length; i++) {
             final InetAddress address = addresses[i];
             final boolean last = i == addresses.length - 1;
 
-            Socket sock = sf.createSocket(context);
-            sock.setSoTimeout(socketConfig.getSoTimeout());
-            sock.setReuseAddress(socketConfig.isSoReuseAddress());
-            sock.setTcpNoDelay(socketConfig.isTcpNoDelay());
-            sock.setKeepAlive(socketConfig.isSoKeepAlive());
-            if (socketConfig.getRcvBufSize() > 0) {
-                sock.setReceiveBufferSize(socketConfig.getRcvBufSize());
-            }
-            if (socketConfig.getSndBufSize() > 0) {
-                sock.setSendBufferSize(socketConfig.getSndBufSize());
-            }
-
-            final int linger = socketConfig.getSoLinger();
-            if (linger >= 0) {
-                sock.setSoLinger(true, linger);
-            }
+            Socket sock = createSocket(sf, socketConfig, context);
             conn.bind(sock);
 
             final InetSocketAddress remoteAddress = new InetSocketAddress(address, port);
@@ -151,6 +193,7 @@ public class DefaultHttpClientConnectionOperator implements HttpClientConnection
                 sock = sf.connectSocket(
                         connectTimeout, sock, host, remoteAddress, localAddress, context);
                 conn.bind(sock);
+                context.setAttribute(CONNECTED_ADDRESS, remoteAddress);
                 if (this.log.isDebugEnabled()) {
                     this.log.debug("Connection established " + conn);
                 }
@@ -180,6 +223,166 @@ public class DefaultHttpClientConnectionOperator implements HttpClientConnection
         }
     }
 
+    private static Socket createSocket(
+            final ConnectionSocketFactory sf,
+            final SocketConfig socketConfig,
+            final HttpContext context) throws IOException {
+        final Socket sock = sf.createSocket(context);
+        sock.setSoTimeout(socketConfig.getSoTimeout());
+        sock.setReuseAddress(socketConfig.isSoReuseAddress());
+        sock.setTcpNoDelay(socketConfig.isTcpNoDelay());
+        sock.setKeepAlive(socketConfig.isSoKeepAlive());
+        if (socketConfig.getRcvBufSize() > 0) {
+            sock.setReceiveBufferSize(socketConfig.getRcvBufSize());
+        }
+        if (socketConfig.getSndBufSize() > 0) {
+            sock.setSendBufferSize(socketConfig.getSndBufSize());
+        }
+
+        final int linger = socketConfig.getSoLinger();
+        if (linger >= 0) {
+            sock.setSoLinger(true, linger);
+        }
+        return sock;
+    }
+
+    /**
+     * Orders addresses for parallel connection attempts by alternating address
+     * families, starting with the family of the first resolved address
+     * (RFC 8305, section 4).
+     */
+    static InetAddress[] interleaveAddressFamilies(final InetAddress[] addresses) {
+        final List<InetAddress> first = new ArrayList<InetAddress>(addresses.length);
+        final List<InetAddress> second = new ArrayList<InetAddress>(addresses.length);
+        final boolean firstIsV6 = addresses[0] instanceof Inet6Address;
+        for (final InetAddress address : addresses) {
+            if ((address instanceof Inet6Address) == firstIsV6) {
+                first.add(address);
+            } else {
+                second.add(address);
+            }
+        }
+        final InetAddress[] result = new InetAddress[addresses.length];
+        int n = 0;
+        for (int i = 0; i < first.size() || i < second.size(); i++) {
+            if (i < first.size()) {
+                result[n++] = first.get(i);
+            }
+            if (i < second.size()) {
+                result[n++] = second.get(i);
+            }
+        }
+        return result;
+    }
+
+    private void connectParallel(
+            final ManagedHttpClientConnection conn,
+            final ConnectionSocketFactory sf,
+            final HttpHost host,
+            final InetAddress[] addresses,
+            final int port,
+            final InetSocketAddress localAddress,
+            final int connectTimeout,
+            final SocketConfig socketConfig,
+            final HttpContext context) throws IOException {
+        final InetAddress[] ordered = interleaveAddressFamilies(addresses);
+        final CompletionService<ConnectionAttempt> completionService =
+                new ExecutorCompletionService<ConnectionAttempt>(AttemptExecutorHolder.EXECUTOR);
+        final List<ConnectionAttempt> attempts = new ArrayList<ConnectionAttempt>(ordered.length);
+        final AtomicBoolean done = new AtomicBoolean(false);
+        ConnectionAttempt winner = null;
+        int started = 0;
+        int pending = 0;
+        // The next address is tried right away at first and whenever an attempt
+        // fails, or else once the attempt delay has passed (RFC 8305, section 5)
+        boolean startNext = true;
+        IOException lastFailure = null;
+        try {
+            while (true) {
+                if (startNext && started < ordered.length) {
+                    final ConnectionAttempt attempt = new ConnectionAttempt(
+                            sf, host, new InetSocketAddress(ordered[started++], port), localAddress,
+                            connectTimeout, socketConfig, context, done);
+                    if (pending > 0 && this.log.isDebugEnabled()) {
+                        this.log.debug("Connect attempts still in progress; connecting to "
+                                + attempt.remoteAddress);
+                    }
+                    attempts.add(attempt);
+                    completionService.submit(attempt);
+                    pending++;
+                }
+                startNext = false;
+                if (pending == 0) {
+                    break;
+                }
+                final Future<ConnectionAttempt> future = started < ordered.length ?
+                        completionService.poll(this.connectionAttemptDelay, TimeUnit.MILLISECONDS) :
+                        completionService.take();
+                if (future == null) {
+                    startNext = true;
+                    continue;
+                }
+                pending--;
+                final ConnectionAttempt attempt;
+                try {
+                    attempt = future.get();
+                } catch (final ExecutionException ex) {
+                    final Throwable cause = ex.getCause();
+                    if (cause instanceof SocketTimeoutException
+                            || cause instanceof ConnectException
+                            || cause instanceof NoRouteToHostException) {
+                        lastFailure = (IOException) cause;
+                        if (this.log.isDebugEnabled()) {
+                            this.log.debug("Connect attempt failed: " + cause.getMessage());
+                        }
+                        startNext = true;
+                        continue;
+                    }
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IOException(cause);
+                }
+                conn.bind(attempt.socket);
+                winner = attempt;
+                attempt.context.copyTo(context);
+                context.setAttribute(CONNECTED_ADDRESS, attempt.remoteAddress);
+                if (this.log.isDebugEnabled()) {
+                    this.log.debug("Connection established to " + attempt.remoteAddress + " " + conn);
+                }
+                return;
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Connection attempt interrupted");
+        } finally {
+            // Abandon any attempt that is still in progress. An attempt that
+            // completes later finds the race decided and closes its own socket.
+            done.set(true);
+            for (final ConnectionAttempt attempt : attempts) {
+                if (attempt != winner) {
+                    attempt.abandon();
+                }
+            }
+        }
+        if (lastFailure instanceof SocketTimeoutException) {
+            throw new ConnectTimeoutException(lastFailure, host, addresses);
+        } else if (lastFailure instanceof ConnectException) {
+            if ("Connection timed out".equals(lastFailure.getMessage())) {
+                throw new ConnectTimeoutException(lastFailure, host, addresses);
+            }
+            throw new HttpHostConnectException(lastFailure, host, addresses);
+        } else if (lastFailure != null) {
+            throw lastFailure;
+        }
+    }
+
     @Override
     public void upgrade(
             final ManagedHttpClientConnection conn,
@@ -203,4 +406,140 @@ public class DefaultHttpClientConnectionOperator implements HttpClientConnection
         conn.bind(sock);
     }
 
+    class ConnectionAttempt implements Callable<ConnectionAttempt> {
+
+        private final ConnectionSocketFactory sf;
+        private final HttpHost host;
+        private final InetSocketAddress remoteAddress;
+        private final InetSocketAddress localAddress;
+        private final int connectTimeout;
+        private final SocketConfig socketConfig;
+        private final AttemptContext context;
+        private final AtomicBoolean done;
+
+        private volatile Socket socket;
+
+        ConnectionAttempt(
+                final ConnectionSocketFactory sf,
+                final HttpHost host,
+                final InetSocketAddress remoteAddress,
+                final InetSocketAddress localAddress,
+                final int connectTimeout,
+                final SocketConfig socketConfig,
+                final HttpContext context,
+                final AtomicBoolean done) {
+            this.sf = sf;
+            this.host = host;
+            this.remoteAddress = remoteAddress;
+            this.localAddress = localAddress;
+            this.connectTimeout = connectTimeout;
+            this.socketConfig = socketConfig;
+            this.context = new AttemptContext(context);
+            this.done = done;
+        }
+
+        @Override
+        public ConnectionAttempt call() throws IOException {
+            if (this.done.get()) {
+                throw new InterruptedIOException("Connection attempt abandoned");
+            }
+            this.socket = createSocket(this.sf, this.socketConfig, this.context);
+            if (log.isDebugEnabled()) {
+                log.debug("Connecting to " + this.remoteAddress);
+            }
+            final Socket connected = this.sf.connectSocket(
+                    this.connectTimeout, this.socket, this.host, this.remoteAddress,
+                    this.localAddress, this.context);
+            this.socket = connected;
+            if (this.done.get()) {
+                closeQuietly(connected);
+                throw new InterruptedIOException("Connection attempt abandoned");
+            }
+            return this;
+        }
+
+        void abandon() {
+            final Socket sock = this.socket;
+            if (sock != null && !sock.isClosed()) {
+                closeQuietly(sock);
+            }
+        }
+
+    }
+
+    private static void closeQuietly(final Socket sock) {
+        try {
+            sock.close();
+        } catch (final IOException ignore) {
+        }
+    }
+
+    /**
+     * Execution context of a single connection attempt. Attributes set during
+     * the attempt are kept apart from the parent context, which remains visible
+     * for lookups, and are copied to it only if the attempt wins the race.
+     */
+    static class AttemptContext implements HttpContext {
+
+        private final HttpContext parent;
+        private final Map<String, Object> attributes;
+
+        AttemptContext(final HttpContext parent) {
+            this.parent = parent;
+            this.attributes = new HashMap<String, Object>();
+        }
+
+        @Override
+        public Object getAttribute(final String id) {
+            Args.notNull(id, "Id");
+            final Object obj = this.attributes.get(id);
+            return obj != null ? obj : this.parent.getAttribute(id);
+        }
+
+        @Override
+        public void setAttribute(final String id, final Object obj) {
+            Args.notNull(id, "Id");
+            if (obj != null) {
+                this.attributes.put(id, obj);
+            } else {
+                this.attributes.remove(id);
+            }
+        }
+
+        @Override
+        public Object removeAttribute(final String id) {
+            Args.notNull(id, "Id");
+            return this.attributes.remove(id);
+        }
+
+        void copyTo(final HttpContext target) {
+            for (final Map.Entry<String, Object> entry : this.attributes.entrySet()) {
+                target.setAttribute(entry.getKey(), entry.getValue());
+            }
+        }
+
+    }
+
+    /**
+     * Lazily created pool shared by all operators. Its threads are daemons and
+     * terminate once idle, so it never needs to be shut down.
+     */
+    static class AttemptExecutorHolder {
+
+        static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+                new AttemptThreadFactory());
+
+    }
+
+    static class AttemptThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "Connection attempt");
+            t.setDaemon(true);
+            return t;
+        }
+
+    }
+
 }
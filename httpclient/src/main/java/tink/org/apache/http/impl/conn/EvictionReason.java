@@ -0,0 +1,56 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.impl.conn;
+
+/**
+ * Reasons a pooled connection can be closed for.
+ *
+ * @see RoutePoolMetrics#getEvictionCount(EvictionReason)
+ *
+ * @since 4.5.6
+ */
+public enum EvictionReason {
+
+    /** The connection reached its keep-alive expiry or total time to live. */
+    EXPIRED,
+
+    /** The connection was idle longer than the idle timeout. */
+    IDLE,
+
+    /** The connection failed the stale connection check. */
+    STALE,
+
+    /** The connection was released in a state that does not permit reuse. */
+    NOT_REUSABLE,
+
+    /** The connection was closed to make room for a connection of the same or another route. */
+    POOL_LIMIT,
+
+    /** The connection was closed because the pool was shut down. */
+    SHUTDOWN
+
+}
@@ -0,0 +1,156 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.impl.conn;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.util.Args;
+
+/**
+ * Lock-free histogram of non-negative values with exponentially sized buckets.
+ * Bucket {@code 0} counts the value {@code 0}, bucket {@code i} counts values
+ * from {@code 2^(i-1)} to {@code 2^i - 1}. Recording a value does not allocate.
+ * Percentiles are reported as bucket upper bounds and are therefore accurate
+ * within a factor of two.
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class Histogram {
+
+    /**
+     * Number of buckets.
+     */
+    public static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets;
+    private final AtomicLong count;
+    private final AtomicLong sum;
+    private final AtomicLong max;
+
+    public Histogram() {
+        super();
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new AtomicLong();
+        this.sum = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    static int bucketOf(final long value) {
+        final int i = Long.SIZE - Long.numberOfLeadingZeros(value);
+        return i < BUCKETS ? i : BUCKETS - 1;
+    }
+
+    /**
+     * Records the given value. Negative values are recorded as {@code 0}.
+     */
+    public void record(final long value) {
+        final long v = value > 0 ? value : 0;
+        this.buckets.incrementAndGet(bucketOf(v));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(v);
+        for (;;) {
+            final long current = this.max.get();
+            if (v <= current || this.max.compareAndSet(current, v)) {
+                break;
+            }
+        }
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getSum() {
+        return this.sum.get();
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    public double getMean() {
+        final long n = this.count.get();
+        return n > 0 ? (double) this.sum.get() / n : 0;
+    }
+
+    public long getBucketCount(final int bucket) {
+        return this.buckets.get(bucket);
+    }
+
+    /**
+     * Returns the largest value counted by the given bucket.
+     */
+    public static long getBucketUpperBound(final int bucket) {
+        Args.check(bucket >= 0 && bucket < BUCKETS, "Invalid bucket");
+        return bucket < BUCKETS - 1 ? (1L << bucket) - 1 : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile of the recorded values.
+     *
+     * @param percentile percentile in the range {@code 0..100}.
+     */
+    public long getPercentile(final double percentile) {
+        Args.check(percentile >= 0 && percentile <= 100, "Percentile must be in range 0..100");
+        final long n = this.count.get();
+        if (n == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(n * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(getBucketUpperBound(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Resets all counters. Values recorded concurrently may be partially lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i, 0);
+        }
+        this.count.set(0);
+        this.sum.set(0);
+        this.max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "[count: " + getCount() + "; mean: " + getMean() + "; p50: " + getPercentile(50)
+                + "; p99: " + getPercentile(99) + "; max: " + getMax() + "]";
+    }
+
+}
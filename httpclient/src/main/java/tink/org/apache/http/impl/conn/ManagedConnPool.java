@@ -0,0 +1,101 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.impl.conn;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import tink.org.apache.http.conn.ManagedHttpClientConnection;
+import tink.org.apache.http.conn.routing.HttpRoute;
+import tink.org.apache.http.pool.ConnPool;
+import tink.org.apache.http.pool.ConnPoolControl;
+import tink.org.apache.http.pool.PoolEntryCallback;
+
+/**
+ * Internal contract between {@link PoolingHttpClientConnectionManager} and
+ * the connection pool implementation backing it.
+ *
+ * @see PoolConcurrencyPolicy
+ *
+ * @since 4.5.6
+ */
+interface ManagedConnPool extends ConnPool<HttpRoute, CPoolEntry>, ConnPoolControl<HttpRoute> {
+
+    void shutdown() throws IOException;
+
+    boolean isShutdown();
+
+    void closeIdle(long idletime, TimeUnit tunit);
+
+    void closeExpired();
+
+    /**
+     * Closes at most {@code max} available connections of the given route that
+     * are expired or were last used at or before {@code idleDeadline}, least
+     * recently used first.
+     *
+     * @return the number of connections closed.
+     */
+    int evict(HttpRoute route, long idleDeadline, int max);
+
+    /**
+     * Closes at most {@code maxPerRoute} available connections of every route
+     * that are expired or were last used at or before {@code idleDeadline}.
+     *
+     * @return the number of connections closed.
+     */
+    int evict(long idleDeadline, int maxPerRoute);
+
+    /**
+     * Checks idle connections that would have to be validated on lease and
+     * closes the stale ones.
+     *
+     * @return the number of stale connections closed.
+     */
+    int validateIdle();
+
+    /**
+     * Leases an entry of the given route for opening a connection ahead of
+     * demand. As with a regular lease, idle entries are handed out before
+     * new ones are allocated, but they are not validated; the caller is
+     * expected to return idle entries to the pool untouched.
+     */
+    Future<CPoolEntry> allocate(HttpRoute route);
+
+    void enumAvailable(PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback);
+
+    void enumLeased(PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback);
+
+    Set<HttpRoute> getRoutes();
+
+    int getValidateAfterInactivity();
+
+    void setValidateAfterInactivity(int ms);
+
+}
@@ -0,0 +1,52 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.impl.conn;
+
+/**
+ * Defines the locking strategy of the connection pool used by
+ * {@link PoolingHttpClientConnectionManager}.
+ *
+ * @since 4.5.6
+ */
+public enum PoolConcurrencyPolicy {
+
+    /**
+     * The whole pool is guarded by a single lock. Connection limits are enforced
+     * strictly and waiting requests are served in a globally consistent order.
+     */
+    STRICT,
+
+    /**
+     * Pool state is partitioned by route, each partition having its own lock.
+     * Leasing a connection for one route never blocks on activity of another
+     * route. The total connection limit is enforced by an atomic budget shared
+     * by all routes. This policy performs best with many routes and a total
+     * limit that is rarely exhausted.
+     */
+    STRIPED
+
+}
@@ -0,0 +1,53 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.impl.conn;
+
+/**
+ * Defines the order in which idle persistent connections are handed out by
+ * {@link PoolingHttpClientConnectionManager}.
+ *
+ * @since 4.5.6
+ */
+public enum PoolReusePolicy {
+
+    /**
+     * The most recently released connection is leased first. Under fluctuating
+     * load a small set of connections is kept busy while the rest of the pool
+     * stays idle long enough to be closed by idle connection eviction. Fewer
+     * connections exceed the validate-after-inactivity period, so fewer stale
+     * checks are performed on lease.
+     */
+    LIFO,
+
+    /**
+     * The least recently released connection is leased first. Load is spread
+     * evenly across all pooled connections, which age at the same rate.
+     * Supported by {@link PoolConcurrencyPolicy#STRIPED} pools only.
+     */
+    FIFO
+
+}
@@ -28,11 +28,19 @@ package tink.org.apache.http.impl.conn;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -43,6 +51,7 @@ import tink.org.apache.http.HttpClientConnection;
 import tink.org.apache.http.HttpHost;
 import tink.org.apache.http.annotation.Contract;
 import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.client.protocol.HttpClientContext;
 import tink.org.apache.http.config.ConnectionConfig;
 import tink.org.apache.http.config.Lookup;
 import tink.org.apache.http.config.Registry;
@@ -61,6 +70,7 @@ import tink.org.apache.http.conn.socket.ConnectionSocketFactory;
 import tink.org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import tink.org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import tink.org.apache.http.pool.ConnFactory;
+import tink.org.apache.http.pool.PoolEntry;
 import tink.org.apache.http.pool.ConnPoolControl;
 import tink.org.apache.http.pool.PoolEntryCallback;
 import tink.org.apache.http.pool.PoolStats;
@@ -108,6 +118,13 @@ import tink.org.apache.http.conn.ssl.SSLConnectionSocketFactory;
  * the last use of the connection exceeds the timeout that has been set.
  * The default timeout is set to 2000ms
  * </p>
+ * <p>
+ * Connections can be opened ahead of demand with {@link #prewarm(HttpRoute, int)}.
+ * A minimum number of idle connections can be configured per route with
+ * {@link #setMinIdlePerRoute(HttpRoute, int)}; idle connections of such routes
+ * are replenished in the background whenever expired or idle connections
+ * are closed.
+ * </p>
  *
  * @since 4.3
  */
@@ -118,9 +135,14 @@ public class PoolingHttpClientConnectionManager
     private final Log log = LogFactory.getLog(getClass());
 
     private final ConfigData configData;
-    private final CPool pool;
+    private final ConnPoolMetrics metrics;
+    private final ManagedConnPool pool;
     private final HttpClientConnectionOperator connectionOperator;
     private final AtomicBoolean isShutDown;
+    private final Map<HttpRoute, Integer> minIdleMap;
+    private final Set<HttpRoute> replenishing;
+    private final ExecutorService prewarmExecutor;
+    private volatile int prewarmConnectTimeout;
 
     private static Registry<ConnectionSocketFactory> getDefaultRegistry() {
         return RegistryBuilder.<ConnectionSocketFactory>create()
@@ -186,29 +208,83 @@ public class PoolingHttpClientConnectionManager
         final HttpClientConnectionOperator httpClientConnectionOperator,
         final HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> connFactory,
         final long timeToLive, final TimeUnit tunit) {
+        this(httpClientConnectionOperator, connFactory, timeToLive, tunit, PoolConcurrencyPolicy.STRICT);
+    }
+
+    /**
+     * @param poolConcurrencyPolicy locking strategy of the connection pool.
+     *   {@link PoolConcurrencyPolicy#STRIPED} partitions the pool by route and
+     *   is better suited for a large number of routes under high concurrency.
+     *   If {@code null} {@link PoolConcurrencyPolicy#STRICT} is used.
+     *
+     * @since 4.5.6
+     */
+    public PoolingHttpClientConnectionManager(
+        final HttpClientConnectionOperator httpClientConnectionOperator,
+        final HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> connFactory,
+        final long timeToLive, final TimeUnit tunit,
+        final PoolConcurrencyPolicy poolConcurrencyPolicy) {
+        this(httpClientConnectionOperator, connFactory, timeToLive, tunit, poolConcurrencyPolicy,
+                PoolReusePolicy.LIFO);
+    }
+
+    /**
+     * @param poolConcurrencyPolicy locking strategy of the connection pool.
+     *   If {@code null} {@link PoolConcurrencyPolicy#STRICT} is used.
+     * @param poolReusePolicy order in which idle connections are leased.
+     *   If {@code null} {@link PoolReusePolicy#LIFO} is used.
+     *   {@link PoolReusePolicy#FIFO} requires {@link PoolConcurrencyPolicy#STRIPED}.
+     *
+     * @since 4.5.6
+     */
+    public PoolingHttpClientConnectionManager(
+        final HttpClientConnectionOperator httpClientConnectionOperator,
+        final HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> connFactory,
+        final long timeToLive, final TimeUnit tunit,
+        final PoolConcurrencyPolicy poolConcurrencyPolicy,
+        final PoolReusePolicy poolReusePolicy) {
         super();
         this.configData = new ConfigData();
-        this.pool = new CPool(new InternalConnectionFactory(
-                this.configData, connFactory), 2, 20, timeToLive, tunit);
+        this.metrics = new ConnPoolMetrics();
+        final InternalConnectionFactory internalConnFactory = new InternalConnectionFactory(
+                this.configData, connFactory);
+        if (poolConcurrencyPolicy == PoolConcurrencyPolicy.STRIPED) {
+            this.pool = new StripedCPool(internalConnFactory, 2, 20, timeToLive, tunit, poolReusePolicy,
+                    this.metrics);
+        } else {
+            // The shared pool always leases the most recently released connection first
+            Args.check(poolReusePolicy == null || poolReusePolicy == PoolReusePolicy.LIFO,
+                    "Reuse policy " + poolReusePolicy + " requires striped pool");
+            this.pool = new CPool(internalConnFactory, 2, 20, timeToLive, tunit, this.metrics);
+        }
         this.pool.setValidateAfterInactivity(2000);
         this.connectionOperator = Args.notNull(httpClientConnectionOperator, "HttpClientConnectionOperator");
         this.isShutDown = new AtomicBoolean(false);
+        this.minIdleMap = new ConcurrentHashMap<HttpRoute, Integer>();
+        this.replenishing = Collections.newSetFromMap(new ConcurrentHashMap<HttpRoute, Boolean>());
+        this.prewarmExecutor = Executors.newCachedThreadPool(new PrewarmThreadFactory());
+        this.prewarmConnectTimeout = 5000;
     }
 
     /**
      * Visible for test.
      */
     PoolingHttpClientConnectionManager(
-            final CPool pool,
+            final ManagedConnPool pool,
             final Lookup<ConnectionSocketFactory> socketFactoryRegistry,
             final SchemePortResolver schemePortResolver,
             final DnsResolver dnsResolver) {
         super();
         this.configData = new ConfigData();
+        this.metrics = new ConnPoolMetrics();
         this.pool = pool;
         this.connectionOperator = new DefaultHttpClientConnectionOperator(
                 socketFactoryRegistry, schemePortResolver, dnsResolver);
         this.isShutDown = new AtomicBoolean(false);
+        this.minIdleMap = new ConcurrentHashMap<HttpRoute, Integer>();
+        this.replenishing = Collections.newSetFromMap(new ConcurrentHashMap<HttpRoute, Boolean>());
+        this.prewarmExecutor = Executors.newCachedThreadPool(new PrewarmThreadFactory());
+        this.prewarmConnectTimeout = 5000;
     }
 
     @Override
@@ -276,6 +352,7 @@ public class PoolingHttpClientConnectionManager
         if (this.log.isDebugEnabled()) {
             this.log.debug("Connection request: " + format(route, state) + formatStats(route));
         }
+        final long start = System.nanoTime();
         final Future<CPoolEntry> future = this.pool.lease(route, state, null);
         return new ConnectionRequest() {
 
@@ -289,6 +366,7 @@ public class PoolingHttpClientConnectionManager
                     final long timeout,
                     final TimeUnit tunit) throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
                 final HttpClientConnection conn = leaseConnection(future, timeout, tunit);
+                metrics.recordLeaseWait(route, System.nanoTime() - start);
                 if (conn.isOpen()) {
                     final HttpHost host;
                     if (route.getProxyHost() != null) {
@@ -317,6 +395,7 @@ public class PoolingHttpClientConnectionManager
                 throw new InterruptedException();
             }
             Asserts.check(entry.getConnection() != null, "Pool entry with no connection");
+            entry.incrementLeaseCount();
             if (this.log.isDebugEnabled()) {
                 this.log.debug("Connection leased: " + format(entry) + formatStats(entry.getRoute()));
             }
@@ -355,7 +434,11 @@ public class PoolingHttpClientConnectionManager
                     conn.setSocketTimeout(0);
                 }
             } finally {
-                this.pool.release(entry, conn.isOpen() && entry.isRouteComplete());
+                final boolean reusable = conn.isOpen() && entry.isRouteComplete();
+                if (!reusable) {
+                    entry.setCloseReason(EvictionReason.NOT_REUSABLE);
+                }
+                this.pool.release(entry, reusable);
                 if (this.log.isDebugEnabled()) {
                     this.log.debug("Connection released: " + format(entry) + formatStats(entry.getRoute()));
                 }
@@ -376,14 +459,50 @@ public class PoolingHttpClientConnectionManager
             final CPoolEntry entry = CPoolProxy.getPoolEntry(managedConn);
             conn = entry.getConnection();
         }
+        connect(conn, route, connectTimeout, context);
+    }
+
+    private void connect(
+            final ManagedHttpClientConnection conn,
+            final HttpRoute route,
+            final int connectTimeout,
+            final HttpContext context) throws IOException {
         final HttpHost host;
         if (route.getProxyHost() != null) {
             host = route.getProxyHost();
         } else {
             host = route.getTargetHost();
         }
+        clearHandshakeTime(context);
+        final long start = System.nanoTime();
         this.connectionOperator.connect(
                 conn, host, route.getLocalSocketAddress(), connectTimeout, resolveSocketConfig(host), context);
+        final long elapsed = System.nanoTime() - start;
+        final long handshake = getHandshakeTime(context);
+        if (handshake >= 0) {
+            this.metrics.recordTlsHandshake(route, handshake);
+            this.metrics.recordConnect(route, elapsed - handshake);
+        } else {
+            this.metrics.recordConnect(route, elapsed);
+        }
+    }
+
+    /**
+     * Clears the handshake time of an earlier connection, so that it is not
+     * taken for the handshake of the connection about to be established.
+     */
+    private static void clearHandshakeTime(final HttpContext context) {
+        if (context != null) {
+            context.removeAttribute(SSLConnectionSocketFactory.HANDSHAKE_TIME);
+        }
+    }
+
+    private static long getHandshakeTime(final HttpContext context) {
+        if (context == null) {
+            return -1;
+        }
+        final Object handshake = context.getAttribute(SSLConnectionSocketFactory.HANDSHAKE_TIME);
+        return handshake instanceof Long ? ((Long) handshake).longValue() : -1;
     }
 
     @Override
@@ -398,7 +517,11 @@ public class PoolingHttpClientConnectionManager
             final CPoolEntry entry = CPoolProxy.getPoolEntry(managedConn);
             conn = entry.getConnection();
         }
+        clearHandshakeTime(context);
+        final long start = System.nanoTime();
         this.connectionOperator.upgrade(conn, route.getTargetHost(), context);
+        final long handshake = getHandshakeTime(context);
+        this.metrics.recordTlsHandshake(route, handshake >= 0 ? handshake : System.nanoTime() - start);
     }
 
     @Override
@@ -418,6 +541,7 @@ public class PoolingHttpClientConnectionManager
     public void shutdown() {
         if (this.isShutDown.compareAndSet(false, true)) {
             this.log.debug("Connection manager is shutting down");
+            this.prewarmExecutor.shutdownNow();
             try {
                 this.pool.shutdown();
             } catch (final IOException ex) {
@@ -432,13 +556,327 @@ public class PoolingHttpClientConnectionManager
         if (this.log.isDebugEnabled()) {
             this.log.debug("Closing connections idle longer than " + idleTimeout + " " + tunit);
         }
-        this.pool.closeIdle(idleTimeout, tunit);
+        Args.notNull(tunit, "Time unit");
+        final long deadline = System.currentTimeMillis() - Math.max(tunit.toMillis(idleTimeout), 0);
+        this.pool.enumAvailable(new PoolEntryCallback<HttpRoute, ManagedHttpClientConnection>() {
+
+            @Override
+            public void process(final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry) {
+                if (entry.getUpdated() <= deadline) {
+                    ((CPoolEntry) entry).setCloseReason(EvictionReason.IDLE);
+                    entry.close();
+                }
+            }
+
+        });
+        replenishIdle();
     }
 
     @Override
     public void closeExpiredConnections() {
         this.log.debug("Closing expired connections");
         this.pool.closeExpired();
+        replenishIdle();
+    }
+
+    /**
+     * Closes at most {@code max} expired connections of the given route, and
+     * connections of the route that have been idle longer than {@code idleTimeout}.
+     * Unlike {@link #closeIdleConnections(long, TimeUnit)} this touches a single
+     * route and can be used to evict connections incrementally, in small batches.
+     * With a {@link PoolConcurrencyPolicy#STRIPED striped pool} only the lock of
+     * the given route is held.
+     *
+     * @param idleTimeout idle time after which connections are closed. A value
+     *   of zero or less closes expired connections only.
+     * @return the number of connections closed.
+     *
+     * @since 4.5.6
+     */
+    public int evictConnections(final HttpRoute route, final long idleTimeout, final TimeUnit tunit, final int max) {
+        Args.notNull(route, "HTTP route");
+        Args.notNull(tunit, "Time unit");
+        Args.positive(max, "Max connections");
+        final long idleDeadline = idleTimeout > 0 ?
+                System.currentTimeMillis() - tunit.toMillis(idleTimeout) : Long.MIN_VALUE;
+        final int closed = this.pool.evict(route, idleDeadline, max);
+        if (closed > 0) {
+            if (this.log.isDebugEnabled()) {
+                this.log.debug("Evicted " + closed + " connections: " + format(route, null));
+            }
+            final Integer minIdle = this.minIdleMap.get(route);
+            if (minIdle != null && !this.isShutDown.get()) {
+                replenishIdle(route, minIdle.intValue());
+            }
+        }
+        return closed;
+    }
+
+    /**
+     * Closes at most {@code maxPerRoute} expired connections of every route, and
+     * connections that have been idle longer than {@code idleTimeout}. With a
+     * {@link PoolConcurrencyPolicy#STRIPED striped pool} routes are visited one
+     * at a time, holding only the lock of the route being visited. Otherwise all
+     * routes are handled by a single walk over the available connections.
+     *
+     * @param idleTimeout idle time after which connections are closed. A value
+     *   of zero or less closes expired connections only.
+     * @return the number of connections closed.
+     *
+     * @since 4.5.6
+     */
+    public int evictConnections(final long idleTimeout, final TimeUnit tunit, final int maxPerRoute) {
+        Args.notNull(tunit, "Time unit");
+        Args.positive(maxPerRoute, "Max connections per route");
+        final long idleDeadline = idleTimeout > 0 ?
+                System.currentTimeMillis() - tunit.toMillis(idleTimeout) : Long.MIN_VALUE;
+        final int closed = this.pool.evict(idleDeadline, maxPerRoute);
+        if (closed > 0) {
+            if (this.log.isDebugEnabled()) {
+                this.log.debug("Evicted " + closed + " connections");
+            }
+            replenishIdle();
+        }
+        return closed;
+    }
+
+    /**
+     * Checks idle connections whose {@link #setValidateAfterInactivity(int) validation
+     * period} has elapsed and closes those found stale. Connections that pass are
+     * considered validated and are not checked again on lease until another
+     * validation period has elapsed. Meant to be called periodically from a
+     * background thread, so that the stale connection check is normally not
+     * performed by the leasing thread.
+     * <p>
+     * Connections are probed outside of any pool lock. A lease that picks a
+     * connection while it is being probed waits for the outcome of the probe.
+     * </p>
+     *
+     * @return the number of stale connections closed.
+     *
+     * @since 4.5.6
+     */
+    public int validateIdleConnections() {
+        final int closed = this.pool.validateIdle();
+        if (closed > 0 && this.log.isDebugEnabled()) {
+            this.log.debug("Closed " + closed + " stale connections");
+        }
+        return closed;
+    }
+
+    /**
+     * Opens connections for the given route in the background until at least
+     * {@code n} connections of the route are allocated, subject to the per route
+     * and total limits. New connections are established in parallel, through
+     * the connection operator of this manager, and each is returned to the pool
+     * as an available connection as soon as it is connected.
+     * <p>
+     * Routes tunnelled through a proxy cannot be pre-warmed, since establishing
+     * the tunnel requires request execution.
+     * </p>
+     *
+     * @param route the route to open connections for.
+     * @param n the number of connections to have allocated for the route.
+     * @return the future number of connections opened.
+     *
+     * @since 4.5.6
+     */
+    public Future<Integer> prewarm(final HttpRoute route, final int n) {
+        Args.notNull(route, "HTTP route");
+        Args.notNegative(n, "Number of connections");
+        Asserts.check(!this.isShutDown.get(), "Connection manager has been shut down");
+        try {
+            return this.prewarmExecutor.submit(new Callable<Integer>() {
+
+                @Override
+                public Integer call() throws Exception {
+                    return Integer.valueOf(doPrewarm(route, n));
+                }
+
+            });
+        } catch (final RejectedExecutionException ex) {
+            throw new IllegalStateException("Connection manager has been shut down");
+        }
+    }
+
+    private int doPrewarm(final HttpRoute route, final int n) throws InterruptedException {
+        if (route.isTunnelled()) {
+            if (this.log.isDebugEnabled()) {
+                this.log.debug("Tunnelled route cannot be pre-warmed: " + format(route, null));
+            }
+            return 0;
+        }
+        final PoolStats stats = this.pool.getStats(route);
+        // Requests beyond the route limit could only wait for the lease timeout
+        final int deficit = Math.min(n, stats.getMax()) - stats.getLeased() - stats.getAvailable();
+        if (deficit <= 0) {
+            return 0;
+        }
+        final int timeout = this.prewarmConnectTimeout;
+        // Idle connections are handed out before new ones are allocated. They are held
+        // until enough new entries have been allocated, so that each lease is served by
+        // a distinct entry, and are then returned untouched.
+        final List<CPoolEntry> idle = new ArrayList<CPoolEntry>();
+        final List<CPoolEntry> allocated = new ArrayList<CPoolEntry>(deficit);
+        final int maxLeases = stats.getAvailable() + deficit;
+        boolean complete = false;
+        try {
+            for (int i = 0; i < maxLeases && allocated.size() < deficit; i++) {
+                final CPoolEntry entry = allocate(route, timeout);
+                if (entry == null) {
+                    break;
+                }
+                if (entry.getConnection().isOpen()) {
+                    idle.add(entry);
+                } else {
+                    allocated.add(entry);
+                }
+            }
+            complete = true;
+        } finally {
+            for (final CPoolEntry entry : idle) {
+                this.pool.release(entry, true);
+            }
+            if (!complete) {
+                for (final CPoolEntry entry : allocated) {
+                    releasePrewarmed(entry);
+                }
+            }
+        }
+        // Every new connection is connected and released independently of the others
+        final List<Future<Boolean>> connects = new ArrayList<Future<Boolean>>(allocated.size());
+        for (final CPoolEntry entry : allocated) {
+            Future<Boolean> connect = null;
+            if (!this.isShutDown.get()) {
+                try {
+                    connect = this.prewarmExecutor.submit(new Callable<Boolean>() {
+
+                        @Override
+                        public Boolean call() {
+                            return Boolean.valueOf(prewarmConnection(entry, route, timeout));
+                        }
+
+                    });
+                } catch (final RejectedExecutionException ex) {
+                    // Shut down concurrently
+                }
+            }
+            if (connect != null) {
+                connects.add(connect);
+            } else {
+                releasePrewarmed(entry);
+            }
+        }
+        int opened = 0;
+        for (final Future<Boolean> connect : connects) {
+            try {
+                if (connect.get().booleanValue()) {
+                    opened++;
+                }
+            } catch (final ExecutionException ex) {
+                this.log.debug("Unexpected exception pre-warming connection", ex.getCause());
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * Leases an entry for pre-warming directly from the pool, bypassing the
+     * lease metrics and the validation of idle connections.
+     *
+     * @return the entry, or {@code null} if none could be leased in time.
+     */
+    private CPoolEntry allocate(final HttpRoute route, final int timeout) throws InterruptedException {
+        final Future<CPoolEntry> future = this.pool.allocate(route);
+        boolean leased = false;
+        try {
+            final CPoolEntry entry = future.get(timeout, TimeUnit.MILLISECONDS);
+            leased = true;
+            return entry;
+        } catch (final TimeoutException ex) {
+            // Total limit reached
+        } catch (final ExecutionException ex) {
+            this.log.debug("Unable to lease connection for pre-warming", ex);
+        } finally {
+            if (!leased && !future.cancel(true)) {
+                // Completed concurrently; the entry must be returned to the pool
+                try {
+                    this.pool.release(future.get(0, TimeUnit.MILLISECONDS), true);
+                } catch (final Exception ignore) {
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean prewarmConnection(final CPoolEntry entry, final HttpRoute route, final int timeout) {
+        final HttpClientContext context = HttpClientContext.create();
+        try {
+            connect(entry.getConnection(), route, timeout, context);
+            entry.markRouteComplete();
+            return true;
+        } catch (final IOException ex) {
+            if (this.log.isDebugEnabled()) {
+                this.log.debug("Pre-warming connection failed: " + format(route, null) + " " + ex.getMessage());
+            }
+            return false;
+        } finally {
+            releasePrewarmed(entry);
+        }
+    }
+
+    private void releasePrewarmed(final CPoolEntry entry) {
+        final ManagedHttpClientConnection conn = entry.getConnection();
+        final boolean reusable = conn.isOpen() && entry.isRouteComplete();
+        if (reusable) {
+            conn.setSocketTimeout(0);
+        } else {
+            entry.setCloseReason(EvictionReason.NOT_REUSABLE);
+            try {
+                conn.shutdown();
+            } catch (final IOException ignore) {
+            }
+        }
+        this.pool.release(entry, reusable);
+    }
+
+    private void replenishIdle() {
+        if (this.minIdleMap.isEmpty() || this.isShutDown.get()) {
+            return;
+        }
+        for (final Map.Entry<HttpRoute, Integer> entry : this.minIdleMap.entrySet()) {
+            replenishIdle(entry.getKey(), entry.getValue().intValue());
+        }
+    }
+
+    private void replenishIdle(final HttpRoute route, final int minIdle) {
+        final PoolStats stats = this.pool.getStats(route);
+        if (stats.getAvailable() >= minIdle) {
+            return;
+        }
+        // Leased connections are not touched; allocate enough to top up the idle ones
+        final int n = stats.getLeased() + minIdle;
+        if (stats.getLeased() + stats.getAvailable() >= stats.getMax() || !this.replenishing.add(route)) {
+            return;
+        }
+        try {
+            this.prewarmExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        doPrewarm(route, n);
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        replenishing.remove(route);
+                    }
+                }
+
+            });
+        } catch (final RejectedExecutionException ex) {
+            this.replenishing.remove(route);
+        }
     }
 
     protected void enumAvailable(final PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback) {
@@ -489,6 +927,15 @@ public class PoolingHttpClientConnectionManager
         return this.pool.getStats(route);
     }
 
+    /**
+     * Returns per route metrics of this connection manager.
+     *
+     * @since 4.5.6
+     */
+    public ConnPoolMetrics getMetrics() {
+        return this.metrics;
+    }
+
     /**
      * @since 4.4
      */
@@ -496,6 +943,57 @@ public class PoolingHttpClientConnectionManager
         return this.pool.getRoutes();
     }
 
+    /**
+     * Returns the minimum number of idle connections kept for the given route.
+     *
+     * @since 4.5.6
+     */
+    public int getMinIdlePerRoute(final HttpRoute route) {
+        Args.notNull(route, "HTTP route");
+        final Integer minIdle = this.minIdleMap.get(route);
+        return minIdle != null ? minIdle.intValue() : 0;
+    }
+
+    /**
+     * Defines the minimum number of idle connections kept for the given route.
+     * Missing connections are opened in the background right away and whenever
+     * expired or idle connections are closed. A value of zero removes the minimum.
+     *
+     * @since 4.5.6
+     */
+    public void setMinIdlePerRoute(final HttpRoute route, final int minIdle) {
+        Args.notNull(route, "HTTP route");
+        Args.notNegative(minIdle, "Minimum idle connections");
+        if (minIdle > 0) {
+            this.minIdleMap.put(route, Integer.valueOf(minIdle));
+            if (!this.isShutDown.get()) {
+                replenishIdle(route, minIdle);
+            }
+        } else {
+            this.minIdleMap.remove(route);
+        }
+    }
+
+    /**
+     * @see #setPrewarmConnectTimeout(int)
+     *
+     * @since 4.5.6
+     */
+    public int getPrewarmConnectTimeout() {
+        return this.prewarmConnectTimeout;
+    }
+
+    /**
+     * Defines the timeout in milliseconds used to lease and to connect connections
+     * opened by {@link #prewarm(HttpRoute, int)} and to maintain the minimum number
+     * of idle connections. The default is 5000 milliseconds.
+     *
+     * @since 4.5.6
+     */
+    public void setPrewarmConnectTimeout(final int ms) {
+        this.prewarmConnectTimeout = ms;
+    }
+
     public SocketConfig getDefaultSocketConfig() {
         return this.configData.getDefaultSocketConfig();
     }
@@ -552,6 +1050,17 @@ public class PoolingHttpClientConnectionManager
         pool.setValidateAfterInactivity(ms);
     }
 
+    static class PrewarmThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "Connection pre-warm");
+            t.setDaemon(true);
+            return t;
+        }
+
+    }
+
     static class ConfigData {
 
         private final Map<HttpHost, SocketConfig> socketConfigMap;
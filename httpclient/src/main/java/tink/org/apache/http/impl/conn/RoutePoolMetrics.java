@@ -0,0 +1,142 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.impl.conn;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.conn.routing.HttpRoute;
+import tink.org.apache.http.util.Args;
+
+/**
+ * Connection pool metrics of a single route. Latencies are recorded in
+ * microseconds, connection lifetimes in milliseconds.
+ *
+ * @see ConnPoolMetrics
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class RoutePoolMetrics {
+
+    private final HttpRoute route;
+    private final Histogram leaseWaitTime;
+    private final Histogram connectTime;
+    private final Histogram tlsHandshakeTime;
+    private final Histogram connectionLifetime;
+    private final Histogram reuseCount;
+    private final AtomicLongArray evictions;
+
+    RoutePoolMetrics(final HttpRoute route) {
+        super();
+        this.route = route;
+        this.leaseWaitTime = new Histogram();
+        this.connectTime = new Histogram();
+        this.tlsHandshakeTime = new Histogram();
+        this.connectionLifetime = new Histogram();
+        this.reuseCount = new Histogram();
+        this.evictions = new AtomicLongArray(EvictionReason.values().length);
+    }
+
+    public HttpRoute getRoute() {
+        return this.route;
+    }
+
+    /**
+     * Time in microseconds requests waited for a connection to be leased from the pool.
+     */
+    public Histogram getLeaseWaitTime() {
+        return this.leaseWaitTime;
+    }
+
+    /**
+     * Time in microseconds it took to establish a socket connection, excluding
+     * the TLS handshake.
+     */
+    public Histogram getConnectTime() {
+        return this.connectTime;
+    }
+
+    /**
+     * Time in microseconds TLS handshakes took, including host name verification.
+     */
+    public Histogram getTlsHandshakeTime() {
+        return this.tlsHandshakeTime;
+    }
+
+    /**
+     * Time in milliseconds connections were kept open.
+     */
+    public Histogram getConnectionLifetime() {
+        return this.connectionLifetime;
+    }
+
+    /**
+     * Number of times connections were leased again after their first use,
+     * recorded when they are closed.
+     */
+    public Histogram getReuseCount() {
+        return this.reuseCount;
+    }
+
+    public long getEvictionCount(final EvictionReason reason) {
+        Args.notNull(reason, "Eviction reason");
+        return this.evictions.get(reason.ordinal());
+    }
+
+    void recordEviction(final EvictionReason reason) {
+        this.evictions.incrementAndGet(reason.ordinal());
+    }
+
+    void reset() {
+        this.leaseWaitTime.reset();
+        this.connectTime.reset();
+        this.tlsHandshakeTime.reset();
+        this.connectionLifetime.reset();
+        this.reuseCount.reset();
+        for (int i = 0; i < this.evictions.length(); i++) {
+            this.evictions.set(i, 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append("[route: ").append(this.route).append("]");
+        buf.append("[lease wait: ").append(this.leaseWaitTime).append("]");
+        buf.append("[connect: ").append(this.connectTime).append("]");
+        buf.append("[tls handshake: ").append(this.tlsHandshakeTime).append("]");
+        buf.append("[evictions:");
+        for (final EvictionReason reason: EvictionReason.values()) {
+            buf.append(" ").append(reason).append("=").append(getEvictionCount(reason));
+        }
+        buf.append("]");
+        return buf.toString();
+    }
+
+}
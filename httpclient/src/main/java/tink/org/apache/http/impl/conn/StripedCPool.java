@@ -0,0 +1,976 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package tink.org.apache.http.impl.conn;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import tink.org.apache.http.annotation.Contract;
+import tink.org.apache.http.annotation.ThreadingBehavior;
+import tink.org.apache.http.concurrent.FutureCallback;
+import tink.org.apache.http.conn.ManagedHttpClientConnection;
+import tink.org.apache.http.conn.routing.HttpRoute;
+import tink.org.apache.http.pool.ConnFactory;
+import tink.org.apache.http.pool.PoolEntry;
+import tink.org.apache.http.pool.PoolEntryCallback;
+import tink.org.apache.http.pool.PoolStats;
+import tink.org.apache.http.util.Args;
+import tink.org.apache.http.util.Asserts;
+
+/**
+ * Connection pool that partitions its state by {@link HttpRoute}. Every route
+ * is guarded by a lock of its own, so that leasing and releasing connections
+ * for one route never contends with activity on other routes. The total number
+ * of allocated connections is bounded by an atomic budget shared by all routes.
+ * <p>
+ * When the budget is exhausted the pool attempts to reclaim an idle connection
+ * of another route without waiting for that route's lock. Requests that still
+ * cannot be served are woken up as soon as a connection is released or closed
+ * on any route.
+ * </p>
+ *
+ * @see PoolConcurrencyPolicy#STRIPED
+ *
+ * @since 4.5.6
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+class StripedCPool implements ManagedConnPool {
+
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    private static final int RECLAIM_NONE = 0;
+    private static final int RECLAIM_DONE = 1;
+    private static final int RECLAIM_CONTENDED = 2;
+
+    /**
+     * Maximum time a request blocked on the total budget waits before retrying
+     * to reclaim an idle connection of a route whose lock was busy.
+     */
+    private static final long RECLAIM_RETRY_MS = 1;
+
+    private final Log log = LogFactory.getLog(StripedCPool.class);
+    private final ConnFactory<HttpRoute, ManagedHttpClientConnection> connFactory;
+    private final long timeToLive;
+    private final TimeUnit tunit;
+    private final PoolReusePolicy reusePolicy;
+    private final ConnPoolMetrics metrics;
+    private final ConcurrentMap<HttpRoute, RouteSegment> segments;
+    private final Map<HttpRoute, Integer> maxPerRoute;
+    private final Queue<RouteSegment> starved;
+    private final AtomicInteger allocated;
+
+    private volatile boolean isShutDown;
+    private volatile int defaultMaxPerRoute;
+    private volatile int maxTotal;
+    private volatile int validateAfterInactivity;
+
+    public StripedCPool(
+            final ConnFactory<HttpRoute, ManagedHttpClientConnection> connFactory,
+            final int defaultMaxPerRoute, final int maxTotal,
+            final long timeToLive, final TimeUnit tunit) {
+        this(connFactory, defaultMaxPerRoute, maxTotal, timeToLive, tunit, PoolReusePolicy.LIFO);
+    }
+
+    public StripedCPool(
+            final ConnFactory<HttpRoute, ManagedHttpClientConnection> connFactory,
+            final int defaultMaxPerRoute, final int maxTotal,
+            final long timeToLive, final TimeUnit tunit,
+            final PoolReusePolicy reusePolicy) {
+        this(connFactory, defaultMaxPerRoute, maxTotal, timeToLive, tunit, reusePolicy, null);
+    }
+
+    public StripedCPool(
+            final ConnFactory<HttpRoute, ManagedHttpClientConnection> connFactory,
+            final int defaultMaxPerRoute, final int maxTotal,
+            final long timeToLive, final TimeUnit tunit,
+            final PoolReusePolicy reusePolicy,
+            final ConnPoolMetrics metrics) {
+        super();
+        this.connFactory = Args.notNull(connFactory, "Connection factory");
+        this.defaultMaxPerRoute = Args.positive(defaultMaxPerRoute, "Max per route value");
+        this.maxTotal = Args.positive(maxTotal, "Max total value");
+        this.timeToLive = timeToLive;
+        this.tunit = tunit;
+        this.reusePolicy = reusePolicy != null ? reusePolicy : PoolReusePolicy.LIFO;
+        this.metrics = metrics;
+        this.segments = new ConcurrentHashMap<HttpRoute, RouteSegment>();
+        this.maxPerRoute = new ConcurrentHashMap<HttpRoute, Integer>();
+        this.starved = new ConcurrentLinkedQueue<RouteSegment>();
+        this.allocated = new AtomicInteger(0);
+    }
+
+    protected CPoolEntry createEntry(final HttpRoute route, final ManagedHttpClientConnection conn) {
+        final String id = Long.toString(COUNTER.getAndIncrement());
+        return new CPoolEntry(this.log, id, route, conn, this.timeToLive, this.tunit, this.metrics);
+    }
+
+    protected boolean validate(final CPoolEntry entry) {
+        if (entry.getConnection().isStale()) {
+            entry.setCloseReason(EvictionReason.STALE);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.isShutDown;
+    }
+
+    @Override
+    public void shutdown() throws IOException {
+        if (this.isShutDown) {
+            return;
+        }
+        this.isShutDown = true;
+        if (this.metrics != null) {
+            this.metrics.markShutdown();
+        }
+        for (final RouteSegment segment: this.segments.values()) {
+            segment.lock();
+            try {
+                for (final CPoolEntry entry: segment.available) {
+                    entry.close();
+                }
+                for (final CPoolEntry entry: segment.leased) {
+                    entry.close();
+                }
+                for (final CPoolEntry entry: segment.validating) {
+                    entry.close();
+                }
+                segment.available.clear();
+                segment.leased.clear();
+                segment.validating.clear();
+                segment.condition.signalAll();
+            } finally {
+                segment.unlock();
+            }
+        }
+        this.segments.clear();
+        this.allocated.set(0);
+    }
+
+    private RouteSegment getSegment(final HttpRoute route) {
+        RouteSegment segment = this.segments.get(route);
+        if (segment == null) {
+            final RouteSegment newSegment = new RouteSegment(route, this.reusePolicy);
+            segment = this.segments.putIfAbsent(route, newSegment);
+            if (segment == null) {
+                segment = newSegment;
+            }
+        }
+        return segment;
+    }
+
+    private int getMax(final HttpRoute route) {
+        final Integer v = this.maxPerRoute.get(route);
+        return v != null ? v.intValue() : this.defaultMaxPerRoute;
+    }
+
+    private boolean acquirePermit() {
+        for (;;) {
+            final int current = this.allocated.get();
+            if (current >= this.maxTotal) {
+                return false;
+            }
+            if (this.allocated.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Closes the least recently used idle connection, preferably of the current
+     * route, and returns its permit to the budget. Locks of other routes are
+     * never waited for. Must be called with the lock of the current segment held.
+     */
+    private int reclaimIdle(final RouteSegment current) {
+        CPoolEntry entry = current.pollLeastRecentlyUsed();
+        if (entry != null) {
+            entry.close();
+            this.allocated.decrementAndGet();
+            return RECLAIM_DONE;
+        }
+        boolean contended = false;
+        for (final RouteSegment segment: this.segments.values()) {
+            if (segment == current || segment.idle == 0) {
+                continue;
+            }
+            if (segment.lock.tryLock()) {
+                try {
+                    entry = segment.pollLeastRecentlyUsed();
+                } finally {
+                    segment.unlock();
+                }
+                if (entry != null) {
+                    entry.close();
+                    this.allocated.decrementAndGet();
+                    return RECLAIM_DONE;
+                }
+            } else {
+                contended = true;
+            }
+        }
+        return contended ? RECLAIM_CONTENDED : RECLAIM_NONE;
+    }
+
+    /**
+     * Wakes up requests of all routes waiting for the total budget. Several
+     * permits may have been returned at once, so every starved route gets a
+     * chance to claim one; requests that still find the budget exhausted
+     * register themselves again. Must not be called with any segment lock held.
+     */
+    private void signalStarved() {
+        for (int n = this.starved.size(); n > 0; n--) {
+            final RouteSegment segment = this.starved.poll();
+            if (segment == null) {
+                break;
+            }
+            segment.lock();
+            try {
+                segment.starved = false;
+                if (segment.pending > 0) {
+                    segment.condition.signalAll();
+                }
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    private void signalSegment(final HttpRoute route) {
+        final RouteSegment segment = this.segments.get(route);
+        if (segment != null) {
+            segment.lock();
+            try {
+                segment.condition.signalAll();
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    @Override
+    public Future<CPoolEntry> lease(
+            final HttpRoute route, final Object state, final FutureCallback<CPoolEntry> callback) {
+        return lease(route, state, callback, true);
+    }
+
+    @Override
+    public Future<CPoolEntry> allocate(final HttpRoute route) {
+        return lease(route, null, null, false);
+    }
+
+    private Future<CPoolEntry> lease(
+            final HttpRoute route, final Object state, final FutureCallback<CPoolEntry> callback,
+            final boolean validate) {
+        Args.notNull(route, "Route");
+        Asserts.check(!this.isShutDown, "Connection pool shut down");
+        return new Future<CPoolEntry>() {
+
+            private final AtomicBoolean cancelled = new AtomicBoolean(false);
+            private final AtomicBoolean done = new AtomicBoolean(false);
+            private final AtomicReference<CPoolEntry> entryRef = new AtomicReference<CPoolEntry>(null);
+
+            @Override
+            public boolean cancel(final boolean mayInterruptIfRunning) {
+                if (cancelled.compareAndSet(false, true)) {
+                    done.set(true);
+                    signalSegment(route);
+                    if (callback != null) {
+                        callback.cancelled();
+                    }
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return cancelled.get();
+            }
+
+            @Override
+            public boolean isDone() {
+                return done.get();
+            }
+
+            @Override
+            public CPoolEntry get() throws InterruptedException, ExecutionException {
+                try {
+                    return get(0L, TimeUnit.MILLISECONDS);
+                } catch (final TimeoutException ex) {
+                    throw new ExecutionException(ex);
+                }
+            }
+
+            @Override
+            public CPoolEntry get(
+                    final long timeout,
+                    final TimeUnit tunit) throws InterruptedException, ExecutionException, TimeoutException {
+                final CPoolEntry entry = entryRef.get();
+                if (entry != null) {
+                    return entry;
+                }
+                synchronized (this) {
+                    try {
+                        for (;;) {
+                            final CPoolEntry leasedEntry = getPoolEntryBlocking(route, state, timeout, tunit, this);
+                            if (validate && validateAfterInactivity > 0)  {
+                                if (leasedEntry.getLastVerified() + validateAfterInactivity <= System.currentTimeMillis()) {
+                                    if (!validate(leasedEntry)) {
+                                        leasedEntry.close();
+                                        release(leasedEntry, false);
+                                        continue;
+                                    }
+                                }
+                            }
+                            entryRef.set(leasedEntry);
+                            done.set(true);
+                            if (callback != null) {
+                                callback.completed(leasedEntry);
+                            }
+                            return leasedEntry;
+                        }
+                    } catch (final IOException ex) {
+                        done.set(true);
+                        if (callback != null) {
+                            callback.failed(ex);
+                        }
+                        throw new ExecutionException(ex);
+                    }
+                }
+            }
+
+        };
+    }
+
+    public Future<CPoolEntry> lease(final HttpRoute route, final Object state) {
+        return lease(route, state, null);
+    }
+
+    private CPoolEntry getPoolEntryBlocking(
+            final HttpRoute route, final Object state,
+            final long timeout, final TimeUnit tunit,
+            final Future<CPoolEntry> future) throws IOException, InterruptedException, TimeoutException {
+
+        Date deadline = null;
+        if (timeout > 0) {
+            deadline = new Date (System.currentTimeMillis() + tunit.toMillis(timeout));
+        }
+        for (;;) {
+            final RouteSegment segment = getSegment(route);
+            boolean budgetReleased = false;
+            segment.lock();
+            try {
+                if (segment.retired) {
+                    // Segment has been purged concurrently; look up its replacement
+                    continue;
+                }
+                for (;;) {
+                    Asserts.check(!this.isShutDown, "Connection pool shut down");
+                    CPoolEntry entry;
+                    for (;;) {
+                        entry = segment.getFree(state);
+                        if (entry == null) {
+                            break;
+                        }
+                        if (entry.isExpired(System.currentTimeMillis())) {
+                            entry.close();
+                        }
+                        if (entry.isClosed()) {
+                            this.allocated.decrementAndGet();
+                            budgetReleased = true;
+                        } else {
+                            break;
+                        }
+                    }
+                    if (entry != null) {
+                        segment.leased.add(entry);
+                        return entry;
+                    }
+
+                    // New connection is needed
+                    final int maxPerRoute = getMax(route);
+                    // Shrink the route prior to allocating a new connection
+                    final int excess = Math.max(0, segment.getAllocatedCount() + 1 - maxPerRoute);
+                    for (int i = 0; i < excess; i++) {
+                        final CPoolEntry lastUsed = segment.pollLeastRecentlyUsed();
+                        if (lastUsed == null) {
+                            break;
+                        }
+                        lastUsed.close();
+                        this.allocated.decrementAndGet();
+                        budgetReleased = true;
+                    }
+
+                    int reclaim = RECLAIM_NONE;
+                    if (segment.getAllocatedCount() < maxPerRoute) {
+                        boolean permitted = acquirePermit();
+                        if (!permitted) {
+                            // Register before reclaiming so that a concurrent release
+                            // cannot slip in between the budget check and the wait
+                            if (!segment.starved) {
+                                segment.starved = true;
+                                this.starved.add(segment);
+                            }
+                            reclaim = reclaimIdle(segment);
+                            permitted = acquirePermit();
+                        }
+                        if (permitted) {
+                            final ManagedHttpClientConnection conn;
+                            try {
+                                conn = this.connFactory.create(route);
+                            } catch (final IOException ex) {
+                                this.allocated.decrementAndGet();
+                                budgetReleased = true;
+                                throw ex;
+                            }
+                            entry = createEntry(route, conn);
+                            segment.leased.add(entry);
+                            return entry;
+                        }
+                    }
+
+                    if (future.isCancelled()) {
+                        throw new InterruptedException("Operation interrupted");
+                    }
+                    segment.pending++;
+                    try {
+                        if (reclaim == RECLAIM_CONTENDED) {
+                            segment.condition.await(RECLAIM_RETRY_MS, TimeUnit.MILLISECONDS);
+                        } else if (deadline != null) {
+                            segment.condition.awaitUntil(deadline);
+                        } else {
+                            segment.condition.await();
+                        }
+                        if (future.isCancelled()) {
+                            throw new InterruptedException("Operation interrupted");
+                        }
+                    } finally {
+                        segment.pending--;
+                    }
+                    if (deadline != null && deadline.getTime() <= System.currentTimeMillis()) {
+                        break;
+                    }
+                }
+                throw new TimeoutException("Timeout waiting for connection");
+            } finally {
+                segment.unlock();
+                // A request leaving without a permit, e.g. on timeout or cancellation,
+                // may have consumed the wake-up meant for requests of other routes
+                if (budgetReleased
+                        || (!this.starved.isEmpty() && this.allocated.get() < this.maxTotal)) {
+                    signalStarved();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void release(final CPoolEntry entry, final boolean reusable) {
+        final RouteSegment segment = this.segments.get(entry.getRoute());
+        if (segment == null) {
+            return;
+        }
+        segment.lock();
+        try {
+            if (segment.leased.remove(entry)) {
+                if (reusable && !this.isShutDown) {
+                    segment.addAvailable(entry);
+                } else {
+                    entry.close();
+                    this.allocated.decrementAndGet();
+                }
+                if (segment.pending > 0) {
+                    segment.condition.signalAll();
+                }
+            }
+        } finally {
+            segment.unlock();
+        }
+        if (!this.starved.isEmpty()) {
+            signalStarved();
+        }
+    }
+
+    @Override
+    public void setMaxTotal(final int max) {
+        Args.positive(max, "Max value");
+        this.maxTotal = max;
+        signalStarved();
+    }
+
+    @Override
+    public int getMaxTotal() {
+        return this.maxTotal;
+    }
+
+    @Override
+    public void setDefaultMaxPerRoute(final int max) {
+        Args.positive(max, "Max per route value");
+        this.defaultMaxPerRoute = max;
+    }
+
+    @Override
+    public int getDefaultMaxPerRoute() {
+        return this.defaultMaxPerRoute;
+    }
+
+    @Override
+    public void setMaxPerRoute(final HttpRoute route, final int max) {
+        Args.notNull(route, "Route");
+        if (max > -1) {
+            this.maxPerRoute.put(route, Integer.valueOf(max));
+        } else {
+            this.maxPerRoute.remove(route);
+        }
+        signalSegment(route);
+    }
+
+    @Override
+    public int getMaxPerRoute(final HttpRoute route) {
+        Args.notNull(route, "Route");
+        return getMax(route);
+    }
+
+    @Override
+    public PoolStats getTotalStats() {
+        int leased = 0;
+        int pending = 0;
+        int available = 0;
+        for (final RouteSegment segment: this.segments.values()) {
+            segment.lock();
+            try {
+                leased += segment.leased.size();
+                pending += segment.pending;
+                available += segment.available.size();
+            } finally {
+                segment.unlock();
+            }
+        }
+        return new PoolStats(leased, pending, available, this.maxTotal);
+    }
+
+    @Override
+    public PoolStats getStats(final HttpRoute route) {
+        Args.notNull(route, "Route");
+        final RouteSegment segment = this.segments.get(route);
+        if (segment == null) {
+            return new PoolStats(0, 0, 0, getMax(route));
+        }
+        segment.lock();
+        try {
+            return new PoolStats(
+                    segment.leased.size(),
+                    segment.pending,
+                    segment.available.size(),
+                    getMax(route));
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public Set<HttpRoute> getRoutes() {
+        return new HashSet<HttpRoute>(this.segments.keySet());
+    }
+
+    @Override
+    public void enumAvailable(final PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback) {
+        int removed = 0;
+        for (final RouteSegment segment: this.segments.values()) {
+            segment.lock();
+            try {
+                final Iterator<CPoolEntry> it = segment.available.iterator();
+                while (it.hasNext()) {
+                    final CPoolEntry entry = it.next();
+                    callback.process(entry);
+                    if (entry.isClosed()) {
+                        it.remove();
+                        this.allocated.decrementAndGet();
+                        removed++;
+                    }
+                }
+            } finally {
+                segment.unlock();
+            }
+        }
+        purgeSegments();
+        if (removed > 0) {
+            signalStarved();
+        }
+    }
+
+    @Override
+    public void enumLeased(final PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback) {
+        for (final RouteSegment segment: this.segments.values()) {
+            segment.lock();
+            try {
+                for (final CPoolEntry entry: segment.leased) {
+                    callback.process(entry);
+                }
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    private void purgeSegments() {
+        for (final RouteSegment segment: this.segments.values()) {
+            if (segment.lock.tryLock()) {
+                try {
+                    if (segment.getAllocatedCount() == 0 && segment.pending == 0 && !segment.starved) {
+                        segment.retired = true;
+                        this.segments.remove(segment.route, segment);
+                    }
+                } finally {
+                    segment.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Validates idle connections off the request path. Entries whose validation
+     * period has elapsed are taken out of the available lists of all routes,
+     * probed as one batch without holding any lock and then either put back as
+     * validated or closed. Entries being validated count towards the limits but
+     * cannot be leased.
+     */
+    @Override
+    public int validateIdle() {
+        final int period = this.validateAfterInactivity;
+        if (period <= 0 || this.isShutDown) {
+            return 0;
+        }
+        final long now = System.currentTimeMillis();
+        final List<CPoolEntry> batch = new ArrayList<CPoolEntry>();
+        for (final RouteSegment segment: this.segments.values()) {
+            segment.lock();
+            try {
+                final Iterator<CPoolEntry> it = segment.available.iterator();
+                while (it.hasNext()) {
+                    final CPoolEntry entry = it.next();
+                    if (entry.getLastVerified() + period <= now) {
+                        it.remove();
+                        segment.validating.add(entry);
+                        batch.add(entry);
+                    }
+                }
+            } finally {
+                segment.unlock();
+            }
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        final boolean[] usable = new boolean[batch.size()];
+        for (int i = 0; i < usable.length; i++) {
+            final CPoolEntry entry = batch.get(i);
+            usable[i] = !entry.isClosed() && !entry.isExpired(now) && validate(entry);
+        }
+        final long validated = System.currentTimeMillis();
+        int removed = 0;
+        for (int i = 0; i < usable.length; i++) {
+            final CPoolEntry entry = batch.get(i);
+            final RouteSegment segment = this.segments.get(entry.getRoute());
+            if (segment == null) {
+                // Pool has been shut down
+                entry.close();
+                continue;
+            }
+            segment.lock();
+            try {
+                if (!segment.validating.remove(entry)) {
+                    continue;
+                }
+                if (usable[i] && !this.isShutDown) {
+                    entry.markValidated(validated);
+                    segment.addLeastRecentlyUsed(entry);
+                } else {
+                    entry.close();
+                    this.allocated.decrementAndGet();
+                    removed++;
+                }
+                if (segment.pending > 0) {
+                    segment.condition.signalAll();
+                }
+            } finally {
+                segment.unlock();
+            }
+        }
+        if (removed > 0) {
+            signalStarved();
+        }
+        return removed;
+    }
+
+    /**
+     * Evicts connections route by route, holding one route lock at a time.
+     */
+    @Override
+    public int evict(final long idleDeadline, final int maxPerRoute) {
+        int closed = 0;
+        for (final HttpRoute route: this.segments.keySet()) {
+            closed += evict(route, idleDeadline, maxPerRoute);
+        }
+        return closed;
+    }
+
+    /**
+     * Holds the lock of the given route only, for at most {@code max} closes.
+     */
+    @Override
+    public int evict(final HttpRoute route, final long idleDeadline, final int max) {
+        final RouteSegment segment = this.segments.get(route);
+        if (segment == null) {
+            return 0;
+        }
+        final long now = System.currentTimeMillis();
+        int closed = 0;
+        segment.lock();
+        try {
+            final Iterator<CPoolEntry> it = segment.leastRecentlyUsedIterator();
+            while (closed < max && it.hasNext()) {
+                final CPoolEntry entry = it.next();
+                if (entry.isExpired(now)) {
+                    entry.setCloseReason(EvictionReason.EXPIRED);
+                } else if (entry.getUpdated() <= idleDeadline) {
+                    entry.setCloseReason(EvictionReason.IDLE);
+                } else {
+                    continue;
+                }
+                it.remove();
+                entry.close();
+                this.allocated.decrementAndGet();
+                closed++;
+            }
+            if (segment.getAllocatedCount() == 0 && segment.pending == 0 && !segment.starved) {
+                segment.retired = true;
+                this.segments.remove(segment.route, segment);
+            }
+        } finally {
+            segment.unlock();
+        }
+        if (closed > 0) {
+            signalStarved();
+        }
+        return closed;
+    }
+
+    @Override
+    public void closeIdle(final long idletime, final TimeUnit tunit) {
+        Args.notNull(tunit, "Time unit");
+        long time = tunit.toMillis(idletime);
+        if (time < 0) {
+            time = 0;
+        }
+        final long deadline = System.currentTimeMillis() - time;
+        enumAvailable(new PoolEntryCallback<HttpRoute, ManagedHttpClientConnection>() {
+
+            @Override
+            public void process(final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry) {
+                if (entry.getUpdated() <= deadline) {
+                    entry.close();
+                }
+            }
+
+        });
+    }
+
+    @Override
+    public void closeExpired() {
+        final long now = System.currentTimeMillis();
+        enumAvailable(new PoolEntryCallback<HttpRoute, ManagedHttpClientConnection>() {
+
+            @Override
+            public void process(final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry) {
+                if (entry.isExpired(now)) {
+                    entry.close();
+                }
+            }
+
+        });
+    }
+
+    @Override
+    public int getValidateAfterInactivity() {
+        return this.validateAfterInactivity;
+    }
+
+    @Override
+    public void setValidateAfterInactivity(final int ms) {
+        this.validateAfterInactivity = ms;
+    }
+
+    @Override
+    public String toString() {
+        final PoolStats totals = getTotalStats();
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[leased: ");
+        buffer.append(totals.getLeased());
+        buffer.append("][available: ");
+        buffer.append(totals.getAvailable());
+        buffer.append("][pending: ");
+        buffer.append(totals.getPending());
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    /**
+     * Per route partition of the pool state. Mutable fields except {@link #idle}
+     * are guarded by {@link #lock}.
+     */
+    static class RouteSegment {
+
+        final HttpRoute route;
+        final PoolReusePolicy reusePolicy;
+        final Lock lock;
+        final Condition condition;
+        final LinkedList<CPoolEntry> available;
+        final Set<CPoolEntry> leased;
+        final Set<CPoolEntry> validating;
+        int pending;
+        boolean starved;
+        boolean retired;
+
+        /**
+         * Number of available connections as of the last time the lock was
+         * released. Used as a hint only to skip routes without idle connections.
+         */
+        volatile int idle;
+
+        RouteSegment(final HttpRoute route, final PoolReusePolicy reusePolicy) {
+            super();
+            this.route = route;
+            this.reusePolicy = reusePolicy;
+            this.lock = new ReentrantLock();
+            this.condition = this.lock.newCondition();
+            this.available = new LinkedList<CPoolEntry>();
+            this.leased = new HashSet<CPoolEntry>();
+            this.validating = new HashSet<CPoolEntry>();
+        }
+
+        void lock() {
+            this.lock.lock();
+        }
+
+        void unlock() {
+            this.idle = this.available.size();
+            this.lock.unlock();
+        }
+
+        int getAllocatedCount() {
+            return this.available.size() + this.leased.size() + this.validating.size();
+        }
+
+        /**
+         * Adds a released entry to the available list. Entries are leased from
+         * the head of the list, so the list is ordered by the reuse policy.
+         */
+        void addAvailable(final CPoolEntry entry) {
+            if (this.reusePolicy == PoolReusePolicy.FIFO) {
+                this.available.addLast(entry);
+            } else {
+                this.available.addFirst(entry);
+            }
+        }
+
+        void addLeastRecentlyUsed(final CPoolEntry entry) {
+            if (this.reusePolicy == PoolReusePolicy.FIFO) {
+                this.available.addFirst(entry);
+            } else {
+                this.available.addLast(entry);
+            }
+        }
+
+        Iterator<CPoolEntry> leastRecentlyUsedIterator() {
+            if (this.reusePolicy == PoolReusePolicy.FIFO) {
+                return this.available.iterator();
+            }
+            return this.available.descendingIterator();
+        }
+
+        CPoolEntry pollLeastRecentlyUsed() {
+            if (this.reusePolicy == PoolReusePolicy.FIFO) {
+                return this.available.pollFirst();
+            }
+            return this.available.pollLast();
+        }
+
+        CPoolEntry getFree(final Object state) {
+            if (!this.available.isEmpty()) {
+                if (state != null) {
+                    final Iterator<CPoolEntry> it = this.available.iterator();
+                    while (it.hasNext()) {
+                        final CPoolEntry entry = it.next();
+                        if (state.equals(entry.getState())) {
+                            it.remove();
+                            return entry;
+                        }
+                    }
+                }
+                final Iterator<CPoolEntry> it = this.available.iterator();
+                while (it.hasNext()) {
+                    final CPoolEntry entry = it.next();
+                    if (entry.getState() == null) {
+                        it.remove();
+                        return entry;
+                    }
+                }
+            }
+            return null;
+        }
+
+    }
+
+}
@@ -29,12 +29,14 @@ package tink.org.apache.http.impl.execchain;
 
 import java.io.IOException;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.TimeUnit;
 
 import tink.org.apache.http.HttpException;
 import tink.org.apache.http.annotation.Contract;
 import tink.org.apache.http.annotation.ThreadingBehavior;
 import tink.org.apache.http.client.BackoffManager;
 import tink.org.apache.http.client.ConnectionBackoffStrategy;
+import tink.org.apache.http.client.LatencyAwareBackoffManager;
 import tink.org.apache.http.client.methods.CloseableHttpResponse;
 import tink.org.apache.http.client.methods.HttpExecutionAware;
 import tink.org.apache.http.client.methods.HttpRequestWrapper;
@@ -78,6 +80,7 @@ public class BackoffStrategyExec implements ClientExecChain {
         Args.notNull(request, "HTTP request");
         Args.notNull(context, "HTTP context");
         CloseableHttpResponse out = null;
+        context.removeAttribute(HttpClientContext.RESPONSE_TIME);
         try {
             out = this.requestExecutor.execute(route, request, context, execAware);
         } catch (final Exception ex) {
@@ -101,6 +104,15 @@ public class BackoffStrategyExec implements ClientExecChain {
         if (this.connectionBackoffStrategy.shouldBackoff(out)) {
             this.backoffManager.backOff(route);
         } else {
+            if (this.backoffManager instanceof LatencyAwareBackoffManager) {
+                // Only the exchange with the backend is measured; the connection lease
+                // wait grows as the limit is lowered and would feed back into it
+                final Object responseTime = context.getAttribute(HttpClientContext.RESPONSE_TIME);
+                if (responseTime instanceof Long) {
+                    ((LatencyAwareBackoffManager) this.backoffManager).recordLatency(
+                            route, ((Long) responseTime).longValue(), TimeUnit.NANOSECONDS);
+                }
+            }
             this.backoffManager.probe(route);
         }
         return out;
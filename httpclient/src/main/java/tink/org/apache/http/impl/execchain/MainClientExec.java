@@ -284,7 +284,9 @@ public class MainClientExec implements ClientExecChain {
                     this.authenticator.generateAuthResponse(request, proxyAuthState, context);
                 }
 
+                final long start = System.nanoTime();
                 response = requestExecutor.execute(request, managedConn, context);
+                context.setAttribute(HttpClientContext.RESPONSE_TIME, Long.valueOf(System.nanoTime() - start));
 
                 // The connection is in or can be brought to a re-usable state.
                 if (reuseStrategy.keepAlive(response, context)) {
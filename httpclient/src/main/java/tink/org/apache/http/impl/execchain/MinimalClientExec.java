@@ -216,7 +216,9 @@ public class MinimalClientExec implements ClientExecChain {
             context.setAttribute(HttpClientContext.HTTP_ROUTE, route);
 
             httpProcessor.process(request, context);
+            final long start = System.nanoTime();
             final HttpResponse response = requestExecutor.execute(request, managedConn, context);
+            context.setAttribute(HttpClientContext.RESPONSE_TIME, Long.valueOf(System.nanoTime() - start));
             httpProcessor.process(response, context);
 
             // The connection is in or can be brought to a re-usable state.
@@ -45,6 +45,7 @@ import tink.org.apache.http.cookie.CookieSpec;
 import tink.org.apache.http.cookie.CookieSpecProvider;
 import tink.org.apache.http.cookie.SM;
 import tink.org.apache.http.impl.client.BasicCookieStore;
+import tink.org.apache.http.impl.client.DomainIndexedCookieStore;
 import tink.org.apache.http.impl.cookie.BasicClientCookie;
 import tink.org.apache.http.impl.cookie.BasicClientCookie2;
 import tink.org.apache.http.impl.cookie.DefaultCookieSpecProvider;
@@ -472,4 +473,33 @@ public class TestRequestAddCookies {
         Assert.assertEquals("name1=value; name2=value; name3=value", headers1[0].getValue());
     }
 
+    @Test
+    public void testAddCookiesFromIndexedCookieStore() throws Exception {
+        final HttpRequest request = new BasicHttpRequest("GET", "/foobar/yada/yada");
+
+        this.cookieStore = new DomainIndexedCookieStore();
+        cookieStore.addCookie(makeCookie("nomatch", "value", "localhost.local", "/noway"));
+        cookieStore.addCookie(makeCookie("other",   "value", "www.somedomain.com", "/"));
+        cookieStore.addCookie(makeCookie("name2",   "value", "localhost.local", "/foobar/yada"));
+        cookieStore.addCookie(makeCookie("name3",   "value", "localhost.local", "/foobar"));
+        cookieStore.addCookie(makeCookie("name1",   "value", "localhost.local", "/foobar/yada/yada"));
+
+        final HttpRoute route = new HttpRoute(this.target, null, false);
+
+        final HttpClientContext context = HttpClientContext.create();
+        context.setAttribute(HttpCoreContext.HTTP_TARGET_HOST, this.target);
+        context.setAttribute(HttpClientContext.HTTP_ROUTE, route);
+        context.setAttribute(HttpClientContext.COOKIE_STORE, this.cookieStore);
+        context.setAttribute(HttpClientContext.COOKIESPEC_REGISTRY, this.cookieSpecRegistry);
+
+        final HttpRequestInterceptor interceptor = new RequestAddCookies();
+        interceptor.process(request, context);
+
+        final Header[] headers1 = request.getHeaders(SM.COOKIE);
+        Assert.assertNotNull(headers1);
+        Assert.assertEquals(1, headers1.length);
+
+        Assert.assertEquals("name1=value; name2=value; name3=value", headers1[0].getValue());
+    }
+
 }
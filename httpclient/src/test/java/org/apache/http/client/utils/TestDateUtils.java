@@ -27,8 +27,11 @@
 
 package org.apache.http.client.utils;
 
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -137,4 +140,69 @@ public class TestDateUtils {
         Assert.assertEquals("Fri, 14 Oct 2005 00:00:00 GMT", DateUtils.formatDate(date, DateUtils.PATTERN_RFC1123));
     }
 
+    @Test
+    public void testStandardDateParse() throws Exception {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTimeZone(DateUtils.GMT);
+        calendar.set(1994, Calendar.NOVEMBER, 6, 8, 49, 37);
+        calendar.set(Calendar.MILLISECOND, 0);
+        final long expected = calendar.getTimeInMillis();
+
+        Assert.assertEquals(expected, DateUtils.parseStandardDate("Sun, 06 Nov 1994 08:49:37 GMT"));
+        Assert.assertEquals(expected, DateUtils.parseStandardDate("Sunday, 06 Nov 1994 08:49:37 GMT"));
+        Assert.assertEquals(expected, DateUtils.parseStandardDate("Sun, 06 Nov 1994 08:49:37 UTC"));
+        Assert.assertEquals(expected, DateUtils.parseStandardDate("Sun Nov  6 08:49:37 1994"));
+        Assert.assertEquals(expected, DateUtils.parseStandardDate("Sun Nov 6 08:49:37 1994"));
+        Assert.assertEquals(expected + 1000L * 60 * 60 * 24 * 10,
+                DateUtils.parseStandardDate("Wed Nov 16 08:49:37 1994"));
+
+        calendar.set(2094, Calendar.NOVEMBER, 6, 8, 49, 37);
+        Assert.assertEquals(calendar.getTimeInMillis(),
+                DateUtils.parseStandardDate("Sunday, 06-Nov-94 08:49:37 GMT"));
+    }
+
+    @Test
+    public void testStandardDateParseRejectsNonCanonicalInput() throws Exception {
+        Assert.assertEquals(DateUtils.INVALID_DATE, DateUtils.parseStandardDate(""));
+        Assert.assertEquals(DateUtils.INVALID_DATE, DateUtils.parseStandardDate("Sun,"));
+        Assert.assertEquals(DateUtils.INVALID_DATE, DateUtils.parseStandardDate("sun, 06 nov 1994 08:49:37 gmt"));
+        Assert.assertEquals(DateUtils.INVALID_DATE, DateUtils.parseStandardDate("Sun, 06 Nov 1994 08:49:37 PST"));
+        Assert.assertEquals(DateUtils.INVALID_DATE, DateUtils.parseStandardDate("Sun, 06 Nov 1994 8:49:37 GMT"));
+        Assert.assertEquals(DateUtils.INVALID_DATE, DateUtils.parseStandardDate("Sun, 06 Nov 1994 24:49:37 GMT"));
+        Assert.assertEquals(DateUtils.INVALID_DATE, DateUtils.parseStandardDate("Sun, 06 Nov 1500 08:49:37 GMT"));
+        Assert.assertEquals(DateUtils.INVALID_DATE, DateUtils.parseStandardDate("Sun, 06 Nov 1994 08:49:37 GMT+1"));
+    }
+
+    @Test
+    public void testParseDateFallsBackToPatterns() throws Exception {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTimeZone(DateUtils.GMT);
+        calendar.set(1994, Calendar.NOVEMBER, 6, 16, 49, 37);
+        calendar.set(Calendar.MILLISECOND, 0);
+        Assert.assertEquals(calendar.getTime(), DateUtils.parseDate("Sun, 06 Nov 1994 08:49:37 PST"));
+    }
+
+    @Test
+    public void testStandardDateFormatMatchesPattern() throws Exception {
+        final SimpleDateFormat format = new SimpleDateFormat(DateUtils.PATTERN_RFC1123, Locale.US);
+        format.setTimeZone(DateUtils.GMT);
+        final Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            final Date date = new Date(Math.abs(random.nextLong()) % 253402300799000L);
+            final String expected = format.format(date);
+            Assert.assertEquals(expected, DateUtils.formatDate(date));
+            Assert.assertEquals(date.getTime() / 1000, DateUtils.parseDate(expected).getTime() / 1000);
+        }
+    }
+
+    @Test
+    public void testStandardDateFormatIsCachedPerSecond() throws Exception {
+        final long now = 1500000000000L;
+        final String s1 = DateUtils.formatStandardDate(now);
+        final String s2 = DateUtils.formatStandardDate(now + 999L);
+        Assert.assertSame(s1, s2);
+        Assert.assertEquals("Fri, 14 Jul 2017 02:40:00 GMT", s1);
+        Assert.assertEquals("Fri, 14 Jul 2017 02:40:01 GMT", DateUtils.formatStandardDate(now + 1000L));
+    }
+
 }
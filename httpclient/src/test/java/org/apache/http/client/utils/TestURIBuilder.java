@@ -167,6 +167,18 @@ public class TestURIBuilder {
                 "param=some+other+stuff&blah=blah"), result);
     }
 
+    @Test
+    public void testUnmodifiedQueryIsPreserved() throws Exception {
+        final URI uri = new URI("http://localhost/?param=some%20stuff&param2=a+b");
+        final URIBuilder uribuilder = new URIBuilder(uri).setPath("/other");
+        Assert.assertEquals(new URI("http://localhost/other?param=some%20stuff&param2=a+b"), uribuilder.build());
+        Assert.assertEquals(Arrays.<NameValuePair>asList(
+                new BasicNameValuePair("param", "some stuff"),
+                new BasicNameValuePair("param2", "a b")), uribuilder.getQueryParams());
+        uribuilder.addParameter("param3", "c");
+        Assert.assertEquals(new URI("http://localhost/other?param=some+stuff&param2=a+b&param3=c"), uribuilder.build());
+    }
+
     @Test
     public void testQueryEncoding() throws Exception {
         final URI uri1 = new URI("https://somehost.com/stuff?client_id=1234567890" +
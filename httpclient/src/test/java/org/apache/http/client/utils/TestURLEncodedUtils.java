@@ -29,6 +29,7 @@ package org.apache.http.client.utils;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import tink.org.apache.http.Consts;
@@ -400,6 +401,37 @@ public class TestURLEncodedUtils {
         Assert.assertEquals("Name8=xx%2C++yy++%2Czz", URLEncodedUtils.format(params, Consts.ASCII));
     }
 
+    @Test
+    public void testParseWithHandler() throws Exception {
+        final List<String> result = new ArrayList<String>();
+        final ParameterHandler handler = new ParameterHandler() {
+
+            @Override
+            public void handle(final String name, final String value) {
+                result.add(name + "|" + value);
+            }
+
+        };
+        final StringBuilder buf = new StringBuilder("a=1&b= two  words ;c&=skipped&d=%E2%82%AC+x&e=\"q&q\"");
+        URLEncodedUtils.parse(buf, Consts.UTF_8, handler);
+        Assert.assertEquals(Arrays.asList("a|1", "b|two words", "c|null", "d|\u20AC x", "e|q&q"), result);
+
+        result.clear();
+        URLEncodedUtils.parse("a=1;b=2&c=3", null, handler, '&');
+        Assert.assertEquals(Arrays.asList("a|1;b=2", "c|3"), result);
+    }
+
+    @Test
+    public void testFormatIntoBuffer() throws Exception {
+        final List <NameValuePair> params = new ArrayList <NameValuePair>();
+        params.add(new BasicNameValuePair("Name1", "Value 1"));
+        params.add(new BasicNameValuePair("Name2", null));
+        params.add(new BasicNameValuePair("Name3", "\u20AC"));
+        final StringBuilder buf = new StringBuilder("http://host/?");
+        URLEncodedUtils.format(buf, params, '&', Consts.UTF_8);
+        Assert.assertEquals("http://host/?Name1=Value+1&Name2&Name3=%E2%82%AC", buf.toString());
+    }
+
     private List <NameValuePair> parse (final String params) {
         return URLEncodedUtils.parse(params, Consts.UTF_8);
     }
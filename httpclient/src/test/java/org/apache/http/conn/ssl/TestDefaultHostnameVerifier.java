@@ -198,6 +198,42 @@ public class TestDefaultHostnameVerifier {
         }
     }
 
+    @Test
+    public void testVerifyWithVerificationCache() throws Exception {
+        final CertificateFactory cf = CertificateFactory.getInstance("X.509");
+        final X509Certificate foo = (X509Certificate) cf.generateCertificate(
+                new ByteArrayInputStream(CertificatesToPlayWith.X509_FOO));
+        final X509Certificate noCnsFoo = (X509Certificate) cf.generateCertificate(
+                new ByteArrayInputStream(CertificatesToPlayWith.X509_NO_CNS_FOO));
+        final HostnameVerificationCache cache = new HostnameVerificationCache(1);
+        final DefaultHostnameVerifier hv = new DefaultHostnameVerifier(publicSuffixMatcher, cache);
+
+        hv.verify("foo.com", foo);
+        hv.verify("FOO.com", foo);
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(1, cache.size());
+
+        // Failed verifications are not cached
+        exceptionPlease(hv, "bar.com", foo);
+        exceptionPlease(hv, "bar.com", foo);
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(3, cache.getMisses());
+        Assert.assertEquals(1, cache.size());
+
+        // The least recently used entry is evicted
+        hv.verify("foo.com", noCnsFoo);
+        hv.verify("foo.com", foo);
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(5, cache.getMisses());
+        Assert.assertEquals(1, cache.size());
+
+        cache.clear();
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(0, cache.getMisses());
+        Assert.assertEquals(0, cache.size());
+    }
+
     public void exceptionPlease(final DefaultHostnameVerifier hv, final String host,
                                 final X509Certificate x509) {
         try {
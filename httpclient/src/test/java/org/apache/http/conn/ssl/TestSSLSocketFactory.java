@@ -116,6 +116,49 @@ public class TestSSLSocketFactory {
         }
     }
 
+    @Test
+    public void testSessionResumption() throws Exception {
+        // @formatter:off
+        this.server = ServerBootstrap.bootstrap()
+                .setServerInfo(LocalServerTestBase.ORIGIN)
+                .setSslContext(SSLTestContexts.createServerSSLContext())
+                .create();
+        // @formatter:on
+        this.server.start();
+
+        final SSLSessionResumption sessionResumption = new SSLSessionResumption(100, 300);
+        final SSLContext sslContext = SSLTestContexts.createClientSSLContext();
+        final SSLConnectionSocketFactory socketFactory = new SSLConnectionSocketFactory(
+                sslContext, new String[] { "TLSv1.2" }, null, new TestX509HostnameVerifier(), sessionResumption);
+        Assert.assertSame(sessionResumption, socketFactory.getSessionResumption());
+        Assert.assertEquals(100, sslContext.getClientSessionContext().getSessionCacheSize());
+        Assert.assertEquals(300, sslContext.getClientSessionContext().getSessionTimeout());
+
+        final InetSocketAddress remoteAddress = new InetSocketAddress("localhost", this.server.getLocalPort());
+        final HttpHost target = new HttpHost("localhost", this.server.getLocalPort(), "https");
+        for (int i = 0; i < 2; i++) {
+            final HttpContext context = new BasicHttpContext();
+            final Socket socket = socketFactory.createSocket(context);
+            final SSLSocket sslSocket = (SSLSocket) socketFactory.connectSocket(0, socket, target, remoteAddress, null,
+                    context);
+            try {
+                Assert.assertEquals(Boolean.valueOf(i > 0), context.getAttribute(SSLConnectionSocketFactory.SESSION_RESUMED));
+                Assert.assertNotNull(context.getAttribute(SSLConnectionSocketFactory.HANDSHAKE_TIME));
+            } finally {
+                sslSocket.close();
+            }
+        }
+
+        final SSLSessionResumption.HandshakeStatistics statistics =
+                sessionResumption.getStatistics(target.getHostName(), target.getPort());
+        Assert.assertNotNull(statistics);
+        Assert.assertEquals(1, statistics.getFullHandshakes());
+        Assert.assertEquals(1, statistics.getAbbreviatedHandshakes());
+        Assert.assertEquals(0.5, statistics.getResumptionRatio(), 0.0);
+        Assert.assertEquals(2, sessionResumption.getTotals().getFullHandshakes()
+                + sessionResumption.getTotals().getAbbreviatedHandshakes());
+    }
+
     @Test
     public void testBasicDefaultHostnameVerifier() throws Exception {
         // @formatter:off
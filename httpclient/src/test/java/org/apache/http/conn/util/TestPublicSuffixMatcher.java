@@ -72,6 +72,26 @@ public class TestPublicSuffixMatcher {
         Assert.assertEquals("blah.ac.jp", matcher.getDomainRoot("blah.blah.ac.jp"));
     }
 
+    @Test
+    public void testGetDomainRootRepeatedLookups() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("example.xx", matcher.getDomainRoot("www.example.xx"));
+            Assert.assertEquals("example.xx", matcher.getDomainRoot("WWW.Example.XX"));
+            Assert.assertEquals(null, matcher.getDomainRoot("any.tokyo.jp"));
+            Assert.assertEquals("metro.tokyo.jp", matcher.getDomainRoot("www.metro.tokyo.jp"));
+            Assert.assertEquals("blah.ac.jp", matcher.getDomainRoot("www.blah.ac.jp", DomainType.UNKNOWN));
+        }
+        Assert.assertEquals(null, matcher.getDomainRoot(null));
+        Assert.assertEquals(null, matcher.getDomainRoot(".example.xx"));
+    }
+
+    @Test
+    public void testGetDomainRootUnicode() throws Exception {
+        Assert.assertEquals("blah.h\u00E5.no", matcher.getDomainRoot("www.blah.h\u00E5.no"));
+        Assert.assertEquals("blah.xn--h-2fa.no", matcher.getDomainRoot("www.blah.xn--h-2fa.no"));
+        Assert.assertEquals(null, matcher.getDomainRoot("xn--h-2fa.no"));
+    }
+
     @Test
     public void testMatch() throws Exception {
         Assert.assertTrue(matcher.matches(".jp"));
@@ -0,0 +1,152 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import tink.org.apache.http.HttpHost;
+import tink.org.apache.http.conn.routing.HttpRoute;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAdaptiveBackoffManager {
+
+    private AdaptiveBackoffManager impl;
+    private MockConnPoolControl connPerRoute;
+    private HttpRoute route;
+    private MockClock clock;
+
+    @Before
+    public void setUp() {
+        connPerRoute = new MockConnPoolControl();
+        route = new HttpRoute(new HttpHost("localhost", 80));
+        clock = new MockClock();
+        impl = new AdaptiveBackoffManager(connPerRoute, clock);
+        impl.setPerHostConnectionCap(10);
+    }
+
+    @Test
+    public void halvesConnectionsOnBackoff() {
+        connPerRoute.setMaxPerRoute(route, 4);
+        impl.backOff(route);
+        assertEquals(2, connPerRoute.getMaxPerRoute(route));
+        assertEquals(2, impl.getLimit(route));
+    }
+
+    @Test
+    public void doesNotBackoffBelowOneConnection() {
+        connPerRoute.setMaxPerRoute(route, 1);
+        impl.backOff(route);
+        assertEquals(1, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void increasesByOneOnProbe() {
+        connPerRoute.setMaxPerRoute(route, 2);
+        impl.probe(route);
+        assertEquals(3, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void doesNotIncreaseBeyondPerHostMaxOnProbe() {
+        connPerRoute.setMaxPerRoute(route, 10);
+        impl.probe(route);
+        assertEquals(10, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void probeDoesNothingDuringCooldownAfterBackoff() {
+        connPerRoute.setMaxPerRoute(route, 4);
+        final long now = System.currentTimeMillis();
+        clock.setCurrentTime(now);
+        impl.backOff(route);
+        clock.setCurrentTime(now + 1000L);
+        impl.probe(route);
+        assertEquals(2, connPerRoute.getMaxPerRoute(route));
+        clock.setCurrentTime(now + 6000L);
+        impl.probe(route);
+        assertEquals(3, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void backoffDoesNothingDuringCooldown() {
+        connPerRoute.setMaxPerRoute(route, 8);
+        final long now = System.currentTimeMillis();
+        clock.setCurrentTime(now);
+        impl.backOff(route);
+        clock.setCurrentTime(now + 1000L);
+        impl.backOff(route);
+        assertEquals(4, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void keepsIncreasingWhileLatencyIsStable() {
+        connPerRoute.setMaxPerRoute(route, 2);
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            impl.recordLatency(route, 100, TimeUnit.MILLISECONDS);
+            clock.setCurrentTime(now + i * 6000L);
+            impl.probe(route);
+        }
+        assertEquals(5, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void reducesLimitWhenLatencyDegrades() {
+        connPerRoute.setMaxPerRoute(route, 8);
+        for (int i = 0; i < 100; i++) {
+            impl.recordLatency(route, 100, TimeUnit.MILLISECONDS);
+        }
+        for (int i = 0; i < 20; i++) {
+            impl.recordLatency(route, 1000, TimeUnit.MILLISECONDS);
+        }
+        impl.probe(route);
+        assertEquals(4, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void publishesLimitsOfAllRoutes() {
+        final HttpRoute other = new HttpRoute(new HttpHost("otherhost", 80));
+        connPerRoute.setMaxPerRoute(route, 4);
+        connPerRoute.setMaxPerRoute(other, 6);
+        impl.backOff(route);
+        impl.probe(other);
+        final Map<HttpRoute, Integer> limits = impl.getLimits();
+        assertEquals(2, limits.size());
+        assertEquals(Integer.valueOf(2), limits.get(route));
+        assertEquals(Integer.valueOf(7), limits.get(other));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void rejectsToleranceBelowOne() {
+        impl.setLatencyTolerance(0.9);
+    }
+
+}
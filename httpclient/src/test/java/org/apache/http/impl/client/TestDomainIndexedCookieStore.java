@@ -0,0 +1,196 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import tink.org.apache.http.conn.util.PublicSuffixMatcher;
+import tink.org.apache.http.cookie.Cookie;
+import tink.org.apache.http.cookie.CookieOrigin;
+import tink.org.apache.http.impl.cookie.BasicClientCookie;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link DomainIndexedCookieStore}.
+ */
+public class TestDomainIndexedCookieStore {
+
+    private DomainIndexedCookieStore store;
+
+    @Before
+    public void setUp() {
+        final PublicSuffixMatcher matcher = new PublicSuffixMatcher(Arrays.asList("com", "co.uk"), null);
+        store = new DomainIndexedCookieStore(matcher);
+    }
+
+    private static BasicClientCookie makeCookie(final String name, final String domain, final String path) {
+        final BasicClientCookie cookie = new BasicClientCookie(name, "value");
+        cookie.setDomain(domain);
+        cookie.setPath(path);
+        return cookie;
+    }
+
+    private static Set<String> names(final List<Cookie> cookies) {
+        final Set<String> names = new HashSet<String>();
+        for (final Cookie cookie : cookies) {
+            names.add(cookie.getName());
+        }
+        return names;
+    }
+
+    private static Set<String> names(final String... names) {
+        return new HashSet<String>(Arrays.asList(names));
+    }
+
+    @Test
+    public void testLooksUpCookiesByDomain() throws Exception {
+        store.addCookie(makeCookie("site", ".example.com", "/"));
+        store.addCookie(makeCookie("host", "www.example.com", "/"));
+        store.addCookie(makeCookie("sibling", "mail.example.com", "/"));
+        store.addCookie(makeCookie("other", "www.example.co.uk", "/"));
+        store.addCookie(makeCookie("lookalike", "badexample.com", "/"));
+
+        Assert.assertEquals(names("site", "host"),
+                names(store.getCookies(new CookieOrigin("www.example.com", 80, "/", false))));
+        Assert.assertEquals(names("site"),
+                names(store.getCookies(new CookieOrigin("Example.COM", 80, "/", false))));
+        Assert.assertEquals(names("other"),
+                names(store.getCookies(new CookieOrigin("www.example.co.uk", 80, "/", false))));
+        Assert.assertEquals(5, store.getCookies().size());
+    }
+
+    @Test
+    public void testLooksUpCookiesByPath() throws Exception {
+        store.addCookie(makeCookie("root", "example.com", "/"));
+        store.addCookie(makeCookie("foo", "example.com", "/foo/"));
+        store.addCookie(makeCookie("foobar", "example.com", "/foo/bar"));
+        store.addCookie(makeCookie("fo", "example.com", "/fo"));
+        store.addCookie(makeCookie("other", "example.com", "/other"));
+
+        Assert.assertEquals(names("root", "foo", "foobar"),
+                names(store.getCookies(new CookieOrigin("example.com", 80, "/foo/bar/baz", false))));
+        Assert.assertEquals(names("root", "foo"),
+                names(store.getCookies(new CookieOrigin("example.com", 80, "/foo", false))));
+        Assert.assertEquals(names("root"),
+                names(store.getCookies(new CookieOrigin("example.com", 80, "/foobar", false))));
+    }
+
+    @Test
+    public void testFindsCookiesOfHostsWithoutDomain() throws Exception {
+        store.addCookie(makeCookie("local", "localhost", "/"));
+        store.addCookie(makeCookie("ip", "127.0.0.1", "/"));
+        store.addCookie(makeCookie("supercookie", ".co.uk", "/"));
+
+        Assert.assertEquals(names("local"),
+                names(store.getCookies(new CookieOrigin("localhost", 80, "/", false))));
+        Assert.assertEquals(names("ip"),
+                names(store.getCookies(new CookieOrigin("127.0.0.1", 80, "/", false))));
+        Assert.assertEquals(names("supercookie"),
+                names(store.getCookies(new CookieOrigin("www.example.co.uk", 80, "/", false))));
+    }
+
+    @Test
+    public void testReplacesEquivalentCookie() throws Exception {
+        store.addCookie(makeCookie("name", "www.example.com", "/"));
+        final BasicClientCookie replacement = makeCookie("name", "WWW.example.com", "/");
+        replacement.setValue("new value");
+        store.addCookie(replacement);
+        store.addCookie(makeCookie("name", "www.example.com", "/path"));
+
+        final List<Cookie> cookies = store.getCookies(new CookieOrigin("www.example.com", 80, "/", false));
+        Assert.assertEquals(1, cookies.size());
+        Assert.assertEquals("new value", cookies.get(0).getValue());
+        Assert.assertEquals(2, store.getCookies().size());
+    }
+
+    @Test
+    public void testExpiredCookieRemovesEquivalentCookie() throws Exception {
+        store.addCookie(makeCookie("name", "www.example.com", "/"));
+        final BasicClientCookie expired = makeCookie("name", "www.example.com", "/");
+        expired.setExpiryDate(new Date(System.currentTimeMillis() - 1000));
+        store.addCookie(expired);
+        Assert.assertEquals(0, store.getCookies().size());
+    }
+
+    @Test
+    public void testRemovesExpiredCookiesOnLookup() throws Exception {
+        final BasicClientCookie expiring = makeCookie("expiring", "www.example.com", "/");
+        expiring.setExpiryDate(new Date(System.currentTimeMillis() + 100));
+        store.addCookie(expiring);
+        store.addCookie(makeCookie("session", "www.example.com", "/"));
+        final BasicClientCookie elsewhere = makeCookie("elsewhere", "www.example.co.uk", "/");
+        elsewhere.setExpiryDate(new Date(System.currentTimeMillis() + 100));
+        store.addCookie(elsewhere);
+
+        Thread.sleep(200);
+
+        Assert.assertEquals(names("session"),
+                names(store.getCookies(new CookieOrigin("www.example.com", 80, "/", false))));
+        // only the cookies that were looked at have been removed
+        Assert.assertEquals(names("session", "elsewhere"), names(store.getCookies()));
+        Assert.assertTrue(store.clearExpired(new Date()));
+        Assert.assertEquals(names("session"), names(store.getCookies()));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        store.addCookies(new Cookie[] {
+                makeCookie("name1", "www.example.com", "/"),
+                makeCookie("name2", "www.example.co.uk", "/") });
+        Assert.assertEquals(2, store.getCookies().size());
+        store.clear();
+        Assert.assertEquals(0, store.getCookies().size());
+        Assert.assertEquals(0, store.getCookies(new CookieOrigin("www.example.com", 80, "/", false)).size());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        store.addCookie(makeCookie("name", "www.example.com", "/"));
+        final ByteArrayOutputStream outbuffer = new ByteArrayOutputStream();
+        final ObjectOutputStream outStream = new ObjectOutputStream(outbuffer);
+        outStream.writeObject(store);
+        outStream.close();
+        final ObjectInputStream inStream = new ObjectInputStream(new ByteArrayInputStream(outbuffer.toByteArray()));
+        final DomainIndexedCookieStore clone = (DomainIndexedCookieStore) inStream.readObject();
+
+        Assert.assertEquals(names("name"),
+                names(clone.getCookies(new CookieOrigin("www.example.com", 80, "/", false))));
+        clone.addCookie(makeCookie("name", "www.example.com", "/"));
+        Assert.assertEquals(1, clone.getCookies().size());
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client;
+
+import java.util.concurrent.TimeUnit;
+
+import tink.org.apache.http.conn.HttpClientConnectionManager;
+import tink.org.apache.http.conn.routing.HttpRoute;
+import tink.org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Unit tests for {@link IdleConnectionEvictionScheduler}.
+ */
+public class TestIdleConnectionEvictionScheduler {
+
+    @Test
+    public void testSweepManyManagers() throws Exception {
+        final HttpClientConnectionManager cm1 = Mockito.mock(HttpClientConnectionManager.class);
+        final HttpClientConnectionManager cm2 = Mockito.mock(HttpClientConnectionManager.class);
+        final IdleConnectionEvictionScheduler scheduler = new IdleConnectionEvictionScheduler(
+                500, TimeUnit.MILLISECONDS);
+        scheduler.register(cm1, 3, TimeUnit.SECONDS);
+        scheduler.register(cm2, 0, TimeUnit.SECONDS);
+        scheduler.start();
+
+        Thread.sleep(1000);
+
+        Mockito.verify(cm1, Mockito.atLeast(1)).closeExpiredConnections();
+        Mockito.verify(cm1, Mockito.atLeast(1)).closeIdleConnections(3000, TimeUnit.MILLISECONDS);
+        Mockito.verify(cm2, Mockito.atLeast(1)).closeExpiredConnections();
+        Mockito.verify(cm2, Mockito.never()).closeIdleConnections(Mockito.anyLong(), Mockito.<TimeUnit>any());
+        Assert.assertTrue(scheduler.getSweepTime().getCount() >= 1);
+        Assert.assertTrue(scheduler.getLastSweepTime() >= 0);
+
+        Assert.assertTrue(scheduler.isRunning());
+
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        Assert.assertFalse(scheduler.isRunning());
+    }
+
+    @Test
+    public void testSweepPoolingManagerInBatches() throws Exception {
+        final PoolingHttpClientConnectionManager cm = Mockito.mock(PoolingHttpClientConnectionManager.class);
+        final IdleConnectionEvictionScheduler scheduler = new IdleConnectionEvictionScheduler(
+                null, 1, TimeUnit.MINUTES, 4);
+        scheduler.register(cm, 3, TimeUnit.SECONDS);
+
+        scheduler.sweep();
+
+        Mockito.verify(cm).evictConnections(3000, TimeUnit.MILLISECONDS, 4);
+        Mockito.verify(cm, Mockito.never()).evictConnections(
+                Mockito.<HttpRoute>any(), Mockito.anyLong(), Mockito.<TimeUnit>any(), Mockito.anyInt());
+        Mockito.verify(cm, Mockito.never()).closeIdleConnections(Mockito.anyLong(), Mockito.<TimeUnit>any());
+    }
+
+    @Test
+    public void testUnregister() throws Exception {
+        final HttpClientConnectionManager cm = Mockito.mock(HttpClientConnectionManager.class);
+        final IdleConnectionEvictionScheduler scheduler = new IdleConnectionEvictionScheduler(
+                null, 1, TimeUnit.MINUTES, 4);
+        scheduler.register(cm, 3, TimeUnit.SECONDS);
+        scheduler.unregister(cm);
+
+        scheduler.sweep();
+
+        Mockito.verify(cm, Mockito.never()).closeExpiredConnections();
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.util.concurrent.TimeUnit;
+
+import tink.org.apache.http.HttpHost;
+import tink.org.apache.http.conn.ManagedHttpClientConnection;
+import tink.org.apache.http.conn.routing.HttpRoute;
+import tink.org.apache.http.pool.ConnFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * {@link CPool} tests.
+ */
+@SuppressWarnings({"boxing","unchecked"}) // test code
+public class TestCPool {
+
+    private ConnFactory<HttpRoute, ManagedHttpClientConnection> connFactory;
+    private HttpRoute route1;
+    private HttpRoute route2;
+
+    @Before
+    public void setup() throws Exception {
+        connFactory = Mockito.mock(ConnFactory.class);
+        Mockito.when(connFactory.create(Mockito.any(HttpRoute.class))).thenAnswer(
+                new Answer<ManagedHttpClientConnection>() {
+
+                    @Override
+                    public ManagedHttpClientConnection answer(
+                            final InvocationOnMock invocation) throws Throwable {
+                        final ManagedHttpClientConnection conn = Mockito.mock(ManagedHttpClientConnection.class);
+                        Mockito.when(conn.isOpen()).thenReturn(true);
+                        return conn;
+                    }
+
+                });
+        route1 = new HttpRoute(new HttpHost("somehost", 80));
+        route2 = new HttpRoute(new HttpHost("otherhost", 80));
+    }
+
+    @Test
+    public void testEvictAllRoutes() throws Exception {
+        final CPool pool = new CPool(connFactory, 3, 10, -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry2 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry3 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry4 = pool.lease(route2, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+        pool.release(entry3, true);
+        pool.release(entry4, true);
+
+        Assert.assertEquals(0, pool.evict(System.currentTimeMillis() - 60000, 2));
+        Assert.assertEquals(3, pool.evict(System.currentTimeMillis(), 2));
+        Assert.assertEquals(1, pool.getStats(route1).getAvailable());
+        Assert.assertEquals(0, pool.getStats(route2).getAvailable());
+        Mockito.verify(entry4.getConnection()).close();
+
+        Assert.assertEquals(1, pool.evict(System.currentTimeMillis(), 2));
+        Assert.assertEquals(0, pool.getTotalStats().getAvailable());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testValidateIdle() throws Exception {
+        final ConnPoolMetrics metrics = new ConnPoolMetrics();
+        final CPool pool = new CPool(connFactory, 2, 10, -1, TimeUnit.MILLISECONDS, metrics);
+        Assert.assertEquals(0, pool.validateIdle());
+        pool.setValidateAfterInactivity(50);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry2 = pool.lease(route2, null).get(1, TimeUnit.SECONDS);
+        Mockito.when(entry1.getConnection().isStale()).thenReturn(true);
+        Mockito.when(entry2.getConnection().isStale()).thenReturn(false);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+
+        Assert.assertEquals(0, pool.validateIdle());
+        Thread.sleep(100);
+        Assert.assertEquals(1, pool.validateIdle());
+
+        Mockito.verify(entry1.getConnection()).close();
+        Mockito.verify(entry2.getConnection(), Mockito.never()).close();
+        Assert.assertEquals(0, pool.getStats(route1).getAvailable());
+        Assert.assertEquals(1, pool.getStats(route2).getAvailable());
+        Assert.assertEquals(1, metrics.getRouteMetrics(route1).getEvictionCount(EvictionReason.STALE));
+
+        // Checked again only once the validation period has elapsed
+        Assert.assertEquals(0, pool.validateIdle());
+        Mockito.verify(entry2.getConnection(), Mockito.times(1)).isStale();
+
+        pool.shutdown();
+        Assert.assertEquals(0, pool.validateIdle());
+    }
+
+    @Test
+    public void testLeaseAfterValidateIdleSkipsStaleCheck() throws Exception {
+        final CPool pool = new CPool(connFactory, 2, 10, -1, TimeUnit.MILLISECONDS);
+        pool.setValidateAfterInactivity(50);
+        final CPoolEntry entry = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        Mockito.when(entry.getConnection().isStale()).thenReturn(false);
+        pool.release(entry, true);
+
+        Thread.sleep(100);
+        Assert.assertEquals(0, pool.validateIdle());
+        Mockito.verify(entry.getConnection(), Mockito.times(1)).isStale();
+
+        final CPoolEntry leased = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        Assert.assertSame(entry, leased);
+        Mockito.verify(entry.getConnection(), Mockito.times(1)).isStale();
+        pool.release(leased, true);
+        pool.shutdown();
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import tink.org.apache.http.conn.DnsResolver;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestCachingDnsResolver {
+
+    private DnsResolver dnsResolver;
+    private ExecutorService executor;
+    private long now;
+    private CachingDnsResolver cachingResolver;
+    private InetAddress ip1;
+    private InetAddress ip2;
+
+    @Before
+    public void setup() throws Exception {
+        dnsResolver = Mockito.mock(DnsResolver.class);
+        executor = Mockito.mock(ExecutorService.class);
+        // run background refreshes on the calling thread
+        Mockito.doAnswer(new Answer<Object>() {
+
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+
+        }).when((Executor) executor).execute(Mockito.<Runnable>any());
+        now = 1000L;
+        cachingResolver = new CachingDnsResolver(dnsResolver, 100, 10, TimeUnit.MILLISECONDS, 0.5f, executor) {
+
+            @Override
+            long currentTime() {
+                return now;
+            }
+
+        };
+        ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        ip2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+    }
+
+    @Test
+    public void testCachedWithinTimeToLive() throws Exception {
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1 });
+
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, cachingResolver.resolve("somehost"));
+        now += 20;
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, cachingResolver.resolve("somehost"));
+
+        Mockito.verify(dnsResolver, Mockito.times(1)).resolve("somehost");
+        Assert.assertEquals(1, cachingResolver.getMissCount());
+        Assert.assertEquals(1, cachingResolver.getHitCount());
+    }
+
+    @Test
+    public void testExpired() throws Exception {
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(
+                new InetAddress[] { ip1 }, new InetAddress[] { ip2 });
+
+        cachingResolver.resolve("somehost");
+        now += 100;
+        Assert.assertArrayEquals(new InetAddress[] { ip2 }, cachingResolver.resolve("somehost"));
+
+        Assert.assertEquals(2, cachingResolver.getMissCount());
+        Assert.assertEquals(0, cachingResolver.getRefreshCount());
+    }
+
+    @Test
+    public void testBackgroundRefresh() throws Exception {
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(
+                new InetAddress[] { ip1 }, new InetAddress[] { ip2 });
+
+        cachingResolver.resolve("somehost");
+        now += 60;
+        // served from cache, refresh is triggered
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, cachingResolver.resolve("somehost"));
+        Assert.assertEquals(1, cachingResolver.getRefreshCount());
+        now += 60;
+        // refreshed entry has a new time to live
+        Assert.assertArrayEquals(new InetAddress[] { ip2 }, cachingResolver.resolve("somehost"));
+
+        Assert.assertEquals(1, cachingResolver.getMissCount());
+        Assert.assertEquals(2, cachingResolver.getHitCount());
+    }
+
+    @Test
+    public void testFailedRefreshServesCachedAddresses() throws Exception {
+        Mockito.when(dnsResolver.resolve("somehost"))
+            .thenReturn(new InetAddress[] { ip1 })
+            .thenThrow(new UnknownHostException("somehost"));
+
+        cachingResolver.resolve("somehost");
+        now += 60;
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, cachingResolver.resolve("somehost"));
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, cachingResolver.resolve("somehost"));
+
+        Assert.assertEquals(1, cachingResolver.getRefreshFailureCount());
+    }
+
+    @Test
+    public void testNegativeCaching() throws Exception {
+        Mockito.when(dnsResolver.resolve("somehost")).thenThrow(new UnknownHostException("somehost"));
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                cachingResolver.resolve("somehost");
+                Assert.fail("UnknownHostException should have been thrown");
+            } catch (final UnknownHostException expected) {
+            }
+        }
+        Mockito.verify(dnsResolver, Mockito.times(1)).resolve("somehost");
+        Assert.assertEquals(2, cachingResolver.getNegativeHitCount());
+
+        now += 10;
+        try {
+            cachingResolver.resolve("somehost");
+            Assert.fail("UnknownHostException should have been thrown");
+        } catch (final UnknownHostException expected) {
+        }
+        Mockito.verify(dnsResolver, Mockito.times(2)).resolve("somehost");
+    }
+
+    @Test
+    public void testHostTimeToLive() throws Exception {
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1 });
+        cachingResolver.setTimeToLive("somehost", 1, TimeUnit.SECONDS);
+
+        cachingResolver.resolve("somehost");
+        now += 200;
+        cachingResolver.resolve("somehost");
+
+        Assert.assertEquals(1, cachingResolver.getMissCount());
+    }
+
+    @Test
+    public void testHostNamesAreCaseInsensitive() throws Exception {
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1 });
+
+        cachingResolver.resolve("SomeHost");
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, cachingResolver.resolve("somehost"));
+        Assert.assertEquals(1, cachingResolver.size());
+        cachingResolver.invalidate("SOMEHOST");
+        Assert.assertEquals(0, cachingResolver.size());
+
+        Assert.assertEquals(1, cachingResolver.getMissCount());
+        Assert.assertEquals(1, cachingResolver.getHitCount());
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        Mockito.when(dnsResolver.resolve(Mockito.anyString())).thenReturn(new InetAddress[] { ip1 });
+        final CachingDnsResolver boundedResolver = new CachingDnsResolver(
+                dnsResolver, 100, 10, TimeUnit.MILLISECONDS, 1, executor, 10) {
+
+            @Override
+            long currentTime() {
+                return now;
+            }
+
+        };
+        for (int i = 0; i < 10; i++) {
+            boundedResolver.resolve("host" + i);
+            now++;
+        }
+        Assert.assertEquals(10, boundedResolver.size());
+
+        // Entries closest to expiry are evicted first
+        boundedResolver.resolve("host10");
+        Assert.assertEquals(9, boundedResolver.size());
+        boundedResolver.resolve("host2");
+        boundedResolver.resolve("host0");
+        Assert.assertEquals(1, boundedResolver.getHitCount());
+        Assert.assertEquals(12, boundedResolver.getMissCount());
+        Assert.assertEquals(10, boundedResolver.size());
+
+        // Expired entries are purged first
+        now += 100;
+        boundedResolver.resolve("host11");
+        Assert.assertEquals(1, boundedResolver.size());
+    }
+
+}
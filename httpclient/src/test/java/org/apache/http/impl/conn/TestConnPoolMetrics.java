@@ -0,0 +1,78 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.util.concurrent.TimeUnit;
+
+import tink.org.apache.http.HttpHost;
+import tink.org.apache.http.conn.routing.HttpRoute;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link ConnPoolMetrics} tests.
+ */
+public class TestConnPoolMetrics {
+
+    @Test
+    public void testRecord() throws Exception {
+        final ConnPoolMetrics metrics = new ConnPoolMetrics();
+        final HttpRoute route = new HttpRoute(new HttpHost("somehost", 80));
+        Assert.assertNull(metrics.getRouteMetrics(route));
+
+        metrics.recordConnect(route, TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.recordClose(route, 1000, 3, EvictionReason.IDLE);
+
+        final RoutePoolMetrics routeMetrics = metrics.getRouteMetrics(route);
+        Assert.assertNotNull(routeMetrics);
+        Assert.assertEquals(1, routeMetrics.getConnectTime().getCount());
+        Assert.assertEquals(1, routeMetrics.getEvictionCount(EvictionReason.IDLE));
+        Assert.assertEquals(3, routeMetrics.getReuseCount().getMax());
+    }
+
+    @Test
+    public void testMaxRoutes() throws Exception {
+        final ConnPoolMetrics metrics = new ConnPoolMetrics(2);
+        final HttpRoute route1 = new HttpRoute(new HttpHost("host1", 80));
+        final HttpRoute route2 = new HttpRoute(new HttpHost("host2", 80));
+        final HttpRoute route3 = new HttpRoute(new HttpHost("host3", 80));
+        metrics.recordLeaseWait(route1, 1000);
+        metrics.recordLeaseWait(route2, 1000);
+        metrics.recordLeaseWait(route3, 1000);
+        metrics.recordClose(route3, 1000, 0, EvictionReason.IDLE);
+
+        Assert.assertEquals(2, metrics.getRoutes().size());
+        Assert.assertNull(metrics.getRouteMetrics(route3));
+
+        metrics.remove(route1);
+        metrics.recordLeaseWait(route3, 1000);
+        Assert.assertNotNull(metrics.getRouteMetrics(route3));
+        Assert.assertEquals(1, metrics.getRouteMetrics(route3).getLeaseWaitTime().getCount());
+        Assert.assertNull(metrics.getRouteMetrics(route1));
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestHistogram {
+
+    @Test
+    public void testBuckets() {
+        Assert.assertEquals(0, Histogram.bucketOf(0));
+        Assert.assertEquals(1, Histogram.bucketOf(1));
+        Assert.assertEquals(2, Histogram.bucketOf(2));
+        Assert.assertEquals(2, Histogram.bucketOf(3));
+        Assert.assertEquals(3, Histogram.bucketOf(4));
+        Assert.assertEquals(Histogram.BUCKETS - 1, Histogram.bucketOf(Long.MAX_VALUE));
+        Assert.assertEquals(0, Histogram.getBucketUpperBound(0));
+        Assert.assertEquals(3, Histogram.getBucketUpperBound(2));
+        Assert.assertEquals(Long.MAX_VALUE, Histogram.getBucketUpperBound(Histogram.BUCKETS - 1));
+    }
+
+    @Test
+    public void testRecord() {
+        final Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-5);
+        Assert.assertEquals(101, histogram.getCount());
+        Assert.assertEquals(5050, histogram.getSum());
+        Assert.assertEquals(100, histogram.getMax());
+        Assert.assertEquals(1, histogram.getBucketCount(0));
+        Assert.assertEquals(37, histogram.getBucketCount(7));
+    }
+
+    @Test
+    public void testPercentile() {
+        final Histogram histogram = new Histogram();
+        Assert.assertEquals(0, histogram.getPercentile(99));
+        for (int i = 0; i < 99; i++) {
+            histogram.record(10);
+        }
+        histogram.record(1000);
+        Assert.assertEquals(15, histogram.getPercentile(50));
+        Assert.assertEquals(15, histogram.getPercentile(99));
+        Assert.assertEquals(1000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testReset() {
+        final Histogram histogram = new Histogram();
+        histogram.record(10);
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMax());
+        Assert.assertEquals(0, histogram.getBucketCount(4));
+    }
+
+}
@@ -46,9 +46,12 @@ import tink.org.apache.http.conn.socket.ConnectionSocketFactory;
 import tink.org.apache.http.conn.socket.LayeredConnectionSocketFactory;
 import tink.org.apache.http.protocol.BasicHttpContext;
 import tink.org.apache.http.protocol.HttpContext;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 @SuppressWarnings({"boxing","static-access"}) // test code
 public class TestHttpClientConnectionOperator {
@@ -275,4 +278,195 @@ public class TestHttpClientConnectionOperator {
         connectionOperator.upgrade(conn, host, context);
     }
 
+    @Test
+    public void testParallelConnectFirstAttemptStalls() throws Exception {
+        final DefaultHttpClientConnectionOperator parallelOperator = new DefaultHttpClientConnectionOperator(
+                socketFactoryRegistry, schemePortResolver, dnsResolver, 50);
+        final HttpContext context = new BasicHttpContext();
+        final HttpHost host = new HttpHost("somehost");
+        final InetAddress ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        final InetAddress ip2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+        final Socket stalledSocket = Mockito.mock(Socket.class);
+
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+        Mockito.when(socketFactoryRegistry.lookup("http")).thenReturn(plainSocketFactory);
+        Mockito.when(schemePortResolver.resolve(host)).thenReturn(80);
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpContext>any())).thenReturn(stalledSocket, socket);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.anyInt(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.eq(new InetSocketAddress(ip1, 80)),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenAnswer(new Answer<Socket>() {
+
+                    @Override
+                    public Socket answer(final InvocationOnMock invocation) throws Throwable {
+                        Thread.sleep(5000);
+                        throw new SocketTimeoutException();
+                    }
+
+                });
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.anyInt(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.eq(new InetSocketAddress(ip2, 80)),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenReturn(socket);
+
+        final long start = System.currentTimeMillis();
+        parallelOperator.connect(conn, host, null, 10000, SocketConfig.DEFAULT, context);
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+
+        Mockito.verify(conn).bind(socket);
+        Mockito.verify(conn, Mockito.never()).bind(stalledSocket);
+        Mockito.verify(stalledSocket).close();
+        Assert.assertEquals(new InetSocketAddress(ip2, 80),
+                context.getAttribute(DefaultHttpClientConnectionOperator.CONNECTED_ADDRESS));
+    }
+
+    @Test
+    public void testParallelConnectStartsNextAttemptOnFailure() throws Exception {
+        final DefaultHttpClientConnectionOperator parallelOperator = new DefaultHttpClientConnectionOperator(
+                socketFactoryRegistry, schemePortResolver, dnsResolver, 1000);
+        final HttpContext context = new BasicHttpContext();
+        final HttpHost host = new HttpHost("somehost");
+        final InetAddress ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        final InetAddress ip2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+        final InetAddress ip3 = InetAddress.getByAddress(new byte[] {10, 0, 0, 3});
+        final Socket stalledSocket = Mockito.mock(Socket.class);
+        final Socket failedSocket = Mockito.mock(Socket.class);
+
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2, ip3 });
+        Mockito.when(socketFactoryRegistry.lookup("http")).thenReturn(plainSocketFactory);
+        Mockito.when(schemePortResolver.resolve(host)).thenReturn(80);
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpContext>any()))
+                .thenReturn(stalledSocket, failedSocket, socket);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.anyInt(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.eq(new InetSocketAddress(ip1, 80)),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenAnswer(new Answer<Socket>() {
+
+                    @Override
+                    public Socket answer(final InvocationOnMock invocation) throws Throwable {
+                        Thread.sleep(5000);
+                        throw new SocketTimeoutException();
+                    }
+
+                });
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.anyInt(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.eq(new InetSocketAddress(ip2, 80)),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenThrow(new ConnectException());
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.anyInt(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.eq(new InetSocketAddress(ip3, 80)),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenReturn(socket);
+
+        // ip2 is started after one attempt delay and fails at once; ip3 must not
+        // wait for a second delay while ip1 is still pending
+        final long start = System.currentTimeMillis();
+        parallelOperator.connect(conn, host, null, 10000, SocketConfig.DEFAULT, context);
+        Assert.assertTrue(System.currentTimeMillis() - start < 1800);
+
+        Mockito.verify(conn).bind(socket);
+        Mockito.verify(conn, Mockito.never()).bind(stalledSocket);
+        Mockito.verify(conn, Mockito.never()).bind(failedSocket);
+        Mockito.verify(stalledSocket).close();
+        Assert.assertEquals(new InetSocketAddress(ip3, 80),
+                context.getAttribute(DefaultHttpClientConnectionOperator.CONNECTED_ADDRESS));
+    }
+
+    @Test
+    public void testParallelConnectKeepsWinnerAttributesOnly() throws Exception {
+        final DefaultHttpClientConnectionOperator parallelOperator = new DefaultHttpClientConnectionOperator(
+                socketFactoryRegistry, schemePortResolver, dnsResolver, 50);
+        final HttpContext context = new BasicHttpContext();
+        context.setAttribute("shared", "caller");
+        final HttpHost host = new HttpHost("somehost");
+        final InetAddress ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        final InetAddress ip2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+        Mockito.when(socketFactoryRegistry.lookup("http")).thenReturn(plainSocketFactory);
+        Mockito.when(schemePortResolver.resolve(host)).thenReturn(80);
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpContext>any())).thenReturn(socket);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.anyInt(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenAnswer(new Answer<Socket>() {
+
+                    @Override
+                    public Socket answer(final InvocationOnMock invocation) throws Throwable {
+                        final InetSocketAddress remoteAddress = (InetSocketAddress) invocation.getArguments()[3];
+                        final HttpContext attemptContext = (HttpContext) invocation.getArguments()[5];
+                        Assert.assertEquals("caller", attemptContext.getAttribute("shared"));
+                        attemptContext.setAttribute("attempt", remoteAddress.getAddress());
+                        if (remoteAddress.getAddress().equals(ip1)) {
+                            throw new ConnectException();
+                        }
+                        return socket;
+                    }
+
+                });
+
+        parallelOperator.connect(conn, host, null, 1000, SocketConfig.DEFAULT, context);
+
+        Mockito.verify(conn).bind(socket);
+        Assert.assertEquals(ip2, context.getAttribute("attempt"));
+        Assert.assertEquals("caller", context.getAttribute("shared"));
+        Assert.assertEquals(new InetSocketAddress(ip2, 80),
+                context.getAttribute(DefaultHttpClientConnectionOperator.CONNECTED_ADDRESS));
+    }
+
+    @Test(expected=HttpHostConnectException.class)
+    public void testParallelConnectAllAttemptsFail() throws Exception {
+        final DefaultHttpClientConnectionOperator parallelOperator = new DefaultHttpClientConnectionOperator(
+                socketFactoryRegistry, schemePortResolver, dnsResolver, 50);
+        final HttpContext context = new BasicHttpContext();
+        final HttpHost host = new HttpHost("somehost");
+        final InetAddress ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        final InetAddress ip2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+        Mockito.when(socketFactoryRegistry.lookup("http")).thenReturn(plainSocketFactory);
+        Mockito.when(schemePortResolver.resolve(host)).thenReturn(80);
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpContext>any())).thenReturn(socket);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.anyInt(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenThrow(new ConnectException());
+
+        parallelOperator.connect(conn, host, null, 1000, SocketConfig.DEFAULT, context);
+    }
+
+    @Test
+    public void testInterleaveAddressFamilies() throws Exception {
+        final InetAddress v6a = InetAddress.getByName("::1");
+        final InetAddress v6b = InetAddress.getByName("::2");
+        final InetAddress v4a = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        final InetAddress v4b = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+        final InetAddress v4c = InetAddress.getByAddress(new byte[] {10, 0, 0, 3});
+
+        final InetAddress[] ordered = DefaultHttpClientConnectionOperator.interleaveAddressFamilies(
+                new InetAddress[] { v6a, v6b, v4a, v4b, v4c });
+        Assert.assertArrayEquals(new InetAddress[] { v6a, v4a, v6b, v4b, v4c }, ordered);
+    }
+
 }
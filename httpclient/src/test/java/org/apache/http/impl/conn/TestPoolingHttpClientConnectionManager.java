@@ -49,6 +49,9 @@ import tink.org.apache.http.conn.ManagedHttpClientConnection;
 import tink.org.apache.http.conn.routing.HttpRoute;
 import tink.org.apache.http.conn.socket.ConnectionSocketFactory;
 import tink.org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import tink.org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import tink.org.apache.http.concurrent.FutureCallback;
+import tink.org.apache.http.pool.PoolStats;
 import tink.org.apache.http.protocol.HttpContext;
 import org.junit.Assert;
 import org.junit.Before;
@@ -56,6 +59,8 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 /**
  * {@link PoolingHttpClientConnectionManager} tests.
@@ -278,6 +283,50 @@ public class TestPoolingHttpClientConnectionManager {
         mgr.routeComplete(conn1, route, context);
     }
 
+    @Test
+    public void testConnectKeepsHandshakeTime() throws Exception {
+        final HttpHost target = new HttpHost("somehost", 443, "https");
+        final InetAddress remote = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        final HttpRoute route = new HttpRoute(target, null, true);
+
+        final CPoolEntry entry = new CPoolEntry(LogFactory.getLog(getClass()), "id", route, conn,
+                -1, TimeUnit.MILLISECONDS);
+        Mockito.when(conn.isOpen()).thenReturn(true);
+        Mockito.when(future.isCancelled()).thenReturn(false);
+        Mockito.when(future.get(1, TimeUnit.SECONDS)).thenReturn(entry);
+        Mockito.when(pool.lease(route, null, null)).thenReturn(future);
+
+        final HttpClientConnection conn1 = mgr.requestConnection(route, null).get(1, TimeUnit.SECONDS);
+        final HttpClientContext context = HttpClientContext.create();
+
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[]{remote});
+        Mockito.when(schemePortResolver.resolve(target)).thenReturn(443);
+        Mockito.when(socketFactoryRegistry.lookup("https")).thenReturn(plainSocketFactory);
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpContext>any())).thenReturn(socket);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.anyInt(),
+                Mockito.eq(socket),
+                Mockito.<HttpHost>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenAnswer(new Answer<Socket>() {
+
+                    @Override
+                    public Socket answer(final InvocationOnMock invocation) throws Throwable {
+                        final HttpContext localContext = (HttpContext) invocation.getArguments()[5];
+                        Assert.assertNull(localContext.getAttribute(SSLConnectionSocketFactory.HANDSHAKE_TIME));
+                        localContext.setAttribute(SSLConnectionSocketFactory.HANDSHAKE_TIME, Long.valueOf(42));
+                        return socket;
+                    }
+
+                });
+
+        context.setAttribute(SSLConnectionSocketFactory.HANDSHAKE_TIME, Long.valueOf(1));
+        mgr.connect(conn1, route, 123, context);
+
+        Assert.assertEquals(Long.valueOf(42), context.getAttribute(SSLConnectionSocketFactory.HANDSHAKE_TIME));
+    }
+
     @Test
     public void testProxyConnectAndUpgrade() throws Exception {
         final HttpHost target = new HttpHost("somehost", 443, "https");
@@ -343,4 +392,122 @@ public class TestPoolingHttpClientConnectionManager {
         mgr.routeComplete(conn1, route, context);
     }
 
+    @Test
+    public void testPrewarm() throws Exception {
+        final HttpHost target = new HttpHost("somehost", 80);
+        final InetAddress remote = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        final HttpRoute route = new HttpRoute(target);
+
+        final CPoolEntry entry = new CPoolEntry(LogFactory.getLog(getClass()), "id", route, conn,
+                -1, TimeUnit.MILLISECONDS);
+
+        Mockito.when(pool.getStats(route)).thenReturn(new PoolStats(0, 0, 0, 2));
+        Mockito.when(future.get(5000, TimeUnit.MILLISECONDS)).thenReturn(entry);
+        Mockito.when(pool.allocate(route)).thenReturn(future);
+        Mockito.when(conn.isOpen()).thenReturn(false, true);
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] {remote});
+        Mockito.when(schemePortResolver.resolve(target)).thenReturn(80);
+        Mockito.when(socketFactoryRegistry.lookup("http")).thenReturn(plainSocketFactory);
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpContext>any())).thenReturn(socket);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.anyInt(),
+                Mockito.eq(socket),
+                Mockito.<HttpHost>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenReturn(socket);
+
+        Assert.assertEquals(Integer.valueOf(1), mgr.prewarm(route, 1).get());
+
+        Mockito.verify(plainSocketFactory).connectSocket(
+                Mockito.eq(5000),
+                Mockito.eq(socket),
+                Mockito.eq(target),
+                Mockito.eq(new InetSocketAddress(remote, 80)),
+                Mockito.<InetSocketAddress>isNull(),
+                Mockito.<HttpContext>any());
+        Assert.assertTrue(entry.isRouteComplete());
+        Mockito.verify(pool).release(entry, true);
+        Mockito.verify(pool, Mockito.never()).lease(
+                Mockito.<HttpRoute>any(), Mockito.any(), Mockito.<FutureCallback<CPoolEntry>>any());
+    }
+
+    @Test
+    public void testPrewarmCountsAllocatedConnections() throws Exception {
+        final HttpHost target = new HttpHost("somehost", 80);
+        final HttpRoute route = new HttpRoute(target);
+        final ManagedHttpClientConnection idleConn = Mockito.mock(ManagedHttpClientConnection.class);
+        final CPoolEntry idle = new CPoolEntry(LogFactory.getLog(getClass()), "idle", route, idleConn,
+                -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry = new CPoolEntry(LogFactory.getLog(getClass()), "id", route, conn,
+                -1, TimeUnit.MILLISECONDS);
+        final InetAddress remote = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+
+        // 3 leased and 1 available; the idle connection is handed out first
+        Mockito.when(pool.getStats(route)).thenReturn(new PoolStats(3, 0, 1, 10));
+        Mockito.when(future.get(5000, TimeUnit.MILLISECONDS)).thenReturn(idle, entry);
+        Mockito.when(pool.allocate(route)).thenReturn(future);
+        Mockito.when(idleConn.isOpen()).thenReturn(true);
+        Mockito.when(conn.isOpen()).thenReturn(false, true);
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] {remote});
+        Mockito.when(schemePortResolver.resolve(target)).thenReturn(80);
+        Mockito.when(socketFactoryRegistry.lookup("http")).thenReturn(plainSocketFactory);
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpContext>any())).thenReturn(socket);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.anyInt(),
+                Mockito.eq(socket),
+                Mockito.<HttpHost>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenReturn(socket);
+
+        Assert.assertEquals(Integer.valueOf(1), mgr.prewarm(route, 5).get());
+
+        Mockito.verify(pool, Mockito.times(2)).allocate(route);
+        Mockito.verify(pool).release(idle, true);
+        Mockito.verify(pool).release(entry, true);
+        Mockito.verify(idleConn, Mockito.never()).isStale();
+        Mockito.verify(idleConn, Mockito.never()).setSocketTimeout(Mockito.anyInt());
+    }
+
+    @Test
+    public void testPrewarmCappedAtRouteLimit() throws Exception {
+        final HttpHost target = new HttpHost("somehost", 80);
+        final HttpRoute route = new HttpRoute(target);
+
+        Mockito.when(pool.getStats(route)).thenReturn(new PoolStats(2, 0, 0, 2));
+
+        Assert.assertEquals(Integer.valueOf(0), mgr.prewarm(route, 2).get());
+
+        Mockito.verify(pool, Mockito.never()).allocate(Mockito.<HttpRoute>any());
+    }
+
+    @Test
+    public void testPrewarmTunnelledRoute() throws Exception {
+        final HttpHost target = new HttpHost("somehost", 443, "https");
+        final HttpHost proxy = new HttpHost("someproxy", 8080);
+        final HttpRoute route = new HttpRoute(target, null, proxy, true);
+
+        Assert.assertEquals(Integer.valueOf(0), mgr.prewarm(route, 2).get());
+
+        Mockito.verify(pool, Mockito.never()).allocate(Mockito.<HttpRoute>any());
+    }
+
+    @Test
+    public void testMinIdlePerRoute() throws Exception {
+        final HttpHost target = new HttpHost("somehost", 80);
+        final HttpRoute route = new HttpRoute(target);
+
+        Mockito.when(pool.getStats(route)).thenReturn(new PoolStats(2, 0, 2, 2));
+
+        mgr.setMinIdlePerRoute(route, 2);
+        Assert.assertEquals(2, mgr.getMinIdlePerRoute(route));
+        mgr.closeExpiredConnections();
+
+        Mockito.verify(pool, Mockito.never()).allocate(Mockito.<HttpRoute>any());
+
+        mgr.setMinIdlePerRoute(route, 0);
+        Assert.assertEquals(0, mgr.getMinIdlePerRoute(route));
+    }
+
 }
@@ -0,0 +1,386 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import tink.org.apache.http.HttpHost;
+import tink.org.apache.http.conn.ManagedHttpClientConnection;
+import tink.org.apache.http.conn.routing.HttpRoute;
+import tink.org.apache.http.pool.ConnFactory;
+import tink.org.apache.http.pool.PoolStats;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * {@link StripedCPool} tests.
+ */
+@SuppressWarnings({"boxing","unchecked"}) // test code
+public class TestStripedCPool {
+
+    private ConnFactory<HttpRoute, ManagedHttpClientConnection> connFactory;
+    private HttpRoute route1;
+    private HttpRoute route2;
+
+    @Before
+    public void setup() throws Exception {
+        connFactory = Mockito.mock(ConnFactory.class);
+        Mockito.when(connFactory.create(Mockito.any(HttpRoute.class))).thenAnswer(
+                new Answer<ManagedHttpClientConnection>() {
+
+                    @Override
+                    public ManagedHttpClientConnection answer(
+                            final InvocationOnMock invocation) throws Throwable {
+                        final ManagedHttpClientConnection conn = Mockito.mock(ManagedHttpClientConnection.class);
+                        Mockito.when(conn.isOpen()).thenReturn(true);
+                        return conn;
+                    }
+
+                });
+        route1 = new HttpRoute(new HttpHost("somehost", 80));
+        route2 = new HttpRoute(new HttpHost("otherhost", 80));
+    }
+
+    @Test
+    public void testLeaseRelease() throws Exception {
+        final StripedCPool pool = new StripedCPool(connFactory, 2, 10, -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        Assert.assertNotNull(entry1);
+        Assert.assertEquals(route1, entry1.getRoute());
+        Assert.assertEquals(1, pool.getStats(route1).getLeased());
+
+        pool.release(entry1, true);
+        Assert.assertEquals(0, pool.getStats(route1).getLeased());
+        Assert.assertEquals(1, pool.getStats(route1).getAvailable());
+
+        final CPoolEntry entry2 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        Assert.assertSame(entry1, entry2);
+        Mockito.verify(connFactory, Mockito.times(1)).create(route1);
+
+        pool.release(entry2, false);
+        final PoolStats totals = pool.getTotalStats();
+        Assert.assertEquals(0, totals.getLeased());
+        Assert.assertEquals(0, totals.getAvailable());
+        Mockito.verify(entry2.getConnection()).close();
+        pool.shutdown();
+    }
+
+    @Test
+    public void testLeaseStateMatching() throws Exception {
+        final StripedCPool pool = new StripedCPool(connFactory, 2, 10, -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        entry1.setState("some-state");
+        pool.release(entry1, true);
+
+        final CPoolEntry entry2 = pool.lease(route1, "other-state").get(1, TimeUnit.SECONDS);
+        Assert.assertNotSame(entry1, entry2);
+        final CPoolEntry entry3 = pool.lease(route1, "some-state").get(1, TimeUnit.SECONDS);
+        Assert.assertSame(entry1, entry3);
+        pool.release(entry2, true);
+        pool.release(entry3, true);
+        pool.shutdown();
+    }
+
+    @Test(expected=TimeoutException.class)
+    public void testMaxPerRoute() throws Exception {
+        final StripedCPool pool = new StripedCPool(connFactory, 1, 10, -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        Assert.assertNotNull(entry1);
+        final CPoolEntry entry2 = pool.lease(route2, null).get(1, TimeUnit.SECONDS);
+        Assert.assertNotNull(entry2);
+        pool.lease(route1, null).get(100, TimeUnit.MILLISECONDS);
+    }
+
+    @Test(expected=TimeoutException.class)
+    public void testMaxTotal() throws Exception {
+        final StripedCPool pool = new StripedCPool(connFactory, 2, 2, -1, TimeUnit.MILLISECONDS);
+        pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        pool.lease(route2, null).get(100, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testMaxTotalReclaimsIdleOfOtherRoute() throws Exception {
+        final StripedCPool pool = new StripedCPool(connFactory, 2, 2, -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry2 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry1, true);
+
+        final CPoolEntry entry3 = pool.lease(route2, null).get(1, TimeUnit.SECONDS);
+        Assert.assertNotNull(entry3);
+        Mockito.verify(entry1.getConnection()).close();
+        Assert.assertEquals(0, pool.getStats(route1).getAvailable());
+        Assert.assertEquals(2, pool.getTotalStats().getLeased());
+        pool.release(entry2, true);
+        pool.release(entry3, true);
+        pool.shutdown();
+    }
+
+    @Test
+    public void testReleaseWakesUpRequestOfOtherRoute() throws Exception {
+        final StripedCPool pool = new StripedCPool(connFactory, 2, 1, -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+
+        final Future<CPoolEntry> future = pool.lease(route2, null);
+        final Thread releaser = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (final InterruptedException ex) {
+                    return;
+                }
+                pool.release(entry1, false);
+            }
+
+        });
+        releaser.start();
+        final CPoolEntry entry2 = future.get(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(entry2);
+        Assert.assertEquals(route2, entry2.getRoute());
+        releaser.join();
+        pool.shutdown();
+    }
+
+    @Test
+    public void testRaisingMaxTotalWakesUpRequestsOfAllRoutes() throws Exception {
+        final StripedCPool pool = new StripedCPool(connFactory, 2, 1, -1, TimeUnit.MILLISECONDS);
+        final HttpRoute route3 = new HttpRoute(new HttpHost("thirdhost", 80));
+        pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<CPoolEntry> future2 = executor.submit(new Callable<CPoolEntry>() {
+
+                @Override
+                public CPoolEntry call() throws Exception {
+                    return pool.lease(route2, null).get();
+                }
+
+            });
+            final Future<CPoolEntry> future3 = executor.submit(new Callable<CPoolEntry>() {
+
+                @Override
+                public CPoolEntry call() throws Exception {
+                    return pool.lease(route3, null).get();
+                }
+
+            });
+            Thread.sleep(200);
+            Assert.assertEquals(2, pool.getTotalStats().getPending());
+
+            pool.setMaxTotal(3);
+            Assert.assertEquals(route2, future2.get(5, TimeUnit.SECONDS).getRoute());
+            Assert.assertEquals(route3, future3.get(5, TimeUnit.SECONDS).getRoute());
+            final PoolStats totals = pool.getTotalStats();
+            Assert.assertEquals(3, totals.getLeased());
+            Assert.assertEquals(0, totals.getPending());
+        } finally {
+            executor.shutdownNow();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancelLeaseRequest() throws Exception {
+        final StripedCPool pool = new StripedCPool(connFactory, 1, 10, -1, TimeUnit.MILLISECONDS);
+        pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final Future<CPoolEntry> future = pool.lease(route1, null);
+        Assert.assertTrue(future.cancel(true));
+        Assert.assertTrue(future.isCancelled());
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            Assert.fail("InterruptedException should have been thrown");
+        } catch (final InterruptedException expected) {
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void testCloseIdle() throws Exception {
+        final StripedCPool pool = new StripedCPool(connFactory, 2, 10, -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry2 = pool.lease(route2, null).get(1, TimeUnit.SECONDS);
+        entry1.updateExpiry(0, TimeUnit.MILLISECONDS);
+        pool.release(entry1, true);
+        Thread.sleep(200);
+        entry2.updateExpiry(0, TimeUnit.MILLISECONDS);
+        pool.release(entry2, true);
+
+        Mockito.when(entry1.getConnection().isOpen()).thenReturn(false);
+        pool.closeIdle(100, TimeUnit.MILLISECONDS);
+
+        Mockito.verify(entry1.getConnection()).close();
+        Mockito.verify(entry2.getConnection(), Mockito.never()).close();
+        Assert.assertEquals(1, pool.getTotalStats().getAvailable());
+        Assert.assertEquals(1, pool.getStats(route2).getAvailable());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        final StripedCPool pool = new StripedCPool(connFactory, 2, 10, -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry2 = pool.lease(route2, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry2, true);
+        pool.shutdown();
+        Assert.assertTrue(pool.isShutdown());
+        Mockito.verify(entry1.getConnection()).close();
+        Mockito.verify(entry2.getConnection()).close();
+        try {
+            pool.lease(route1, null);
+            Assert.fail("IllegalStateException should have been thrown");
+        } catch (final IllegalStateException expected) {
+        }
+        // Ignored
+        pool.release(entry1, true);
+    }
+
+    @Test
+    public void testConnectFailureReleasesBudget() throws Exception {
+        final StripedCPool pool = new StripedCPool(connFactory, 2, 1, -1, TimeUnit.MILLISECONDS);
+        Mockito.when(connFactory.create(route2)).thenThrow(new IOException("Oppsie"));
+        try {
+            pool.lease(route2, null).get(1, TimeUnit.SECONDS);
+            Assert.fail("ExecutionException should have been thrown");
+        } catch (final ExecutionException expected) {
+        }
+        final CPoolEntry entry = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        Assert.assertNotNull(entry);
+        pool.shutdown();
+    }
+
+    @Test
+    public void testReusePolicyLifo() throws Exception {
+        final StripedCPool pool = new StripedCPool(connFactory, 2, 10, -1, TimeUnit.MILLISECONDS,
+                PoolReusePolicy.LIFO);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry2 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+
+        Assert.assertSame(entry2, pool.lease(route1, null).get(1, TimeUnit.SECONDS));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testReusePolicyFifo() throws Exception {
+        final StripedCPool pool = new StripedCPool(connFactory, 2, 10, -1, TimeUnit.MILLISECONDS,
+                PoolReusePolicy.FIFO);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry2 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+
+        Assert.assertSame(entry1, pool.lease(route1, null).get(1, TimeUnit.SECONDS));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testReusePolicyFifoReclaimsLeastRecentlyUsed() throws Exception {
+        final StripedCPool pool = new StripedCPool(connFactory, 2, 2, -1, TimeUnit.MILLISECONDS,
+                PoolReusePolicy.FIFO);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry2 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+
+        final CPoolEntry entry3 = pool.lease(route2, null).get(1, TimeUnit.SECONDS);
+        Assert.assertNotNull(entry3);
+        Mockito.verify(entry1.getConnection()).close();
+        Mockito.verify(entry2.getConnection(), Mockito.never()).close();
+        pool.shutdown();
+    }
+
+    @Test
+    public void testValidateIdle() throws Exception {
+        final StripedCPool pool = new StripedCPool(connFactory, 2, 10, -1, TimeUnit.MILLISECONDS);
+        pool.setValidateAfterInactivity(50);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry2 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        Mockito.when(entry1.getConnection().isStale()).thenReturn(true);
+        Mockito.when(entry2.getConnection().isStale()).thenReturn(false);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+
+        Assert.assertEquals(0, pool.validateIdle());
+        Thread.sleep(100);
+        Assert.assertEquals(1, pool.validateIdle());
+
+        Mockito.verify(entry1.getConnection()).close();
+        Assert.assertEquals(1, pool.getStats(route1).getAvailable());
+        Assert.assertEquals(1, pool.getTotalStats().getAvailable());
+
+        // Validated in the background, no check on lease
+        final CPoolEntry entry3 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        Assert.assertSame(entry2, entry3);
+        Mockito.verify(entry2.getConnection(), Mockito.times(1)).isStale();
+        pool.shutdown();
+    }
+
+    @Test
+    public void testMetricsEvictionReasons() throws Exception {
+        final ConnPoolMetrics metrics = new ConnPoolMetrics();
+        final StripedCPool pool = new StripedCPool(connFactory, 2, 1, -1, TimeUnit.MILLISECONDS,
+                PoolReusePolicy.LIFO, metrics);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        entry1.incrementLeaseCount();
+        pool.release(entry1, true);
+        final CPoolEntry entry2 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        entry2.incrementLeaseCount();
+        Assert.assertSame(entry1, entry2);
+        entry2.setCloseReason(EvictionReason.NOT_REUSABLE);
+        pool.release(entry2, false);
+
+        final CPoolEntry entry3 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry3, true);
+        // Budget of one connection: the idle connection of route1 is reclaimed
+        final CPoolEntry entry4 = pool.lease(route2, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry4, true);
+
+        final RoutePoolMetrics routeMetrics = metrics.getRouteMetrics(route1);
+        Assert.assertNotNull(routeMetrics);
+        Assert.assertEquals(1, routeMetrics.getEvictionCount(EvictionReason.NOT_REUSABLE));
+        Assert.assertEquals(1, routeMetrics.getEvictionCount(EvictionReason.POOL_LIMIT));
+        Assert.assertEquals(2, routeMetrics.getConnectionLifetime().getCount());
+        Assert.assertEquals(1, routeMetrics.getReuseCount().getMax());
+        pool.shutdown();
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.execchain;
+
+import java.util.concurrent.TimeUnit;
+
+import tink.org.apache.http.HttpHost;
+import tink.org.apache.http.HttpResponse;
+import tink.org.apache.http.client.ConnectionBackoffStrategy;
+import tink.org.apache.http.client.LatencyAwareBackoffManager;
+import tink.org.apache.http.client.methods.CloseableHttpResponse;
+import tink.org.apache.http.client.methods.HttpExecutionAware;
+import tink.org.apache.http.client.methods.HttpGet;
+import tink.org.apache.http.client.methods.HttpRequestWrapper;
+import tink.org.apache.http.client.protocol.HttpClientContext;
+import tink.org.apache.http.conn.routing.HttpRoute;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+@SuppressWarnings({"boxing","static-access"}) // test code
+public class TestBackoffStrategyExec {
+
+    @Mock
+    private ClientExecChain requestExecutor;
+    @Mock
+    private ConnectionBackoffStrategy backoffStrategy;
+    @Mock
+    private LatencyAwareBackoffManager backoffManager;
+    @Mock
+    private HttpExecutionAware execAware;
+
+    private BackoffStrategyExec backoffExec;
+    private HttpRoute route;
+
+    @Before
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        backoffExec = new BackoffStrategyExec(requestExecutor, backoffStrategy, backoffManager);
+        route = new HttpRoute(new HttpHost("localhost", 80));
+    }
+
+    @Test
+    public void testRecordsResponseTimeOnly() throws Exception {
+        final HttpRequestWrapper request = HttpRequestWrapper.wrap(new HttpGet("/test"));
+        final HttpClientContext context = HttpClientContext.create();
+        context.setAttribute(HttpClientContext.RESPONSE_TIME, 1L);
+        final CloseableHttpResponse response = Mockito.mock(CloseableHttpResponse.class);
+
+        Mockito.when(requestExecutor.execute(
+                Mockito.eq(route),
+                Mockito.same(request),
+                Mockito.same(context),
+                Mockito.same(execAware))).thenAnswer(new Answer<CloseableHttpResponse>() {
+
+                    @Override
+                    public CloseableHttpResponse answer(final InvocationOnMock invocation) throws Throwable {
+                        // Time spent waiting for a connection is not part of the response time
+                        Thread.sleep(50);
+                        context.setAttribute(HttpClientContext.RESPONSE_TIME, 1000L);
+                        return response;
+                    }
+
+                });
+        Mockito.when(backoffStrategy.shouldBackoff(Mockito.<HttpResponse>any())).thenReturn(Boolean.FALSE);
+
+        backoffExec.execute(route, request, context, execAware);
+
+        Mockito.verify(backoffManager).recordLatency(route, 1000L, TimeUnit.NANOSECONDS);
+        Mockito.verify(backoffManager).probe(route);
+    }
+
+    @Test
+    public void testNoLatencyRecordedWithoutResponseTime() throws Exception {
+        final HttpRequestWrapper request = HttpRequestWrapper.wrap(new HttpGet("/test"));
+        final HttpClientContext context = HttpClientContext.create();
+        // Left over from a previous execution in the same context
+        context.setAttribute(HttpClientContext.RESPONSE_TIME, 1000L);
+        final CloseableHttpResponse response = Mockito.mock(CloseableHttpResponse.class);
+
+        Mockito.when(requestExecutor.execute(
+                Mockito.eq(route),
+                Mockito.same(request),
+                Mockito.same(context),
+                Mockito.same(execAware))).thenReturn(response);
+        Mockito.when(backoffStrategy.shouldBackoff(Mockito.<HttpResponse>any())).thenReturn(Boolean.FALSE);
+
+        backoffExec.execute(route, request, context, execAware);
+
+        Mockito.verify(backoffManager, Mockito.never()).recordLatency(
+                Mockito.<HttpRoute>any(), Mockito.anyLong(), Mockito.<TimeUnit>any());
+        Mockito.verify(backoffManager).probe(route);
+    }
+
+}